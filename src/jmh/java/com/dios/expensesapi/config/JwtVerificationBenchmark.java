@@ -0,0 +1,78 @@
+package com.dios.expensesapi.config;
+
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Per-request cost of authenticating a bearer token.
+ * legacyTripleParse reproduces the old filter: extractUsername + validateToken, each one decoding
+ * the secret and building a new parser. verifyOnce is JwtUtil.verify and cachedPrincipal is a hit
+ * in the verified token cache. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "myVerySecretKeyThatShouldBeAtLeast32CharactersLong";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 86400000L, new VerifiedTokenCache(100));
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .email("user@example.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build();
+        token = jwtUtil.generateToken(user);
+
+        VerifiedToken verified = jwtUtil.verify(token).orElseThrow();
+        jwtUtil.cachePrincipal(token, verified, jwtUtil.toPrincipal(verified).orElseThrow());
+    }
+
+    @Benchmark
+    public void legacyTripleParse(Blackhole blackhole) {
+        String username = legacyClaims(token).getSubject(); // extractUsername in the filter
+        boolean sameUser = legacyClaims(token).getSubject().equals(username); // validateToken -> extractUsername
+        boolean expired = legacyClaims(token).getExpiration().before(new Date()); // validateToken -> isTokenExpired
+        blackhole.consume(sameUser && !expired);
+    }
+
+    @Benchmark
+    public void verifyOnce(Blackhole blackhole) {
+        blackhole.consume(jwtUtil.verify(token).orElseThrow().getSubject());
+    }
+
+    @Benchmark
+    public void cachedPrincipal(Blackhole blackhole) {
+        blackhole.consume(jwtUtil.getCachedPrincipal(token).orElseThrow().getId());
+    }
+
+    private static Claims legacyClaims(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
@@ -0,0 +1,113 @@
+package com.dios.expensesapi.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Summing and serializing a million amounts of the shape of the amount column (up to 8 integer
+ * digits, two decimals), as the BigDecimal the driver returns and as Money. The sums are what the
+ * summaries do per bucket, the JSON arrays what a large listing or export writes. A BigDecimal keeps
+ * its text once written, so serializeBigDecimal writes cached text; the first write, the one every
+ * response pays, is serializeFreshBigDecimal, with new instances for each invocation. Run with
+ * -prof gc to see the allocation per operation next to the time. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MoneyBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    private BigDecimal[] decimals;
+    private Money[] amounts;
+    private long[] cents;
+    private ObjectWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        decimals = new BigDecimal[size];
+        amounts = new Money[size];
+        cents = new long[size];
+        for (int i = 0; i < size; i++) {
+            // Mostly small amounts, like real expenses, with some large ones
+            long value = random.nextInt(10) == 0 ? random.nextLong(1, 10_000_000_000L) : random.nextLong(1, 50_000);
+            decimals[i] = BigDecimal.valueOf(value, 2);
+            amounts[i] = Money.ofCents(value);
+            cents[i] = value;
+        }
+        writer = new ObjectMapper().writer();
+    }
+
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : decimals) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money sumMoney() {
+        long total = 0;
+        for (Money amount : amounts) {
+            total += amount.cents();
+        }
+        return Money.ofCents(total);
+    }
+
+    // The loop of ExpenseColumns, cents without any object around them
+    @Benchmark
+    public long sumCents() {
+        long total = 0;
+        for (long amount : cents) {
+            total += amount;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void serializeBigDecimal() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), decimals);
+    }
+
+    @Benchmark
+    public void serializeFreshBigDecimal(FreshDecimals fresh) throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), fresh.decimals);
+    }
+
+    @Benchmark
+    public void serializeMoney() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), amounts);
+    }
+
+    @State(Scope.Thread)
+    public static class FreshDecimals {
+
+        private BigDecimal[] decimals;
+
+        // Not measured, the invocation itself is long enough for the setup not to skew it
+        @Setup(Level.Invocation)
+        public void setUp(MoneyBenchmark benchmark) {
+            decimals = new BigDecimal[benchmark.size];
+            for (int i = 0; i < decimals.length; i++) {
+                decimals[i] = BigDecimal.valueOf(benchmark.cents[i], 2);
+            }
+        }
+    }
+}
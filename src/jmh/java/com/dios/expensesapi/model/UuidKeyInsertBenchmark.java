@@ -0,0 +1,146 @@
+package com.dios.expensesapi.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/* Batched inserts into a table shaped like expenses, keyed by random v4 UUIDs (the old
+ * GenerationType.UUID) or by UuidV7Generator. The score is rows per second. After every iteration
+ * the size of the table is printed: the primary key index alone on Postgres, the whole table on H2,
+ * which has no per index figure.
+ *
+ * H2 runs on a file in a temporary directory by default. For Postgres build the benchmark jar and pass the database:
+ *   ./gradlew jmhJar
+ *   java -jar build/libs/*-jmh.jar UuidKeyInsertBenchmark -p database=postgres \
+ *       -jvmArgs "-Dbench.postgres.url=jdbc:postgresql://localhost:5432/expenses -Dbench.postgres.user=... -Dbench.postgres.password=..."
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UuidKeyInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"v4", "v7"})
+    public String keys;
+
+    @Param({"h2"})
+    public String database;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private Supplier<UUID> idGenerator;
+    private final UUID userId = UUID.randomUUID();
+    private long rows;
+    private Path h2Directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, ClassNotFoundException, IOException {
+        idGenerator = keys.equals("v7") ? UuidV7Generator::nextUuid : UUID::randomUUID;
+        connection = connect();
+        connection.setAutoCommit(false);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists bench_expenses");
+            statement.execute("""
+                    create table bench_expenses (
+                        id uuid not null,
+                        user_id uuid not null,
+                        expense_date timestamp not null,
+                        amount numeric(10, 2) not null,
+                        description text,
+                        constraint bench_expenses_pkey primary key (id)
+                    )
+                    """);
+        }
+        connection.commit();
+        insert = connection.prepareStatement(
+                "insert into bench_expenses (id, user_id, expense_date, amount, description) values (?, ?, ?, ?, ?)");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch() throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setObject(1, idGenerator.get());
+            insert.setObject(2, userId);
+            insert.setTimestamp(3, now);
+            insert.setBigDecimal(4, BigDecimal.TEN);
+            insert.setString(5, "Benchmark expense");
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+        rows += BATCH_SIZE;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printSize() throws SQLException {
+        String sql = database.equals("postgres")
+                ? "select pg_relation_size('bench_expenses_pkey')"
+                : "select disk_space_used('bench_expenses')";
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            long bytes = result.getLong(1);
+            System.out.printf("%n%s keys on %s: %,d rows, %,d bytes (%.1f bytes per row)%n",
+                    keys, database, rows, bytes, rows == 0 ? 0.0 : (double) bytes / rows);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table bench_expenses");
+        }
+        connection.commit();
+        insert.close();
+        connection.close();
+
+        if (h2Directory != null) {
+            try (Stream<Path> files = Files.walk(h2Directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // Drivers are loaded by name, the jmh jar merges their META-INF/services entries into a single broken line
+    private Connection connect() throws SQLException, ClassNotFoundException, IOException {
+        if (database.equals("postgres")) {
+            Class.forName("org.postgresql.Driver");
+            return DriverManager.getConnection(
+                    System.getProperty("bench.postgres.url", "jdbc:postgresql://localhost:5432/expenses"),
+                    System.getProperty("bench.postgres.user", "postgres"),
+                    System.getProperty("bench.postgres.password", "postgres"));
+        }
+        // File database, in memory H2 does not report the space used
+        Class.forName("org.h2.Driver");
+        h2Directory = Files.createTempDirectory("uuid-bench");
+        return DriverManager.getConnection("jdbc:h2:file:" + h2Directory.resolve("bench"), "sa", "");
+    }
+}
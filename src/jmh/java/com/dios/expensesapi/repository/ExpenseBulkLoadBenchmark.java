@@ -0,0 +1,191 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.mapper.ExpenseMapper;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Rows per second loaded into expenses by the import engines against the entity path of
+ * ExpenseServiceImpl.create: per row a category lookup and ExpenseRepository.save, with Hibernate
+ * batching the inserts. Every invocation is one chunk of the import, in its own transaction.
+ * On H2 the engine is the batched INSERT ... SELECT fallback, on Postgres the COPY loader.
+ *
+ * The context is plain Spring with Hibernate and the repositories, no Boot auto-configuration, which
+ * does not survive the merged jmh jar. For Postgres build the benchmark jar and pass the database:
+ *   ./gradlew jmhJar
+ *   java -jar build/libs/*-jmh.jar ExpenseBulkLoadBenchmark -p database=postgres \
+ *       -jvmArgs "-Dbench.postgres.url=jdbc:postgresql://localhost:5432/expenses -Dbench.postgres.user=... -Dbench.postgres.password=..."
+ * The tables are created in that database and dropped at the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExpenseBulkLoadBenchmark {
+
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Param({"h2"})
+    public String database;
+
+    private AnnotationConfigApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private ExpenseRepository expenseRepository;
+    private CategoryRepository categoryRepository;
+    private ExpenseBulkLoader bulkLoader;
+    private UUID userId;
+    private final List<ExpenseBulkLoader.Row> rows = new ArrayList<>(CHUNK_SIZE);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(DataSource.class, this::dataSource);
+        context.register(JpaConfig.class);
+        context.refresh();
+
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        expenseRepository = context.getBean(ExpenseRepository.class);
+        categoryRepository = context.getBean(CategoryRepository.class);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+        bulkLoader = database.equals("postgres")
+                ? new CopyExpenseBulkLoader(jdbcTemplate)
+                : new JdbcBatchExpenseBulkLoader(jdbcTemplate);
+
+        Category category = transactionTemplate.execute(status -> {
+            entityManager.persist(User.builder()
+                    .email("bench@example.com")
+                    .password("password")
+                    .firstName("Bench")
+                    .lastName("Mark")
+                    .role(Role.USER)
+                    .enabled(true)
+                    .build());
+            Category food = Category.builder().name("Food").build();
+            entityManager.persist(food);
+            return food;
+        });
+        userId = transactionTemplate.execute(status ->
+                entityManager.createQuery("select u.id from User u", UUID.class).getSingleResult());
+
+        // Half the rows name the category, half give its id, like a typical export
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            ExpenseDTO expense = new ExpenseDTO();
+            expense.setExpenseDate(LocalDateTime.of(2024, 1, 1, 12, 0).plusMinutes(i));
+            if (i % 2 == 0) {
+                expense.setCategoryId(category.getId());
+            } else {
+                expense.setCategoryName(category.getName());
+            }
+            expense.setAmount(new BigDecimal("12.34"));
+            expense.setDescription("Benchmark expense " + i);
+            rows.add(new ExpenseBulkLoader.Row(i + 2, expense));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void repositorySave() {
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = entityManager.getReference(User.class, userId);
+            for (ExpenseBulkLoader.Row row : rows) {
+                ExpenseDTO dto = row.expense();
+                Category category = dto.getCategoryId() != null
+                        ? categoryRepository.findById(dto.getCategoryId()).orElseThrow()
+                        : categoryRepository.findByName(dto.getCategoryName()).orElseThrow();
+                Expense expense = ExpenseMapper.toEntity(dto, category);
+                expense.setUser(user);
+                expenseRepository.save(expense);
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void bulkLoad() {
+        transactionTemplate.executeWithoutResult(status -> bulkLoader.load(userId, rows));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private DataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        if (database.equals("postgres")) {
+            dataSource.setDriverClassName("org.postgresql.Driver");
+            dataSource.setJdbcUrl(System.getProperty("bench.postgres.url", "jdbc:postgresql://localhost:5432/expenses"));
+            dataSource.setUsername(System.getProperty("bench.postgres.user", "postgres"));
+            dataSource.setPassword(System.getProperty("bench.postgres.password", "postgres"));
+        } else {
+            dataSource.setDriverClassName("org.h2.Driver");
+            dataSource.setJdbcUrl("jdbc:h2:mem:bulkload;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+        }
+        return dataSource;
+    }
+
+    // Same naming of columns as Spring Boot and same Hibernate batching as application.properties
+    @Configuration
+    @EnableJpaRepositories(basePackageClasses = ExpenseRepository.class)
+    static class JpaConfig {
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setPackagesToScan(Expense.class.getPackageName());
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of(
+                    "hibernate.hbm2ddl.auto", "create-drop",
+                    "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                    "hibernate.jdbc.batch_size", "50",
+                    "hibernate.order_inserts", "true",
+                    "hibernate.order_updates", "true"));
+            return factory;
+        }
+
+        @Bean
+        JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+    }
+}
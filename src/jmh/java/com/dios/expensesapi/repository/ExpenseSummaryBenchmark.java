@@ -0,0 +1,224 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseCursor;
+import com.dios.expensesapi.dto.ExpenseFilter;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Money;
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.CategoryCatalog;
+import com.dios.expensesapi.service.ExpenseColumnarCache;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Monthly and per category spending of one user over a year, out of a table of 10M expenses spread
+ * over 100 users and ten years: the GROUP BY of ExpenseRepository.summarize against what clients did
+ * before it existed, reading every expense of the year through the listing and adding them up, and
+ * against the in-memory columns of ExpenseColumnarCache, loaded for every user before measuring.
+ *
+ * The rows are generated in the database with INSERT ... SELECT, seeding takes a while and the H2
+ * run needs a large heap (-jvmArgs -Xmx8g); -p rows=1000000 is enough for a quick comparison. Same
+ * context and Postgres options as ExpenseBulkLoadBenchmark, with -p database=postgres the table is
+ * vacuumed after seeding so the summary can be answered from idx_expenses_user_date_category_amount.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExpenseSummaryBenchmark {
+
+    private static final int USERS = 100;
+    private static final int CATEGORIES = 10;
+    private static final int PAGE_SIZE = 100;
+    private static final LocalDateTime END = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final LocalDateTime START = END.minusYears(10);
+
+    @Param({"h2"})
+    public String database;
+
+    @Param({"10000000"})
+    public int rows;
+
+    private AnnotationConfigApplicationContext context;
+    private ExpenseRepository expenseRepository;
+    private ExpenseColumnarCache columnarCache;
+    private final List<UUID> userIds = new ArrayList<>();
+    private int nextUser;
+    private ExpenseFilter lastYear;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(DataSource.class, this::dataSource);
+        context.register(ExpenseBulkLoadBenchmark.JpaConfig.class);
+        context.refresh();
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        expenseRepository = context.getBean(ExpenseRepository.class);
+
+        List<UUID> categoryIds = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < USERS; i++) {
+                User user = User.builder()
+                        .email("bench" + i + "@example.com")
+                        .password("password")
+                        .firstName("Bench")
+                        .lastName("Mark")
+                        .role(Role.USER)
+                        .enabled(true)
+                        .build();
+                entityManager.persist(user);
+                userIds.add(user.getId());
+            }
+            for (int i = 0; i < CATEGORIES; i++) {
+                Category category = Category.builder().name("Category " + i).build();
+                entityManager.persist(category);
+                categoryIds.add(category.getId());
+            }
+        });
+
+        // Each (user, category) gets an even share of the rows, spread back from END over ten years
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+        int perSeries = rows / (USERS * CATEGORIES);
+        long spacingMinutes = Math.max(1, ChronoUnit.MINUTES.between(START, END) / perSeries);
+        String insert = database.equals("postgres") ? """
+                insert into expenses (id, user_id, category_id, expense_date, amount, created_at, version)
+                select gen_random_uuid(), ?, ?, cast(? as timestamp) - x * cast(? as bigint) * interval '1 minute', ((x * 7919) % 50000) / 100.0 + 1, now(), 0
+                from generate_series(1, cast(? as integer)) as x
+                """ : """
+                insert into expenses (id, user_id, category_id, expense_date, amount, created_at, version)
+                select random_uuid(), ?, ?, dateadd(minute, -x * cast(? as bigint), cast(? as timestamp)), mod(x * 7919, 50000) / 100.0 + 1, current_timestamp, 0
+                from system_range(1, cast(? as integer))
+                """;
+        for (UUID user : userIds) {
+            for (UUID category : categoryIds) {
+                if (database.equals("postgres")) {
+                    jdbcTemplate.update(insert, user, category, END, spacingMinutes, perSeries);
+                } else {
+                    jdbcTemplate.update(insert, user, category, spacingMinutes, END, perSeries);
+                }
+            }
+        }
+        if (database.equals("postgres")) {
+            jdbcTemplate.execute("vacuum analyze expenses");
+        }
+
+        lastYear = ExpenseFilter.builder().from(END.minusYears(1)).to(END).build();
+
+        // No memory budget and no expiry, every user stays loaded
+        CategoryRepository categoryRepository = context.getBean(CategoryRepository.class);
+        columnarCache = new ExpenseColumnarCache(expenseRepository, categoryRepository,
+                new CategoryCatalog(categoryRepository, Duration.ofHours(1)),
+                context.getBean(PlatformTransactionManager.class), Long.MAX_VALUE, Duration.ofDays(1));
+        for (UUID user : userIds) {
+            columnarCache.summarize(user, lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.MONTH);
+        }
+    }
+
+    @Benchmark
+    public List<ExpenseSummaryDTO> summaryByMonth() {
+        return expenseRepository.summarize(nextUser(), lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.MONTH);
+    }
+
+    @Benchmark
+    public List<ExpenseSummaryDTO> summaryByCategory() {
+        return expenseRepository.summarize(nextUser(), lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.CATEGORY);
+    }
+
+    @Benchmark
+    public List<ExpenseSummaryDTO> summaryByDay() {
+        return expenseRepository.summarize(nextUser(), lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.DAY);
+    }
+
+    @Benchmark
+    public List<ExpenseSummaryDTO> columnarByMonth() {
+        return columnarCache.summarize(nextUser(), lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.MONTH);
+    }
+
+    // Still reads the names of the categories in the result from the database
+    @Benchmark
+    public List<ExpenseSummaryDTO> columnarByCategory() {
+        return columnarCache.summarize(nextUser(), lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.CATEGORY);
+    }
+
+    @Benchmark
+    public List<ExpenseSummaryDTO> columnarByDay() {
+        return columnarCache.summarize(nextUser(), lastYear.getFrom(), lastYear.getTo(), ExpenseSummaryDTO.GroupBy.DAY);
+    }
+
+    // The monthly totals as a client computed them: every slice of the filtered listing, summed locally
+    @Benchmark
+    public Map<YearMonth, Money> clientSideByMonth() {
+        UUID userId = nextUser();
+        Map<YearMonth, Money> totals = new TreeMap<>();
+        ExpenseCursor cursor = null;
+        Slice<ExpenseResponseDTO> slice;
+        do {
+            slice = expenseRepository.search(userId, lastYear, cursor, PAGE_SIZE);
+            for (ExpenseResponseDTO expense : slice.getContent()) {
+                totals.merge(YearMonth.from(expense.getExpenseDate()), expense.getAmount(), Money::plus);
+            }
+            if (slice.hasNext()) {
+                cursor = ExpenseCursor.of(slice.getContent().getLast());
+            }
+        } while (slice.hasNext());
+        return totals;
+    }
+
+    // A different user on every call, H2 would otherwise hand back the cached result of the same query
+    private UUID nextUser() {
+        nextUser = (nextUser + 1) % USERS;
+        return userIds.get(nextUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private DataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        if (database.equals("postgres")) {
+            dataSource.setDriverClassName("org.postgresql.Driver");
+            dataSource.setJdbcUrl(System.getProperty("bench.postgres.url", "jdbc:postgresql://localhost:5432/expenses"));
+            dataSource.setUsername(System.getProperty("bench.postgres.user", "postgres"));
+            dataSource.setPassword(System.getProperty("bench.postgres.password", "postgres"));
+        } else {
+            dataSource.setDriverClassName("org.h2.Driver");
+            dataSource.setJdbcUrl("jdbc:h2:mem:summary;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,83 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.repository.CategoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Sort;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Search of the first page of categories by part of the name over a catalog of generated names, made
+ * of two words of a small vocabulary and a number. scan is what the database does for
+ * lower(name) like '%x%' without a trigram index, every name checked; ngram is NgramCategoryNameSearch.
+ * "bakery 12" matches a handful of names, "bakery" around one in ten. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CategoryNameSearchBenchmark {
+
+    private static final String[] WORDS = {"food", "travel", "bakery", "fuel", "rent", "health", "gym", "books",
+            "games", "music", "taxes", "pets", "garden", "coffee", "parking", "insurance", "clothes", "gifts",
+            "hotels", "flights"};
+
+    @Param({"100000"})
+    public int categories;
+
+    @Param({"bakery 12", "bakery"})
+    public String text;
+
+    private List<CategoryResponseDTO> names;
+    private NgramCategoryNameSearch search;
+    private final Sort byName = Sort.by("name");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Category> generated = new ArrayList<>(categories);
+        for (int i = 0; i < categories; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            generated.add(Category.builder().id(UUID.randomUUID()).name(name).build());
+        }
+        // Only findAll is called, by the catalog
+        CategoryRepository repository = (CategoryRepository) Proxy.newProxyInstance(
+                CategoryRepository.class.getClassLoader(), new Class<?>[]{CategoryRepository.class},
+                (proxy, method, args) -> generated);
+        CategoryCatalog catalog = new CategoryCatalog(repository, Duration.ofDays(1));
+        names = catalog.findAll();
+        search = new NgramCategoryNameSearch(catalog);
+        search.count(text);
+    }
+
+    @Benchmark
+    public List<CategoryResponseDTO> scan() {
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        List<CategoryResponseDTO> page = new ArrayList<>();
+        for (CategoryResponseDTO category : names) {
+            if (category.getName().toLowerCase(Locale.ROOT).contains(lowerText) && page.size() < 10) {
+                page.add(category);
+            }
+        }
+        return page;
+    }
+
+    @Benchmark
+    public List<CategoryResponseDTO> ngram() {
+        return search.find(text, byName, 0, 10);
+    }
+}
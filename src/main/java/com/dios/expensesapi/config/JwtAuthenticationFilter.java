@@ -1,19 +1,21 @@
 package com.dios.expensesapi.config;
 
+import com.dios.expensesapi.model.AuthenticatedUser;
 import com.dios.expensesapi.service.CustomUserDetailsService;
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -21,9 +23,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
+    // When enabled every request loads the user from the database instead of trusting the token claims
+    private final boolean recheckUser;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService,
+                                   @Value("${jwt.recheck-user:false}") boolean recheckUser) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.recheckUser = recheckUser;
     }
 
     @Override
@@ -36,7 +43,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String authHeader = request.getHeader("Authorization");
 
         final String jwt;
-        final String userEmail;
 
         // Verification that it exists and starts with 'Bearer ' (Bearer = Portador, token type used)
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -45,22 +51,62 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7); // Cut prefix 'Bearer '
-        userEmail = jwtUtil.extractUsername(jwt);
-
-        // Check userEmail not null and that there is no existing authentication already set in the security context
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
 
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+        // Check that there is no existing authentication already set in the security context
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            resolvePrincipal(jwt).ifPresent(principal -> {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
+                        principal,
                         null,
-                        userDetails.getAuthorities());
+                        principal.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            });
         }
         // If it's a valid request continue with the already configured security
         filterChain.doFilter(request, response);
     }
+
+    private Optional<AuthenticatedUser> resolvePrincipal(String jwt) {
+        if (recheckUser) {
+            return jwtUtil.verify(jwt)
+                    .filter(token -> token.getSubject() != null)
+                    .flatMap(this::authenticate);
+        }
+
+        // A token seen before skips signature verification and the user lookup, only the revocation check remains
+        Optional<AuthenticatedUser> cached = jwtUtil.getCachedPrincipal(jwt);
+        if (cached.isPresent()) {
+            return cached.filter(this::isTokenVersionCurrent);
+        }
+
+        // Signature and expiration are checked only once; an invalid token just leaves the request unauthenticated
+        return jwtUtil.verify(jwt)
+                .filter(token -> token.getSubject() != null)
+                .flatMap(token -> authenticate(token)
+                        .map(principal -> {
+                            jwtUtil.cachePrincipal(jwt, token, principal);
+                            return principal;
+                        }));
+    }
+
+    private Optional<AuthenticatedUser> authenticate(VerifiedToken token) {
+        Optional<AuthenticatedUser> fromClaims = jwtUtil.toPrincipal(token);
+
+        // Tokens without user claims (issued by older versions) still need the database
+        if (fromClaims.isEmpty()) {
+            return userDetailsService.loadAuthenticatedUser(token.getSubject());
+        }
+
+        if (recheckUser) {
+            return userDetailsService.loadAuthenticatedUser(token.getSubject())
+                    .filter(loaded -> loaded.getTokenVersion() == fromClaims.get().getTokenVersion());
+        }
+
+        return fromClaims.filter(this::isTokenVersionCurrent);
+    }
+
+    private boolean isTokenVersionCurrent(AuthenticatedUser principal) {
+        return userDetailsService.isTokenVersionCurrent(principal.getId(), principal.getTokenVersion());
+    }
 }
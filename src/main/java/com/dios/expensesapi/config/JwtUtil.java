@@ -1,6 +1,11 @@
 package com.dios.expensesapi.config;
 
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -10,28 +15,48 @@ import org.springframework.beans.factory.annotation.Value;
 import javax.crypto.SecretKey;
 import io.jsonwebtoken.security.Keys;
 
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
-    // Key to sign JWT
-    @Value("${jwt.secret:mySecretKey}")
-    private String secret;
+    // Claims that let the filter authenticate a request without reading the users table
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLE_CLAIM = "role";
+    static final String TOKEN_VERSION_CLAIM = "ver";
 
-    @Value("${jwt.expiration:86400000}") // 24 hours in msegs
-    private Long expiration;
+    private final Long expiration;
 
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // Key and parser are thread-safe, so they are built once instead of on every call
+    private final SecretKey signInKey;
+    private final JwtParser parser;
+
+    private final VerifiedTokenCache tokenCache;
+
+    public JwtUtil(@Value("${jwt.secret:mySecretKey}") String secret, // Key to sign JWT
+                   @Value("${jwt.expiration:86400000}") Long expiration, // 24 hours in msegs
+                   VerifiedTokenCache tokenCache) {
+        this.expiration = expiration;
+        this.tokenCache = tokenCache;
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parser()
+                .verifyWith(signInKey)
+                .build();
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof User user && user.getId() != null && user.getRole() != null) {
+            claims.put(USER_ID_CLAIM, user.getId().toString());
+            claims.put(ROLE_CLAIM, user.getRole().name());
+            claims.put(TOKEN_VERSION_CLAIM, user.getTokenVersion());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -41,10 +66,53 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), Jwts.SIG.HS256) // Firma con la clave
+                .signWith(signInKey, Jwts.SIG.HS256) // Firma con la clave
                 .compact();
     }
 
+    /* Parses and verifies the token a single time. Returns empty if the signature is not valid,
+     * the token is malformed or it has already expired. */
+    public Optional<VerifiedToken> verify(String token) {
+        try {
+            Claims claims = extractAllClaims(token);
+            Date expirationDate = claims.getExpiration();
+            return Optional.of(new VerifiedToken(
+                    claims.getSubject(),
+                    expirationDate != null ? expirationDate.toInstant() : null,
+                    claims));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /* Builds the principal straight from the verified claims. Empty for tokens issued
+     * before the user claims existed, in that case the user has to be loaded. */
+    public Optional<AuthenticatedUser> toPrincipal(VerifiedToken token) {
+        String userId = token.getClaim(USER_ID_CLAIM, String.class);
+        String role = token.getClaim(ROLE_CLAIM, String.class);
+        Integer tokenVersion = token.getClaim(TOKEN_VERSION_CLAIM, Integer.class);
+
+        if (token.getSubject() == null || userId == null || role == null || tokenVersion == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(new AuthenticatedUser(UUID.fromString(userId), token.getSubject(),
+                    Role.valueOf(role), tokenVersion));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /* Principal of a token that was already verified in a previous request, no crypto involved */
+    public Optional<AuthenticatedUser> getCachedPrincipal(String token) {
+        return tokenCache.get(token);
+    }
+
+    public void cachePrincipal(String token, VerifiedToken verified, AuthenticatedUser principal) {
+        tokenCache.put(token, verified.getExpiresAt(), principal);
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -60,9 +128,7 @@ public class JwtUtil {
 
     /* Claims are different properties in the payload. */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
                 /* When JWT is decoded, the payload is what is obtained as the content of the token */
@@ -73,8 +139,10 @@ public class JwtUtil {
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return verify(token)
+                .map(verified -> verified.getSubject().equals(userDetails.getUsername())
+                        && !verified.isExpired(Instant.now()))
+                .orElse(false);
     }
 
 }
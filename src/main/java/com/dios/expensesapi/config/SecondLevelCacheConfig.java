@@ -0,0 +1,75 @@
+package com.dios.expensesapi.config;
+
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.User;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/* Regions of the Hibernate second-level cache, created in Ehcache through JCache with the sizes and
+ * times to live of application.properties. Hibernate is handed this cache manager and fails to start
+ * on a region not declared here. The timestamps region, where Hibernate notes the last write of each
+ * table to discard older query results, is neither evicted nor expired. The regions live in the heap
+ * of one node: the writes of other nodes are only seen once an entry expires, which is why it is off
+ * in the docker profile and the times to live default to the category catalog's. */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    private static final int TIMESTAMP_ENTRIES = 1000;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${expenses.cache.categories.max-entries:1000}") long categoryEntries,
+            @Value("${expenses.cache.categories.ttl:30s}") Duration categoryTtl,
+            @Value("${expenses.cache.users.max-entries:10000}") long userEntries,
+            @Value("${expenses.cache.users.ttl:30s}") Duration userTtl,
+            @Value("${expenses.cache.queries.max-entries:10000}") long queryEntries,
+            @Value("${expenses.cache.queries.ttl:30s}") Duration queryTtl) {
+        org.ehcache.config.Configuration configuration = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache(Category.CACHE_REGION, region(categoryEntries, categoryTtl))
+                .withCache(Category.BY_NAME_CACHE_REGION, region(queryEntries, queryTtl))
+                .withCache(User.CACHE_REGION, region(userEntries, userTtl))
+                .withCache(User.BY_EMAIL_CACHE_REGION, region(queryEntries, queryTtl))
+                .withCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region(queryEntries, queryTtl))
+                .withCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                ResourcePoolsBuilder.heap(TIMESTAMP_ENTRIES)).build())
+                .build();
+
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        // A URI of its own, so every application context (the tests start several) gets its own regions
+        return provider.getCacheManager(URI.create("urn:expensesapi:hibernate:" + UUID.randomUUID()), configuration);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    // Entries kept on heap by reference, none serialized
+    private static CacheConfiguration<Object, Object> region(long maxEntries, Duration ttl) {
+        return CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                        ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl))
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.dios.expensesapi.config;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+
+/* Result of verifying a JWT once: signature and expiration have already been checked,
+ * so the values can be read as many times as needed without parsing the token again. */
+public final class VerifiedToken {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    private final String subject;
+    private final Instant expiresAt;
+    private final Claims claims;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public VerifiedToken(String subject, Instant expiresAt, Claims claims) {
+        this.subject = subject;
+        this.expiresAt = expiresAt;
+        this.claims = claims;
+    }
+
+    // ================================
+    // GETTERS
+    // ================================
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    // Claims returned by jjwt are already immutable
+    public Claims getClaims() {
+        return claims;
+    }
+
+    public <T> T getClaim(String name, Class<T> type) {
+        return claims.get(name, type);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
@@ -1,14 +1,15 @@
 package com.dios.expensesapi.controller;
 
 import com.dios.expensesapi.dto.CategoryDTO;
+import com.dios.expensesapi.dto.CategoryPageResponseDTO;
 import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.CategorySliceResponseDTO;
 import com.dios.expensesapi.dto.error.ErrorResponse;
 import com.dios.expensesapi.dto.error.ValidationErrorResponse;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
 import com.dios.expensesapi.service.CategoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
-import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -23,6 +24,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -54,21 +56,27 @@ public class CategoryController {
             summary = "Get all categories with pagination and search",
             description = """
                     Retrieve a paginated list of expense categories for the authenticated user.
-                    Supports filtering by name and flexible sorting options.
+                    Supports filtering by name and flexible sorting options. Search results are ranked by
+                    similarity to the search term, equally similar categories in the requested order.
+                    
+                    With `mode=slice` the total is not counted: the response only tells whether a next
+                    page exists, plus an approximate total for a rough page count.
                     
                     **Usage Examples:**
                     - Get first 10 categories: `/api/v1/categories`
                     - Search categories: `/api/v1/categories?search=food`
                     - Custom pagination: `/api/v1/categories?page=1&size=20&sortBy=name&sortDir=desc`
+                    - Without counting: `/api/v1/categories?search=food&mode=slice`
                     """
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
-                    description = "Successfully retrieved paginated categories",
+                    description = "Successfully retrieved paginated categories, a CategoryPageResponseDTO in page mode "
+                            + "and a CategorySliceResponseDTO in slice mode",
                     content = @Content(
                             mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = CategoryResponseDTO.class))
+                            schema = @Schema(oneOf = {CategoryPageResponseDTO.class, CategorySliceResponseDTO.class})
                     )
             ),
             @ApiResponse(
@@ -89,7 +97,7 @@ public class CategoryController {
             )
     })
     @GetMapping
-    public ResponseEntity<Page<CategoryResponseDTO>> findAll(
+    public ResponseEntity<?> findAll(
         @Parameter(description = "Page number (0-based)", example = "0")
         @RequestParam(defaultValue = "0") @Min(0) int page,
 
@@ -104,7 +112,12 @@ public class CategoryController {
                 message = "Sort direction must be 'asc' or 'desc'") String sortDir,
 
         @Parameter(description = "Search term to filter categories by name", example = "food")
-        @RequestParam(required = false) String search
+        @RequestParam(required = false) String search,
+
+        @Parameter(description = "page counts the total, slice skips the count", example = "page",
+                schema = @Schema(allowableValues = {"page", "slice"}))
+        @RequestParam(defaultValue = "page") @Pattern(regexp = "^(page|slice)$",
+                message = "Mode must be 'page' or 'slice'") String mode
     ) {
 
         if(!VALID_SORT_FIELDS.contains(sortBy)) {
@@ -114,6 +127,12 @@ public class CategoryController {
         Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
 
+        if (mode.equals("slice")) {
+            String nameContaining = search != null && !search.isEmpty() ? search.trim() : null;
+            CategorySliceResponseDTO categoriesSlice = categoryService.findSlice(nameContaining, pageable);
+            return ResponseEntity.ok(categoriesSlice);
+        }
+
         Page<CategoryResponseDTO> categoriesPage;
 
         if(search != null && !search.isEmpty()) {
@@ -166,7 +185,7 @@ public class CategoryController {
     @GetMapping("/{id}")
     public ResponseEntity<CategoryResponseDTO> findById(@PathVariable UUID id) {
         return categoryService.findById(id)
-                .map(ResponseEntity::ok)
+                .map(category -> ResponseEntity.ok().eTag(ETags.of(category.getVersion())).body(category))
                 .orElseThrow(() -> new ResourceNotFoundException("Category", id.toString()));
     }
 
@@ -216,7 +235,8 @@ public class CategoryController {
 
     @Operation(
             summary = "Update an existing category",
-            description = "Update the details of an existing category identified by its ID."
+            description = "Update the details of an existing category identified by its ID. " +
+                    "Send the ETag of the category in If-Match to update it only if nobody changed it since it was read."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -243,6 +263,14 @@ public class CategoryController {
                             schema = @Schema(implementation = ErrorResponse.class)
                     )
             ),
+            @ApiResponse(
+                    responseCode = "412",
+                    description = "If-Match does not match the current version",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
             @ApiResponse(
                     responseCode = "401",
                     description = "Unauthorized - invalid or missing JWT token",
@@ -253,9 +281,12 @@ public class CategoryController {
             )
     })
     @PutMapping("/{id}")
-    public ResponseEntity<CategoryResponseDTO> update(@PathVariable UUID id, @Valid @RequestBody CategoryDTO categoryDTO) {
-        CategoryResponseDTO updated = categoryService.update(id, categoryDTO);
-        return ResponseEntity.ok(updated);
+    public ResponseEntity<CategoryResponseDTO> update(@PathVariable UUID id,
+                                                      @Parameter(description = "ETag of the category as last read")
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                      @Valid @RequestBody CategoryDTO categoryDTO) {
+        CategoryResponseDTO updated = categoryService.update(id, categoryDTO, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated);
     }
 
     @Operation(
@@ -0,0 +1,40 @@
+package com.dios.expensesapi.controller;
+
+import com.dios.expensesapi.exception.InvalidDataException;
+
+/* Entity tags of the versioned resources: the ETag is the version in quotes, and the If-Match header
+ * of an update is turned back into the version the client expects to overwrite. */
+final class ETags {
+
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ANY = "*";
+
+    private ETags() {
+    }
+
+    // null when the version is unknown, ResponseEntity then leaves the header out
+    static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    // Expected version of an If-Match header, null when there is no header or it is "*"
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals(ANY)) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.startsWith(WEAK_PREFIX)) {
+            tag = tag.substring(WEAK_PREFIX.length());
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("Invalid If-Match header: " + ifMatch);
+        }
+    }
+}
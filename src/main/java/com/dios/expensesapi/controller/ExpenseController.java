@@ -1,12 +1,25 @@
 package com.dios.expensesapi.controller;
 
+import com.dios.expensesapi.dto.BatchCreateResponseDTO;
+import com.dios.expensesapi.dto.BulkDeleteResponseDTO;
 import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseFilter;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.dto.SliceResponseDTO;
 import com.dios.expensesapi.dto.error.ErrorResponse;
 import com.dios.expensesapi.dto.error.ValidationErrorResponse;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.service.ExpenseIngestionQueue;
 import com.dios.expensesapi.service.ExpenseService;
+import com.dios.expensesapi.service.IdempotencyService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -15,27 +28,73 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/expenses")
 @Tag(name = "Expenses", description = "Operations related to expense managment. Allows users to create, read, update and delete their personal expenses.")
 @SecurityRequirement(name = "bearerAuth")
+@Validated
 public class ExpenseController {
 
     private final ExpenseService expenseService;
+    private final IdempotencyService idempotencyService;
+    private final ExpenseIngestionQueue expenseIngestionQueue;
+    private final ObjectMapper objectMapper;
+    // Export lines are left in the generator buffer, flushing every row would mean one write per expense
+    private final ObjectWriter exportWriter;
 
-    public ExpenseController(ExpenseService expenseService) {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BULK_DELETE = 500;
+    private static final int MAX_BATCH_CREATE = 500;
+    private static final String NDJSON = "application/x-ndjson";
+
+    public ExpenseController(ExpenseService expenseService, IdempotencyService idempotencyService,
+                             ExpenseIngestionQueue expenseIngestionQueue, ObjectMapper objectMapper) {
         this.expenseService = expenseService;
+        this.idempotencyService = idempotencyService;
+        this.expenseIngestionQueue = expenseIngestionQueue;
+        this.objectMapper = objectMapper;
+        this.exportWriter = objectMapper.writerFor(ExpenseResponseDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @Operation(
-            summary = "Get all expenses",
-            description = "Retrieve a list of all expenses for the authenticated user, including expense details and associated categories."
+            summary = "Get expenses",
+            description = """
+                    Retrieve the expenses of the authenticated user, newest first unless another order is requested,
+                    including expense details and associated categories. They can be filtered by date range,
+                    categories and amount range. Results are returned in slices; pass the `nextCursor` of a response
+                    as `cursor`, with the same filters, to get the following slice. No total count is computed.
+                    
+                    **Usage Examples:**
+                    - First 20 expenses: `/api/expenses`
+                    - Next slice: `/api/expenses?cursor={nextCursor}`
+                    - Custom size: `/api/expenses?size=50`
+                    - January 2024: `/api/expenses?from=2024-01-01T00:00:00&to=2024-02-01T00:00:00`
+                    - Two categories over 50: `/api/expenses?categoryId={id1}&categoryId={id2}&minAmount=50`
+                    - Biggest first: `/api/expenses?sortBy=amount&sortDir=desc`
+                    """
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -43,7 +102,15 @@ public class ExpenseController {
                     description = "Successfully retrieved expenses",
                     content = @Content(
                             mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = ExpenseResponseDTO.class))
+                            schema = @Schema(implementation = SliceResponseDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid cursor, page size, filter or sort",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
                     )
             ),
             @ApiResponse(
@@ -56,11 +123,157 @@ public class ExpenseController {
             )
     })
     @GetMapping
-    public ResponseEntity<Iterable<ExpenseResponseDTO>> findAll() {
-        Iterable<ExpenseResponseDTO> expenses = expenseService.findAll();
+    public ResponseEntity<SliceResponseDTO<ExpenseResponseDTO>> findAll(
+            @AuthenticationPrincipal AuthenticatedUser user,
+
+            @Parameter(description = "Cursor returned as nextCursor by the previous slice, omit it for the first one")
+            @RequestParam(required = false) String cursor,
+
+            @Parameter(description = "Number of items per slice (1-100)", example = "20")
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_PAGE_SIZE) int size,
+
+            @Parameter(description = "Only expenses on or after this date (ISO 8601)", example = "2024-01-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+
+            @Parameter(description = "Only expenses before this date (ISO 8601)", example = "2024-02-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+
+            @Parameter(description = "Only expenses of these categories, can be repeated")
+            @RequestParam(name = "categoryId", required = false) List<UUID> categoryIds,
+
+            @Parameter(description = "Minimum amount (inclusive)", example = "10.00")
+            @RequestParam(required = false) BigDecimal minAmount,
+
+            @Parameter(description = "Maximum amount (inclusive)", example = "100.00")
+            @RequestParam(required = false) BigDecimal maxAmount,
+
+            @Parameter(description = "Sort field. Valid values: expenseDate, amount", example = "expenseDate")
+            @RequestParam(defaultValue = "expenseDate") String sortBy,
+
+            @Parameter(description = "Sort direction", example = "desc", schema = @Schema(allowableValues = {"asc", "desc"}))
+            @RequestParam(defaultValue = "desc") @Pattern(regexp = "^(asc|desc)$",
+                    message = "Sort direction must be 'asc' or 'desc'") String sortDir
+    ) {
+        ExpenseFilter filter = ExpenseFilter.builder()
+                .from(from)
+                .to(to)
+                .categoryIds(categoryIds)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .sortBy(ExpenseFilter.SortField.fromAttribute(sortBy))
+                .direction(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC)
+                .build();
+
+        SliceResponseDTO<ExpenseResponseDTO> expenses = expenseService.findSlice(user.getId(), filter, cursor, size);
         return ResponseEntity.ok(expenses);
     }
 
+    @Operation(
+            summary = "Export all expenses",
+            description = """
+                    Stream the whole expense history of the authenticated user as newline-delimited JSON, one
+                    expense per line, newest first. Rows are written as they are read from the database, so the
+                    response starts right away and its size is not limited.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Expenses streamed successfully",
+                    content = @Content(
+                            mediaType = NDJSON,
+                            schema = @Schema(implementation = ExpenseResponseDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> export(@AuthenticationPrincipal AuthenticatedUser user) {
+        UUID userId = user.getId();
+
+        // Runs on an async thread once the headers are sent, each expense goes straight to the output stream
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                expenseService.exportAll(userId, expense -> {
+                    try {
+                        exportWriter.writeValue(generator, expense);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    @Operation(
+            summary = "Summarize expenses",
+            description = """
+                    Count, total, smallest and largest amount of the authenticated user's expenses between two dates,
+                    per day, week, month or category. The aggregation runs in the database, only the buckets are
+                    returned. Periods without expenses are left out; weeks start on Monday.
+                    
+                    **Usage Examples:**
+                    - Monthly spending of 2024: `/api/expenses/summary?from=2024-01-01T00:00:00&to=2025-01-01T00:00:00`
+                    - Spending per category in January: `/api/expenses/summary?from=2024-01-01T00:00:00&to=2024-02-01T00:00:00&groupBy=category`
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Summary computed",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = ExpenseSummaryDTO.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Missing or invalid dates or grouping",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @GetMapping("/summary")
+    public ResponseEntity<List<ExpenseSummaryDTO>> summarize(
+            @AuthenticationPrincipal AuthenticatedUser user,
+
+            @Parameter(description = "Expenses on or after this date (ISO 8601)", example = "2024-01-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+
+            @Parameter(description = "Expenses before this date (ISO 8601)", example = "2025-01-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+
+            @Parameter(description = "Bucket of the summary", example = "month",
+                    schema = @Schema(allowableValues = {"day", "week", "month", "category"}))
+            @RequestParam(defaultValue = "month") @Pattern(regexp = "^(day|week|month|category)$",
+                    message = "groupBy must be 'day', 'week', 'month' or 'category'") String groupBy
+    ) {
+        return ResponseEntity.ok(expenseService.summarize(user.getId(), from, to, ExpenseSummaryDTO.GroupBy.fromValue(groupBy)));
+    }
+
     @Operation(
             summary = "Get expense by ID",
             description = "Retrieve a specific expense by its unique identifier, including all associated details."
@@ -92,15 +305,17 @@ public class ExpenseController {
             )
     })
     @GetMapping("/{id}")
-    public ResponseEntity<ExpenseResponseDTO> findById(@PathVariable UUID id) {
-        return expenseService.findById(id)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<ExpenseResponseDTO> findById(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable UUID id) {
+        return expenseService.findById(user.getId(), id)
+                .map(expense -> ResponseEntity.ok().eTag(ETags.of(expense.getVersion())).body(expense))
                 .orElseThrow(() -> new ResourceNotFoundException("Expense", id.toString()));
     }
 
     @Operation(
             summary = "Create a new expense",
-            description = "Create a new expense record with the provided details including amount, description, date, and category."
+            description = "Create a new expense record with the provided details including amount, description, date, and category. " +
+                    "Send an Idempotency-Key to retry safely: a retry with the same key and body gets the first response, " +
+                    "with the header Idempotent-Replayed, and no second expense is created."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -134,17 +349,134 @@ public class ExpenseController {
                             mediaType = "application/json",
                             schema = @Schema(implementation = ErrorResponse.class)
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "A request with the same Idempotency-Key is still running, retry after Retry-After",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Idempotency key already used for a different request",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Write-behind mode only: too many expenses waiting to be created, retry after the Retry-After seconds",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Write-behind mode only: the expense was not committed in time or the queue is stopping. Nothing was created, retry after Retry-After",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
             )
     })
     @PostMapping
-    public ResponseEntity<ExpenseResponseDTO> create(@Valid @RequestBody ExpenseDTO dto) {
-        ExpenseResponseDTO saved = expenseService.create(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    public ResponseEntity<ExpenseResponseDTO> create(
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @Parameter(description = "Client generated key, a retry with the same key returns the first response instead of creating the expense again")
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @Valid @RequestBody ExpenseDTO dto
+    ) {
+        return idempotencyService.execute(user.getId(), idempotencyKey, "POST /api/expenses", dto,
+                ExpenseResponseDTO.class, () -> {
+                    // In write-behind mode the expense is committed with others by the ingestion writer
+                    ExpenseResponseDTO saved = expenseIngestionQueue.isEnabled()
+                            ? expenseIngestionQueue.create(user.getId(), dto)
+                            : expenseService.create(user.getId(), dto);
+                    return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(saved.getVersion())).body(saved);
+                });
+    }
+
+    @Operation(
+            summary = "Create several expenses",
+            description = """
+                    Create up to 500 expenses in one request. Every expense is validated on its own: the valid ones
+                    are created and the rest are reported with the reason, one result per expense in request order.
+                    Responds 201 when all of them were created and 207 when some were rejected. Send an
+                    Idempotency-Key to retry safely: a retry with the same key and body gets the first response.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "All expenses created",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = BatchCreateResponseDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "207",
+                    description = "Some expenses were rejected, see the result of each one",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = BatchCreateResponseDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "No expenses or too many expenses",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "A request with the same Idempotency-Key is still running, retry after Retry-After",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Idempotency key already used for a different request",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<BatchCreateResponseDTO> createAll(
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @Parameter(description = "Client generated key, a retry with the same key returns the first response instead of creating the expenses again")
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody @Size(min = 1, max = MAX_BATCH_CREATE) List<ExpenseDTO> expenses
+    ) {
+        return idempotencyService.execute(user.getId(), idempotencyKey, "POST /api/expenses/batch", expenses,
+                BatchCreateResponseDTO.class, () -> {
+                    BatchCreateResponseDTO result = expenseService.createAll(user.getId(), expenses);
+                    return ResponseEntity.status(result.isComplete() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(result);
+                });
     }
 
     @Operation(
             summary = "Update an existing expense",
-            description = "Update the details of an existing expense identified by its ID. All fields in the request body will be updated."
+            description = "Update the details of an existing expense identified by its ID. All fields in the request body will be updated. " +
+                    "Send the ETag of the expense in If-Match to update it only if nobody changed it since it was read."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -171,6 +503,14 @@ public class ExpenseController {
                             schema = @Schema(implementation = ErrorResponse.class)
                     )
             ),
+            @ApiResponse(
+                    responseCode = "412",
+                    description = "If-Match does not match the current version",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
             @ApiResponse(
                     responseCode = "401",
                     description = "Unauthorized - invalid or missing JWT token",
@@ -181,9 +521,12 @@ public class ExpenseController {
             )
     })
     @PutMapping("/{id}")
-    public ResponseEntity<ExpenseResponseDTO> update(@PathVariable UUID id, @Valid @RequestBody ExpenseDTO expenseDTO) {
-        ExpenseResponseDTO updated = expenseService.update(id, expenseDTO);
-        return ResponseEntity.ok(updated);
+    public ResponseEntity<ExpenseResponseDTO> update(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable UUID id,
+                                                     @Parameter(description = "ETag of the expense as last read")
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @Valid @RequestBody ExpenseDTO expenseDTO) {
+        ExpenseResponseDTO updated = expenseService.update(user.getId(), id, expenseDTO, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated);
     }
 
     @Operation(
@@ -197,7 +540,7 @@ public class ExpenseController {
             ),
             @ApiResponse(
                     responseCode = "404",
-                    description = "Expense not found",
+                    description = "Expense not found or owned by another user",
                     content = @Content(
                             mediaType = "application/json",
                             schema = @Schema(implementation = ErrorResponse.class)
@@ -213,8 +556,55 @@ public class ExpenseController {
             )
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> delete(@PathVariable UUID id) {
-        expenseService.deleteById(id);
+    public ResponseEntity<Void> delete(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable UUID id) {
+        expenseService.deleteById(user.getId(), id);
         return ResponseEntity.noContent().build();
     }
+
+    @Operation(
+            summary = "Delete several expenses",
+            description = """
+                    Delete up to 500 expenses of the authenticated user in a single operation. Ids that do not exist
+                    or belong to another user are skipped; the response tells how many expenses were deleted.
+                    
+                    **Usage Example:** `DELETE /api/expenses?id={id1}&id={id2}`
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Expenses deleted",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = BulkDeleteResponseDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "No ids or too many ids",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @DeleteMapping
+    public ResponseEntity<BulkDeleteResponseDTO> deleteAll(
+            @AuthenticationPrincipal AuthenticatedUser user,
+
+            @Parameter(description = "Ids of the expenses to delete, repeated (1-500)")
+            @RequestParam("id") @Size(min = 1, max = MAX_BULK_DELETE) List<UUID> ids
+    ) {
+        List<UUID> distinctIds = ids.stream().distinct().toList();
+        int deleted = expenseService.deleteAllById(user.getId(), distinctIds);
+        return ResponseEntity.ok(new BulkDeleteResponseDTO(distinctIds.size(), deleted));
+    }
 }
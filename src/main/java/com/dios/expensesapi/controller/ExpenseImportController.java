@@ -0,0 +1,216 @@
+package com.dios.expensesapi.controller;
+
+import com.dios.expensesapi.dto.ImportProgressDTO;
+import com.dios.expensesapi.dto.error.ErrorResponse;
+import com.dios.expensesapi.exception.ResourceNotFoundException;
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.service.ExpenseImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/expenses/imports")
+@Tag(name = "Expense imports", description = "Import expenses in bulk from CSV files and follow the progress of the imports.")
+@SecurityRequirement(name = "bearerAuth")
+public class ExpenseImportController {
+
+    private static final String TEXT_CSV = "text/csv";
+
+    private final ExpenseImportService expenseImportService;
+
+    public ExpenseImportController(ExpenseImportService expenseImportService) {
+        this.expenseImportService = expenseImportService;
+    }
+
+    @Operation(
+            summary = "Import expenses from CSV",
+            description = """
+                    Import the expenses of a CSV file sent as the request body. The header names the columns:
+                    `expenseDate`, `amount`, `categoryId` or `categoryName`, and optionally `description`.
+                    The file is read as it arrives and the valid rows are committed in chunks, so a large file
+                    can be followed with GET /api/expenses/imports/{id} while it is imported. Rows that fail
+                    validation or reference a missing category are skipped and can be downloaded afterwards.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "Import finished, some rows may have been rejected",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ImportProgressDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Empty file or header without the required columns",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @PostMapping(consumes = TEXT_CSV)
+    public ResponseEntity<ImportProgressDTO> importCsv(@AuthenticationPrincipal AuthenticatedUser user,
+                                                       InputStream csv) {
+        return created(expenseImportService.importCsv(user.getId(), csv));
+    }
+
+    @Operation(
+            summary = "Import expenses from an uploaded CSV",
+            description = "Same as the text/csv import, with the CSV sent as the `file` part of a multipart form."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "Import finished, some rows may have been rejected",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ImportProgressDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Empty file or header without the required columns",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportProgressDTO> importFile(@AuthenticationPrincipal AuthenticatedUser user,
+                                                        @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream csv = file.getInputStream()) {
+            return created(expenseImportService.importCsv(user.getId(), csv));
+        }
+    }
+
+    @Operation(
+            summary = "Get imports",
+            description = "Retrieve the running and recently finished imports of the authenticated user, newest first."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Imports retrieved successfully",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = ImportProgressDTO.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - invalid or missing JWT token",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @GetMapping
+    public List<ImportProgressDTO> findAll(@AuthenticationPrincipal AuthenticatedUser user) {
+        return expenseImportService.findAll(user.getId());
+    }
+
+    @Operation(
+            summary = "Get import progress",
+            description = "Retrieve the progress of an import: rows read, imported and rejected so far."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Import found",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ImportProgressDTO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Import not found",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @GetMapping("/{id}")
+    public ImportProgressDTO findById(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable UUID id) {
+        return expenseImportService.findById(user.getId(), id)
+                .orElseThrow(() -> new ResourceNotFoundException("Import", id.toString()));
+    }
+
+    @Operation(
+            summary = "Get rejected rows",
+            description = """
+                    Download the rows of an import that were not imported, as CSV with the original header
+                    preceded by the line number and the reason of the rejection.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Rejected rows",
+                    content = @Content(mediaType = TEXT_CSV)
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Import not found or no row was rejected",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/{id}/rejected", produces = TEXT_CSV)
+    public ResponseEntity<Resource> findRejectedRows(@AuthenticationPrincipal AuthenticatedUser user,
+                                                     @PathVariable UUID id) {
+        Resource rejectedRows = expenseImportService.findRejectedRows(user.getId(), id)
+                .map(FileSystemResource::new)
+                .orElseThrow(() -> new ResourceNotFoundException("Rejected rows of import", id.toString()));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rejected-" + id + ".csv\"")
+                .body(rejectedRows);
+    }
+
+    private static ResponseEntity<ImportProgressDTO> created(ImportProgressDTO progress) {
+        return ResponseEntity.created(URI.create("/api/expenses/imports/" + progress.getId())).body(progress);
+    }
+}
@@ -0,0 +1,30 @@
+package com.dios.expensesapi.controller;
+
+import com.dios.expensesapi.service.ExpenseRollupService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/* Admin command for the monthly expense rollup, under /actuator like the rest of the operations tools
+ * and restricted to ADMIN by SecurityConfig. GET compares the rollup with the expenses, POST rebuilds it. */
+@Component
+@Endpoint(id = "rollups")
+public class ExpenseRollupEndpoint {
+
+    private final ExpenseRollupService expenseRollupService;
+
+    public ExpenseRollupEndpoint(ExpenseRollupService expenseRollupService) {
+        this.expenseRollupService = expenseRollupService;
+    }
+
+    @ReadOperation
+    public ExpenseRollupService.RebuildReport verify() {
+        return expenseRollupService.rebuild(false);
+    }
+
+    @WriteOperation
+    public ExpenseRollupService.RebuildReport rebuild() {
+        return expenseRollupService.rebuild(true);
+    }
+}
@@ -0,0 +1,72 @@
+package com.dios.expensesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Result of creating several expenses at once")
+public class BatchCreateResponseDTO {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Number of expenses received", example = "3")
+    private int requested;
+
+    @Schema(description = "Number of expenses created, the rest were rejected", example = "2")
+    private int created;
+
+    @Schema(description = "One result per expense received, in request order")
+    private List<BatchItemResultDTO> results;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public BatchCreateResponseDTO() {
+    }
+
+    public BatchCreateResponseDTO(List<BatchItemResultDTO> results) {
+        this.requested = results.size();
+        this.created = (int) results.stream()
+                .filter(result -> result.getStatus() == BatchItemResultDTO.Status.CREATED)
+                .count();
+        this.results = results;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public void setRequested(int requested) {
+        this.requested = requested;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public List<BatchItemResultDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchItemResultDTO> results) {
+        this.results = results;
+    }
+
+    // Whether every expense of the batch was created
+    @JsonIgnore
+    public boolean isComplete() {
+        return created == requested;
+    }
+}
@@ -0,0 +1,89 @@
+package com.dios.expensesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of one expense of a batch, in the same position as in the request")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultDTO {
+
+    public enum Status {
+        CREATED,
+        INVALID,
+        CATEGORY_NOT_FOUND
+    }
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Position of the expense in the request, starting at 0", example = "0")
+    private int index;
+
+    @Schema(description = "Whether the expense was created or why it was rejected", example = "CREATED")
+    private Status status;
+
+    @Schema(description = "Created expense, only when the status is CREATED")
+    private ExpenseResponseDTO expense;
+
+    @Schema(description = "Reason of the rejection", example = "amount: Price must be higher than 0")
+    private String error;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public BatchItemResultDTO() {
+    }
+
+    public BatchItemResultDTO(int index, Status status, ExpenseResponseDTO expense, String error) {
+        this.index = index;
+        this.status = status;
+        this.expense = expense;
+        this.error = error;
+    }
+
+    public static BatchItemResultDTO created(int index, ExpenseResponseDTO expense) {
+        return new BatchItemResultDTO(index, Status.CREATED, expense, null);
+    }
+
+    public static BatchItemResultDTO rejected(int index, Status status, String error) {
+        return new BatchItemResultDTO(index, status, null, error);
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public ExpenseResponseDTO getExpense() {
+        return expense;
+    }
+
+    public void setExpense(ExpenseResponseDTO expense) {
+        this.expense = expense;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
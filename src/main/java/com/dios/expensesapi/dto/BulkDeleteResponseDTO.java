@@ -0,0 +1,49 @@
+package com.dios.expensesapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Result of deleting several expenses at once")
+public class BulkDeleteResponseDTO {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Number of distinct ids received", example = "3")
+    private int requested;
+
+    @Schema(description = "Number of expenses deleted, ids that do not exist or belong to another user are skipped", example = "2")
+    private int deleted;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public BulkDeleteResponseDTO() {
+    }
+
+    public BulkDeleteResponseDTO(int requested, int deleted) {
+        this.requested = requested;
+        this.deleted = deleted;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public void setRequested(int requested) {
+        this.requested = requested;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(int deleted) {
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,75 @@
+package com.dios.expensesapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/* Only documents the page of categories the controller returns in page mode, serialized by Jackson from
+ * the Page itself. Lists the fields clients use. */
+@Schema(description = "A page of categories with the exact number of matching categories")
+public class CategoryPageResponseDTO {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Categories in this page")
+    private List<CategoryResponseDTO> content;
+
+    @Schema(description = "Page number (0-based)", example = "0")
+    private int number;
+
+    @Schema(description = "Requested number of categories per page", example = "10")
+    private int size;
+
+    @Schema(description = "Number of categories in this page", example = "10")
+    private int numberOfElements;
+
+    @Schema(description = "Number of matching categories", example = "42")
+    private long totalElements;
+
+    @Schema(description = "Number of pages", example = "5")
+    private int totalPages;
+
+    @Schema(description = "Whether this is the first page", example = "true")
+    private boolean first;
+
+    @Schema(description = "Whether this is the last page", example = "false")
+    private boolean last;
+
+    // ================================
+    // GETTERS
+    // ================================
+
+    public List<CategoryResponseDTO> getContent() {
+        return content;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getNumberOfElements() {
+        return numberOfElements;
+    }
+
+    public long getTotalElements() {
+        return totalElements;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public boolean isFirst() {
+        return first;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+}
@@ -1,5 +1,6 @@
 package com.dios.expensesapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.UUID;
@@ -20,6 +21,11 @@ public class CategoryResponseDTO {
     @Schema(description = "Description of the category", example = "Expenses related to meals, restaurants, and food purchases")
     private String description;
 
+    // Left out of the category embedded in an expense, its version travels in the expense ETag
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Version of the category, also sent as the ETag header", example = "3")
+    private Long version;
+
     // ================================
     // CONSTRUCTORS
     // ================================
@@ -33,6 +39,11 @@ public class CategoryResponseDTO {
         this.description = description;
     }
 
+    public CategoryResponseDTO(UUID id, String name, String description, Long version) {
+        this(id, name, description);
+        this.version = version;
+    }
+
     // ================================
     // GETTERS AND SETTERS
     // ================================
@@ -62,6 +73,14 @@ public class CategoryResponseDTO {
         this.description = description;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     // ================================
     // BUILDER PATTERN
     // ================================
@@ -74,6 +93,7 @@ public class CategoryResponseDTO {
         private UUID id;
         private String name;
         private String description;
+        private Long version;
 
         public Builder id(UUID id) {
             this.id = id;
@@ -90,8 +110,13 @@ public class CategoryResponseDTO {
             return this;
         }
 
+        public Builder version(Long version) {
+            this.version = version;
+            return this;
+        }
+
         public CategoryResponseDTO build() {
-            return new CategoryResponseDTO(id, name, description);
+            return new CategoryResponseDTO(id, name, description, version);
         }
     }
 }
@@ -0,0 +1,88 @@
+package com.dios.expensesapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "A page of categories that only tells whether more pages follow, with an approximate total instead of a count")
+public class CategorySliceResponseDTO {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Categories in this page")
+    private List<CategoryResponseDTO> content;
+
+    @Schema(description = "Page number (0-based)", example = "0")
+    private int page;
+
+    @Schema(description = "Number of categories in this page", example = "10")
+    private int size;
+
+    @Schema(description = "Whether there are more categories after this page", example = "true")
+    private boolean hasNext;
+
+    @Schema(description = "Approximate number of matching categories, may lag recent changes made in other instances",
+            example = "42")
+    private long approximateTotal;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public CategorySliceResponseDTO() {
+    }
+
+    public CategorySliceResponseDTO(List<CategoryResponseDTO> content, int page, boolean hasNext, long approximateTotal) {
+        this.content = content;
+        this.page = page;
+        this.size = content.size();
+        this.hasNext = hasNext;
+        this.approximateTotal = approximateTotal;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public List<CategoryResponseDTO> getContent() {
+        return content;
+    }
+
+    public void setContent(List<CategoryResponseDTO> content) {
+        this.content = content;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public long getApproximateTotal() {
+        return approximateTotal;
+    }
+
+    public void setApproximateTotal(long approximateTotal) {
+        this.approximateTotal = approximateTotal;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dios.expensesapi.dto;
+
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.model.Money;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/* Position in a keyset paginated expense listing: the sort keys (expenseDate, amount) and the id of the
+ * last expense returned. Clients get it as an opaque Base64 string and send it back unchanged to read
+ * the next slice. */
+public final class ExpenseCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime expenseDate;
+    private final Money amount;
+    private final UUID id;
+
+    public ExpenseCursor(LocalDateTime expenseDate, Money amount, UUID id) {
+        this.expenseDate = expenseDate;
+        this.amount = amount;
+        this.id = id;
+    }
+
+    public static ExpenseCursor of(ExpenseResponseDTO last) {
+        return new ExpenseCursor(last.getExpenseDate(), last.getAmount(), last.getId());
+    }
+
+    public LocalDateTime getExpenseDate() {
+        return expenseDate;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    // Value of the field the listing is sorted by, typed as the attribute of Expense it is compared with
+    public Comparable<?> getSortKey(ExpenseFilter.SortField sortField) {
+        return switch (sortField) {
+            case EXPENSE_DATE -> expenseDate;
+            case AMOUNT -> amount.toBigDecimal();
+        };
+    }
+
+    public String encode() {
+        String raw = expenseDate.toString() + SEPARATOR + amount + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3) {
+                throw new InvalidDataException("Invalid cursor: " + cursor);
+            }
+            return new ExpenseCursor(
+                    LocalDateTime.parse(parts[0]),
+                    Money.parse(parts[1]),
+                    UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidDataException("Invalid cursor: " + cursor);
+        }
+    }
+}
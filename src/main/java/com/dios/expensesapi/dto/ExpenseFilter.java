@@ -0,0 +1,173 @@
+package com.dios.expensesapi.dto;
+
+import com.dios.expensesapi.exception.InvalidDataException;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/* Search criteria of the expense listing. Every criterion is optional, an empty filter sorted by
+ * expense date descending is the plain listing. */
+public final class ExpenseFilter {
+
+    public enum SortField {
+        EXPENSE_DATE("expenseDate"),
+        AMOUNT("amount");
+
+        private final String attribute;
+
+        SortField(String attribute) {
+            this.attribute = attribute;
+        }
+
+        // Name of the Expense attribute, also the value clients send in sortBy
+        public String getAttribute() {
+            return attribute;
+        }
+
+        // An unknown value is rejected instead of silently sorting by another field
+        public static SortField fromAttribute(String attribute) {
+            for (SortField field : values()) {
+                if (field.attribute.equals(attribute)) {
+                    return field;
+                }
+            }
+            throw new InvalidDataException(String.format("Invalid sortBy '%s', valid values: expenseDate, amount", attribute));
+        }
+    }
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final List<UUID> categoryIds;
+    private final BigDecimal minAmount;
+    private final BigDecimal maxAmount;
+    private final SortField sortBy;
+    private final Sort.Direction direction;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public ExpenseFilter(LocalDateTime from, LocalDateTime to, List<UUID> categoryIds, BigDecimal minAmount,
+                         BigDecimal maxAmount, SortField sortBy, Sort.Direction direction) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidDataException("'from' must be before 'to'");
+        }
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            throw new InvalidDataException("'minAmount' cannot be greater than 'maxAmount'");
+        }
+
+        this.from = from;
+        this.to = to;
+        this.categoryIds = categoryIds == null ? List.of() : List.copyOf(categoryIds);
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.sortBy = sortBy == null ? SortField.EXPENSE_DATE : sortBy;
+        this.direction = direction == null ? Sort.Direction.DESC : direction;
+    }
+
+    public static ExpenseFilter none() {
+        return builder().build();
+    }
+
+    // ================================
+    // GETTERS
+    // ================================
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public List<UUID> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public SortField getSortBy() {
+        return sortBy;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    // True for the plain listing: no criteria and the default order, newest first
+    public boolean isUnfiltered() {
+        return from == null && to == null && categoryIds.isEmpty() && minAmount == null && maxAmount == null
+                && sortBy == SortField.EXPENSE_DATE && direction == Sort.Direction.DESC;
+    }
+
+    // ================================
+    // BUILDER PATTERN
+    // ================================
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private LocalDateTime from;
+        private LocalDateTime to;
+        private List<UUID> categoryIds;
+        private BigDecimal minAmount;
+        private BigDecimal maxAmount;
+        private SortField sortBy;
+        private Sort.Direction direction;
+
+        public Builder from(LocalDateTime from) {
+            this.from = from;
+            return this;
+        }
+
+        public Builder to(LocalDateTime to) {
+            this.to = to;
+            return this;
+        }
+
+        public Builder categoryIds(List<UUID> categoryIds) {
+            this.categoryIds = categoryIds;
+            return this;
+        }
+
+        public Builder minAmount(BigDecimal minAmount) {
+            this.minAmount = minAmount;
+            return this;
+        }
+
+        public Builder maxAmount(BigDecimal maxAmount) {
+            this.maxAmount = maxAmount;
+            return this;
+        }
+
+        public Builder sortBy(SortField sortBy) {
+            this.sortBy = sortBy;
+            return this;
+        }
+
+        public Builder direction(Sort.Direction direction) {
+            this.direction = direction;
+            return this;
+        }
+
+        public ExpenseFilter build() {
+            return new ExpenseFilter(from, to, categoryIds, minAmount, maxAmount, sortBy, direction);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.dios.expensesapi.dto;
 
+import com.dios.expensesapi.model.Money;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.math.BigDecimal;
@@ -28,7 +30,7 @@ public class ExpenseResponseDTO {
     private CategoryResponseDTO category;
 
     @Schema(description = "Amount of the expense", example = "150.75")
-    private BigDecimal amount;
+    private Money amount;
 
     @Schema(description = "Description or notes about the expense", example = "Grocery shopping at local market")
     private String description;
@@ -37,6 +39,10 @@ public class ExpenseResponseDTO {
     @Schema(description = "Timestamp when the expense was created", example = "15-01-2024 10:30:00")
     private LocalDateTime createdAt;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Version of the expense, also sent as the ETag header", example = "3")
+    private Long version;
+
     // ================================
     // CONSTRUCTORS
     // ================================
@@ -44,7 +50,7 @@ public class ExpenseResponseDTO {
     public ExpenseResponseDTO() {
     }
 
-    public ExpenseResponseDTO(UUID id, UUID userId, LocalDateTime expenseDate, CategoryResponseDTO category, BigDecimal amount, String description, LocalDateTime createdAt) {
+    public ExpenseResponseDTO(UUID id, UUID userId, LocalDateTime expenseDate, CategoryResponseDTO category, Money amount, String description, LocalDateTime createdAt) {
         this.id = id;
         this.userId = userId;
         this.expenseDate = expenseDate;
@@ -54,6 +60,20 @@ public class ExpenseResponseDTO {
         this.createdAt = createdAt;
     }
 
+    public ExpenseResponseDTO(UUID id, UUID userId, LocalDateTime expenseDate, CategoryResponseDTO category, Money amount, String description, LocalDateTime createdAt, Long version) {
+        this(id, userId, expenseDate, category, amount, description, createdAt);
+        this.version = version;
+    }
+
+    /* Used by the JPQL constructor expressions in ExpenseRepository, which can only pass flat values.
+     * The amount comes as the BigDecimal of the column and is turned into cents once, here. */
+    public ExpenseResponseDTO(UUID id, UUID userId, LocalDateTime expenseDate, UUID categoryId, String categoryName,
+                              String categoryDescription, BigDecimal amount, String description, LocalDateTime createdAt,
+                              Long version) {
+        this(id, userId, expenseDate, new CategoryResponseDTO(categoryId, categoryName, categoryDescription),
+                Money.of(amount), description, createdAt, version);
+    }
+
     // ================================
     // GETTERS AND SETTERS
     // ================================
@@ -90,11 +110,11 @@ public class ExpenseResponseDTO {
         this.category = category;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -114,6 +134,14 @@ public class ExpenseResponseDTO {
         this.createdAt = createdAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     // ================================
     // BUILDER PATTERN
     // ================================
@@ -127,9 +155,10 @@ public class ExpenseResponseDTO {
         private UUID userId;
         private LocalDateTime expenseDate;
         private CategoryResponseDTO category;
-        private BigDecimal amount;
+        private Money amount;
         private String description;
         private LocalDateTime createdAt;
+        private Long version;
 
         public Builder id(UUID id) {
             this.id = id;
@@ -151,11 +180,16 @@ public class ExpenseResponseDTO {
             return this;
         }
 
-        public Builder amount(BigDecimal amount) {
+        public Builder amount(Money amount) {
             this.amount = amount;
             return this;
         }
 
+        // Amount of the entity or of the request, both BigDecimal
+        public Builder amount(BigDecimal amount) {
+            return amount(Money.of(amount));
+        }
+
         public Builder description(String description) {
             this.description = description;
             return this;
@@ -166,6 +200,11 @@ public class ExpenseResponseDTO {
             return this;
         }
 
+        public Builder version(Long version) {
+            this.version = version;
+            return this;
+        }
+
         public ExpenseResponseDTO build() {
             return new ExpenseResponseDTO(
                     id,
@@ -174,7 +213,8 @@ public class ExpenseResponseDTO {
                     category,
                     amount,
                     description,
-                    createdAt
+                    createdAt,
+                    version
             );
         }
     }
@@ -0,0 +1,165 @@
+package com.dios.expensesapi.dto;
+
+import com.dios.expensesapi.model.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Spending of one bucket of the summary: a day, week, month or category")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExpenseSummaryDTO {
+
+    public enum GroupBy {
+        DAY("day"),
+        WEEK("week"),
+        MONTH("month"),
+        CATEGORY("category");
+
+        private final String value;
+
+        GroupBy(String value) {
+            this.value = value;
+        }
+
+        // Value clients send in groupBy
+        public String getValue() {
+            return value;
+        }
+
+        public static GroupBy fromValue(String value) {
+            for (GroupBy groupBy : values()) {
+                if (groupBy.value.equalsIgnoreCase(value)) {
+                    return groupBy;
+                }
+            }
+            return MONTH;
+        }
+    }
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "First day of the bucket, weeks start on Monday. Absent when grouping by category", example = "2024-01-01")
+    private LocalDate period;
+
+    @Schema(description = "Category of the bucket, only when grouping by category", example = "123e4567-e89b-12d3-a456-426614174000")
+    private UUID categoryId;
+
+    @Schema(description = "Name of the category, only when grouping by category", example = "Food")
+    private String categoryName;
+
+    @Schema(description = "Number of expenses in the bucket", example = "42")
+    private long count;
+
+    @Schema(description = "Sum of the amounts", example = "1234.56")
+    private Money total;
+
+    @Schema(description = "Smallest amount", example = "1.20")
+    private Money min;
+
+    @Schema(description = "Largest amount", example = "320.00")
+    private Money max;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public ExpenseSummaryDTO() {
+    }
+
+    // Used by the period summary queries, period is the expense date truncated to the bucket
+    public ExpenseSummaryDTO(LocalDateTime period, long count, BigDecimal total, BigDecimal min, BigDecimal max) {
+        this(period.toLocalDate(), count, Money.of(total).cents(), Money.of(min).cents(), Money.of(max).cents());
+    }
+
+    // Used by the monthly summaries of the rollup and of the in-memory columns, amounts in cents
+    public ExpenseSummaryDTO(LocalDate period, long count, long totalCents, long minCents, long maxCents) {
+        this.period = period;
+        this.count = count;
+        this.total = Money.ofCents(totalCents);
+        this.min = Money.ofCents(minCents);
+        this.max = Money.ofCents(maxCents);
+    }
+
+    // Used by the category summaries of the rollup and of the in-memory columns, amounts in cents
+    public ExpenseSummaryDTO(UUID categoryId, String categoryName, long count, long totalCents, long minCents,
+                             long maxCents) {
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.count = count;
+        this.total = Money.ofCents(totalCents);
+        this.min = Money.ofCents(minCents);
+        this.max = Money.ofCents(maxCents);
+    }
+
+    // Used by the category summary query
+    public ExpenseSummaryDTO(UUID categoryId, String categoryName, long count, BigDecimal total, BigDecimal min,
+                             BigDecimal max) {
+        this(categoryId, categoryName, count, Money.of(total).cents(), Money.of(min).cents(), Money.of(max).cents());
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public LocalDate getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(LocalDate period) {
+        this.period = period;
+    }
+
+    public UUID getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(UUID categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public void setCategoryName(String categoryName) {
+        this.categoryName = categoryName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public Money getTotal() {
+        return total;
+    }
+
+    public void setTotal(Money total) {
+        this.total = total;
+    }
+
+    public Money getMin() {
+        return min;
+    }
+
+    public void setMin(Money min) {
+        this.min = min;
+    }
+
+    public Money getMax() {
+        return max;
+    }
+
+    public void setMax(Money max) {
+        this.max = max;
+    }
+}
@@ -0,0 +1,199 @@
+package com.dios.expensesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Progress of a CSV import of expenses")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportProgressDTO {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Identifier of the import", example = "123e4567-e89b-12d3-a456-426614174000")
+    private UUID id;
+
+    @Schema(description = "State of the import", example = "RUNNING")
+    private Status status;
+
+    @Schema(description = "Data rows read from the file so far", example = "25000")
+    private long rowsRead;
+
+    @Schema(description = "Expenses committed so far", example = "24990")
+    private long imported;
+
+    @Schema(description = "Rows rejected so far, they can be downloaded with the reason", example = "10")
+    private long rejected;
+
+    @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+    @Schema(description = "When the import started", example = "15-01-2024 10:30:00")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+    @Schema(description = "When the import finished, absent while it runs", example = "15-01-2024 10:31:12")
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Why the import stopped, only when it failed", example = "CSV header must have expenseDate, amount and categoryId or categoryName columns")
+    private String error;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public ImportProgressDTO() {
+    }
+
+    public ImportProgressDTO(UUID id, Status status, long rowsRead, long imported, long rejected,
+                             LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+        this.id = id;
+        this.status = status;
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    // ================================
+    // BUILDER PATTERN
+    // ================================
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private UUID id;
+        private Status status;
+        private long rowsRead;
+        private long imported;
+        private long rejected;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private String error;
+
+        public Builder id(UUID id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder status(Status status) {
+            this.status = status;
+            return this;
+        }
+
+        public Builder rowsRead(long rowsRead) {
+            this.rowsRead = rowsRead;
+            return this;
+        }
+
+        public Builder imported(long imported) {
+            this.imported = imported;
+            return this;
+        }
+
+        public Builder rejected(long rejected) {
+            this.rejected = rejected;
+            return this;
+        }
+
+        public Builder startedAt(LocalDateTime startedAt) {
+            this.startedAt = startedAt;
+            return this;
+        }
+
+        public Builder finishedAt(LocalDateTime finishedAt) {
+            this.finishedAt = finishedAt;
+            return this;
+        }
+
+        public Builder error(String error) {
+            this.error = error;
+            return this;
+        }
+
+        public ImportProgressDTO build() {
+            return new ImportProgressDTO(id, status, rowsRead, imported, rejected, startedAt, finishedAt, error);
+        }
+    }
+}
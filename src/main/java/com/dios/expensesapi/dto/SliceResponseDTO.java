@@ -0,0 +1,76 @@
+package com.dios.expensesapi.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "A window of results that only tells whether more results follow, without counting the total")
+public class SliceResponseDTO<T> {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Schema(description = "Items in this slice")
+    private List<T> content;
+
+    @Schema(description = "Number of items in this slice", example = "20")
+    private int size;
+
+    @Schema(description = "Whether there are more items after this slice", example = "true")
+    private boolean hasNext;
+
+    @Schema(description = "Opaque cursor to request the next slice, null when there are no more items",
+            example = "MjAyNS0wNy0xNVQxNDozMDowMHwxMjNlNDU2Ny1lODliLTEyZDMtYTQ1Ni00MjY2MTQxNzQwMDA")
+    private String nextCursor;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public SliceResponseDTO() {
+    }
+
+    public SliceResponseDTO(List<T> content, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = content.size();
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
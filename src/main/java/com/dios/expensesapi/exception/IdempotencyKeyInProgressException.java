@@ -0,0 +1,7 @@
+package com.dios.expensesapi.exception;
+
+public class IdempotencyKeyInProgressException extends BaseException {
+    public IdempotencyKeyInProgressException(String idempotencyKey) {
+        super("IDEMPOTENCY_KEY_IN_PROGRESS", String.format("A request with idempotency key %s is still in progress, retry later", idempotencyKey));
+    }
+}
@@ -0,0 +1,7 @@
+package com.dios.expensesapi.exception;
+
+public class IdempotencyKeyReusedException extends BaseException {
+    public IdempotencyKeyReusedException(String idempotencyKey) {
+        super("IDEMPOTENCY_KEY_REUSED", String.format("Idempotency key %s was already used for a different request", idempotencyKey));
+    }
+}
@@ -0,0 +1,7 @@
+package com.dios.expensesapi.exception;
+
+public class IngestionQueueFullException extends BaseException {
+    public IngestionQueueFullException(int capacity) {
+        super("TOO_MANY_REQUESTS", String.format("Expense ingestion queue is full (%d pending), retry later", capacity));
+    }
+}
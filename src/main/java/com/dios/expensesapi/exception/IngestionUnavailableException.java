@@ -0,0 +1,7 @@
+package com.dios.expensesapi.exception;
+
+public class IngestionUnavailableException extends BaseException {
+    public IngestionUnavailableException(String message) {
+        super("SERVICE_UNAVAILABLE", message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.dios.expensesapi.exception;
+
+public class PreconditionFailedException extends BaseException {
+    public PreconditionFailedException(String resourceName, String identifier, long version) {
+        super("PRECONDITION_FAILED", String.format("Resource %s with identifier %s is not at version %d", resourceName, identifier, version));
+    }
+}
@@ -1,5 +1,6 @@
 package com.dios.expensesapi.mapper;
 
+import com.dios.expensesapi.dto.CategoryResponseDTO;
 import com.dios.expensesapi.dto.ExpenseDTO;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
 import com.dios.expensesapi.model.Category;
@@ -30,11 +31,35 @@ public class ExpenseMapper {
                 .id(expense.getId())
                 .userId(expense.getUserId())
                 .expenseDate(expense.getExpenseDate())
-                .category(CategoryMapper.toResponseDTO(expense.getCategory()))
+                .category(embedded(CategoryMapper.toResponseDTO(expense.getCategory())))
                 .amount(expense.getAmount())
                 .description(expense.getDescription())
                 .createdAt(expense.getCreatedAt())
+                .version(expense.getVersion())
                 .build();
     }
 
+    /* For expenses whose category is a reference to the catalog entry: the entry is copied, so the
+     * reference is never initialized and the shared entry keeps its version */
+    public static ExpenseResponseDTO toResponseDTO(Expense expense, CategoryResponseDTO category) {
+        return ExpenseResponseDTO.builder()
+                .id(expense.getId())
+                .userId(expense.getUserId())
+                .expenseDate(expense.getExpenseDate())
+                .category(new CategoryResponseDTO(category.getId(), category.getName(), category.getDescription()))
+                .amount(expense.getAmount())
+                .description(expense.getDescription())
+                .createdAt(expense.getCreatedAt())
+                .version(expense.getVersion())
+                .build();
+    }
+
+    // The category nested in an expense goes without version, same as in the projected reads
+    private static CategoryResponseDTO embedded(CategoryResponseDTO category) {
+        if (category != null) {
+            category.setVersion(null);
+        }
+        return category;
+    }
+
 }
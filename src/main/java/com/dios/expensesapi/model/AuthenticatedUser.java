@@ -0,0 +1,75 @@
+package com.dios.expensesapi.model;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/* Lightweight principal set in the security context for JWT requests. It is built from the
+ * verified token claims, so authenticating a request does not need to load the User entity. */
+public final class AuthenticatedUser implements Principal {
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    private final UUID id;
+    private final String email;
+    private final Role role;
+    private final int tokenVersion;
+    private final List<GrantedAuthority> authorities;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public AuthenticatedUser(UUID id, String email, Role role, int tokenVersion) {
+        this.id = id;
+        this.email = email;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole(), user.getTokenVersion());
+    }
+
+    // ================================
+    // GETTERS
+    // ================================
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // Authentication.getName() resolves to the email, same as with the User entity
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser{id=" + id + ", email=" + email + ", role=" + role + "}";
+    }
+}
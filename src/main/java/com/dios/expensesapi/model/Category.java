@@ -2,20 +2,31 @@ package com.dios.expensesapi.model;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.UUID;
 
 @Entity
 @Table(name = "categories")
+@BatchSize(size = 50) // Uninitialized categories of a list of expenses are loaded with a single IN query
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Category.CACHE_REGION) // Read far more than written
 @Schema(description = "Category entity for classifying different types of expenses")
 public class Category {
 
+    // Second-level cache regions of the entity and of CategoryRepository.findByName, sized in SecondLevelCacheConfig
+    public static final String CACHE_REGION = "categories";
+    public static final String BY_NAME_CACHE_REGION = "categories-by-name";
+
     // ================================
     // FIELDS
     // ================================
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7 // Time ordered, generated before the insert
     @Schema(description = "Unique identifier for the category", example = "123e4567-e89b-12d3-a456-426614174000")
     private UUID id;
 
@@ -27,6 +38,12 @@ public class Category {
     @Schema(description = "Detailed description of the category", example = "Expenses related to meals, restaurants, and food purchases")
     private String description;
 
+    @Version // Incremented on every update, conditional writes compare it to the If-Match of the request
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Schema(description = "Version of the category, used for optimistic locking", example = "3")
+    private long version;
+
     // ================================
     // CONSTRUCTORS
     // ================================
@@ -68,6 +85,14 @@ public class Category {
         this.description = description;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     // ================================
     // BUILDER PATTERN
     // ================================
@@ -2,6 +2,7 @@ package com.dios.expensesapi.model;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.math.BigDecimal;
@@ -9,29 +10,40 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity // JPA entity, annotated to be mapped to a database table
-@Table(name = "expenses")
+// Paths that map the category declare this graph, so the category comes in the same joined query
+@NamedEntityGraph(name = Expense.WITH_CATEGORY, attributeNodes = @NamedAttributeNode("category"))
+@Table(name = "expenses", indexes = {
+        // Serves the per-user listing ordered by date (keyset pagination) and date range filters
+        @Index(name = "idx_expenses_user_date_id", columnList = "user_id, expense_date, id"),
+        // Serves category filters, optionally with a date range
+        @Index(name = "idx_expenses_user_category_date", columnList = "user_id, category_id, expense_date"),
+        // Covers the summary queries, which aggregate the amounts of a date range without reading the table
+        @Index(name = "idx_expenses_user_date_category_amount", columnList = "user_id, expense_date, category_id, amount")
+})
 @Schema(description = "Expense entity representing a user's financial expense record")
 public class Expense {
 
+    public static final String WITH_CATEGORY = "Expense.withCategory";
+
     // ================================
     // FIELDS
     // ================================
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7 // Time ordered, generated before the insert
     @Schema(description = "Unique identifier for the expense", example = "123e4567-e89b-12d3-a456-426614174000")
     private UUID id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY) // Only its id is read, which the proxy already holds
     @JoinColumn(name = "user_id", nullable = false)
     @Schema(description = "User who owns this expense")
     private User user;
 
-    @Column(nullable = false)
+    @Column(name = "expense_date", nullable = false)
     @Schema(description = "Date when the expense occurred", example = "01-01-2001 01:01:01")
     private LocalDateTime expenseDate;
 
-    @ManyToOne(fetch = FetchType.EAGER) // Many expenses can belong to one category
+    @ManyToOne(fetch = FetchType.LAZY) // Many expenses can belong to one category
     @JoinColumn(name = "category_id", nullable = false)
     @Schema(description = "Category classification for this expense")
     private Category category;
@@ -49,6 +61,12 @@ public class Expense {
     @Schema(description = "Timestamp when the expense record was created", example = "01-01-2001 01:01:01")
     private LocalDateTime createdAt;
 
+    @Version // Incremented on every update, conditional writes compare it to the If-Match of the request
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Schema(description = "Version of the expense, used for optimistic locking", example = "3")
+    private long version;
+
     // ================================
     // CONSTRUCTORS
     // ================================
@@ -126,6 +144,14 @@ public class Expense {
         this.createdAt = createdAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public UUID getUserId() {
         return user != null ? user.getId() : null;
     }
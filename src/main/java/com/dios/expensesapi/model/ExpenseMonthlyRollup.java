@@ -0,0 +1,165 @@
+package com.dios.expensesapi.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/* Spending of a user in one category and month, kept up to date by ExpenseRollupService in the same
+ * transaction as every change to expenses. Amounts are in cents. Summaries by month or category read
+ * these rows instead of the user's expenses. */
+@Entity
+@IdClass(ExpenseMonthlyRollup.Key.class)
+// Old columns of the expenses a native update or delete returns, read into Contributions
+@SqlResultSetMapping(name = ExpenseMonthlyRollup.CONTRIBUTION_MAPPING, classes = @ConstructorResult(
+        targetClass = ExpenseMonthlyRollup.Contribution.class,
+        columns = {
+                @ColumnResult(name = "id", type = UUID.class),
+                @ColumnResult(name = "user_id", type = UUID.class),
+                @ColumnResult(name = "category_id", type = UUID.class),
+                @ColumnResult(name = "expense_date", type = LocalDateTime.class),
+                @ColumnResult(name = "amount", type = BigDecimal.class)
+        }))
+@Table(name = "expense_monthly_rollup",
+        // Summaries read a range of months of one user, the primary key does not start with user_id
+        indexes = @Index(name = "idx_expense_monthly_rollup_user_month", columnList = "user_id, `month`"))
+public class ExpenseMonthlyRollup {
+
+    public static final String CONTRIBUTION_MAPPING = "ExpenseMonthlyRollup.Contribution";
+
+    public record Key(UUID userId, UUID categoryId, LocalDate month) implements Serializable {
+    }
+
+    // What one expense adds to the rollup of its month
+    public record Contribution(UUID expenseId, UUID userId, UUID categoryId, LocalDateTime expenseDate, Money amount) {
+
+        // Amount of the entity or of the request, also the one the JPQL projections pass
+        public Contribution(UUID expenseId, UUID userId, UUID categoryId, LocalDateTime expenseDate,
+                            BigDecimal amount) {
+            this(expenseId, userId, categoryId, expenseDate, Money.of(amount));
+        }
+
+        public Key key() {
+            return new Key(userId, categoryId, expenseDate.toLocalDate().withDayOfMonth(1));
+        }
+
+        public long cents() {
+            return amount.cents();
+        }
+    }
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Id
+    @Column(name = "category_id", nullable = false)
+    private UUID categoryId;
+
+    // First day of the month. Quoted, MONTH is a keyword in H2
+    @Id
+    @Column(name = "`month`", nullable = false)
+    private LocalDate month;
+
+    @Column(nullable = false)
+    private long totalCents;
+
+    @Column(nullable = false)
+    private long count;
+
+    // Smallest and largest amount, recomputed from the expenses when one of them is removed
+    @Column(nullable = false)
+    private long minCents;
+
+    @Column(nullable = false)
+    private long maxCents;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public ExpenseMonthlyRollup() {
+    }
+
+    public ExpenseMonthlyRollup(UUID userId, UUID categoryId, LocalDate month, long totalCents, long count,
+                                long minCents, long maxCents) {
+        this.userId = userId;
+        this.categoryId = categoryId;
+        this.month = month;
+        this.totalCents = totalCents;
+        this.count = count;
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public UUID getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(UUID categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public LocalDate getMonth() {
+        return month;
+    }
+
+    public void setMonth(LocalDate month) {
+        this.month = month;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public void setTotalCents(long totalCents) {
+        this.totalCents = totalCents;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getMinCents() {
+        return minCents;
+    }
+
+    public void setMinCents(long minCents) {
+        this.minCents = minCents;
+    }
+
+    public long getMaxCents() {
+        return maxCents;
+    }
+
+    public void setMaxCents(long maxCents) {
+        this.maxCents = maxCents;
+    }
+
+    public Key getKey() {
+        return new Key(userId, categoryId, month);
+    }
+}
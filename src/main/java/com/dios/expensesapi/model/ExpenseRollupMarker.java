@@ -0,0 +1,58 @@
+package com.dios.expensesapi.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/* State of expense_monthly_rollup shared by every node. The COMPLETE row is written once a rebuild
+ * has brought the rollup of every user in line with the expenses; until then summaries are not
+ * answered from the rollup, see ExpenseRollupService. */
+@Entity
+@Table(name = "expense_rollup_markers")
+public class ExpenseRollupMarker {
+
+    public static final String COMPLETE = "complete";
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public ExpenseRollupMarker() {
+    }
+
+    public ExpenseRollupMarker(String name, Instant createdAt) {
+        this.name = name;
+        this.createdAt = createdAt;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,139 @@
+package com.dios.expensesapi.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Response of a request sent with an Idempotency-Key, kept so a retry of the same request gets the
+ * same response instead of creating the resource again. The row is inserted as PENDING before the
+ * request runs, reserving the key, and gets the response once it has one. Only written when persistent
+ * idempotency keys are enabled, see IdempotencyService. */
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_keys_user_key", columnNames = {"user_id", "idempotency_key"}),
+        indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+public class IdempotencyRecord {
+
+    // Status of a reserved key whose request is still running
+    public static final int PENDING = 0;
+
+    // ================================
+    // FIELDS
+    // ================================
+
+    @Id
+    @UuidV7 // Time ordered, generated before the insert
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // SHA-256 of the operation and the request body, a key reused for another request is rejected
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private int status;
+
+    private String etag;
+
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // ================================
+    // CONSTRUCTORS
+    // ================================
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(UUID userId, String idempotencyKey, String requestHash, int status, String etag,
+                             String body, Instant expiresAt) {
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.status = status;
+        this.etag = etag;
+        this.body = body;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isPending() {
+        return status == PENDING;
+    }
+
+    // ================================
+    // GETTERS AND SETTERS
+    // ================================
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
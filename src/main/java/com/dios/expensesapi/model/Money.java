@@ -0,0 +1,186 @@
+package com.dios.expensesapi.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/* Amount of money as a number of cents, the same two decimals as the amount column. Sums and
+ * comparisons are long arithmetic and the decimal text is written and parsed digit by digit, so the
+ * summaries and responses only meet BigDecimal where the JDBC driver or Bean Validation hand it over.
+ * In JSON it is a plain number with two decimals, exactly as a BigDecimal of scale 2 was. */
+@Schema(type = "number", example = "150.75")
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    // Longest text of a long number of cents: sign, 17 digits, point and 2 decimals
+    static final int MAX_LENGTH = 21;
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    // Null stays null, more than two decimals throws ArithmeticException instead of rounding
+    public static Money of(BigDecimal amount) {
+        return amount == null ? null : ofCents(amount.movePointRight(2).longValueExact());
+    }
+
+    /* Decimal text with an optional sign and up to two decimals, "12", "12.3", "-0.05". Anything
+     * else, exponents included, is rejected with NumberFormatException. */
+    public static Money parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+
+        long units = 0;
+        int unitDigits = 0;
+        for (; i < length && isDigit(text.charAt(i)); i++, unitDigits++) {
+            if (units > (Long.MAX_VALUE / 100 - 9) / 10) {
+                throw new NumberFormatException("Amount out of range: " + text);
+            }
+            units = units * 10 + (text.charAt(i) - '0');
+        }
+
+        int fraction = 0;
+        int fractionDigits = 0;
+        if (i < length && text.charAt(i) == '.') {
+            for (i++; i < length && isDigit(text.charAt(i)); i++, fractionDigits++) {
+                if (fractionDigits == 2) {
+                    throw new NumberFormatException("More than two decimals: " + text);
+                }
+                fraction = fraction * 10 + (text.charAt(i) - '0');
+            }
+        }
+        if (i != length || (unitDigits == 0 && fractionDigits == 0)) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+
+        long cents = units * 100 + (fractionDigits == 1 ? fraction * 10 : fraction);
+        return ofCents(negative ? -cents : cents);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public long cents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    // For the amount column and the criteria queries on it
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && cents == other.cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    // Always two decimals, "1234.50", "-0.05"
+    @Override
+    public String toString() {
+        char[] buffer = new char[MAX_LENGTH];
+        int start = write(buffer);
+        return new String(buffer, start, MAX_LENGTH - start);
+    }
+
+    /* Writes the decimal text right aligned at the end of a buffer of MAX_LENGTH chars and returns
+     * where it starts. Digits are taken from the end, negated so Long.MIN_VALUE needs no special case. */
+    int write(char[] buffer) {
+        long negated = cents > 0 ? -cents : cents;
+        int position = MAX_LENGTH;
+        for (int i = 0; i < 2; i++) {
+            buffer[--position] = (char) ('0' - negated % 10);
+            negated /= 10;
+        }
+        buffer[--position] = '.';
+        do {
+            buffer[--position] = (char) ('0' - negated % 10);
+            negated /= 10;
+        } while (negated != 0);
+        if (cents < 0) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+
+    /* Written as a JSON number, not a string. The digits go through a buffer per thread straight into
+     * the generator, no String is created per amount. */
+    static final class Serializer extends StdSerializer<Money> {
+
+        private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+        Serializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            char[] buffer = BUFFER.get();
+            int start = value.write(buffer);
+            generator.writeNumber(buffer, start, MAX_LENGTH - start);
+        }
+    }
+
+    // Accepts JSON numbers and strings, both parsed from their text without going through double
+    static final class Deserializer extends StdDeserializer<Money> {
+
+        Deserializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            String text = parser.getText().trim();
+            try {
+                return parse(text);
+            } catch (NumberFormatException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, text, e.getMessage());
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.dios.expensesapi.model;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -16,15 +19,21 @@ import java.util.UUID;
 @Table(name = "users")
 /* Implement UserDetails (Spring Security interface) so that the User
 *  entity is directly compatible */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION) // Loaded by email to authenticate
 @Schema(description = "User entity representing a registered user in the system.")
 public class User implements UserDetails {
 
+    // Second-level cache regions of the entity and of UserRepository.findByEmail, sized in SecondLevelCacheConfig
+    public static final String CACHE_REGION = "users";
+    public static final String BY_EMAIL_CACHE_REGION = "users-by-email";
+
     // ================================
     // FIELDS
     // ================================
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7 // Time ordered, generated before the insert
     @Schema(description = "Unique identifier for the user", example = "123e4567-e89b-12d3-a456-426614174000")
     private UUID id;
 
@@ -58,6 +67,12 @@ public class User implements UserDetails {
     @Schema(description = "Indicates if the user account is active", example = "true")
     private boolean enabled = true;
 
+    // Tokens carry this value; increasing it invalidates every token issued before
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Schema(description = "Version of the issued tokens, increased to revoke them", accessMode = Schema.AccessMode.READ_ONLY)
+    private int tokenVersion;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
@@ -160,6 +175,14 @@ public class User implements UserDetails {
         this.enabled = enabled;
     }
 
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
     // ================================
     // BUILDER PATTERN
     // ================================
@@ -0,0 +1,58 @@
+package com.dios.expensesapi.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Time ordered UUIDs (version 7, RFC 9562): 48 bits of Unix milliseconds, then a 12 bit counter and
+ * 62 random bits. New ids always land at the right edge of the primary key index instead of at a
+ * random page, and ids created by this JVM are strictly increasing, also within the same millisecond.
+ * The id is known before the INSERT, so inserts can still be batched. */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    // Milliseconds and counter of the last id, packed as (millis << 12) | counter
+    private static final AtomicLong lastTimestamp = new AtomicLong();
+
+    public static UUID nextUuid() {
+        long timestamp = nextTimestamp();
+        long mostSignificant = (timestamp >>> COUNTER_BITS) << 16 | VERSION | (timestamp & 0xFFFL);
+        // Uniqueness comes from the timestamp and counter, the random bits only keep ids from different nodes apart
+        long leastSignificant = VARIANT | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    /* Current millisecond with the counter at 0, or the previous value plus one when the clock has not
+     * moved (or went back). 4096 ids in the same millisecond carry over into the next one, which keeps
+     * the order at the cost of running slightly ahead of the clock. */
+    private static long nextTimestamp() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        while (true) {
+            long last = lastTimestamp.get();
+            long next = Math.max(now, last + 1);
+            if (lastTimestamp.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return nextUuid();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -1,16 +1,49 @@
 package com.dios.expensesapi.repository;
 
 import com.dios.expensesapi.model.Category;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface CategoryRepository extends CrudRepository<Category, UUID>, PagingAndSortingRepository<Category, UUID> {
+    // Cached query, invalidated by Hibernate whenever the categories table is written
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Category.BY_NAME_CACHE_REGION)
+    })
     Optional<Category> findByName(String name);
 
+    // Every category referenced by a batch of expenses, whether by id or by name, in one query
+    List<Category> findByIdInOrNameIn(Collection<UUID> ids, Collection<String> names);
+
     Page<Category> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    /* Same listing as findAll(Pageable) without its COUNT(*): Spring Data reads one extra row to know
+     * if there is a next page. Searches by name go through CategoryNameSearch. */
+    Slice<Category> findSliceBy(Pageable pageable);
+
+    // Same as ExpenseRepository.updateIfVersionMatches: 0 when the category is missing or its version moved on
+    @Modifying
+    @Query("""
+            update Category c
+            set c.name = :name, c.description = :description, c.version = c.version + 1
+            where c.id = :id and c.version = :version
+            """)
+    int updateIfVersionMatches(@Param("id") UUID id,
+                               @Param("version") long version,
+                               @Param("name") String name,
+                               @Param("description") String description);
 }
@@ -0,0 +1,148 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.UuidV7Generator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/* PostgreSQL loader. The rows are streamed with COPY into a temporary staging table and moved to
+ * expenses with one INSERT ... SELECT that joins the categories and returns what it inserted, so a
+ * chunk costs a few statements whatever its size. The staging table lives in the session of the
+ * pooled connection and is emptied on commit. */
+class CopyExpenseBulkLoader implements ExpenseBulkLoader {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING = """
+            create temporary table if not exists expense_import_staging (
+                line bigint not null,
+                id uuid not null,
+                expense_date timestamp not null,
+                category_id uuid,
+                category_name text,
+                amount numeric(10, 2) not null,
+                description text
+            ) on commit delete rows
+            """;
+
+    private static final String COPY = """
+            copy expense_import_staging (line, id, expense_date, category_id, category_name, amount, description)
+            from stdin (format csv)
+            """;
+
+    /* Category by id when the row has one, by name otherwise. The staged name is text, not the 100
+     * characters of categories.name: a longer one matches no category and only its row is rejected. */
+    private static final String STAGED_WITH_CATEGORY = """
+            from expense_import_staging s
+            left join categories by_id on by_id.id = s.category_id
+            left join categories by_name on s.category_id is null and by_name.name = s.category_name
+            """;
+
+    private static final String MERGE = """
+            insert into expenses (id, user_id, expense_date, category_id, amount, description, created_at, version)
+            select s.id, ?, s.expense_date, coalesce(by_id.id, by_name.id), s.amount, s.description, ?, 0
+            """ + STAGED_WITH_CATEGORY + "where coalesce(by_id.id, by_name.id) is not null\n"
+            + "returning " + LoadedExpenseRowMapper.COLUMNS;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    CopyExpenseBulkLoader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Result load(UUID userId, List<Row> rows) {
+        // Without a transaction every statement commits and the staging rows are gone before the merge
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("COPY import must run inside a transaction");
+        }
+        if (rows.isEmpty()) {
+            return new Result(Set.of(), List.of());
+        }
+
+        List<UUID> ids = rows.stream().map(row -> UuidV7Generator.nextUuid()).toList();
+        jdbcTemplate.execute(CREATE_STAGING);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            copy(connection, rows, ids);
+            return null;
+        });
+
+        // The rows the merge did not return are those whose category it did not find
+        List<ExpenseMonthlyRollup.Contribution> loaded = jdbcTemplate.query(MERGE, new LoadedExpenseRowMapper(),
+                userId, Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.execute("truncate expense_import_staging");
+
+        Set<UUID> loadedIds = new HashSet<>();
+        loaded.forEach(expense -> loadedIds.add(expense.expenseId()));
+        Set<Long> missingCategory = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (!loadedIds.contains(ids.get(i))) {
+                missingCategory.add(rows.get(i).line());
+            }
+        }
+        return new Result(missingCategory, loaded);
+    }
+
+    // SQL errors are translated by JdbcTemplate like those of any other statement
+    private static void copy(Connection connection, List<Row> rows, List<UUID> ids) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+        try (PGCopyOutputStream copy = new PGCopyOutputStream(pgConnection, COPY, COPY_BUFFER_SIZE);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8))) {
+            for (int i = 0; i < rows.size(); i++) {
+                writeRow(writer, rows.get(i), ids.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // CSV line of the COPY, an unquoted empty field is NULL and a quoted one an empty string
+    private static void writeRow(Writer writer, Row row, UUID id) throws IOException {
+        ExpenseDTO expense = row.expense();
+        writer.write(Long.toString(row.line()));
+        writer.write(',');
+        writer.write(id.toString());
+        writer.write(',');
+        writer.write(expense.getExpenseDate().toString());
+        writer.write(',');
+        if (expense.getCategoryId() != null) {
+            writer.write(expense.getCategoryId().toString());
+        }
+        writer.write(',');
+        writeText(writer, expense.getCategoryId() == null ? expense.getCategoryName() : null);
+        writer.write(',');
+        writer.write(expense.getAmount().toPlainString());
+        writer.write(',');
+        writeText(writer, expense.getDescription());
+        writer.write('\n');
+    }
+
+    private static void writeText(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,26 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/* Inserts imported expenses with plain SQL instead of one persisted entity per row. Categories are
+ * resolved by the database in the same statement, by id when the row has one and by name otherwise,
+ * and every expense is owned by the importing user whatever the file says. Runs in the caller's
+ * transaction, one call per chunk of the import. */
+public interface ExpenseBulkLoader {
+
+    Result load(UUID userId, List<Row> rows);
+
+    // A validated row of the import and the line of the file it comes from
+    record Row(long line, ExpenseDTO expense) {
+    }
+
+    /* Lines of the rows that were not inserted because their category does not exist, and the expenses
+     * that were, with the category the insert resolved for them. */
+    record Result(Set<Long> missingCategory, List<ExpenseMonthlyRollup.Contribution> loaded) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.dios.expensesapi.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.sql.DatabaseMetaData;
+
+// COPY on PostgreSQL, batched inserts on any other database
+@Configuration
+public class ExpenseBulkLoaderConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseBulkLoaderConfig.class);
+
+    @Bean
+    public ExpenseBulkLoader expenseBulkLoader(JdbcTemplate jdbcTemplate) throws MetaDataAccessException {
+        String database = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                DatabaseMetaData::getDatabaseProductName);
+
+        if ("PostgreSQL".equals(database)) {
+            log.info("Expense imports use COPY");
+            return new CopyExpenseBulkLoader(jdbcTemplate);
+        }
+        log.info("Expense imports use batched inserts, {} has no COPY", database);
+        return new JdbcBatchExpenseBulkLoader(jdbcTemplate);
+    }
+}
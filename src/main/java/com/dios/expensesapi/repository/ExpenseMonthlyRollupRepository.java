@@ -0,0 +1,113 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/* Writes are single statements keyed by (user, category, month): an upsert that adds a delta, so
+ * concurrent transactions touching the same month never lose each other's changes. */
+public interface ExpenseMonthlyRollupRepository extends CrudRepository<ExpenseMonthlyRollup, ExpenseMonthlyRollup.Key> {
+
+    // Aggregate of a user's expenses in the shape of the rollup rows, used to rebuild and verify them
+    String EXPENSES_BY_MONTH_COLUMNS = """
+            e.user.id, e.category.id, cast(trunc(e.expenseDate, month) as LocalDate), cast(sum(e.amount) * 100 as Long),
+                count(e), cast(min(e.amount) * 100 as Long), cast(max(e.amount) * 100 as Long)
+            """;
+    String EXPENSES_BY_MONTH_SOURCE = """
+            from Expense e
+            where e.user.id = :userId
+            group by e.user.id, e.category.id, trunc(e.expenseDate, month)
+            """;
+
+    // ON CONFLICT on PostgreSQL, MERGE on H2
+    @Modifying
+    @Query("""
+            insert into ExpenseMonthlyRollup (userId, categoryId, month, totalCents, count, minCents, maxCents)
+            values (:userId, :categoryId, :month, :totalCents, :count, :minCents, :maxCents)
+            on conflict (userId, categoryId, month) do update
+            set totalCents = totalCents + excluded.totalCents,
+                count = count + excluded.count,
+                minCents = least(minCents, excluded.minCents),
+                maxCents = greatest(maxCents, excluded.maxCents)
+            """)
+    int addDelta(@Param("userId") UUID userId,
+                 @Param("categoryId") UUID categoryId,
+                 @Param("month") LocalDate month,
+                 @Param("totalCents") long totalCents,
+                 @Param("count") long count,
+                 @Param("minCents") long minCents,
+                 @Param("maxCents") long maxCents);
+
+    /* Min and max cannot be taken back by a delta: after a removal they are read again from the
+     * expenses of the month, a range of idx_expenses_user_date_category_amount. */
+    @Modifying
+    @Query("""
+            update ExpenseMonthlyRollup r
+            set r.minCents = coalesce((select cast(min(e.amount) * 100 as Long) from Expense e
+                                       where e.user.id = :userId and e.category.id = :categoryId
+                                         and e.expenseDate >= :from and e.expenseDate < :to), 0),
+                r.maxCents = coalesce((select cast(max(e.amount) * 100 as Long) from Expense e
+                                       where e.user.id = :userId and e.category.id = :categoryId
+                                         and e.expenseDate >= :from and e.expenseDate < :to), 0)
+            where r.userId = :userId and r.categoryId = :categoryId and r.month = :month
+            """)
+    int refreshMinMax(@Param("userId") UUID userId,
+                      @Param("categoryId") UUID categoryId,
+                      @Param("month") LocalDate month,
+                      @Param("from") LocalDateTime from,
+                      @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query("delete from ExpenseMonthlyRollup r where r.userId = :userId and r.count <= 0")
+    int deleteEmpty(@Param("userId") UUID userId);
+
+    List<ExpenseMonthlyRollup> findByUserId(UUID userId);
+
+    @Query("select new com.dios.expensesapi.model.ExpenseMonthlyRollup(" + EXPENSES_BY_MONTH_COLUMNS + ") "
+            + EXPENSES_BY_MONTH_SOURCE)
+    List<ExpenseMonthlyRollup> aggregateExpenses(@Param("userId") UUID userId);
+
+    // Rebuild of a user: the rows are replaced by the aggregate of the expenses, in two statements
+    @Modifying(clearAutomatically = true)
+    @Query("delete from ExpenseMonthlyRollup r where r.userId = :userId")
+    int deleteByUser(@Param("userId") UUID userId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("insert into ExpenseMonthlyRollup (userId, categoryId, month, totalCents, count, minCents, maxCents) "
+            + "select " + EXPENSES_BY_MONTH_COLUMNS + EXPENSES_BY_MONTH_SOURCE)
+    int insertFromExpenses(@Param("userId") UUID userId);
+
+    // Summaries of whole months, same buckets and order as ExpenseSearchRepository.summarize
+    @Query("""
+            select new com.dios.expensesapi.dto.ExpenseSummaryDTO(
+                r.month, sum(r.count), sum(r.totalCents), min(r.minCents), max(r.maxCents))
+            from ExpenseMonthlyRollup r
+            where r.userId = :userId and r.month >= :from and r.month < :to
+            group by r.month
+            order by r.month
+            """)
+    List<ExpenseSummaryDTO> summarizeByMonth(@Param("userId") UUID userId,
+                                             @Param("from") LocalDate from,
+                                             @Param("to") LocalDate to);
+
+    @Query("""
+            select new com.dios.expensesapi.dto.ExpenseSummaryDTO(
+                c.id, c.name, sum(r.count), sum(r.totalCents), min(r.minCents), max(r.maxCents))
+            from ExpenseMonthlyRollup r
+            join Category c on c.id = r.categoryId
+            where r.userId = :userId and r.month >= :from and r.month < :to
+            group by c.id, c.name
+            order by sum(r.totalCents) desc, c.name
+            """)
+    List<ExpenseSummaryDTO> summarizeByCategory(@Param("userId") UUID userId,
+                                                @Param("from") LocalDate from,
+                                                @Param("to") LocalDate to);
+}
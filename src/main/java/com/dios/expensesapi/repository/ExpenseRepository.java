@@ -1,17 +1,90 @@
 package com.dios.expensesapi.repository;
 
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
 import com.dios.expensesapi.model.Expense;
-import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface ExpenseRepository extends CrudRepository<Expense, UUID> {
-    Iterable<Expense> findByUser(User user);
-    Optional<Expense> findByUserAndId(User user, UUID id);
+public interface ExpenseRepository extends CrudRepository<Expense, UUID>, ExpenseSearchRepository,
+        ExpenseWriteRepository {
+    // Filtering by user id uses the user_id column directly, the users table is not joined
+    Optional<Expense> findByUser_IdAndId(UUID userId, UUID id);
+
+    /* Every expense of a user reduced to the columns of the analytics cache, read from an open cursor
+     * in batches of the fetch size. Must be consumed inside a transaction. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            select new com.dios.expensesapi.model.ExpenseMonthlyRollup$Contribution(
+                e.id, e.user.id, e.category.id, e.expenseDate, e.amount)
+            from Expense e
+            where e.user.id = :userId
+            """)
+    Stream<ExpenseMonthlyRollup.Contribution> streamContributionsByUserId(@Param("userId") UUID userId);
+
     // Aqui es donde se definen queries personalizadas
 
+    /* Read queries project straight into the response DTO: only the expense and category columns are
+     * selected, user.id is the user_id column itself and no entity is loaded into the persistence
+     * context. */
+    String RESPONSE_PROJECTION = """
+            select new com.dios.expensesapi.dto.ExpenseResponseDTO(
+                e.id, e.user.id, e.expenseDate, c.id, c.name, c.description, e.amount, e.description, e.createdAt,
+                e.version)
+            from Expense e
+            join e.category c
+            """;
+
+    @Query(RESPONSE_PROJECTION + """
+            where e.user.id = :userId and e.id = :id
+            """)
+    Optional<ExpenseResponseDTO> findResponseByUserIdAndId(@Param("userId") UUID userId, @Param("id") UUID id);
+
+    /* Keyset pagination, newest first. Both queries walk the (user_id, expense_date, id) index and
+     * return a Slice, so Spring Data reads one extra row to know if there is a next page instead of
+     * running a COUNT(*). They serve the unfiltered listing, filtered listings go through search(). */
+    @Query(RESPONSE_PROJECTION + """
+            where e.user.id = :userId
+            order by e.expenseDate desc, e.id desc
+            """)
+    Slice<ExpenseResponseDTO> findFirstSlice(@Param("userId") UUID userId, Pageable pageable);
+
+    @Query(RESPONSE_PROJECTION + """
+            where e.user.id = :userId
+              and (e.expenseDate < :expenseDate or (e.expenseDate = :expenseDate and e.id < :id))
+            order by e.expenseDate desc, e.id desc
+            """)
+    Slice<ExpenseResponseDTO> findSliceAfter(@Param("userId") UUID userId,
+                                             @Param("expenseDate") LocalDateTime expenseDate,
+                                             @Param("id") UUID id,
+                                             Pageable pageable);
+
+    /* Whole history of a user for the export, read from an open cursor. The fetch size makes the
+     * driver bring rows in batches instead of materializing the full result set, and read only
+     * entities skip the dirty checking snapshot. Must be consumed inside a transaction. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @EntityGraph(Expense.WITH_CATEGORY)
+    @Query("""
+            select e from Expense e
+            where e.user.id = :userId
+            order by e.expenseDate desc, e.id desc
+            """)
+    Stream<Expense> streamByUserId(@Param("userId") UUID userId);
 }
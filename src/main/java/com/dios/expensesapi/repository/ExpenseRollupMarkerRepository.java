@@ -0,0 +1,7 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.model.ExpenseRollupMarker;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ExpenseRollupMarkerRepository extends CrudRepository<ExpenseRollupMarker, String> {
+}
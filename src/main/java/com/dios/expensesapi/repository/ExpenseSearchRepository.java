@@ -0,0 +1,23 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseCursor;
+import com.dios.expensesapi.dto.ExpenseFilter;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Fragment of ExpenseRepository for the queries built at runtime: the filtered listing and the summary
+public interface ExpenseSearchRepository {
+
+    /* Slice of the user's expenses matching the filter, in the filter's order. cursor is the last
+     * expense of the previous slice, null for the first one. */
+    Slice<ExpenseResponseDTO> search(UUID userId, ExpenseFilter filter, ExpenseCursor cursor, int size);
+
+    /* Count, total, min and max of the user's expenses in [from, to) per bucket, aggregated by the
+     * database. Periods come in chronological order, categories from the highest total down. */
+    List<ExpenseSummaryDTO> summarize(UUID userId, LocalDateTime from, LocalDateTime to, ExpenseSummaryDTO.GroupBy groupBy);
+}
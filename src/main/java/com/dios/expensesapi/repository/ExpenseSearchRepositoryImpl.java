@@ -0,0 +1,115 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseCursor;
+import com.dios.expensesapi.dto.ExpenseFilter;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Expense;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/* Runs the specifications of ExpenseSpecifications as a criteria query that projects into
+ * ExpenseResponseDTO, same columns as ExpenseRepository.RESPONSE_PROJECTION, and reads one row
+ * more than the slice size to know if there is a next slice. */
+class ExpenseSearchRepositoryImpl implements ExpenseSearchRepository {
+
+    /* The truncation unit has to be a literal in HQL, so there is one statement per period. All of them
+     * filter on user_id and a range of expense_date and only read category_id and amount besides, the
+     * columns of idx_expenses_user_date_category_amount, so the database aggregates from the index
+     * without visiting the table. */
+    private static final String PERIOD_SUMMARY = """
+            select new com.dios.expensesapi.dto.ExpenseSummaryDTO(
+                trunc(e.expenseDate, %1$s), count(e), sum(e.amount), min(e.amount), max(e.amount))
+            from Expense e
+            where e.user.id = :userId and e.expenseDate >= :from and e.expenseDate < :to
+            group by trunc(e.expenseDate, %1$s)
+            order by trunc(e.expenseDate, %1$s)
+            """;
+
+    private static final String CATEGORY_SUMMARY = """
+            select new com.dios.expensesapi.dto.ExpenseSummaryDTO(
+                c.id, c.name, count(e), sum(e.amount), min(e.amount), max(e.amount))
+            from Expense e
+            join e.category c
+            where e.user.id = :userId and e.expenseDate >= :from and e.expenseDate < :to
+            group by c.id, c.name
+            order by sum(e.amount) desc, c.name
+            """;
+
+    private final EntityManager entityManager;
+
+    ExpenseSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Slice<ExpenseResponseDTO> search(UUID userId, ExpenseFilter filter, ExpenseCursor cursor, int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ExpenseResponseDTO> query = cb.createQuery(ExpenseResponseDTO.class);
+        Root<Expense> expense = query.from(Expense.class);
+        Join<Expense, Category> category = expense.join("category");
+
+        Specification<Expense> specification = ExpenseSpecifications.matching(userId, filter);
+        if (cursor != null) {
+            specification = specification.and(
+                    ExpenseSpecifications.after(cursor, filter.getSortBy(), filter.getDirection()));
+        }
+
+        query.select(cb.construct(ExpenseResponseDTO.class,
+                        expense.get("id"),
+                        expense.get("user").get("id"),
+                        expense.get("expenseDate"),
+                        category.get("id"),
+                        category.get("name"),
+                        category.get("description"),
+                        expense.get("amount"),
+                        expense.get("description"),
+                        expense.get("createdAt"),
+                        expense.get("version")))
+                .where(specification.toPredicate(expense, query, cb))
+                .orderBy(order(cb, expense, filter));
+
+        List<ExpenseResponseDTO> rows = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        boolean hasNext = rows.size() > size;
+        List<ExpenseResponseDTO> content = hasNext ? rows.subList(0, size) : rows;
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    public List<ExpenseSummaryDTO> summarize(UUID userId, LocalDateTime from, LocalDateTime to,
+                                             ExpenseSummaryDTO.GroupBy groupBy) {
+        String statement = groupBy == ExpenseSummaryDTO.GroupBy.CATEGORY
+                ? CATEGORY_SUMMARY
+                : PERIOD_SUMMARY.formatted(groupBy.getValue());
+
+        return entityManager.createQuery(statement, ExpenseSummaryDTO.class)
+                .setParameter("userId", userId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    // Sort field then id as tie breaker, both in the requested direction so the keyset stays consistent
+    private static List<Order> order(CriteriaBuilder cb, Root<Expense> expense, ExpenseFilter filter) {
+        if (filter.getDirection().isDescending()) {
+            return List.of(cb.desc(expense.get(filter.getSortBy().getAttribute())), cb.desc(expense.get("id")));
+        }
+        return List.of(cb.asc(expense.get(filter.getSortBy().getAttribute())), cb.asc(expense.get("id")));
+    }
+}
@@ -0,0 +1,69 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseCursor;
+import com.dios.expensesapi.dto.ExpenseFilter;
+import com.dios.expensesapi.model.Expense;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/* Predicates of the expense search. Every filter starts with the owner, so the queries always lead
+ * with user_id and can use the (user_id, ...) composite indexes of the expenses table. */
+public final class ExpenseSpecifications {
+
+    private ExpenseSpecifications() {
+    }
+
+    public static Specification<Expense> matching(UUID userId, ExpenseFilter filter) {
+        List<Specification<Expense>> specifications = new ArrayList<>();
+        specifications.add(ownedBy(userId));
+
+        if (filter.getFrom() != null) {
+            specifications.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("expenseDate"), filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            specifications.add((root, query, cb) -> cb.lessThan(root.get("expenseDate"), filter.getTo()));
+        }
+        if (!filter.getCategoryIds().isEmpty()) {
+            specifications.add((root, query, cb) -> root.get("category").get("id").in(filter.getCategoryIds()));
+        }
+        if (filter.getMinAmount() != null) {
+            specifications.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("amount"), filter.getMinAmount()));
+        }
+        if (filter.getMaxAmount() != null) {
+            specifications.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("amount"), filter.getMaxAmount()));
+        }
+
+        return Specification.allOf(specifications);
+    }
+
+    // user.id resolves to the user_id column, the users table is not joined
+    public static Specification<Expense> ownedBy(UUID userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    /* Rows that come after the cursor in the listing order: (sortKey, id) strictly lower when
+     * descending, strictly greater when ascending. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Expense> after(ExpenseCursor cursor, ExpenseFilter.SortField sortField,
+                                               Sort.Direction direction) {
+        return (root, query, cb) -> {
+            Path<Comparable> sortPath = root.get(sortField.getAttribute());
+            Path<UUID> idPath = root.get("id");
+            Comparable key = cursor.getSortKey(sortField);
+
+            if (direction.isDescending()) {
+                return cb.or(
+                        cb.lessThan(sortPath, key),
+                        cb.and(cb.equal(sortPath, key), cb.lessThan(idPath, cursor.getId())));
+            }
+            return cb.or(
+                    cb.greaterThan(sortPath, key),
+                    cb.and(cb.equal(sortPath, key), cb.greaterThan(idPath, cursor.getId())));
+        };
+    }
+}
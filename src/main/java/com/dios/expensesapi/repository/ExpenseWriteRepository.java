@@ -0,0 +1,29 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.model.ExpenseMonthlyRollup.Contribution;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/* Fragment of ExpenseRepository for the ownership checked writes. Each one is a single statement that
+ * returns what the rows contributed to the monthly rollup before the write, so the rollup and the
+ * analytics cache are kept up to date without reading or locking the expenses first. No entity is
+ * loaded. */
+public interface ExpenseWriteRepository {
+
+    /* Conditional update for If-Match requests: writes the row and bumps its version only if it still
+     * has the version the client read. Empty when the expense does not exist, belongs to another user
+     * or has been changed meanwhile. */
+    Optional<Contribution> updateIfVersionMatches(UUID id, UUID userId, long version, LocalDateTime expenseDate,
+                                                  UUID categoryId, BigDecimal amount, String description);
+
+    // Empty when the expense does not exist or belongs to another user
+    Optional<Contribution> deleteByIdAndUserId(UUID id, UUID userId);
+
+    // One contribution per deleted row, the ids of other users are left alone
+    List<Contribution> deleteAllByIdInAndUserId(Collection<UUID> ids, UUID userId);
+}
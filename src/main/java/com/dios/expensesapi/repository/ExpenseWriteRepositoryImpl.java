@@ -0,0 +1,96 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup.Contribution;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/* Native statements, JPQL has no way to return the old values of a write. PostgreSQL uses RETURNING;
+ * an update returns the new row, so it joins the row to itself to return the old one. Any other
+ * database is taken to be H2, which selects the old rows FROM OLD TABLE of the write. They go through
+ * the EntityManager, so pending changes are flushed before and Hibernate counts them. */
+class ExpenseWriteRepositoryImpl implements ExpenseWriteRepository {
+
+    private static final String RETURNED_COLUMNS = "id, user_id, category_id, expense_date, amount";
+
+    private static final String POSTGRES_UPDATE = """
+            update expenses e
+            set expense_date = :expenseDate, category_id = :categoryId, amount = :amount,
+                description = :description, version = e.version + 1
+            from expenses old
+            where old.id = e.id and e.id = :id and e.user_id = :userId and e.version = :version
+            returning old.id, old.user_id, old.category_id, old.expense_date, old.amount
+            """;
+
+    private static final String H2_UPDATE = """
+            select %s from old table (
+                update expenses
+                set expense_date = :expenseDate, category_id = :categoryId, amount = :amount,
+                    description = :description, version = version + 1
+                where id = :id and user_id = :userId and version = :version)
+            """.formatted(RETURNED_COLUMNS);
+
+    private static final String DELETE = "delete from expenses where %s and user_id = :userId";
+
+    private final EntityManager entityManager;
+    private final boolean postgres;
+
+    ExpenseWriteRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+        this.postgres = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+    }
+
+    @Override
+    public Optional<Contribution> updateIfVersionMatches(UUID id, UUID userId, long version,
+                                                         LocalDateTime expenseDate, UUID categoryId,
+                                                         BigDecimal amount, String description) {
+        Query update = entityManager.createNativeQuery(postgres ? POSTGRES_UPDATE : H2_UPDATE,
+                        ExpenseMonthlyRollup.CONTRIBUTION_MAPPING)
+                .setParameter("id", id)
+                .setParameter("userId", userId)
+                .setParameter("version", version)
+                .setParameter("expenseDate", expenseDate)
+                .setParameter("categoryId", categoryId)
+                .setParameter("amount", amount)
+                .setParameter("description", description);
+        return contributions(update).stream().findFirst();
+    }
+
+    @Override
+    public Optional<Contribution> deleteByIdAndUserId(UUID id, UUID userId) {
+        Query delete = entityManager.createNativeQuery(delete("id = :id"), ExpenseMonthlyRollup.CONTRIBUTION_MAPPING)
+                .setParameter("id", id)
+                .setParameter("userId", userId);
+        return contributions(delete).stream().findFirst();
+    }
+
+    @Override
+    public List<Contribution> deleteAllByIdInAndUserId(Collection<UUID> ids, UUID userId) {
+        Query delete = entityManager.createNativeQuery(delete("id in (:ids)"), ExpenseMonthlyRollup.CONTRIBUTION_MAPPING)
+                .setParameter("ids", ids)
+                .setParameter("userId", userId);
+        return contributions(delete);
+    }
+
+    private String delete(String condition) {
+        String delete = DELETE.formatted(condition);
+        return postgres
+                ? delete + " returning " + RETURNED_COLUMNS
+                : "select " + RETURNED_COLUMNS + " from old table (" + delete + ")";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Contribution> contributions(Query write) {
+        return write.getResultList();
+    }
+}
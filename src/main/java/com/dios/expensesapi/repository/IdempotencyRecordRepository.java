@@ -0,0 +1,30 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IdempotencyRecordRepository extends CrudRepository<IdempotencyRecord, UUID> {
+
+    Optional<IdempotencyRecord> findByUserIdAndIdempotencyKey(UUID userId, String idempotencyKey);
+
+    // Records the response of a reserved key, 0 when the reservation expired and was taken over
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.status = :status, r.etag = :etag, r.body = :body, r.expiresAt = :expiresAt where r.id = :id")
+    int complete(@Param("id") UUID id, @Param("status") int status, @Param("etag") String etag,
+                 @Param("body") String body, @Param("expiresAt") Instant expiresAt);
+
+    // Bulk delete, expired records are never loaded
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
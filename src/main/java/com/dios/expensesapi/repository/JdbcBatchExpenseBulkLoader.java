@@ -0,0 +1,105 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.UuidV7Generator;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/* Loader for databases without COPY (H2 in development and tests). Each row is an INSERT ... SELECT
+ * from categories sent in a JDBC batch, so a row whose category does not exist inserts nothing and
+ * reports an update count of 0. The inserted rows are then read back by id, with the category each
+ * insert resolved. */
+class JdbcBatchExpenseBulkLoader implements ExpenseBulkLoader {
+
+    private static final String INSERT = """
+            insert into expenses (id, user_id, expense_date, category_id, amount, description, created_at, version)
+            select ?, ?, ?, c.id, ?, ?, ?, 0
+            from categories c
+            """;
+    private static final String INSERT_BY_CATEGORY_ID = INSERT + "where c.id = ?";
+    private static final String INSERT_BY_CATEGORY_NAME = INSERT + "where c.name = ?";
+    private static final String SELECT_LOADED = "select " + LoadedExpenseRowMapper.COLUMNS + " from expenses where id in ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    JdbcBatchExpenseBulkLoader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Result load(UUID userId, List<Row> rows) {
+        List<Row> byId = new ArrayList<>();
+        List<Row> byName = new ArrayList<>();
+        for (Row row : rows) {
+            (row.expense().getCategoryId() != null ? byId : byName).add(row);
+        }
+
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        Set<Long> missingCategory = new HashSet<>();
+        List<UUID> loadedIds = new ArrayList<>();
+        insert(INSERT_BY_CATEGORY_ID, byId, userId, createdAt, missingCategory, loadedIds);
+        insert(INSERT_BY_CATEGORY_NAME, byName, userId, createdAt, missingCategory, loadedIds);
+        if (loadedIds.isEmpty()) {
+            return new Result(missingCategory, List.of());
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(loadedIds.size(), "?"));
+        List<ExpenseMonthlyRollup.Contribution> loaded = jdbcTemplate.query(SELECT_LOADED + "(" + placeholders + ")",
+                new LoadedExpenseRowMapper(), loadedIds.toArray());
+        return new Result(missingCategory, loaded);
+    }
+
+    private void insert(String sql, List<Row> rows, UUID userId, Timestamp createdAt, Set<Long> missingCategory,
+                        List<UUID> loadedIds) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = rows.stream().map(row -> UuidV7Generator.nextUuid()).toList();
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                bind(statement, ids.get(i), rows.get(i).expense(), userId, createdAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        for (int i = 0; i < rows.size(); i++) {
+            if (updateCounts[i] == 0) {
+                missingCategory.add(rows.get(i).line());
+            } else {
+                loadedIds.add(ids.get(i));
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement statement, UUID id, ExpenseDTO expense, UUID userId,
+                             Timestamp createdAt) throws SQLException {
+        statement.setObject(1, id);
+        statement.setObject(2, userId);
+        statement.setTimestamp(3, Timestamp.valueOf(expense.getExpenseDate()));
+        statement.setBigDecimal(4, expense.getAmount());
+        statement.setString(5, expense.getDescription());
+        statement.setTimestamp(6, createdAt);
+        if (expense.getCategoryId() != null) {
+            statement.setObject(7, expense.getCategoryId());
+        } else {
+            statement.setString(7, expense.getCategoryName());
+        }
+    }
+}
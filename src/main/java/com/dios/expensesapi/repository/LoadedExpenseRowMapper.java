@@ -0,0 +1,21 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+// Columns of an expense the bulk loaders inserted, as written
+class LoadedExpenseRowMapper implements RowMapper<ExpenseMonthlyRollup.Contribution> {
+
+    static final String COLUMNS = "id, user_id, category_id, expense_date, amount";
+
+    @Override
+    public ExpenseMonthlyRollup.Contribution mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+        return new ExpenseMonthlyRollup.Contribution(resultSet.getObject("id", UUID.class),
+                resultSet.getObject("user_id", UUID.class), resultSet.getObject("category_id", UUID.class),
+                resultSet.getTimestamp("expense_date").toLocalDateTime(), resultSet.getBigDecimal("amount"));
+    }
+}
@@ -1,12 +1,30 @@
 package com.dios.expensesapi.repository;
 
 import com.dios.expensesapi.model.User;
-import org.springframework.data.repository.CrudRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface UserRepository extends CrudRepository<User, UUID> {
+public interface UserRepository extends JpaRepository<User, UUID> {
+    // Cached query: the id found for an email, the user itself then comes from the entity region
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = User.BY_EMAIL_CACHE_REGION)
+    })
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // Only reads the column needed to validate a token; empty when the user is missing or disabled
+    @Query("select u.tokenVersion from User u where u.id = :id and u.enabled = true")
+    Optional<Integer> findActiveTokenVersion(@Param("id") UUID id);
+
+    @Query("select u.id from User u")
+    List<UUID> findAllIds();
 }
@@ -0,0 +1,25 @@
+package com.dios.expensesapi.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Changes to in-memory copies of the database, made visible only once the write behind them is committed
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    // Runs the action when the current transaction commits, never on rollback, right away when there is none
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,30 @@
+package com.dios.expensesapi.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/* Eviction policy of the bounded in-memory caches, run when a map reaches its size limit: expired
+ * entries are dropped first and, if the map is still full, a tenth of the entries in map order. The
+ * iteration order of a ConcurrentHashMap follows the key hashes, so what gets removed is effectively
+ * random. */
+public final class CacheEviction {
+
+    private CacheEviction() {
+    }
+
+    // Returns how many entries were removed that had not expired
+    public static <K, V> int evict(Map<K, V> entries, int maxSize, Predicate<V> expired) {
+        entries.values().removeIf(expired);
+
+        int toRemove = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        int removed = 0;
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (removed < toRemove && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            removed++;
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,178 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.mapper.CategoryMapper;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.repository.CategoryRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Copy in memory of the categories, a small table shared by every user and read on each expense
+ * written. Readers look up an immutable snapshot, by id or by name, with no query and no lock. The
+ * writes of CategoryServiceImpl discard it once they commit and the next read loads a new one; the
+ * writes of other nodes are seen when it expires, after the TTL. Until then a category they created is
+ * a miss, which the callers look up in the repository. The DTOs are shared, they must not be modified. */
+@Service
+public class CategoryCatalog implements MeterBinder {
+
+    private static final int MAX_COUNTED_TEXTS = 1000;
+
+    private final CategoryRepository categoryRepository;
+    private final long ttlNanos;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final LongAdder loads = new LongAdder();
+
+    public CategoryCatalog(CategoryRepository categoryRepository,
+                           @Value("${expenses.categories.catalog.ttl:30s}") Duration ttl) {
+        this.categoryRepository = categoryRepository;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    // ================================
+    // READS
+    // ================================
+
+    // Null when there is no such category, or it was created in another node after the last load
+    public CategoryResponseDTO find(UUID id) {
+        return current().byId().get(id);
+    }
+
+    public CategoryResponseDTO findByName(String name) {
+        return current().byName().get(name);
+    }
+
+    // Unmodifiable, in the order of the repository
+    public List<CategoryResponseDTO> findAll() {
+        return current().all();
+    }
+
+    /* Categories whose name contains the text ignoring case, all of them for null. Each text is
+     * counted once per snapshot, over names lowercased when it was loaded. */
+    public long count(String nameContaining) {
+        Snapshot current = current();
+        if (nameContaining == null) {
+            return current.all().size();
+        }
+        String text = nameContaining.toLowerCase(Locale.ROOT);
+        Long cached = current.counts().get(text);
+        if (cached != null) {
+            return cached;
+        }
+        long count = 0;
+        for (String name : current.lowerNames()) {
+            if (name.contains(text)) {
+                count++;
+            }
+        }
+        // Bounded by dropping them all, the next load starts empty anyway
+        if (current.counts().size() >= MAX_COUNTED_TEXTS) {
+            current.counts().clear();
+        }
+        current.counts().put(text, count);
+        return count;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot.get();
+        return isFresh(current) ? current : load(current);
+    }
+
+    // One reader loads and the rest wait for it, unless the snapshot has only expired: then they go on with it meanwhile
+    private Snapshot load(Snapshot stale) {
+        boolean onlyExpired = stale != null && stale.generation() == generation.get();
+        if (onlyExpired) {
+            if (!loadLock.tryLock()) {
+                return stale;
+            }
+        } else {
+            loadLock.lock();
+        }
+        try {
+            Snapshot current = snapshot.get();
+            if (isFresh(current)) {
+                return current;
+            }
+            // Read before the query: a refresh that commits while it runs outdates what it returns
+            long loadedGeneration = generation.get();
+            Snapshot loaded = Snapshot.of(categoryRepository.findAll(), loadedGeneration, System.nanoTime());
+            loads.increment();
+            snapshot.set(loaded);
+            return loaded;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private boolean isFresh(Snapshot snapshot) {
+        return snapshot != null
+                && snapshot.generation() == generation.get()
+                && System.nanoTime() - snapshot.loadedAt() < ttlNanos;
+    }
+
+    // ================================
+    // WRITES
+    // ================================
+
+    // Called by the writes of categories, and by readers that found in the repository what the catalog missed
+    public void refresh() {
+        AfterCommit.run(generation::incrementAndGet);
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("expenses.categories.catalog.loads", loads, LongAdder::sum)
+                .description("Snapshots of the categories loaded from the database")
+                .register(registry);
+        Gauge.builder("expenses.categories.catalog.size", snapshot,
+                        reference -> reference.get() != null ? reference.get().all().size() : 0)
+                .register(registry);
+    }
+
+    private record Snapshot(Map<UUID, CategoryResponseDTO> byId, Map<String, CategoryResponseDTO> byName,
+                            List<CategoryResponseDTO> all, List<String> lowerNames, Map<String, Long> counts,
+                            long generation, long loadedAt) {
+
+        static Snapshot of(Iterable<Category> categories, long generation, long loadedAt) {
+            Map<UUID, CategoryResponseDTO> byId = new HashMap<>();
+            Map<String, CategoryResponseDTO> byName = new HashMap<>();
+            List<CategoryResponseDTO> all = new ArrayList<>();
+            List<String> lowerNames = new ArrayList<>();
+            for (Category category : categories) {
+                CategoryResponseDTO response = CategoryMapper.toResponseDTO(category);
+                byId.put(response.getId(), response);
+                byName.put(response.getName(), response);
+                all.add(response);
+                lowerNames.add(response.getName().toLowerCase(Locale.ROOT));
+            }
+            // Unmodifiable views rather than Map.copyOf, whose get throws on a null key
+            return new Snapshot(Collections.unmodifiableMap(byId), Collections.unmodifiableMap(byName),
+                    Collections.unmodifiableList(all), Collections.unmodifiableList(lowerNames),
+                    new ConcurrentHashMap<>(), generation, loadedAt);
+        }
+    }
+}
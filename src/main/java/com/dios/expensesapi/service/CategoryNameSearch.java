@@ -0,0 +1,16 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/* Search of categories by part of their name, ignoring case, served by an index instead of the
+ * lower(name) like '%x%' that scans the whole table. Results are ranked by trigram similarity to the
+ * text, equally similar ones in the order of the sort and then by id, so that pages do not overlap. */
+public interface CategoryNameSearch {
+
+    List<CategoryResponseDTO> find(String text, Sort sort, long offset, int limit);
+
+    long count(String text);
+}
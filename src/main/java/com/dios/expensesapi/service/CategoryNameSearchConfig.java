@@ -0,0 +1,41 @@
+package com.dios.expensesapi.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.sql.DatabaseMetaData;
+
+// pg_trgm index on PostgreSQL, in-memory n-gram index on any other database or without the extension
+@Configuration
+public class CategoryNameSearchConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryNameSearchConfig.class);
+
+    // Takes the EntityManagerFactory so that Hibernate has created the categories table before it is indexed
+    @Bean
+    public CategoryNameSearch categoryNameSearch(JdbcTemplate jdbcTemplate, CategoryCatalog categoryCatalog,
+                                                 EntityManagerFactory entityManagerFactory) throws MetaDataAccessException {
+        String database = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                DatabaseMetaData::getDatabaseProductName);
+
+        if ("PostgreSQL".equals(database)) {
+            try {
+                jdbcTemplate.execute(TrigramCategoryNameSearch.CREATE_EXTENSION);
+                log.info("Category search uses the pg_trgm index");
+                return new TrigramCategoryNameSearch(jdbcTemplate);
+            } catch (DataAccessException e) {
+                log.warn("Category search uses an in-memory n-gram index, pg_trgm could not be set up: {}", e.getMessage());
+                return new NgramCategoryNameSearch(categoryCatalog);
+            }
+        }
+        log.info("Category search uses an in-memory n-gram index, {} has no pg_trgm", database);
+        return new NgramCategoryNameSearch(categoryCatalog);
+    }
+}
@@ -2,6 +2,7 @@ package com.dios.expensesapi.service;
 
 import com.dios.expensesapi.dto.CategoryDTO;
 import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.CategorySliceResponseDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -12,8 +13,11 @@ public interface CategoryService {
     Iterable<CategoryResponseDTO> findAll();
     Page<CategoryResponseDTO> findAll(Pageable pageable);
     Page<CategoryResponseDTO> findByNameContaining(String name, Pageable pageable);
+    // Page without COUNT(*), nameContaining null for every category
+    CategorySliceResponseDTO findSlice(String nameContaining, Pageable pageable);
     Optional<CategoryResponseDTO> findById(UUID id);
     CategoryResponseDTO create(CategoryDTO expenseDTO);
-    CategoryResponseDTO update(UUID id, CategoryDTO expenseDTO);
+    // expectedVersion comes from If-Match, null for an unconditional update
+    CategoryResponseDTO update(UUID id, CategoryDTO expenseDTO, Long expectedVersion);
     void deleteById(UUID id);
 }
@@ -2,42 +2,52 @@ package com.dios.expensesapi.service;
 
 import com.dios.expensesapi.dto.CategoryDTO;
 import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.CategorySliceResponseDTO;
 import com.dios.expensesapi.exception.DuplicateResourceException;
+import com.dios.expensesapi.exception.PreconditionFailedException;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
 import com.dios.expensesapi.mapper.CategoryMapper;
 import com.dios.expensesapi.mapper.ExpenseMapper;
 import com.dios.expensesapi.model.Category;
 import com.dios.expensesapi.model.User;
 import com.dios.expensesapi.repository.CategoryRepository;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.StreamSupport;
 
 @Service
 @Transactional
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final EntityManager entityManager;
+    private final CategoryCatalog categoryCatalog;
+    private final CategoryNameSearch categoryNameSearch;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository, EntityManager entityManager,
+                               CategoryCatalog categoryCatalog, CategoryNameSearch categoryNameSearch) {
         this.categoryRepository = categoryRepository;
+        this.entityManager = entityManager;
+        this.categoryCatalog = categoryCatalog;
+        this.categoryNameSearch = categoryNameSearch;
     }
 
     @Override
     public Iterable<CategoryResponseDTO> findAll() {
-        return StreamSupport.stream(categoryRepository.findAll().spliterator(), false)
-                .map(CategoryMapper::toResponseDTO)
-                .toList();
+        return categoryCatalog.findAll();
     }
 
     @Override
@@ -48,14 +58,40 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     public Page<CategoryResponseDTO> findByNameContaining(String name, Pageable pageable) {
-        Page<Category> categoryPage = categoryRepository.findByNameContainingIgnoreCase(name, pageable);
-        return categoryPage.map(CategoryMapper::toResponseDTO);
+        List<CategoryResponseDTO> content = categoryNameSearch.find(name, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize());
+        // Counts only when the page does not already tell the total
+        return PageableExecutionUtils.getPage(content, pageable, () -> categoryNameSearch.count(name));
+    }
+
+    @Override
+    public CategorySliceResponseDTO findSlice(String nameContaining, Pageable pageable) {
+        // Counted in the catalog, as old as its last load
+        long approximateTotal = categoryCatalog.count(nameContaining);
+
+        if (nameContaining == null) {
+            Slice<Category> slice = categoryRepository.findSliceBy(pageable);
+            return new CategorySliceResponseDTO(slice.map(CategoryMapper::toResponseDTO).getContent(),
+                    pageable.getPageNumber(), slice.hasNext(), approximateTotal);
+        }
+        // One extra category to know if there is a next page
+        List<CategoryResponseDTO> found = categoryNameSearch.find(nameContaining, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = found.size() > pageable.getPageSize();
+        List<CategoryResponseDTO> content = hasNext ? found.subList(0, pageable.getPageSize()) : found;
+        return new CategorySliceResponseDTO(content, pageable.getPageNumber(), hasNext, approximateTotal);
     }
 
     @Override
     public Optional<CategoryResponseDTO> findById(UUID id) {
-        return categoryRepository.findById(id)
-                .map(CategoryMapper::toResponseDTO);
+        CategoryResponseDTO cached = categoryCatalog.find(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        // Not in the catalog yet, created in another node since its last load
+        Optional<CategoryResponseDTO> category = categoryRepository.findById(id).map(CategoryMapper::toResponseDTO);
+        category.ifPresent(found -> categoryCatalog.refresh());
+        return category;
     }
 
     @Override
@@ -67,6 +103,7 @@ public class CategoryServiceImpl implements CategoryService {
         try {
             Category category = CategoryMapper.toEntity(categoryDTO);
             Category saved = categoryRepository.save(category);
+            categoryCatalog.refresh();
             return CategoryMapper.toResponseDTO(saved);
         } catch (DataIntegrityViolationException e) {
             throw new DuplicateResourceException("Category", "name",  categoryDTO.getName());
@@ -75,7 +112,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    public CategoryResponseDTO update(UUID id, CategoryDTO categoryDTO) {
+    public CategoryResponseDTO update(UUID id, CategoryDTO categoryDTO, Long expectedVersion) {
+        if (expectedVersion != null) {
+            return updateIfVersionMatches(id, categoryDTO, expectedVersion);
+        }
+
         return categoryRepository.findById(id)
                 .map(existing -> {
                     categoryRepository.findByName(categoryDTO.getName())
@@ -87,11 +128,37 @@ public class CategoryServiceImpl implements CategoryService {
                     existing.setName(categoryDTO.getName());
                     existing.setDescription(categoryDTO.getDescription());
                     Category updated = categoryRepository.save(existing);
+                    entityManager.flush(); // The version is incremented on flush, the response carries the new one
+                    categoryCatalog.refresh();
                     return  CategoryMapper.toResponseDTO(updated);
                 })
                 .orElseThrow(() -> new ResourceNotFoundException("Category", id.toString()));
     }
 
+    /* Single UPDATE, nothing is read: the unique constraint on name reports duplicates, and as every
+     * column of the category is in the request the response is built from it and the new version. */
+    private CategoryResponseDTO updateIfVersionMatches(UUID id, CategoryDTO categoryDTO, long expectedVersion) {
+        int updated;
+        try {
+            updated = categoryRepository.updateIfVersionMatches(id, expectedVersion,
+                    categoryDTO.getName(), categoryDTO.getDescription());
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateResourceException("Category", "name",  categoryDTO.getName());
+        }
+
+        if (updated == 0) {
+            throw new PreconditionFailedException("Category", id.toString(), expectedVersion);
+        }
+        categoryCatalog.refresh();
+
+        return CategoryResponseDTO.builder()
+                .id(id)
+                .name(categoryDTO.getName())
+                .description(categoryDTO.getDescription())
+                .version(expectedVersion + 1)
+                .build();
+    }
+
 
     @Override
     public void deleteById(UUID id) {
@@ -99,5 +166,6 @@ public class CategoryServiceImpl implements CategoryService {
             throw new ResourceNotFoundException("Category", id.toString());
         }
         categoryRepository.deleteById(id);
+        categoryCatalog.refresh();
     }
 }
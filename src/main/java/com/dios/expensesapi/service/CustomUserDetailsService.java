@@ -1,19 +1,39 @@
 package com.dios.expensesapi.service;
 
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.model.User;
 import com.dios.expensesapi.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 /* Servicio para cargar un usuario */
 public class CustomUserDetailsService implements UserDetailsService {
 
+    // Cached value for users that are missing or disabled, no token version matches it
+    private static final int REVOKED = -1;
+
     private final UserRepository userRepository;
+    private final long tokenVersionTtlNanos;
+    private final int tokenVersionCacheSize;
+
+    // Current token version per user, so checking a token does not query the users table on every request
+    private final ConcurrentHashMap<UUID, CachedTokenVersion> tokenVersions = new ConcurrentHashMap<>();
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${jwt.token-version-cache-ttl:60s}") Duration tokenVersionTtl,
+                                    @Value("${jwt.token-version-cache-size:100000}") int tokenVersionCacheSize) {
         this.userRepository = userRepository;
+        this.tokenVersionTtlNanos = tokenVersionTtl.toNanos();
+        this.tokenVersionCacheSize = tokenVersionCacheSize;
     }
 
     @Override
@@ -22,4 +42,35 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + email));
     }
 
+    /* Loads the user from the database and builds the request principal. Empty if the account is disabled. */
+    public Optional<AuthenticatedUser> loadAuthenticatedUser(String email) {
+        return userRepository.findByEmail(email)
+                .filter(User::isEnabled)
+                .map(AuthenticatedUser::from);
+    }
+
+    /* Checks the version carried by a token against the user's current one. Disabling the account or
+     * increasing users.token_version in the database rejects older tokens once the cached entry expires,
+     * within jwt.token-version-cache-ttl. */
+    public boolean isTokenVersionCurrent(UUID userId, int tokenVersion) {
+        long now = System.nanoTime();
+        CachedTokenVersion cached = tokenVersions.get(userId);
+
+        if (cached == null || now - cached.loadedAt() > tokenVersionTtlNanos) {
+            int current = userRepository.findActiveTokenVersion(userId).orElse(REVOKED);
+            cached = new CachedTokenVersion(current, now);
+            if (tokenVersionCacheSize > 0) {
+                if (tokenVersions.size() >= tokenVersionCacheSize) {
+                    CacheEviction.evict(tokenVersions, tokenVersionCacheSize,
+                            entry -> now - entry.loadedAt() > tokenVersionTtlNanos);
+                }
+                tokenVersions.put(userId, cached);
+            }
+        }
+
+        return cached.version() != REVOKED && cached.version() == tokenVersion;
+    }
+
+    private record CachedTokenVersion(int version, long loadedAt) {
+    }
 }
@@ -0,0 +1,279 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.repository.CategoryRepository;
+import com.dios.expensesapi.repository.ExpenseRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/* Columnar copy of every user's expenses (ExpenseColumns) to summarize any range of days in memory.
+ * A user's columns are loaded on their first summary and then kept in step by the writes of
+ * ExpenseServiceImpl, applied by expense id once their transaction commits: a rolled back write never
+ * reaches the cache, and a change the load already read is simply written again. When the columns of
+ * all users go over the memory budget, the least recently used ones are dropped until next time.
+ * It is a single-node cache: only the writes of this node reach it. Columns are loaded again once
+ * they are older than maxAge, which bounds how long the writes of other nodes stay unseen; deployments
+ * with several nodes that cannot accept that should turn it off with max-bytes=0. */
+@Service
+public class ExpenseColumnarCache implements MeterBinder {
+
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+    private final CategoryCatalog categoryCatalog;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong accesses = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpenseColumnarCache(ExpenseRepository expenseRepository, CategoryRepository categoryRepository,
+                                CategoryCatalog categoryCatalog, PlatformTransactionManager transactionManager,
+                                @Value("${expenses.analytics.cache.max-bytes:67108864}") long maxBytes,
+                                @Value("${expenses.analytics.cache.max-age:1m}") Duration maxAge) {
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+        this.categoryCatalog = categoryCatalog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    // ================================
+    // SUMMARIES
+    // ================================
+
+    // The columns only keep the day of every expense, so ranges have to start and end at midnight
+    public boolean covers(LocalDateTime from, LocalDateTime to) {
+        return maxBytes > 0
+                && from.toLocalTime().equals(LocalTime.MIDNIGHT)
+                && to.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+
+    // Same result as ExpenseSearchRepository.summarize, the database is only read to load the user
+    public List<ExpenseSummaryDTO> summarize(UUID userId, LocalDateTime from, LocalDateTime to,
+                                             ExpenseSummaryDTO.GroupBy groupBy) {
+        List<ExpenseSummaryDTO> summary = null;
+        while (summary == null) {
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+            synchronized (entry) {
+                // Evicted between the lookup and the lock, the next lookup creates a new entry
+                if (entry.evicted) {
+                    continue;
+                }
+                if (entry.columns == null || System.nanoTime() - entry.loadedAt >= maxAgeNanos) {
+                    misses.increment();
+                    long loadedAt = System.nanoTime();
+                    entry.columns = load(userId);
+                    entry.loadedAt = loadedAt;
+                } else {
+                    hits.increment();
+                }
+                entry.lastAccess = accesses.incrementAndGet();
+                summary = entry.columns.summarize(from.toLocalDate(), to.toLocalDate(), groupBy);
+                account(entry);
+            }
+        }
+        evictOverBudget();
+
+        if (groupBy == ExpenseSummaryDTO.GroupBy.CATEGORY) {
+            nameCategories(summary);
+        }
+        return summary;
+    }
+
+    private ExpenseColumns load(UUID userId) {
+        return transactionTemplate.execute(status -> {
+            ExpenseColumns columns = new ExpenseColumns(0);
+            try (Stream<ExpenseMonthlyRollup.Contribution> rows = expenseRepository.streamContributionsByUserId(userId)) {
+                rows.forEach(row -> columns.add(row.expenseId(), row.categoryId(), row.expenseDate().toLocalDate(),
+                        row.cents()));
+            }
+            return columns;
+        });
+    }
+
+    // Names from the catalog, the database only for those it misses, then the order of the database summary
+    private void nameCategories(List<ExpenseSummaryDTO> summary) {
+        Set<UUID> missing = new HashSet<>();
+        for (ExpenseSummaryDTO row : summary) {
+            CategoryResponseDTO category = categoryCatalog.find(row.getCategoryId());
+            if (category != null) {
+                row.setCategoryName(category.getName());
+            } else {
+                missing.add(row.getCategoryId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<UUID, String> names = new HashMap<>();
+            for (Category category : categoryRepository.findAllById(missing)) {
+                names.put(category.getId(), category.getName());
+            }
+            summary.stream()
+                    .filter(row -> missing.contains(row.getCategoryId()))
+                    .forEach(row -> row.setCategoryName(names.get(row.getCategoryId())));
+            categoryCatalog.refresh();
+        }
+        summary.sort(Comparator.comparing(ExpenseSummaryDTO::getTotal).reversed()
+                .thenComparing(ExpenseSummaryDTO::getCategoryName, Comparator.nullsLast(Comparator.naturalOrder())));
+    }
+
+    // ================================
+    // WRITES
+    // ================================
+
+    /* Applies a write of the expenses after its transaction commits, right away when there is
+     * none: removed expenses are dropped, then added ones are put by id, so an update is its previous
+     * contribution removed and the new one added. Users whose columns are not loaded are skipped,
+     * their load will read the committed rows. */
+    public void apply(Collection<ExpenseMonthlyRollup.Contribution> added,
+                      Collection<ExpenseMonthlyRollup.Contribution> removed) {
+        if (maxBytes <= 0 || (added.isEmpty() && removed.isEmpty())) {
+            return;
+        }
+        List<ExpenseMonthlyRollup.Contribution> toAdd = List.copyOf(added);
+        List<ExpenseMonthlyRollup.Contribution> toRemove = List.copyOf(removed);
+        AfterCommit.run(() -> {
+            toRemove.forEach(contribution -> write(contribution, false));
+            toAdd.forEach(contribution -> write(contribution, true));
+            evictOverBudget();
+        });
+    }
+
+    public void clear() {
+        entries.forEach(this::evict);
+    }
+
+    private void write(ExpenseMonthlyRollup.Contribution contribution, boolean add) {
+        Entry entry = entries.get(contribution.userId());
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.columns == null) {
+                return;
+            }
+            if (add) {
+                entry.columns.put(contribution.expenseId(), contribution.categoryId(),
+                        contribution.expenseDate().toLocalDate(), contribution.cents());
+            } else {
+                entry.columns.remove(contribution.expenseId());
+            }
+            account(entry);
+        }
+    }
+
+    // ================================
+    // MEMORY BUDGET
+    // ================================
+
+    // Called with the entry locked, after its columns have been loaded or written
+    private void account(Entry entry) {
+        long current = entry.columns != null ? entry.columns.bytes() : 0;
+        bytes.addAndGet(current - entry.bytes);
+        entry.bytes = current;
+    }
+
+    private void evictOverBudget() {
+        if (bytes.get() <= maxBytes) {
+            return;
+        }
+        List<Map.Entry<UUID, Entry>> leastRecentFirst = new ArrayList<>(entries.entrySet());
+        leastRecentFirst.sort(Comparator.comparingLong(mapEntry -> mapEntry.getValue().lastAccess));
+        for (Map.Entry<UUID, Entry> mapEntry : leastRecentFirst) {
+            if (bytes.get() <= maxBytes) {
+                break;
+            }
+            evict(mapEntry.getKey(), mapEntry.getValue());
+        }
+    }
+
+    // Out of the map first, so nobody finds it any more, then released under its lock
+    private void evict(UUID userId, Entry entry) {
+        if (!entries.remove(userId, entry)) {
+            return;
+        }
+        synchronized (entry) {
+            entry.evicted = true;
+            entry.columns = null;
+            account(entry);
+        }
+        evictions.increment();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("expenses.analytics.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Summaries aggregated from columns already in memory")
+                .register(registry);
+        FunctionCounter.builder("expenses.analytics.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Summaries that had to load the user's expenses first")
+                .register(registry);
+        FunctionCounter.builder("expenses.analytics.cache.evictions", evictions, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("expenses.analytics.cache.size", entries, ConcurrentHashMap::size)
+                .register(registry);
+        Gauge.builder("expenses.analytics.cache.bytes", bytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    // Guarded by its own monitor; lastAccess is read without it to order the evictions
+    private static final class Entry {
+        private ExpenseColumns columns;
+        // System.nanoTime() when the load started, writes committed since then are in the columns
+        private long loadedAt;
+        private long bytes;
+        private boolean evicted;
+        private volatile long lastAccess;
+    }
+}
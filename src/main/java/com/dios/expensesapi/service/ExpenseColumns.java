@@ -0,0 +1,228 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/* The expenses of one user as parallel primitive arrays: row i is the expense (idMsb[i], idLsb[i]) of
+ * amountCents[i] cents on the epoch day epochDays[i], in the category categoryIds[categories[i]].
+ * Summaries are plain loops over the arrays, nothing is allocated per row. Not thread safe,
+ * ExpenseColumnarCache guards every instance with its own lock. */
+final class ExpenseColumns {
+
+    // Bytes per row over the five arrays
+    static final int ROW_BYTES = 8 + 8 + 8 + 4 + 2;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] idMsb;
+    private long[] idLsb;
+    private long[] amountCents;
+    private int[] epochDays;
+    private short[] categories;
+    private int size;
+
+    // Category dictionary, short indexes into categoryIds
+    private final List<UUID> categoryIds = new ArrayList<>();
+    private final Map<UUID, Short> categoryIndexes = new HashMap<>();
+
+    ExpenseColumns(int expectedSize) {
+        int capacity = Math.max(INITIAL_CAPACITY, expectedSize);
+        idMsb = new long[capacity];
+        idLsb = new long[capacity];
+        amountCents = new long[capacity];
+        epochDays = new int[capacity];
+        categories = new short[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Approximate heap used by the arrays and the dictionary
+    long bytes() {
+        return (long) idMsb.length * ROW_BYTES + categoryIds.size() * 64L;
+    }
+
+    // ================================
+    // WRITES
+    // ================================
+
+    // Appends without looking for the id, for the rows of a load, which are unique
+    void add(UUID id, UUID categoryId, LocalDate date, long cents) {
+        if (size == idMsb.length) {
+            grow();
+        }
+        int row = size++;
+        idMsb[row] = id.getMostSignificantBits();
+        idLsb[row] = id.getLeastSignificantBits();
+        set(row, categoryId, date, cents);
+    }
+
+    // Adds the expense or overwrites it if its id is already there, so applying a change twice is harmless
+    void put(UUID id, UUID categoryId, LocalDate date, long cents) {
+        int row = indexOf(id);
+        if (row < 0) {
+            add(id, categoryId, date, cents);
+        } else {
+            set(row, categoryId, date, cents);
+        }
+    }
+
+    // The last row takes the place of the removed one, order is not kept
+    void remove(UUID id) {
+        int row = indexOf(id);
+        if (row < 0) {
+            return;
+        }
+        int last = --size;
+        idMsb[row] = idMsb[last];
+        idLsb[row] = idLsb[last];
+        amountCents[row] = amountCents[last];
+        epochDays[row] = epochDays[last];
+        categories[row] = categories[last];
+    }
+
+    private void set(int row, UUID categoryId, LocalDate date, long cents) {
+        amountCents[row] = cents;
+        epochDays[row] = (int) date.toEpochDay();
+        categories[row] = categoryIndex(categoryId);
+    }
+
+    private int indexOf(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        for (int i = 0; i < size; i++) {
+            if (idLsb[i] == lsb && idMsb[i] == msb) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private short categoryIndex(UUID categoryId) {
+        Short index = categoryIndexes.get(categoryId);
+        if (index == null) {
+            if (categoryIds.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("More than " + Short.MAX_VALUE + " categories in one user's expenses");
+            }
+            index = (short) categoryIds.size();
+            categoryIds.add(categoryId);
+            categoryIndexes.put(categoryId, index);
+        }
+        return index;
+    }
+
+    private void grow() {
+        int capacity = idMsb.length + (idMsb.length >> 1);
+        idMsb = Arrays.copyOf(idMsb, capacity);
+        idLsb = Arrays.copyOf(idLsb, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+    }
+
+    // ================================
+    // SUMMARIES
+    // ================================
+
+    /* Same buckets as ExpenseSearchRepository.summarize for the days [from, to). Period buckets are
+     * slots of an array spanning the dates present in the range, in chronological order; categories
+     * are slots of the dictionary, returned without name nor order. */
+    List<ExpenseSummaryDTO> summarize(LocalDate from, LocalDate to, ExpenseSummaryDTO.GroupBy groupBy) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+
+        // Bucket numbers of the first and last rows in range, so the arrays only span actual data
+        int lowest = Integer.MAX_VALUE;
+        int highest = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day >= fromDay && day < toDay) {
+                int bucket = bucket(groupBy, i);
+                lowest = Math.min(lowest, bucket);
+                highest = Math.max(highest, bucket);
+            }
+        }
+        if (lowest > highest) {
+            return List.of();
+        }
+
+        int buckets = highest - lowest + 1;
+        long[] counts = new long[buckets];
+        long[] totals = new long[buckets];
+        long[] mins = new long[buckets];
+        long[] maxs = new long[buckets];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        Arrays.fill(maxs, Long.MIN_VALUE);
+
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day >= fromDay && day < toDay) {
+                int slot = bucket(groupBy, i) - lowest;
+                long cents = amountCents[i];
+                counts[slot]++;
+                totals[slot] += cents;
+                if (cents < mins[slot]) {
+                    mins[slot] = cents;
+                }
+                if (cents > maxs[slot]) {
+                    maxs[slot] = cents;
+                }
+            }
+        }
+
+        List<ExpenseSummaryDTO> summary = new ArrayList<>();
+        for (int slot = 0; slot < buckets; slot++) {
+            if (counts[slot] == 0) {
+                continue;
+            }
+            int bucket = slot + lowest;
+            if (groupBy == ExpenseSummaryDTO.GroupBy.CATEGORY) {
+                summary.add(new ExpenseSummaryDTO(categoryIds.get(bucket), null, counts[slot], totals[slot],
+                        mins[slot], maxs[slot]));
+            } else {
+                summary.add(new ExpenseSummaryDTO(periodStart(groupBy, bucket), counts[slot], totals[slot],
+                        mins[slot], maxs[slot]));
+            }
+        }
+        return summary;
+    }
+
+    private int bucket(ExpenseSummaryDTO.GroupBy groupBy, int row) {
+        int day = epochDays[row];
+        return switch (groupBy) {
+            case DAY -> day;
+            // 1970-01-01 was a Thursday, three days after a Monday
+            case WEEK -> day - Math.floorMod(day + 3, 7);
+            case MONTH -> monthIndex(day);
+            case CATEGORY -> categories[row];
+        };
+    }
+
+    private static LocalDate periodStart(ExpenseSummaryDTO.GroupBy groupBy, int bucket) {
+        if (groupBy == ExpenseSummaryDTO.GroupBy.MONTH) {
+            return LocalDate.of(Math.floorDiv(bucket, 12), Math.floorMod(bucket, 12) + 1, 1);
+        }
+        return LocalDate.ofEpochDay(bucket);
+    }
+
+    /* year * 12 + month - 1 of an epoch day with integer arithmetic only (civil_from_days of
+     * H. Hinnant's date algorithms), LocalDate.ofEpochDay would allocate for every row. */
+    static int monthIndex(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+}
@@ -0,0 +1,293 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.exception.InvalidDataException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/* Reads expenses from a CSV (RFC 4180: comma separated, fields may be quoted, "" escapes a quote and
+ * quoted fields may span lines) one record at a time, so only the current record is in memory. The
+ * first line is the header, columns are matched by name in any order and unknown ones are ignored.
+ * A record is cut at maxRecordChars characters or maxRecordLines lines, so a quote that is never
+ * closed cannot pull the rest of the file into memory: such a record fails toExpenseDTO() and reading
+ * goes on with the next line. */
+final class ExpenseCsvReader implements Closeable {
+
+    static final String EXPENSE_DATE = "expenseDate";
+    static final String CATEGORY_ID = "categoryId";
+    static final String CATEGORY_NAME = "categoryName";
+    static final String AMOUNT = "amount";
+    static final String DESCRIPTION = "description";
+
+    static final int DEFAULT_MAX_RECORD_CHARS = 64 * 1024;
+    static final int DEFAULT_MAX_RECORD_LINES = 100;
+
+    private static final char BOM = '\uFEFF';
+
+    private final Reader reader;
+    private final int maxRecordChars;
+    private final int maxRecordLines;
+    private final String header;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private long lineNumber;
+
+    // Lines are read from this buffer, never past maxRecordChars
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int end;
+    private boolean skipLineFeed;
+
+    ExpenseCsvReader(InputStream csv) throws IOException {
+        this(csv, DEFAULT_MAX_RECORD_CHARS, DEFAULT_MAX_RECORD_LINES);
+    }
+
+    ExpenseCsvReader(InputStream csv, int maxRecordChars, int maxRecordLines) throws IOException {
+        this.reader = new InputStreamReader(csv, StandardCharsets.UTF_8);
+        this.maxRecordChars = maxRecordChars;
+        this.maxRecordLines = maxRecordLines;
+
+        Line firstLine = readLine(maxRecordChars);
+        if (firstLine == null) {
+            throw new InvalidDataException("CSV is empty, a header line is required");
+        }
+        if (firstLine.truncated()) {
+            throw new InvalidDataException("CSV header is longer than " + maxRecordChars + " characters");
+        }
+        lineNumber = 1;
+        String text = firstLine.text();
+        this.header = text.isEmpty() || text.charAt(0) != BOM ? text : text.substring(1);
+
+        List<String> names = split(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.putIfAbsent(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!hasColumn(EXPENSE_DATE) || !hasColumn(AMOUNT) || (!hasColumn(CATEGORY_ID) && !hasColumn(CATEGORY_NAME))) {
+            throw new InvalidDataException(
+                    "CSV header must have expenseDate, amount and categoryId or categoryName columns: " + header);
+        }
+    }
+
+    // Header names are matched ignoring case
+    private boolean hasColumn(String column) {
+        return columns.containsKey(column.toLowerCase(Locale.ROOT));
+    }
+
+    String getHeader() {
+        return header;
+    }
+
+    // Next record, null at the end of the file. Blank lines are skipped.
+    Record next() throws IOException {
+        Line line;
+        do {
+            line = readLine(maxRecordChars);
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.text().isBlank());
+
+        long startLine = lineNumber;
+        StringBuilder raw = new StringBuilder(line.text());
+        boolean truncated = line.truncated();
+        // An odd number of quotes leaves a quoted field open, it goes on in the next line. Only the
+        // quotes of each new line are counted, the parity of the lines before is kept
+        boolean open = countQuotes(line.text()) % 2 != 0;
+        int lines = 1;
+        String error = null;
+        while (open && !truncated) {
+            if (lines == maxRecordLines) {
+                error = "Record spans more than " + maxRecordLines + " lines, a quote may not be closed";
+                break;
+            }
+            Line continuation = readLine(maxRecordChars - raw.length() - 1);
+            if (continuation == null) {
+                error = "Quoted field is not closed before the end of the file";
+                break;
+            }
+            lineNumber++;
+            lines++;
+            raw.append('\n').append(continuation.text());
+            truncated = continuation.truncated();
+            open ^= countQuotes(continuation.text()) % 2 != 0;
+        }
+        if (truncated) {
+            error = "Record is longer than " + maxRecordChars + " characters";
+        }
+
+        String text = raw.toString();
+        return new Record(startLine, text, error == null ? split(text) : List.of(), error);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /* Next line without its terminator (\n, \r\n or \r), null at the end of the file. Characters past
+     * the limit are skipped up to the end of the line and the line is marked as truncated. */
+    private Line readLine(int limit) throws IOException {
+        StringBuilder text = new StringBuilder();
+        boolean truncated = false;
+        boolean read = false;
+        while (fill()) {
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            int start = position;
+            while (position < end && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            int length = position - start;
+            int kept = Math.max(0, Math.min(length, limit - text.length()));
+            text.append(buffer, start, kept);
+            truncated |= kept < length;
+            read |= length > 0;
+            if (position < end) {
+                skipLineFeed = buffer[position] == '\r';
+                position++;
+                return new Line(text.toString(), truncated);
+            }
+        }
+        return read ? new Line(text.toString(), truncated) : null;
+    }
+
+    // Whether there are characters left, refilling the buffer when it has been consumed
+    private boolean fill() throws IOException {
+        if (position < end) {
+            return true;
+        }
+        int count = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        end = Math.max(count, 0);
+        return end > 0;
+    }
+
+    private record Line(String text, boolean truncated) {
+    }
+
+    private static int countQuotes(String text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    final class Record {
+
+        private final long lineNumber;
+        private final String raw;
+        private final List<String> fields;
+        private final String error;
+
+        private Record(long lineNumber, String raw, List<String> fields, String error) {
+            this.lineNumber = lineNumber;
+            this.raw = raw;
+            this.fields = fields;
+            this.error = error;
+        }
+
+        long getLineNumber() {
+            return lineNumber;
+        }
+
+        // The record as it was in the file, to copy it to the rejected rows. Cut at the limits when too long
+        String getRaw() {
+            return raw;
+        }
+
+        // Value of a column, null when the column is missing or the field is empty
+        String get(String column) {
+            Integer index = columns.get(column.toLowerCase(Locale.ROOT));
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        /* Converts the record, InvalidDataException when a value cannot be parsed or the record went
+         * past the limits. Dates are ISO local date times as in the JSON API, a date alone means the
+         * start of that day. */
+        ExpenseDTO toExpenseDTO() {
+            if (error != null) {
+                throw new InvalidDataException(error);
+            }
+            ExpenseDTO expenseDTO = new ExpenseDTO();
+            expenseDTO.setExpenseDate(parse(EXPENSE_DATE, ExpenseCsvReader::parseDate));
+            expenseDTO.setCategoryId(parse(CATEGORY_ID, UUID::fromString));
+            expenseDTO.setCategoryName(get(CATEGORY_NAME));
+            expenseDTO.setAmount(parse(AMOUNT, BigDecimal::new));
+            expenseDTO.setDescription(get(DESCRIPTION));
+            return expenseDTO;
+        }
+
+        private <T> T parse(String column, Function<String, T> parser) {
+            String value = get(column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return parser.apply(value);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new InvalidDataException(String.format("%s: invalid value '%s'", column, value));
+            }
+        }
+    }
+
+    private static LocalDateTime parseDate(String value) {
+        return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+    }
+}
@@ -0,0 +1,21 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ImportProgressDTO;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/* CSV imports of expenses. An import runs in the thread of the request that uploads the file, other
+ * requests of the same user can follow its progress meanwhile. */
+public interface ExpenseImportService {
+    // Reads the whole CSV and returns the final state of the import
+    ImportProgressDTO importCsv(UUID userId, InputStream csv);
+    // Running and recently finished imports of the user, newest first
+    List<ImportProgressDTO> findAll(UUID userId);
+    Optional<ImportProgressDTO> findById(UUID userId, UUID importId);
+    // CSV with the rejected rows of the import, empty when no row was rejected
+    Optional<Path> findRejectedRows(UUID userId, UUID importId);
+}
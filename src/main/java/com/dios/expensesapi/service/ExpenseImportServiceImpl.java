@@ -0,0 +1,244 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ImportProgressDTO;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.repository.ExpenseBulkLoader;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* The CSV is read record by record from the request stream. Valid rows are gathered in chunks and
+ * every chunk is loaded by ExpenseBulkLoader in its own transaction, so memory and lock time do not
+ * grow with the file: a failure only rolls back the current chunk, the previous ones stay imported. */
+@Service
+public class ExpenseImportServiceImpl implements ExpenseImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseImportServiceImpl.class);
+
+    // Finished imports kept per user to be queried, with their rejected rows file
+    private static final int KEPT_IMPORTS = 10;
+
+    private final ExpenseBulkLoader expenseBulkLoader;
+    private final ExpenseRollupService expenseRollupService;
+    private final ExpenseColumnarCache expenseColumnarCache;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Path rejectedRowsDirectory;
+    private final int maxRecordChars;
+    private final int maxRecordLines;
+    private final Map<UUID, Deque<ImportProgress>> imports = new ConcurrentHashMap<>();
+
+    public ExpenseImportServiceImpl(ExpenseBulkLoader expenseBulkLoader, ExpenseRollupService expenseRollupService,
+                                    ExpenseColumnarCache expenseColumnarCache, Validator validator,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${expenses.import.chunk-size:1000}") int chunkSize,
+                                    @Value("${expenses.import.rejected-dir:${java.io.tmpdir}/expenses-imports}") Path rejectedRowsDirectory,
+                                    @Value("${expenses.import.max-record-chars:65536}") int maxRecordChars,
+                                    @Value("${expenses.import.max-record-lines:100}") int maxRecordLines) {
+        this.expenseBulkLoader = expenseBulkLoader;
+        this.expenseRollupService = expenseRollupService;
+        this.expenseColumnarCache = expenseColumnarCache;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.rejectedRowsDirectory = rejectedRowsDirectory;
+        this.maxRecordChars = maxRecordChars;
+        this.maxRecordLines = maxRecordLines;
+    }
+
+    @Override
+    public ImportProgressDTO importCsv(UUID userId, InputStream csv) {
+        ImportProgress progress = register(userId);
+
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(csv, maxRecordChars, maxRecordLines);
+             RejectedRowsWriter rejectedRows = new RejectedRowsWriter(progress, reader.getHeader())) {
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+
+            for (ExpenseCsvReader.Record record = reader.next(); record != null; record = reader.next()) {
+                progress.rowRead();
+                try {
+                    ExpenseDTO expenseDTO = record.toExpenseDTO();
+                    String error = ValidationMessages.of(validator, expenseDTO);
+                    if (error != null) {
+                        rejectedRows.write(record, error);
+                        continue;
+                    }
+                    chunk.add(new ImportRow(record, expenseDTO));
+                } catch (InvalidDataException e) {
+                    rejectedRows.write(record, e.getMessage());
+                    continue;
+                }
+
+                if (chunk.size() == chunkSize) {
+                    commit(userId, chunk, rejectedRows, progress);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commit(userId, chunk, rejectedRows, progress);
+            }
+        } catch (IOException e) {
+            progress.fail(e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            progress.fail(e.getMessage());
+            throw e;
+        }
+        // Only once the rejected rows file is closed, it can be downloaded as soon as the import shows completed
+        progress.complete();
+
+        ImportProgressDTO result = progress.toDTO();
+        log.info("Import {} finished: {} rows read, {} imported, {} rejected",
+                result.getId(), result.getRowsRead(), result.getImported(), result.getRejected());
+        return result;
+    }
+
+    /* One transaction per chunk, the monthly rollup and the analytics columns are updated in it with
+     * the expenses the loader inserted, as it inserted them. Rows whose category does not exist are left
+     * out by the loader and written to the rejected rows once the chunk is committed. */
+    private void commit(UUID userId, List<ImportRow> chunk, RejectedRowsWriter rejectedRows,
+                        ImportProgress progress) throws IOException {
+        List<ExpenseBulkLoader.Row> rows = chunk.stream()
+                .map(row -> new ExpenseBulkLoader.Row(row.record().getLineNumber(), row.expenseDTO()))
+                .toList();
+
+        Set<Long> missingCategory = transactionTemplate.execute(status -> {
+            ExpenseBulkLoader.Result result = expenseBulkLoader.load(userId, rows);
+            expenseRollupService.added(result.loaded());
+            expenseColumnarCache.apply(result.loaded(), List.of());
+            return result.missingCategory();
+        });
+
+        progress.imported(chunk.size() - missingCategory.size());
+        for (ImportRow row : chunk) {
+            if (missingCategory.contains(row.record().getLineNumber())) {
+                ExpenseDTO expenseDTO = row.expenseDTO();
+                rejectedRows.write(row.record(), "Category not found: "
+                        + (expenseDTO.getCategoryId() != null ? expenseDTO.getCategoryId() : expenseDTO.getCategoryName()));
+            }
+        }
+    }
+
+    @Override
+    public List<ImportProgressDTO> findAll(UUID userId) {
+        Deque<ImportProgress> userImports = imports.get(userId);
+        if (userImports == null) {
+            return List.of();
+        }
+        synchronized (userImports) {
+            return userImports.stream().map(ImportProgress::toDTO).toList();
+        }
+    }
+
+    @Override
+    public Optional<ImportProgressDTO> findById(UUID userId, UUID importId) {
+        return find(userId, importId).map(ImportProgress::toDTO);
+    }
+
+    @Override
+    public Optional<Path> findRejectedRows(UUID userId, UUID importId) {
+        return find(userId, importId)
+                .map(ImportProgress::getRejectedRows)
+                .filter(Files::exists);
+    }
+
+    private Optional<ImportProgress> find(UUID userId, UUID importId) {
+        Deque<ImportProgress> userImports = imports.get(userId);
+        if (userImports == null) {
+            return Optional.empty();
+        }
+        synchronized (userImports) {
+            return userImports.stream().filter(progress -> progress.getId().equals(importId)).findFirst();
+        }
+    }
+
+    // Adds the import to the user's list, dropping the oldest finished ones and their files
+    private ImportProgress register(UUID userId) {
+        ImportProgress progress = new ImportProgress(rejectedRowsDirectory);
+        Deque<ImportProgress> userImports = imports.computeIfAbsent(userId, id -> new ArrayDeque<>());
+        synchronized (userImports) {
+            userImports.addFirst(progress);
+            List<ImportProgress> evicted = userImports.stream()
+                    .skip(KEPT_IMPORTS)
+                    .filter(old -> !old.isRunning())
+                    .toList();
+            evicted.forEach(old -> {
+                userImports.remove(old);
+                deleteQuietly(old.getRejectedRows());
+            });
+        }
+        return progress;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete rejected rows file {}", file, e);
+        }
+    }
+
+    private record ImportRow(ExpenseCsvReader.Record record, ExpenseDTO expenseDTO) {
+    }
+
+    /* Rejected rows go to a CSV with the line number and the reason in front of the original record,
+     * so it can be fixed and imported again. The file is only created for the first rejected row. */
+    private static final class RejectedRowsWriter implements Closeable {
+
+        private final ImportProgress progress;
+        private final String header;
+        private BufferedWriter writer;
+
+        RejectedRowsWriter(ImportProgress progress, String header) {
+            this.progress = progress;
+            this.header = header;
+        }
+
+        void write(ExpenseCsvReader.Record record, String reason) throws IOException {
+            if (writer == null) {
+                Files.createDirectories(progress.getRejectedRows().getParent());
+                writer = Files.newBufferedWriter(progress.getRejectedRows(), StandardCharsets.UTF_8);
+                writer.write("line,error," + header);
+                writer.newLine();
+            }
+            writer.write(record.getLineNumber() + "," + quote(reason) + "," + record.getRaw());
+            writer.newLine();
+            progress.rejected();
+        }
+
+        private static String quote(String value) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.BatchItemResultDTO;
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.exception.IngestionQueueFullException;
+import com.dios.expensesapi.exception.IngestionUnavailableException;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/* Write-behind mode of expense creation. Requests are put in a bounded lock-free queue and a single
+ * writer thread takes them in groups: it waits up to the linger time for the group to fill and creates
+ * up to max-batch-size expenses with ExpenseService.createGroup, one transaction and one connection
+ * for the whole group instead of one per request. Each caller's future completes once the group is
+ * committed, so a created expense is always durable. When the queue is full new requests are refused
+ * with IngestionQueueFullException (429); a caller that waits longer than the timeout, or arrives while
+ * the queue stops, gets IngestionUnavailableException (503). A caller that times out withdraws its
+ * expense unless the writer has already taken it, so a 503 always means nothing was created and a
+ * retry cannot create it twice. Disabled by default. */
+@Component
+public class ExpenseIngestionQueue implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseIngestionQueue.class);
+
+    private final ExpenseService expenseService;
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long timeoutNanos;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the whole queue, the depth is counted apart
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile DistributionSummary batchSizes;
+    private volatile boolean running;
+    private Thread writer;
+
+    public ExpenseIngestionQueue(ExpenseService expenseService,
+                                 @Value("${expenses.ingestion.enabled:false}") boolean enabled,
+                                 @Value("${expenses.ingestion.capacity:10000}") int capacity,
+                                 @Value("${expenses.ingestion.max-batch-size:200}") int maxBatchSize,
+                                 @Value("${expenses.ingestion.linger:5ms}") Duration linger,
+                                 @Value("${expenses.ingestion.timeout:10s}") Duration timeout) {
+        this.expenseService = expenseService;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("expense-ingestion-writer").daemon().start(this::drain);
+        log.info("Expense ingestion queue started: capacity {}, groups of up to {}, linger {} ms",
+                capacity, maxBatchSize, Duration.ofNanos(lingerNanos).toMillis());
+    }
+
+    // Stops taking requests and commits the ones already queued before the application closes
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+
+        // Requests that raced with the shutdown and arrived after the writer's last poll
+        for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+            pending.future().completeExceptionally(stopped());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /* Queues the expense and waits until it is committed, failures are rethrown as the service would.
+     * On timeout the expense is withdrawn while the writer has not taken it. Once taken, its group is
+     * being committed and the caller waits for the outcome: the writer completes every group it takes. */
+    public ExpenseResponseDTO create(UUID userId, ExpenseDTO expenseDTO) {
+        Pending pending = enqueue(userId, expenseDTO);
+        try {
+            try {
+                return pending.future().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (pending.claim()) {
+                    throw new IngestionUnavailableException(String.format(
+                            "Expense was not committed within %d ms and was not created, retry later",
+                            Duration.ofNanos(timeoutNanos).toMillis()));
+                }
+                return pending.future().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the expense to be committed", e);
+        }
+    }
+
+    public CompletableFuture<ExpenseResponseDTO> submit(UUID userId, ExpenseDTO expenseDTO) {
+        return enqueue(userId, expenseDTO).future();
+    }
+
+    private Pending enqueue(UUID userId, ExpenseDTO expenseDTO) {
+        if (!running) {
+            throw stopped();
+        }
+        // The slot is reserved before the offer, so the queue never holds more than capacity requests
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            rejected.increment();
+            throw new IngestionQueueFullException(capacity);
+        }
+
+        Pending pending = new Pending(new ExpenseService.NewExpense(userId, expenseDTO), new CompletableFuture<>(),
+                new AtomicBoolean());
+        queue.offer(pending);
+        /* stop() may have run its last poll between the check above and the offer. Whoever takes the
+         * request out of the queue completes it: the writer, stop() or, if it is still there, this call */
+        if (!running && queue.remove(pending)) {
+            depth.decrementAndGet();
+            throw stopped();
+        }
+        LockSupport.unpark(writer);
+        return pending;
+    }
+
+    private static IngestionUnavailableException stopped() {
+        return new IngestionUnavailableException("Expense ingestion queue is stopped, retry later");
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            Pending first = queue.poll();
+            if (first == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            List<Pending> group = new ArrayList<>(maxBatchSize);
+            group.add(first);
+            long deadline = System.nanoTime() + lingerNanos;
+            while (group.size() < maxBatchSize) {
+                Pending next = queue.poll();
+                if (next != null) {
+                    group.add(next);
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+
+            depth.addAndGet(-group.size());
+            // Expenses withdrawn by callers that timed out are skipped, the others can no longer be withdrawn
+            group.removeIf(pending -> !pending.claim());
+            if (group.isEmpty()) {
+                continue;
+            }
+            // Nothing may end the writer: the callers of the group would wait for ever
+            try {
+                DistributionSummary summary = batchSizes;
+                if (summary != null) {
+                    summary.record(group.size());
+                }
+                commit(group);
+            } catch (Throwable e) {
+                log.error("Group of {} expenses could not be committed", group.size(), e);
+                group.forEach(pending -> pending.future().completeExceptionally(e));
+            }
+        }
+    }
+
+    /* One transaction for the group. If it fails as a whole (not a rejected row, those come back as
+     * results) every expense is retried in its own transaction, so one bad row only fails its caller.
+     * Only the transaction is retried: once it has committed, completing the callers cannot create
+     * anything twice. */
+    private void commit(List<Pending> group) {
+        List<BatchItemResultDTO> results;
+        try {
+            results = expenseService.createGroup(group.stream().map(Pending::expense).toList());
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.getFirst().future().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group of {} expenses failed, committing them one by one", group.size(), e);
+            for (Pending pending : group) {
+                commit(List.of(pending));
+            }
+            return;
+        }
+        complete(group, results);
+    }
+
+    private static void complete(List<Pending> group, List<BatchItemResultDTO> results) {
+        for (int i = 0; i < group.size(); i++) {
+            BatchItemResultDTO result = results.get(i);
+            CompletableFuture<ExpenseResponseDTO> future = group.get(i).future();
+            switch (result.getStatus()) {
+                case CREATED -> future.complete(result.getExpense());
+                case CATEGORY_NOT_FOUND -> future.completeExceptionally(new ResourceNotFoundException(result.getError()));
+                case INVALID -> future.completeExceptionally(new InvalidDataException(result.getError()));
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("expenses.ingestion.queue.depth", depth, AtomicInteger::get)
+                .description("Expenses waiting in the ingestion queue")
+                .register(registry);
+        FunctionCounter.builder("expenses.ingestion.rejected", rejected, LongAdder::sum)
+                .description("Expenses refused because the ingestion queue was full")
+                .register(registry);
+        batchSizes = DistributionSummary.builder("expenses.ingestion.batch.size")
+                .description("Expenses committed per transaction by the ingestion writer")
+                .register(registry);
+    }
+
+    // claimed is set once, by the writer that commits the expense or by the caller that withdraws it
+    private record Pending(ExpenseService.NewExpense expense, CompletableFuture<ExpenseResponseDTO> future,
+                           AtomicBoolean claimed) {
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
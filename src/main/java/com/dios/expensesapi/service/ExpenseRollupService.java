@@ -0,0 +1,274 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.ExpenseRollupMarker;
+import com.dios.expensesapi.repository.ExpenseMonthlyRollupRepository;
+import com.dios.expensesapi.repository.ExpenseRepository;
+import com.dios.expensesapi.repository.ExpenseRollupMarkerRepository;
+import com.dios.expensesapi.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Keeps expense_monthly_rollup in step with the expenses. ExpenseServiceImpl and the CSV import hand
+ * over what every write adds and removes, and it is applied as delta upserts in their transaction,
+ * so the rollup commits or rolls back with the expenses. The rebuild recomputes it from the
+ * expenses, for the first deployment or to repair drift. Summaries only read the rollup once a
+ * rebuild without failures has written the COMPLETE marker; a start without it rebuilds again. */
+@Service
+public class ExpenseRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseRollupService.class);
+
+    private final ExpenseMonthlyRollupRepository rollupRepository;
+    private final ExpenseRollupMarkerRepository markerRepository;
+    private final ExpenseRepository expenseRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildThreads;
+
+    // Set once the COMPLETE marker has been seen or written, the marker is never removed
+    private volatile boolean complete;
+
+    public ExpenseRollupService(ExpenseMonthlyRollupRepository rollupRepository,
+                                ExpenseRollupMarkerRepository markerRepository, ExpenseRepository expenseRepository,
+                                UserRepository userRepository, PlatformTransactionManager transactionManager,
+                                @Value("${expenses.rollup.rebuild-threads:4}") int rebuildThreads) {
+        this.rollupRepository = rollupRepository;
+        this.markerRepository = markerRepository;
+        this.expenseRepository = expenseRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildThreads = rebuildThreads;
+    }
+
+    // Result of a rebuild or a verification, outOfSync counts the months that did not match the expenses
+    public record RebuildReport(int users, int months, int outOfSync, List<UUID> failedUsers, boolean repaired,
+                                long durationMillis) {
+    }
+
+    // ================================
+    // MAINTENANCE
+    // ================================
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void added(Collection<ExpenseMonthlyRollup.Contribution> contributions) {
+        apply(contributions, List.of());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removed(Collection<ExpenseMonthlyRollup.Contribution> contributions) {
+        apply(List.of(), contributions);
+    }
+
+    /* Contributions are summed per month first, so a batch sends one upsert per (user, category,
+     * month). Must run after the expenses have been written: months that lost an expense read their
+     * min and max again from the table, and months left without expenses are dropped. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(Collection<ExpenseMonthlyRollup.Contribution> added,
+                      Collection<ExpenseMonthlyRollup.Contribution> removed) {
+        Map<ExpenseMonthlyRollup.Key, Delta> deltas = new LinkedHashMap<>();
+        for (ExpenseMonthlyRollup.Contribution contribution : added) {
+            deltas.computeIfAbsent(contribution.key(), key -> new Delta()).add(contribution.cents());
+        }
+        for (ExpenseMonthlyRollup.Contribution contribution : removed) {
+            deltas.computeIfAbsent(contribution.key(), key -> new Delta()).remove(contribution.cents());
+        }
+
+        Set<UUID> usersWithRemovals = new HashSet<>();
+        deltas.forEach((key, delta) -> {
+            rollupRepository.addDelta(key.userId(), key.categoryId(), key.month(), delta.totalCents, delta.count,
+                    delta.minCents, delta.maxCents);
+            if (delta.removed) {
+                LocalDateTime from = key.month().atStartOfDay();
+                rollupRepository.refreshMinMax(key.userId(), key.categoryId(), key.month(), from, from.plusMonths(1));
+                usersWithRemovals.add(key.userId());
+            }
+        });
+        usersWithRemovals.forEach(rollupRepository::deleteEmpty);
+    }
+
+    // Change of one (user, category, month); removals leave min and max alone, they are refreshed afterwards
+    private static final class Delta {
+        private long totalCents;
+        private long count;
+        private long minCents = Long.MAX_VALUE;
+        private long maxCents = Long.MIN_VALUE;
+        private boolean removed;
+
+        void add(long cents) {
+            totalCents += cents;
+            count++;
+            minCents = Math.min(minCents, cents);
+            maxCents = Math.max(maxCents, cents);
+        }
+
+        void remove(long cents) {
+            totalCents -= cents;
+            count--;
+            removed = true;
+        }
+    }
+
+    // ================================
+    // SUMMARIES
+    // ================================
+
+    /* The rollup answers monthly and category summaries whose range is made of whole months, once it is
+     * complete. Until then the marker is looked up on every call, so a backfill finished by another node
+     * is picked up. */
+    public boolean covers(LocalDateTime from, LocalDateTime to, ExpenseSummaryDTO.GroupBy groupBy) {
+        return (groupBy == ExpenseSummaryDTO.GroupBy.MONTH || groupBy == ExpenseSummaryDTO.GroupBy.CATEGORY)
+                && isStartOfMonth(from) && isStartOfMonth(to) && isComplete();
+    }
+
+    public boolean isComplete() {
+        if (!complete && markerRepository.existsById(ExpenseRollupMarker.COMPLETE)) {
+            complete = true;
+        }
+        return complete;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ExpenseSummaryDTO> summarize(UUID userId, LocalDateTime from, LocalDateTime to,
+                                             ExpenseSummaryDTO.GroupBy groupBy) {
+        LocalDate fromMonth = from.toLocalDate();
+        LocalDate toMonth = to.toLocalDate();
+        return groupBy == ExpenseSummaryDTO.GroupBy.CATEGORY
+                ? rollupRepository.summarizeByCategory(userId, fromMonth, toMonth)
+                : rollupRepository.summarizeByMonth(userId, fromMonth, toMonth);
+    }
+
+    private static boolean isStartOfMonth(LocalDateTime dateTime) {
+        return dateTime.getDayOfMonth() == 1 && dateTime.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+
+    // ================================
+    // REBUILD
+    // ================================
+
+    /* Compares the rollup of every user with the aggregate of their expenses and, when repair is
+     * set, replaces it with that aggregate. Users are processed in parallel, each one in its own
+     * transaction; a user that fails is reported and does not stop the others. A repair without
+     * failures marks the rollup complete. */
+    public RebuildReport rebuild(boolean repair) {
+        long start = System.nanoTime();
+        List<UUID> userIds = userRepository.findAllIds();
+        AtomicInteger months = new AtomicInteger();
+        AtomicInteger outOfSync = new AtomicInteger();
+        List<UUID> failedUsers = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads)) {
+            for (UUID userId : userIds) {
+                executor.execute(() -> {
+                    try {
+                        int[] result = transactionTemplate.execute(status -> rebuildUser(userId, repair));
+                        months.addAndGet(result[0]);
+                        outOfSync.addAndGet(result[1]);
+                    } catch (RuntimeException e) {
+                        log.warn("Rollup of user {} could not be rebuilt", userId, e);
+                        synchronized (failedUsers) {
+                            failedUsers.add(userId);
+                        }
+                    }
+                });
+            }
+        }
+
+        RebuildReport report = new RebuildReport(userIds.size(), months.get(), outOfSync.get(), List.copyOf(failedUsers),
+                repair, (System.nanoTime() - start) / 1_000_000);
+        log.info("Expense rollup {}: {}", repair ? "rebuilt" : "verified", report);
+        if (repair && failedUsers.isEmpty()) {
+            markComplete();
+        }
+        return report;
+    }
+
+    // Months of the user and how many of them differed; after a repair the new rows are checked again
+    private int[] rebuildUser(UUID userId, boolean repair) {
+        Map<ExpenseMonthlyRollup.Key, ExpenseMonthlyRollup> expected = byKey(rollupRepository.aggregateExpenses(userId));
+        int outOfSync = differences(expected, byKey(rollupRepository.findByUserId(userId)));
+
+        if (repair && outOfSync > 0) {
+            rollupRepository.deleteByUser(userId);
+            rollupRepository.insertFromExpenses(userId);
+            if (differences(expected, byKey(rollupRepository.findByUserId(userId))) > 0) {
+                throw new IllegalStateException("Rebuilt rollup of user " + userId + " does not match the expenses");
+            }
+        }
+        return new int[]{expected.size(), outOfSync};
+    }
+
+    private static Map<ExpenseMonthlyRollup.Key, ExpenseMonthlyRollup> byKey(List<ExpenseMonthlyRollup> rollups) {
+        Map<ExpenseMonthlyRollup.Key, ExpenseMonthlyRollup> byKey = new HashMap<>();
+        rollups.forEach(rollup -> byKey.put(rollup.getKey(), rollup));
+        return byKey;
+    }
+
+    // Months missing on either side or with other figures
+    private static int differences(Map<ExpenseMonthlyRollup.Key, ExpenseMonthlyRollup> expected,
+                                   Map<ExpenseMonthlyRollup.Key, ExpenseMonthlyRollup> actual) {
+        Set<ExpenseMonthlyRollup.Key> keys = new HashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+        int differences = 0;
+        for (ExpenseMonthlyRollup.Key key : keys) {
+            ExpenseMonthlyRollup a = expected.get(key);
+            ExpenseMonthlyRollup b = actual.get(key);
+            if (a == null || b == null || a.getTotalCents() != b.getTotalCents() || a.getCount() != b.getCount()
+                    || a.getMinCents() != b.getMinCents() || a.getMaxCents() != b.getMaxCents()) {
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    /* Until the rollup is marked complete it is rebuilt in the background on every start, also after a
+     * restart in the middle of a backfill that left part of the users without their rows. Without any
+     * expense there is nothing to backfill, the writes keep it complete from the start. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfIncomplete() {
+        if (isComplete()) {
+            return;
+        }
+        if (expenseRepository.count() == 0) {
+            markComplete();
+            return;
+        }
+        Thread.ofPlatform().name("expense-rollup-backfill").daemon().start(() -> rebuild(true));
+    }
+
+    private void markComplete() {
+        try {
+            markerRepository.save(new ExpenseRollupMarker(ExpenseRollupMarker.COMPLETE, Instant.now()));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Expense rollup already marked complete by another node");
+        }
+        complete = true;
+    }
+}
@@ -1,16 +1,42 @@
 package com.dios.expensesapi.service;
 
+import com.dios.expensesapi.dto.BatchCreateResponseDTO;
+import com.dios.expensesapi.dto.BatchItemResultDTO;
 import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseFilter;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
-import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.dto.SliceResponseDTO;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+/* Every operation receives the id of the authenticated user, resolved once per request from the
+ * security principal, so the service never has to look the user up again. */
 public interface ExpenseService {
-    Iterable<ExpenseResponseDTO> findAll();
-    Optional<ExpenseResponseDTO> findById(UUID id);
-    ExpenseResponseDTO create(ExpenseDTO expenseDTO);
-    ExpenseResponseDTO update(UUID id, ExpenseDTO expenseDTO);
-    void deleteById(UUID id);
+    SliceResponseDTO<ExpenseResponseDTO> findSlice(UUID userId, ExpenseFilter filter, String cursor, int size);
+    Optional<ExpenseResponseDTO> findById(UUID userId, UUID id);
+    // Spending of the user in [from, to) per day, week, month or category
+    List<ExpenseSummaryDTO> summarize(UUID userId, LocalDateTime from, LocalDateTime to, ExpenseSummaryDTO.GroupBy groupBy);
+    ExpenseResponseDTO create(UUID userId, ExpenseDTO expenseDTO);
+    // Creates the valid expenses of the list, the rest are reported one by one in the result
+    BatchCreateResponseDTO createAll(UUID userId, List<ExpenseDTO> expenseDTOs);
+    /* Same as createAll for expenses of possibly different users, all in one transaction. Used by the
+     * ingestion queue to commit the expenses it gathered as one group. */
+    List<BatchItemResultDTO> createGroup(List<NewExpense> expenses);
+    /* expectedVersion is the version from the If-Match header, null for an unconditional update. A
+     * conditional update that does not match fails with PreconditionFailedException. */
+    ExpenseResponseDTO update(UUID userId, UUID id, ExpenseDTO expenseDTO, Long expectedVersion);
+    void deleteById(UUID userId, UUID id);
+    // Returns how many of the ids were deleted, ids of other users or that do not exist are skipped
+    int deleteAllById(UUID userId, List<UUID> ids);
+    // Hands every expense of the user to the consumer one by one, nothing is collected in memory
+    void exportAll(UUID userId, Consumer<ExpenseResponseDTO> consumer);
+
+    // An expense to create and the user that will own it
+    record NewExpense(UUID userId, ExpenseDTO expense) {
+    }
 }
@@ -1,24 +1,46 @@
 package com.dios.expensesapi.service;
 
+import com.dios.expensesapi.dto.BatchCreateResponseDTO;
+import com.dios.expensesapi.dto.BatchItemResultDTO;
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.ExpenseCursor;
 import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseFilter;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.dto.SliceResponseDTO;
 import com.dios.expensesapi.exception.DuplicateResourceException;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.exception.PreconditionFailedException;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
+import com.dios.expensesapi.mapper.CategoryMapper;
 import com.dios.expensesapi.mapper.ExpenseMapper;
 import com.dios.expensesapi.model.Category;
 import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
 import com.dios.expensesapi.model.User;
 import com.dios.expensesapi.repository.CategoryRepository;
 import com.dios.expensesapi.repository.ExpenseRepository;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.StreamSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional // Asegura la consistencia de las operaciones que modifican datos, rollback o commit
@@ -27,104 +49,317 @@ public class ExpenseServiceImpl implements ExpenseService {
     private final ExpenseRepository expenseRepository;
     private final CategoryRepository categoryRepository;
     private final UserService userService;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final ExpenseRollupService expenseRollupService;
+    private final ExpenseColumnarCache expenseColumnarCache;
+    private final CategoryCatalog categoryCatalog;
 
-    public ExpenseServiceImpl(ExpenseRepository expenseRepository, CategoryRepository categoryRepository, UserService userService) {
+    public ExpenseServiceImpl(ExpenseRepository expenseRepository, CategoryRepository categoryRepository,
+                              UserService userService, EntityManager entityManager, Validator validator,
+                              ExpenseRollupService expenseRollupService, ExpenseColumnarCache expenseColumnarCache,
+                              CategoryCatalog categoryCatalog) {
         this.expenseRepository = expenseRepository;
         this.categoryRepository = categoryRepository;
         this.userService = userService;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.expenseRollupService = expenseRollupService;
+        this.expenseColumnarCache = expenseColumnarCache;
+        this.categoryCatalog = categoryCatalog;
     }
 
 
     @Override
-    public Iterable<ExpenseResponseDTO> findAll() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        User currentUser = userService.findByEmail(userEmail);
+    public SliceResponseDTO<ExpenseResponseDTO> findSlice(UUID userId, ExpenseFilter filter, String cursor, int size) {
+        ExpenseCursor after = (cursor == null || cursor.isBlank()) ? null : ExpenseCursor.decode(cursor);
 
-        return StreamSupport.stream(expenseRepository.findByUser(currentUser).spliterator(), false)
-                .map(ExpenseMapper::toResponseDTO)
-                .toList();
+        Slice<ExpenseResponseDTO> slice;
+        if (!filter.isUnfiltered()) {
+            slice = expenseRepository.search(userId, filter, after, size);
+        } else if (after == null) {
+            // Plain listing: static queries, parsed once, instead of building a criteria query per request
+            slice = expenseRepository.findFirstSlice(userId, PageRequest.of(0, size));
+        } else {
+            slice = expenseRepository.findSliceAfter(userId, after.getExpenseDate(), after.getId(), PageRequest.of(0, size));
+        }
+
+        List<ExpenseResponseDTO> content = slice.getContent();
+        String nextCursor = slice.hasNext() ? ExpenseCursor.of(content.getLast()).encode() : null;
+
+        return new SliceResponseDTO<>(content, slice.hasNext(), nextCursor);
     }
 
     @Override
-    public Optional<ExpenseResponseDTO> findById(UUID id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        User currentUser = userService.findByEmail(userEmail);
-
-        return expenseRepository.findByUserAndId(currentUser, id)
-                .map(ExpenseMapper::toResponseDTO);
+    public Optional<ExpenseResponseDTO> findById(UUID userId, UUID id) {
+        return expenseRepository.findResponseByUserIdAndId(userId, id);
     }
 
     @Override
-    public ExpenseResponseDTO create(ExpenseDTO expenseDTO) {
-        Category category = findCategory(expenseDTO);
+    @Transactional(readOnly = true)
+    public List<ExpenseSummaryDTO> summarize(UUID userId, LocalDateTime from, LocalDateTime to,
+                                             ExpenseSummaryDTO.GroupBy groupBy) {
+        if (!from.isBefore(to)) {
+            throw new InvalidDataException("'from' must be before 'to'");
+        }
+        /* Whole days come from the in-memory columns, whole months by month or category from the rollup
+         * when the columns are disabled, the rest is aggregated from the expenses */
+        if (expenseColumnarCache.covers(from, to)) {
+            return expenseColumnarCache.summarize(userId, from, to, groupBy);
+        }
+        if (expenseRollupService.covers(from, to, groupBy)) {
+            return expenseRollupService.summarize(userId, from, to, groupBy);
+        }
+        return expenseRepository.summarize(userId, from, to, groupBy);
+    }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        User currentUser = userService.findByEmail(userEmail);
+    @Override
+    public ExpenseResponseDTO create(UUID userId, ExpenseDTO expenseDTO) {
+        CategoryResponseDTO category = findCategory(expenseDTO);
 
         try {
-            Expense expense = ExpenseMapper.toEntity(expenseDTO, category);
-            expense.setUser(currentUser);
+            Expense expense = ExpenseMapper.toEntity(expenseDTO, entityManager.getReference(Category.class, category.getId()));
+            expense.setUser(userService.getReference(userId));
             Expense savedExpense = expenseRepository.save(expense);
-            return ExpenseMapper.toResponseDTO(savedExpense);
+            List<ExpenseMonthlyRollup.Contribution> added = List.of(contribution(savedExpense));
+            expenseRollupService.added(added);
+            expenseColumnarCache.apply(added, List.of());
+            return ExpenseMapper.toResponseDTO(savedExpense, category);
         } catch (DataIntegrityViolationException e) {
             throw new DuplicateResourceException("Expense", "category", category.getName());
         }
 
     }
 
+    /* Each expense is validated on its own so one bad row does not reject the whole batch. The
+     * categories of the valid ones come from the catalog, those it misses from a single query. Each user
+     * gets one shared reference. The inserts are sent in JDBC batches of hibernate.jdbc.batch_size when
+     * the transaction commits. */
     @Override
-    public ExpenseResponseDTO update(UUID id, ExpenseDTO expenseDTO) {
-        Category category = categoryRepository.findById(expenseDTO.getCategoryId())
-                .orElseThrow(() -> new ResourceNotFoundException("Category"));
+    public BatchCreateResponseDTO createAll(UUID userId, List<ExpenseDTO> expenseDTOs) {
+        List<NewExpense> expenses = expenseDTOs.stream()
+                .map(expenseDTO -> new NewExpense(userId, expenseDTO))
+                .toList();
+        return new BatchCreateResponseDTO(createGroup(expenses));
+    }
+
+    @Override
+    public List<BatchItemResultDTO> createGroup(List<NewExpense> newExpenses) {
+        BatchItemResultDTO[] results = new BatchItemResultDTO[newExpenses.size()];
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < newExpenses.size(); i++) {
+            String error = validationError(newExpenses.get(i).expense());
+            if (error != null) {
+                results[i] = BatchItemResultDTO.rejected(i, BatchItemResultDTO.Status.INVALID, error);
+            } else {
+                validIndexes.add(i);
+            }
+        }
+
+        CategoryLookup categories = CategoryLookup.of(categoryCatalog, categoryRepository,
+                validIndexes.stream().map(i -> newExpenses.get(i).expense()).toList());
+        Map<UUID, User> users = new HashMap<>();
+
+        List<Integer> createdIndexes = new ArrayList<>();
+        List<CategoryResponseDTO> createdCategories = new ArrayList<>();
+        List<Expense> expenses = new ArrayList<>();
+        for (int i : validIndexes) {
+            ExpenseDTO expenseDTO = newExpenses.get(i).expense();
+            CategoryResponseDTO category = categories.find(expenseDTO);
+            if (category == null) {
+                results[i] = BatchItemResultDTO.rejected(i, BatchItemResultDTO.Status.CATEGORY_NOT_FOUND,
+                        "Category not found: " + (expenseDTO.getCategoryId() != null ? expenseDTO.getCategoryId() : expenseDTO.getCategoryName()));
+                continue;
+            }
+            Expense expense = ExpenseMapper.toEntity(expenseDTO, entityManager.getReference(Category.class, category.getId()));
+            expense.setUser(users.computeIfAbsent(newExpenses.get(i).userId(), userService::getReference));
+            expenses.add(expense);
+            createdIndexes.add(i);
+            createdCategories.add(category);
+        }
+
+        List<Expense> saved = new ArrayList<>();
+        expenseRepository.saveAll(expenses).forEach(saved::add);
+        List<ExpenseMonthlyRollup.Contribution> added = saved.stream().map(ExpenseServiceImpl::contribution).toList();
+        expenseRollupService.added(added);
+        expenseColumnarCache.apply(added, List.of());
+        for (int j = 0; j < saved.size(); j++) {
+            int index = createdIndexes.get(j);
+            results[index] = BatchItemResultDTO.created(index, ExpenseMapper.toResponseDTO(saved.get(j), createdCategories.get(j)));
+        }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        User currentUser = userService.findByEmail(userEmail);
+        return Arrays.asList(results);
+    }
+
+    // Bean validation messages of one expense of a batch, null when it is valid
+    private String validationError(ExpenseDTO expenseDTO) {
+        if (expenseDTO == null) {
+            return "Expense cannot be empty";
+        }
+        return ValidationMessages.of(validator, expenseDTO);
+    }
+
+    @Override
+    public ExpenseResponseDTO update(UUID userId, UUID id, ExpenseDTO expenseDTO, Long expectedVersion) {
+        if (expectedVersion != null) {
+            return updateIfVersionMatches(userId, id, expenseDTO, expectedVersion);
+        }
 
-        return expenseRepository.findByUserAndId(currentUser, id)
+        CategoryResponseDTO category = findCategory(expenseDTO);
+
+        return expenseRepository.findByUser_IdAndId(userId, id)
                 .map(existing -> {
+                    ExpenseMonthlyRollup.Contribution previous = contribution(existing);
                     existing.setExpenseDate(expenseDTO.getExpenseDate());
-                    existing.setCategory(category);
+                    existing.setCategory(entityManager.getReference(Category.class, category.getId()));
                     existing.setAmount(expenseDTO.getAmount());
                     existing.setDescription(expenseDTO.getDescription());
                     Expense updated =  expenseRepository.save(existing);
-                    return ExpenseMapper.toResponseDTO(updated);
+                    entityManager.flush(); // The version is incremented on flush, the response carries the new one
+                    expenseRollupService.apply(List.of(contribution(updated)), List.of(previous));
+                    expenseColumnarCache.apply(List.of(contribution(updated)), List.of(previous));
+                    return ExpenseMapper.toResponseDTO(updated, category);
                 })
                 .orElseThrow(() -> new ResourceNotFoundException("Expense", id.toString()));
     }
 
+    /* The expense is not loaded: the UPDATE itself checks owner and version and returns what the row
+     * contributed to the rollup before the write, nothing is read or locked first. A missing category
+     * given by id is reported by the foreign key. The response is read back with the projection. */
+    private ExpenseResponseDTO updateIfVersionMatches(UUID userId, UUID id, ExpenseDTO expenseDTO, long expectedVersion) {
+        UUID categoryId = expenseDTO.getCategoryId() != null
+                ? expenseDTO.getCategoryId()
+                : findCategory(expenseDTO).getId();
+
+        Optional<ExpenseMonthlyRollup.Contribution> previous;
+        try {
+            previous = expenseRepository.updateIfVersionMatches(id, userId, expectedVersion,
+                    expenseDTO.getExpenseDate(), categoryId, expenseDTO.getAmount(), expenseDTO.getDescription());
+        } catch (DataIntegrityViolationException e) {
+            throw new ResourceNotFoundException("Category", String.valueOf(expenseDTO.getCategoryId()));
+        }
+
+        // Missing, foreign or modified expense: all of them fail the precondition without telling which
+        if (previous.isEmpty()) {
+            throw new PreconditionFailedException("Expense", id.toString(), expectedVersion);
+        }
+        List<ExpenseMonthlyRollup.Contribution> current = List.of(new ExpenseMonthlyRollup.Contribution(id, userId,
+                categoryId, expenseDTO.getExpenseDate(), expenseDTO.getAmount()));
+        expenseRollupService.apply(current, List.of(previous.get()));
+        expenseColumnarCache.apply(current, List.of(previous.get()));
+
+        return expenseRepository.findResponseByUserIdAndId(userId, id)
+                .orElseThrow(() -> new ResourceNotFoundException("Expense", id.toString()));
+    }
+
+    @Override
+    public void deleteById(UUID userId, UUID id) {
+        List<ExpenseMonthlyRollup.Contribution> removed = expenseRepository.deleteByIdAndUserId(id, userId)
+                .map(List::of)
+                .orElseThrow(() -> new ResourceNotFoundException("Expense", id.toString()));
+        expenseRollupService.removed(removed);
+        expenseColumnarCache.apply(List.of(), removed);
+    }
+
     @Override
-    public void deleteById(UUID id) {
-        if(!expenseRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Expense", id.toString());
+    public int deleteAllById(UUID userId, List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return 0;
         }
+        List<ExpenseMonthlyRollup.Contribution> removed = expenseRepository.deleteAllByIdInAndUserId(Set.copyOf(ids), userId);
+        expenseRollupService.removed(removed);
+        expenseColumnarCache.apply(List.of(), removed);
+        return removed.size();
+    }
+
+    /* Read only transaction: the cursor stays open while the rows are written and nothing is
+     * flushed. Each expense is detached once it has been handed over, so the persistence context
+     * only keeps the owner and the categories, whatever the number of rows. */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(UUID userId, Consumer<ExpenseResponseDTO> consumer) {
+        try (Stream<Expense> expenses = expenseRepository.streamByUserId(userId)) {
+            expenses.forEach(expense -> {
+                consumer.accept(ExpenseMapper.toResponseDTO(expense));
+                entityManager.detach(expense);
+            });
+        }
+    }
+
+    /* Categories of a batch, looked up the same way as findCategory: by id first, then by name. What
+     * the catalog misses is loaded with a single query. */
+    private record CategoryLookup(CategoryCatalog catalog, Map<UUID, CategoryResponseDTO> byId,
+                                  Map<String, CategoryResponseDTO> byName) {
+
+        static CategoryLookup of(CategoryCatalog catalog, CategoryRepository categoryRepository,
+                                 List<ExpenseDTO> expenseDTOs) {
+            Set<UUID> ids = new HashSet<>();
+            Set<String> names = new HashSet<>();
+            for (ExpenseDTO expenseDTO : expenseDTOs) {
+                if (expenseDTO.getCategoryId() != null) {
+                    if (catalog.find(expenseDTO.getCategoryId()) == null) {
+                        ids.add(expenseDTO.getCategoryId());
+                    }
+                } else if (catalog.findByName(expenseDTO.getCategoryName()) == null) {
+                    names.add(expenseDTO.getCategoryName());
+                }
+            }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userEmail = authentication.getName();
-        User currentUser = userService.findByEmail(userEmail);
+            Map<UUID, CategoryResponseDTO> byId = new HashMap<>();
+            Map<String, CategoryResponseDTO> byName = new HashMap<>();
+            if (!ids.isEmpty() || !names.isEmpty()) {
+                for (Category category : categoryRepository.findByIdInOrNameIn(ids, names)) {
+                    CategoryResponseDTO response = CategoryMapper.toResponseDTO(category);
+                    byId.put(category.getId(), response);
+                    byName.put(category.getName(), response);
+                }
+                if (!byId.isEmpty()) {
+                    catalog.refresh();
+                }
+            }
+            return new CategoryLookup(catalog, byId, byName);
+        }
 
-        for(Expense expense : expenseRepository.findByUser(currentUser)) {
-            if(expense.getId().equals(id)) {
-                expenseRepository.deleteById(id);
-                break;
+        CategoryResponseDTO find(ExpenseDTO expenseDTO) {
+            CategoryResponseDTO category = expenseDTO.getCategoryId() != null
+                    ? catalog.find(expenseDTO.getCategoryId())
+                    : catalog.findByName(expenseDTO.getCategoryName());
+            if (category != null) {
+                return category;
             }
+            return expenseDTO.getCategoryId() != null
+                    ? byId.get(expenseDTO.getCategoryId())
+                    : byName.get(expenseDTO.getCategoryName());
         }
     }
 
-    private Category findCategory(ExpenseDTO expenseDTO) {
+    private static ExpenseMonthlyRollup.Contribution contribution(Expense expense) {
+        return new ExpenseMonthlyRollup.Contribution(expense.getId(), expense.getUser().getId(), expense.getCategory().getId(),
+                expense.getExpenseDate(), expense.getAmount());
+    }
+
+    private CategoryResponseDTO findCategory(ExpenseDTO expenseDTO) {
         if(!expenseDTO.hasValidCategory()) {
             throw new IllegalArgumentException("Either categoryId or categoryName must be provided");
         }
 
         if(expenseDTO.getCategoryId() != null) {
-            return categoryRepository.findById(expenseDTO.getCategoryId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Category", expenseDTO.getCategoryId().toString()));
+            CategoryResponseDTO category = categoryCatalog.find(expenseDTO.getCategoryId());
+            return category != null ? category : missedByCatalog(categoryRepository.findById(expenseDTO.getCategoryId()),
+                    expenseDTO.getCategoryId().toString());
         }
 
-        return categoryRepository.findByName(expenseDTO.getCategoryName())
-                .orElseThrow(() -> new ResourceNotFoundException("Category", expenseDTO.getCategoryName()));
+        CategoryResponseDTO category = categoryCatalog.findByName(expenseDTO.getCategoryName());
+        return category != null ? category : missedByCatalog(categoryRepository.findByName(expenseDTO.getCategoryName()),
+                expenseDTO.getCategoryName());
+    }
+
+    // Created in another node since the catalog was loaded, or not a category at all
+    private CategoryResponseDTO missedByCatalog(Optional<Category> category, String key) {
+        CategoryResponseDTO found = category.map(CategoryMapper::toResponseDTO)
+                .orElseThrow(() -> new ResourceNotFoundException("Category", key));
+        categoryCatalog.refresh();
+        return found;
     }
 }
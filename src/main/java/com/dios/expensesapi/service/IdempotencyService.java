@@ -0,0 +1,338 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.exception.IdempotencyKeyInProgressException;
+import com.dios.expensesapi.exception.IdempotencyKeyReusedException;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.model.IdempotencyRecord;
+import com.dios.expensesapi.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/* Idempotency-Key handling for creation endpoints. The first request with a key runs and its
+ * successful response is recorded per (user, key); retries get the recorded response back without
+ * running the request again. Requests with the same key that arrive while the first one is still
+ * running wait up to wait-timeout for it and then get its response, so concurrent retries create one
+ * resource; past the timeout they get a 409 to retry later. Only requests with the same key wait: the
+ * first one registers itself as in flight under a striped lock and runs without holding it.
+ *
+ * Responses are kept in a bounded in-memory map until they expire. With persistent keys enabled the
+ * key is also reserved in the idempotency_keys table before the request runs, a pending row under the
+ * unique (user, key) constraint that later holds the response. A request with the same key on another
+ * instance finds the row and waits for the response the same way, and retries are recognized after a
+ * restart. A reservation whose instance died expires after reservation-ttl. */
+@Service
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String REPLAYED = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int LOCK_STRIPES = 64;
+    private static final Duration RESERVATION_POLL = Duration.ofMillis(50);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final int maxSize;
+    private final boolean persistent;
+    private final Duration waitTimeout;
+    private final Duration reservationTtl;
+
+    private final ConcurrentHashMap<Key, StoredResponse> responses = new ConcurrentHashMap<>();
+    // Keys whose first request is running, completed once its response has been stored or it failed
+    private final ConcurrentHashMap<Key, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                              @Value("${expenses.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${expenses.idempotency.max-size:10000}") int maxSize,
+                              @Value("${expenses.idempotency.persistent:false}") boolean persistent,
+                              @Value("${expenses.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                              @Value("${expenses.idempotency.reservation-ttl:1m}") Duration reservationTtl) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.persistent = persistent;
+        this.waitTimeout = waitTimeout;
+        this.reservationTtl = reservationTtl;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /* Runs action once per (user, key). operation and request identify the request: the same key with
+     * a different operation or body is rejected. Without a key the action just runs. Error responses
+     * and exceptions are not recorded, the request can be retried with the same key. */
+    public <T> ResponseEntity<T> execute(UUID userId, String idempotencyKey, String operation, Object request,
+                                         Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidDataException(IDEMPOTENCY_KEY + " must have between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Key key = new Key(userId, idempotencyKey);
+        String requestHash = hash(operation, request);
+
+        Optional<StoredResponse> stored = find(key);
+        if (stored.isPresent()) {
+            return replay(stored.get(), key, requestHash, bodyType);
+        }
+
+        ReentrantLock lock = locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        while (true) {
+            CompletableFuture<Void> running;
+            lock.lock();
+            try {
+                // A concurrent request with the same key may have finished meanwhile
+                stored = find(key);
+                running = stored.isPresent() ? null : inFlight.putIfAbsent(key, mine);
+            } finally {
+                lock.unlock();
+            }
+            if (stored.isPresent()) {
+                return replay(stored.get(), key, requestHash, bodyType);
+            }
+            if (running == null) {
+                break;
+            }
+            // Same key in flight: wait for it, then replay its response or run if it failed
+            await(running, key);
+        }
+
+        try {
+            IdempotencyRecord reservation = null;
+            if (persistent) {
+                IdempotencyRecord record = reserve(key, requestHash);
+                if (!record.isPending()) {
+                    // Another instance ran the request meanwhile
+                    StoredResponse recorded = toStoredResponse(record);
+                    putInMemory(key, recorded);
+                    return replay(recorded, key, requestHash, bodyType);
+                }
+                reservation = record;
+            }
+            return run(key, requestHash, reservation, action);
+        } finally {
+            // Under the lock, so a request that did not find the response sees the key still in flight
+            lock.lock();
+            try {
+                inFlight.remove(key, mine);
+            } finally {
+                lock.unlock();
+            }
+            mine.complete(null);
+        }
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    private <T> ResponseEntity<T> run(Key key, String requestHash, IdempotencyRecord reservation,
+                                      Supplier<ResponseEntity<T>> action) {
+        boolean recorded = false;
+        try {
+            ResponseEntity<T> response = action.get();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                store(key, reservation, new StoredResponse(requestHash, response.getStatusCode().value(),
+                        response.getHeaders().getETag(), write(response.getBody()), Instant.now().plus(ttl)));
+                recorded = true;
+            }
+            return response;
+        } finally {
+            if (reservation != null && !recorded) {
+                // Nothing to replay, release the key so a retry runs
+                idempotencyRecordRepository.deleteById(reservation.getId());
+            }
+        }
+    }
+
+    // On a copy, orTimeout would otherwise complete the future of the running request
+    private void await(CompletableFuture<Void> running, Key key) {
+        try {
+            running.copy().orTimeout(waitTimeout.toMillis(), TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IdempotencyKeyInProgressException(key.idempotencyKey());
+            }
+            throw e;
+        }
+    }
+
+    /* Inserts a pending row for the key and returns it. When another instance holds the key, waits for
+     * its response and returns the completed row instead; expired rows are deleted and the key taken
+     * over. */
+    private IdempotencyRecord reserve(Key key, String requestHash) {
+        Instant deadline = Instant.now().plus(waitTimeout);
+        while (true) {
+            Instant now = Instant.now();
+            try {
+                return idempotencyRecordRepository.save(new IdempotencyRecord(key.userId(), key.idempotencyKey(),
+                        requestHash, IdempotencyRecord.PENDING, null, null, now.plus(reservationTtl)));
+            } catch (DataIntegrityViolationException e) {
+                // The key is already in the table, read it below
+            }
+
+            Optional<IdempotencyRecord> existing = idempotencyRecordRepository
+                    .findByUserIdAndIdempotencyKey(key.userId(), key.idempotencyKey());
+            if (existing.isEmpty() || !existing.get().getExpiresAt().isAfter(now)) {
+                // Released meanwhile, or an expired response or reservation
+                idempotencyRecordRepository.deleteExpired(now);
+                continue;
+            }
+            IdempotencyRecord record = existing.get();
+            if (!record.getRequestHash().equals(requestHash)) {
+                throw new IdempotencyKeyReusedException(key.idempotencyKey());
+            }
+            if (!record.isPending()) {
+                return record;
+            }
+            if (!now.isBefore(deadline)) {
+                throw new IdempotencyKeyInProgressException(key.idempotencyKey());
+            }
+            try {
+                Thread.sleep(RESERVATION_POLL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInProgressException(key.idempotencyKey());
+            }
+        }
+    }
+
+    private Optional<StoredResponse> find(Key key) {
+        Instant now = Instant.now();
+        StoredResponse stored = responses.get(key);
+        if (stored != null) {
+            if (stored.expiresAt().isAfter(now)) {
+                return Optional.of(stored);
+            }
+            responses.remove(key, stored);
+        }
+        if (!persistent) {
+            return Optional.empty();
+        }
+
+        return idempotencyRecordRepository.findByUserIdAndIdempotencyKey(key.userId(), key.idempotencyKey())
+                .filter(record -> !record.isPending() && record.getExpiresAt().isAfter(now))
+                .map(record -> {
+                    StoredResponse fromDatabase = toStoredResponse(record);
+                    putInMemory(key, fromDatabase);
+                    return fromDatabase;
+                });
+    }
+
+    private void store(Key key, IdempotencyRecord reservation, StoredResponse response) {
+        putInMemory(key, response);
+        if (reservation == null) {
+            return;
+        }
+        int updated = idempotencyRecordRepository.complete(reservation.getId(), response.status(), response.etag(),
+                response.body(), response.expiresAt());
+        if (updated == 0) {
+            // The request outlived reservation-ttl and another instance took the key over
+            log.warn("Reservation of idempotency key {} of user {} expired before its response was recorded",
+                    key.idempotencyKey(), key.userId());
+        }
+    }
+
+    private StoredResponse toStoredResponse(IdempotencyRecord record) {
+        return new StoredResponse(record.getRequestHash(), record.getStatus(), record.getEtag(), record.getBody(),
+                record.getExpiresAt());
+    }
+
+    private void putInMemory(Key key, StoredResponse response) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (responses.size() >= maxSize) {
+            evict();
+        }
+        responses.put(key, response);
+    }
+
+    // Evicted responses that are still valid remain in the table when keys are persistent
+    private void evict() {
+        Instant now = Instant.now();
+        CacheEviction.evict(responses, maxSize, response -> !response.expiresAt().isAfter(now));
+
+        if (persistent) {
+            idempotencyRecordRepository.deleteExpired(now);
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse stored, Key key, String requestHash, Class<T> bodyType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException(key.idempotencyKey());
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(stored.status()).header(REPLAYED, "true");
+        if (stored.etag() != null) {
+            response.eTag(stored.etag());
+        }
+        return response.body(read(stored.body(), bodyType));
+    }
+
+    private String hash(String operation, Object request) {
+        MessageDigest digest = SHA_256.get();
+        digest.update(operation.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        return HexFormat.of().formatHex(digest.digest(write(request).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize idempotent response", e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> bodyType) {
+        try {
+            return objectMapper.readValue(body, bodyType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read idempotent response", e);
+        }
+    }
+
+    private record Key(UUID userId, String idempotencyKey) {
+    }
+
+    private record StoredResponse(String requestHash, int status, String etag, String body, Instant expiresAt) {
+    }
+}
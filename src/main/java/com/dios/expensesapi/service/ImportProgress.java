@@ -0,0 +1,76 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ImportProgressDTO;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Counters of a running import. The importing thread updates them and any request can read a
+ * snapshot through toDTO() while it runs. */
+final class ImportProgress {
+
+    private final UUID id = UUID.randomUUID();
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final Path rejectedRows;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile ImportProgressDTO.Status status = ImportProgressDTO.Status.RUNNING;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    ImportProgress(Path rejectedRowsDirectory) {
+        this.rejectedRows = rejectedRowsDirectory.resolve(id + ".csv");
+    }
+
+    UUID getId() {
+        return id;
+    }
+
+    // File with the rejected rows, only written if some row is rejected
+    Path getRejectedRows() {
+        return rejectedRows;
+    }
+
+    boolean isRunning() {
+        return status == ImportProgressDTO.Status.RUNNING;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void imported(int rows) {
+        imported.addAndGet(rows);
+    }
+
+    void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    void complete() {
+        finishedAt = LocalDateTime.now();
+        status = ImportProgressDTO.Status.COMPLETED;
+    }
+
+    void fail(String reason) {
+        error = reason;
+        finishedAt = LocalDateTime.now();
+        status = ImportProgressDTO.Status.FAILED;
+    }
+
+    ImportProgressDTO toDTO() {
+        return ImportProgressDTO.builder()
+                .id(id)
+                .status(status)
+                .rowsRead(rowsRead.get())
+                .imported(imported.get())
+                .rejected(rejected.get())
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,241 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/* Search for databases without pg_trgm, over the categories of the CategoryCatalog. Each snapshot of
+ * the catalog gets an inverted index from the trigrams of the lowercase names to the positions of the
+ * names that contain them: a text of three characters or more is only checked against the names that
+ * have all its trigrams, a shorter one against every name. Matches are ranked like pg_trgm's
+ * similarity(), over the trigrams of each word padded with blanks, kept sorted for every name so that
+ * ranking a match is a few binary searches. Only the best offset + limit matches are sorted. As the
+ * catalog, it sees the writes of other nodes once it reloads. */
+class NgramCategoryNameSearch implements CategoryNameSearch {
+
+    private static final int N = 3;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final CategoryCatalog categoryCatalog;
+
+    // Built on the first search after each load of the catalog; two racing searches just build it twice
+    private volatile Index index;
+
+    NgramCategoryNameSearch(CategoryCatalog categoryCatalog) {
+        this.categoryCatalog = categoryCatalog;
+    }
+
+    @Override
+    public List<CategoryResponseDTO> find(String text, Sort sort, long offset, int limit) {
+        Index current = index();
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        long[] textTrigrams = wordTrigrams(lowerText);
+        Comparator<Match> ranking = Comparator.comparingDouble(Match::similarity).reversed()
+                .thenComparing(Match::category, order(sort));
+
+        // The worst of the best matches on top, dropped when a better one comes
+        long wanted = offset + limit;
+        PriorityQueue<Match> best = new PriorityQueue<>(ranking.reversed());
+        current.forEachMatch(lowerText, position -> {
+            double similarity = similarity(textTrigrams, current.wordTrigrams()[position]);
+            if (best.size() == wanted && similarity < best.peek().similarity()) {
+                return;
+            }
+            best.add(new Match(current.categories().get(position), similarity));
+            if (best.size() > wanted) {
+                best.poll();
+            }
+        });
+
+        List<Match> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        return ranked.stream()
+                .skip(offset)
+                .map(Match::category)
+                .toList();
+    }
+
+    @Override
+    public long count(String text) {
+        long[] count = new long[1];
+        index().forEachMatch(text.toLowerCase(Locale.ROOT), position -> count[0]++);
+        return count[0];
+    }
+
+    private Index index() {
+        List<CategoryResponseDTO> categories = categoryCatalog.findAll();
+        Index current = index;
+        if (current == null || current.categories() != categories) {
+            current = Index.of(categories);
+            index = current;
+        }
+        return current;
+    }
+
+    // ================================
+    // RANKING
+    // ================================
+
+    /* Distinct trigrams of every word as pg_trgm takes them, two blanks before the word and one after,
+     * sorted. Each one packs its three chars in a long. A word of w chars has w + 1 of them. */
+    static long[] wordTrigrams(String lowerText) {
+        long[] trigrams = new long[2 * lowerText.length() + 1];
+        int size = 0;
+        for (String word : WORD_SEPARATOR.split(lowerText)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + N <= padded.length(); i++) {
+                trigrams[size++] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+            }
+        }
+        Arrays.sort(trigrams, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    // Shared trigrams over the trigrams of either, as similarity()
+    static double similarity(long[] text, long[] name) {
+        if (text.length == 0 || name.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        for (long trigram : text) {
+            if (Arrays.binarySearch(name, trigram) >= 0) {
+                shared++;
+            }
+        }
+        return (double) shared / (text.length + name.length - shared);
+    }
+
+    private static Comparator<CategoryResponseDTO> order(Sort sort) {
+        Comparator<CategoryResponseDTO> order = (left, right) -> 0;
+        for (Sort.Order property : sort) {
+            Comparator<CategoryResponseDTO> byProperty = switch (property.getProperty()) {
+                case "id" -> Comparator.comparing(CategoryResponseDTO::getId);
+                case "name" -> Comparator.comparing(CategoryResponseDTO::getName);
+                case "description" -> Comparator.comparing(CategoryResponseDTO::getDescription,
+                        Comparator.nullsLast(Comparator.naturalOrder()));
+                default -> null;
+            };
+            if (byProperty != null) {
+                order = order.thenComparing(property.isDescending() ? byProperty.reversed() : byProperty);
+            }
+        }
+        return order.thenComparing(CategoryResponseDTO::getId);
+    }
+
+    private static void addTrigrams(String text, Set<String> trigrams) {
+        for (int i = 0; i + N <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + N));
+        }
+    }
+
+    private record Match(CategoryResponseDTO category, double similarity) {
+    }
+
+    // ================================
+    // INDEX
+    // ================================
+
+    private record Index(List<CategoryResponseDTO> categories, String[] names, long[][] wordTrigrams,
+                         Map<String, Postings> postings) {
+
+        static Index of(List<CategoryResponseDTO> categories) {
+            String[] names = new String[categories.size()];
+            long[][] wordTrigrams = new long[names.length][];
+            Map<String, Postings> postings = new HashMap<>();
+            Set<String> trigrams = new HashSet<>();
+            for (int position = 0; position < names.length; position++) {
+                names[position] = categories.get(position).getName().toLowerCase(Locale.ROOT);
+                wordTrigrams[position] = NgramCategoryNameSearch.wordTrigrams(names[position]);
+                trigrams.clear();
+                addTrigrams(names[position], trigrams);
+                for (String trigram : trigrams) {
+                    postings.computeIfAbsent(trigram, key -> new Postings()).add(position);
+                }
+            }
+            return new Index(categories, names, wordTrigrams, postings);
+        }
+
+        // Positions of the names containing the lowercase text, in the order of the catalog
+        void forEachMatch(String lowerText, IntConsumer action) {
+            Set<String> trigrams = new HashSet<>();
+            addTrigrams(lowerText, trigrams);
+            if (trigrams.isEmpty()) {
+                for (int position = 0; position < names.length; position++) {
+                    if (names[position].contains(lowerText)) {
+                        action.accept(position);
+                    }
+                }
+                return;
+            }
+
+            List<Postings> lists = new ArrayList<>(trigrams.size());
+            for (String trigram : trigrams) {
+                Postings list = postings.get(trigram);
+                if (list == null) {
+                    return;
+                }
+                lists.add(list);
+            }
+            // Walks the names of the rarest trigram and looks them up in the others. Having every trigram
+            // does not mean having them in order, contains() makes sure
+            lists.sort(Comparator.comparingInt(Postings::size));
+            Postings rarest = lists.getFirst();
+            candidates:
+            for (int i = 0; i < rarest.size(); i++) {
+                int position = rarest.positions[i];
+                for (int list = 1; list < lists.size(); list++) {
+                    if (!lists.get(list).contains(position)) {
+                        continue candidates;
+                    }
+                }
+                if (names[position].contains(lowerText)) {
+                    action.accept(position);
+                }
+            }
+        }
+    }
+
+    // Ascending positions of the names that contain a trigram
+    private static final class Postings {
+
+        private int[] positions = new int[4];
+        private int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        boolean contains(int position) {
+            return Arrays.binarySearch(positions, 0, size, position) >= 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/* PostgreSQL search. A GIN index of pg_trgm on categories.name serves ILIKE '%x%', and similarity()
+ * ranks the matches. The extension and the index are created if missing, the schema itself is left
+ * to Hibernate. */
+class TrigramCategoryNameSearch implements CategoryNameSearch {
+
+    static final String CREATE_EXTENSION = "create extension if not exists pg_trgm";
+
+    static final String CREATE_INDEX = """
+            create index if not exists idx_categories_name_trgm on categories using gin (name gin_trgm_ops)
+            """;
+
+    private static final String MATCHING = """
+            from categories
+            where name ilike ? escape '\\'
+            """;
+
+    // Sort properties of the category listing and their columns
+    private static final Map<String, String> COLUMNS = Map.of("id", "id", "name", "name", "description", "description");
+
+    private static final RowMapper<CategoryResponseDTO> ROW_MAPPER = (rs, rowNum) -> CategoryResponseDTO.builder()
+            .id(rs.getObject("id", UUID.class))
+            .name(rs.getString("name"))
+            .description(rs.getString("description"))
+            .version(rs.getLong("version"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    TrigramCategoryNameSearch(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        jdbcTemplate.execute(CREATE_INDEX);
+    }
+
+    @Override
+    public List<CategoryResponseDTO> find(String text, Sort sort, long offset, int limit) {
+        String sql = "select id, name, description, version " + MATCHING
+                + "order by similarity(name, ?) desc" + orderBy(sort) + ", id limit ? offset ?";
+        return jdbcTemplate.query(sql, ROW_MAPPER, containing(text), text, limit, offset);
+    }
+
+    @Override
+    public long count(String text) {
+        Long count = jdbcTemplate.queryForObject("select count(*) " + MATCHING, Long.class, containing(text));
+        return count != null ? count : 0;
+    }
+
+    private static String orderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder();
+        for (Sort.Order order : sort) {
+            String column = COLUMNS.get(order.getProperty());
+            if (column != null) {
+                orderBy.append(", ").append(column).append(order.isDescending() ? " desc" : " asc");
+            }
+        }
+        return orderBy.toString();
+    }
+
+    // The text as a literal inside the ILIKE pattern
+    private static String containing(String text) {
+        String escaped = text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
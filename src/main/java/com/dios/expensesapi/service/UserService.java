@@ -38,4 +38,9 @@ public class UserService {
         return userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", id.toString()));
     }
+
+    /* Reference to an already authenticated user, used to set relations without selecting the row */
+    public User getReference(UUID id) {
+        return userRepository.getReferenceById(id);
+    }
 }
@@ -0,0 +1,21 @@
+package com.dios.expensesapi.service;
+
+import jakarta.validation.Validator;
+
+import java.util.stream.Collectors;
+
+// Bean validation of a single item of a batch or import, as one readable line
+final class ValidationMessages {
+
+    private ValidationMessages() {
+    }
+
+    // "field: message" pairs sorted by field, null when the bean is valid
+    static String of(Validator validator, Object bean) {
+        String messages = validator.validate(bean).stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+        return messages.isEmpty() ? null : messages;
+    }
+}
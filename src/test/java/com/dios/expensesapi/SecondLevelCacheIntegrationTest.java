@@ -0,0 +1,131 @@
+package com.dios.expensesapi;
+
+import com.dios.expensesapi.config.JwtUtil;
+import com.dios.expensesapi.dto.CategoryDTO;
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.repository.CategoryRepository;
+import com.dios.expensesapi.repository.SqlStatementRecorder;
+import com.dios.expensesapi.repository.UserRepository;
+import com.dios.expensesapi.service.CategoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.regex.Pattern;
+
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* Whole application over H2 with the second-level cache of application.properties. Every request
+ * loads its user by email (jwt.recheck-user), so without the cache each one would select it. */
+@SpringBootTest(properties = {
+        "jwt.recheck-user=true",
+        "spring.datasource.url=jdbc:h2:mem:second-level-cache"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SecondLevelCacheIntegrationTest {
+
+    private static final Pattern USER_OR_CATEGORY_SELECT =
+            Pattern.compile("(?is)^select .* (from|join) (users|categories)\\b.*");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void createExpense_Repeatedly_ShouldNotSelectCategoriesOrUsers() throws Exception {
+        categoryRepository.save(Category.builder().name("Groceries").build());
+        String token = register("cached@example.com");
+
+        // El primer gasto carga el usuario y la categoría en las cachés
+        createExpense(token, "Groceries");
+        SqlStatementRecorder.clear();
+        statistics().clear();
+
+        for (int i = 0; i < 5; i++) {
+            createExpense(token, "Groceries");
+        }
+
+        assertThat(SqlStatementRecorder.statements())
+                .filteredOn(sql -> USER_OR_CATEGORY_SELECT.matcher(sql).matches())
+                .isEmpty();
+        assertThat(SqlStatementRecorder.statements())
+                .filteredOn(sql -> sql.startsWith("insert into expenses"))
+                .hasSize(5);
+        // Un acierto por petición: el usuario del token sale de la caché de consultas
+        assertThat(statistics().getQueryCacheHitCount()).isEqualTo(5);
+    }
+
+    @Test
+    void findByName_AfterTheCategoryIsRenamed_ShouldNotReturnTheCachedResult() {
+        Category category = categoryRepository.save(Category.builder().name("Travel").build());
+        assertThat(categoryRepository.findByName("Travel")).isPresent();
+        assertThat(categoryRepository.findByName("Travel")).isPresent();
+        assertThat(statistics().getDomainDataRegionStatistics(Category.BY_NAME_CACHE_REGION).getHitCount()).isPositive();
+
+        // El UPDATE condicional no pasa por la entidad, Hibernate invalida igualmente la región
+        CategoryDTO renamed = new CategoryDTO();
+        renamed.setName("Trips");
+        categoryService.update(category.getId(), renamed, category.getVersion());
+
+        assertThat(categoryRepository.findByName("Travel")).isEmpty();
+        assertThat(categoryRepository.findByName("Trips")).get()
+                .extracting(Category::getVersion)
+                .isEqualTo(category.getVersion() + 1);
+    }
+
+    private String register(String email) {
+        User user = userRepository.save(user(email));
+        return jwtUtil.generateToken(user);
+    }
+
+    private void createExpense(String token, String categoryName) throws Exception {
+        ExpenseDTO expense = new ExpenseDTO();
+        expense.setExpenseDate(LocalDateTime.of(2025, 1, 10, 12, 0));
+        expense.setCategoryName(categoryName);
+        expense.setAmount(new BigDecimal("12.50"));
+
+        mockMvc.perform(post("/api/expenses")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expense)))
+                .andExpect(status().isCreated());
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
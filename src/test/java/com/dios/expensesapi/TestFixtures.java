@@ -0,0 +1,39 @@
+package com.dios.expensesapi;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Datos de prueba compartidos por los tests que guardan usuarios y gastos
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    // Usuario activo sin id, listo para persistir
+    public static User user(String email) {
+        return User.builder()
+                .email(email)
+                .password("password")
+                .firstName("John")
+                .lastName("Doe")
+                .role(Role.USER)
+                .enabled(true)
+                .build();
+    }
+
+    // Gasto de una importación, con la categoría por id o por nombre
+    public static ExpenseDTO expense(UUID categoryId, String categoryName, String amount, String description) {
+        ExpenseDTO dto = new ExpenseDTO();
+        dto.setExpenseDate(LocalDateTime.of(2025, 1, 1, 12, 0));
+        dto.setCategoryId(categoryId);
+        dto.setCategoryName(categoryName);
+        dto.setAmount(new BigDecimal(amount));
+        dto.setDescription(description);
+        return dto;
+    }
+}
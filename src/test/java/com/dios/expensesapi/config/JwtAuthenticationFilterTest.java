@@ -0,0 +1,147 @@
+package com.dios.expensesapi.config;
+
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.CustomUserDetailsService;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "mySecretKeyForTestingPurposesOnlyThatIsLongEnoughForHS256Signing";
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
+    @Mock
+    private FilterChain filterChain;
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 86400000L, new VerifiedTokenCache(100));
+    private User testUser;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        testUser = User.builder()
+                .id(UUID.randomUUID())
+                .email("test@example.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build();
+        response = new MockHttpServletResponse();
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_WithValidToken_ShouldAuthenticateFromClaimsWithoutLoadingUser() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, false);
+        when(userDetailsService.isTokenVersionCurrent(testUser.getId(), 0)).thenReturn(true);
+
+        filter.doFilter(bearer(jwtUtil.generateToken(testUser)), response, filterChain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.getName()).isEqualTo("test@example.com");
+        assertThat(authentication.getPrincipal()).isInstanceOf(AuthenticatedUser.class);
+        assertThat(((AuthenticatedUser) authentication.getPrincipal()).getId()).isEqualTo(testUser.getId());
+
+        verify(userDetailsService, never()).loadAuthenticatedUser(any());
+        verify(userDetailsService, never()).loadUserByUsername(any());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_WithCachedToken_ShouldSkipVerificationOnSecondRequest() throws Exception {
+        VerifiedTokenCache tokenCache = new VerifiedTokenCache(100);
+        JwtUtil spiedJwtUtil = spy(new JwtUtil(SECRET, 86400000L, tokenCache));
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(spiedJwtUtil, userDetailsService, false);
+        when(userDetailsService.isTokenVersionCurrent(testUser.getId(), 0)).thenReturn(true);
+        String token = spiedJwtUtil.generateToken(testUser);
+
+        filter.doFilter(bearer(token), response, filterChain);
+        SecurityContextHolder.clearContext();
+        filter.doFilter(bearer(token), response, filterChain);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        verify(spiedJwtUtil, times(1)).verify(token);
+        assertThat(tokenCache.getMissCount()).isEqualTo(1);
+        assertThat(tokenCache.getHitCount()).isEqualTo(1);
+        // Revocation is still checked on cache hits
+        verify(userDetailsService, times(2)).isTokenVersionCurrent(testUser.getId(), 0);
+    }
+
+    @Test
+    void doFilter_WithRevokedTokenVersion_ShouldNotAuthenticate() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, false);
+        when(userDetailsService.isTokenVersionCurrent(testUser.getId(), 0)).thenReturn(false);
+
+        filter.doFilter(bearer(jwtUtil.generateToken(testUser)), response, filterChain);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_WithRecheckEnabled_ShouldLoadUserFromDatabase() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, true);
+        when(userDetailsService.loadAuthenticatedUser("test@example.com"))
+                .thenReturn(Optional.of(AuthenticatedUser.from(testUser)));
+
+        filter.doFilter(bearer(jwtUtil.generateToken(testUser)), response, filterChain);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        verify(userDetailsService).loadAuthenticatedUser("test@example.com");
+        verify(userDetailsService, never()).isTokenVersionCurrent(any(), anyInt());
+    }
+
+    @Test
+    void doFilter_WithRecheckEnabledAndDisabledUser_ShouldNotAuthenticate() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, true);
+        when(userDetailsService.loadAuthenticatedUser("test@example.com")).thenReturn(Optional.empty());
+
+        filter.doFilter(bearer(jwtUtil.generateToken(testUser)), response, filterChain);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void doFilter_WithInvalidToken_ShouldContinueUnauthenticated() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, false);
+
+        filter.doFilter(bearer("invalid.token.value"), response, filterChain);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    private MockHttpServletRequest bearer(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dios.expensesapi.config;
+
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.model.Role;
+import com.dios.expensesapi.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JwtUtilTest {
+
+    private static final String SECRET = "mySecretKeyForTestingPurposesOnlyThatIsLongEnoughForHS256Signing";
+
+    private JwtUtil jwtUtil;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 86400000L, new VerifiedTokenCache(100));
+        testUser = User.builder()
+                .id(UUID.randomUUID())
+                .email("test@example.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build();
+    }
+
+    @Test
+    void verify_WithValidToken_ShouldReturnSubjectAndExpiration() {
+        String token = jwtUtil.generateToken(testUser);
+
+        Optional<VerifiedToken> result = jwtUtil.verify(token);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getSubject()).isEqualTo("test@example.com");
+        assertThat(result.get().getExpiresAt()).isAfter(Instant.now());
+        assertThat(result.get().isExpired(Instant.now())).isFalse();
+    }
+
+    @Test
+    void verify_WithTamperedToken_ShouldReturnEmpty() {
+        String token = jwtUtil.generateToken(testUser);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThat(jwtUtil.verify(tampered)).isEmpty();
+    }
+
+    @Test
+    void verify_WithTokenSignedByAnotherKey_ShouldReturnEmpty() {
+        JwtUtil otherJwtUtil = new JwtUtil("myVerySecretKeyThatShouldBeAtLeast32CharactersLong", 86400000L, new VerifiedTokenCache(100));
+        String token = otherJwtUtil.generateToken(testUser);
+
+        assertThat(jwtUtil.verify(token)).isEmpty();
+    }
+
+    @Test
+    void verify_WithExpiredToken_ShouldReturnEmpty() {
+        JwtUtil expiredJwtUtil = new JwtUtil(SECRET, -1000L, new VerifiedTokenCache(100));
+        String token = expiredJwtUtil.generateToken(testUser);
+
+        assertThat(jwtUtil.verify(token)).isEmpty();
+    }
+
+    @Test
+    void verify_WithMalformedToken_ShouldReturnEmpty() {
+        assertThat(jwtUtil.verify("not-a-jwt")).isEmpty();
+        assertThat(jwtUtil.verify("")).isEmpty();
+    }
+
+    @Test
+    void validateToken_ShouldMatchUsername() {
+        String token = jwtUtil.generateToken(testUser);
+
+        assertThat(jwtUtil.validateToken(token, testUser)).isTrue();
+        assertThat(jwtUtil.validateToken(token, User.builder().email("other@example.com").build())).isFalse();
+    }
+
+    @Test
+    void toPrincipal_ShouldBuildUserFromClaims() {
+        testUser.setTokenVersion(3);
+        String token = jwtUtil.generateToken(testUser);
+
+        Optional<AuthenticatedUser> principal = jwtUtil.verify(token).flatMap(jwtUtil::toPrincipal);
+
+        assertThat(principal).isPresent();
+        assertThat(principal.get().getId()).isEqualTo(testUser.getId());
+        assertThat(principal.get().getEmail()).isEqualTo("test@example.com");
+        assertThat(principal.get().getRole()).isEqualTo(Role.USER);
+        assertThat(principal.get().getTokenVersion()).isEqualTo(3);
+        assertThat(principal.get().getAuthorities()).extracting("authority").containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void toPrincipal_WithoutUserClaims_ShouldReturnEmpty() {
+        // Tokens created from a plain UserDetails do not carry the user claims
+        String token = jwtUtil.generateToken(org.springframework.security.core.userdetails.User
+                .withUsername("test@example.com").password("password").roles("USER").build());
+
+        Optional<AuthenticatedUser> principal = jwtUtil.verify(token).flatMap(jwtUtil::toPrincipal);
+
+        assertThat(principal).isEmpty();
+    }
+}
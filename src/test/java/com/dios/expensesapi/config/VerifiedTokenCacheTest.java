@@ -0,0 +1,56 @@
+package com.dios.expensesapi.config;
+
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.model.Role;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VerifiedTokenCacheTest {
+
+    private final AuthenticatedUser principal = new AuthenticatedUser(UUID.randomUUID(), "test@example.com", Role.USER, 0);
+
+    @Test
+    void get_AfterPut_ShouldReturnPrincipalAndCountHit() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("token", Instant.now().plusSeconds(60), principal);
+
+        assertThat(cache.get("token")).contains(principal);
+        assertThat(cache.get("other-token")).isEmpty();
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void get_WithExpiredToken_ShouldReturnEmptyAndRemoveEntry() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("token", Instant.now().minusSeconds(1), principal);
+
+        assertThat(cache.get("token")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void put_WhenFull_ShouldStayBounded() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("token-" + i, Instant.now().plusSeconds(60), principal);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.get("token-999")).contains(principal);
+    }
+
+    @Test
+    void put_WithZeroMaxSize_ShouldDisableCache() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0);
+        cache.put("token", Instant.now().plusSeconds(60), principal);
+
+        assertThat(cache.get("token")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+}
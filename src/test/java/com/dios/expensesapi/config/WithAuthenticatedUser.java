@@ -0,0 +1,24 @@
+package com.dios.expensesapi.config;
+
+import org.springframework.security.test.context.support.WithSecurityContext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/* Same as @WithMockUser but with the AuthenticatedUser principal that JwtAuthenticationFilter sets,
+ * needed by controllers that receive the user through @AuthenticationPrincipal */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+@WithSecurityContext(factory = WithAuthenticatedUserSecurityContextFactory.class)
+public @interface WithAuthenticatedUser {
+
+    String DEFAULT_ID = "00000000-0000-0000-0000-000000000001";
+
+    String id() default DEFAULT_ID;
+
+    String email() default "user@example.com";
+
+    String role() default "USER";
+}
@@ -0,0 +1,26 @@
+package com.dios.expensesapi.config;
+
+import com.dios.expensesapi.model.AuthenticatedUser;
+import com.dios.expensesapi.model.Role;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithSecurityContextFactory;
+
+import java.util.UUID;
+
+public class WithAuthenticatedUserSecurityContextFactory implements WithSecurityContextFactory<WithAuthenticatedUser> {
+
+    @Override
+    public SecurityContext createSecurityContext(WithAuthenticatedUser annotation) {
+        AuthenticatedUser principal = new AuthenticatedUser(
+                UUID.fromString(annotation.id()),
+                annotation.email(),
+                Role.valueOf(annotation.role()),
+                0);
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        return context;
+    }
+}
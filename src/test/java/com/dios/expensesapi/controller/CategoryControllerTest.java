@@ -4,6 +4,8 @@ import com.dios.expensesapi.config.JwtUtil;
 import com.dios.expensesapi.config.SecurityConfig;
 import com.dios.expensesapi.dto.CategoryDTO;
 import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.CategorySliceResponseDTO;
+import com.dios.expensesapi.exception.PreconditionFailedException;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
 import com.dios.expensesapi.service.CategoryService;
 import com.dios.expensesapi.service.CustomUserDetailsService;
@@ -13,6 +15,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -25,6 +29,7 @@ import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -32,6 +37,7 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -96,6 +102,35 @@ public class CategoryControllerTest {
         verify(categoryService).findAll();
     }
 
+    @Test
+    @WithMockUser
+    void findAll_InSliceMode_ShouldReturnASliceWithTheApproximateTotal() throws Exception {
+        CategorySliceResponseDTO slice = new CategorySliceResponseDTO(List.of(testCategoryResponseDTO), 0, true, 12);
+        when(categoryService.findSlice(eq("food"), any(Pageable.class))).thenReturn(slice);
+
+        mockMvc.perform(get("/api/categories")
+                        .param("search", " food ")
+                        .param("size", "1")
+                        .param("mode", "slice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(testCategoryId.toString()))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.approximateTotal").value(12));
+
+        // Ni la página con COUNT(*) ni la búsqueda paginada
+        verify(categoryService, never()).findAll(any(Pageable.class));
+        verify(categoryService, never()).findByNameContaining(any(), any());
+    }
+
+    @Test
+    @WithMockUser
+    void findAll_WithInvalidMode_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/categories").param("mode", "all"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(categoryService);
+    }
+
     @Test
     @WithMockUser
     void findById_WithValidId_ShouldReturnCategory() throws Exception {
@@ -207,7 +242,7 @@ public class CategoryControllerTest {
     @Test
     @WithMockUser
     void update_WithValidData_ShouldUpdateCategory() throws Exception {
-        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class))).thenReturn(testCategoryResponseDTO);
+        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class), isNull())).thenReturn(testCategoryResponseDTO);
 
         mockMvc.perform(put("/api/categories/{id}", testCategoryId)
                         .with(csrf())
@@ -220,13 +255,13 @@ public class CategoryControllerTest {
                 .andExpect(jsonPath("$.description").value("Expenses related to meals, restaurants, and food purchases"))
                 .andDo(print());
 
-        verify(categoryService).update(eq(testCategoryId), any(CategoryDTO.class));
+        verify(categoryService).update(eq(testCategoryId), any(CategoryDTO.class), isNull());
     }
 
     @Test
     @WithMockUser
     void update_WithNonExistentId_ShouldThrowResourceNotFoundException() throws Exception {
-        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class)))
+        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class), isNull()))
                 .thenThrow(new ResourceNotFoundException("Category", testCategoryId.toString()));
 
         mockMvc.perform(put("/api/categories/{id}", testCategoryId)
@@ -236,7 +271,56 @@ public class CategoryControllerTest {
                 .andExpect(status().isNotFound())
                 .andDo(print());
 
-        verify(categoryService).update(eq(testCategoryId), any(CategoryDTO.class));
+        verify(categoryService).update(eq(testCategoryId), any(CategoryDTO.class), isNull());
+    }
+
+    @Test
+    @WithMockUser
+    void update_WithIfMatch_ShouldPassTheVersionAndReturnTheNewETag() throws Exception {
+        testCategoryResponseDTO.setVersion(1L);
+        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class), eq(0L))).thenReturn(testCategoryResponseDTO);
+
+        mockMvc.perform(put("/api/categories/{id}", testCategoryId)
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "W/\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testCategoryDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andDo(print());
+
+        verify(categoryService).update(eq(testCategoryId), any(CategoryDTO.class), eq(0L));
+    }
+
+    @Test
+    @WithMockUser
+    void update_WithStaleIfMatch_ShouldReturnPreconditionFailed() throws Exception {
+        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class), eq(0L)))
+                .thenThrow(new PreconditionFailedException("Category", testCategoryId.toString(), 0L));
+
+        mockMvc.perform(put("/api/categories/{id}", testCategoryId)
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testCategoryDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andDo(print());
+    }
+
+    @Test
+    @WithMockUser
+    void update_WithWildcardIfMatch_ShouldUpdateUnconditionally() throws Exception {
+        when(categoryService.update(eq(testCategoryId), any(CategoryDTO.class), isNull())).thenReturn(testCategoryResponseDTO);
+
+        mockMvc.perform(put("/api/categories/{id}", testCategoryId)
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "*")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testCategoryDTO)))
+                .andExpect(status().isOk())
+                .andDo(print());
+
+        verify(categoryService).update(eq(testCategoryId), any(CategoryDTO.class), isNull());
     }
 
     @Test
@@ -252,7 +336,7 @@ public class CategoryControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(categoryService, never()).update(any(UUID.class), any(CategoryDTO.class));
+        verify(categoryService, never()).update(any(UUID.class), any(CategoryDTO.class), any());
     }
 
 
@@ -317,7 +401,7 @@ public class CategoryControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(categoryService, never()).update(any(UUID.class), any(CategoryDTO.class));
+        verify(categoryService, never()).update(any(UUID.class), any(CategoryDTO.class), any());
     }
 
     @Test
@@ -335,6 +419,6 @@ public class CategoryControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(categoryService, never()).update(any(UUID.class), any(CategoryDTO.class));
+        verify(categoryService, never()).update(any(UUID.class), any(CategoryDTO.class), any());
     }
 }
@@ -2,38 +2,63 @@ package com.dios.expensesapi.controller;
 
 import com.dios.expensesapi.config.JwtUtil;
 import com.dios.expensesapi.config.SecurityConfig;
+import com.dios.expensesapi.config.WithAuthenticatedUser;
+import com.dios.expensesapi.dto.BatchCreateResponseDTO;
+import com.dios.expensesapi.dto.BatchItemResultDTO;
 import com.dios.expensesapi.dto.CategoryResponseDTO;
 import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseFilter;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.dto.SliceResponseDTO;
+import com.dios.expensesapi.exception.IngestionQueueFullException;
+import com.dios.expensesapi.exception.IngestionUnavailableException;
+import com.dios.expensesapi.exception.PreconditionFailedException;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
+import com.dios.expensesapi.repository.IdempotencyRecordRepository;
 import com.dios.expensesapi.service.CustomUserDetailsService;
+import com.dios.expensesapi.service.ExpenseIngestionQueue;
 import com.dios.expensesapi.service.ExpenseService;
+import com.dios.expensesapi.service.IdempotencyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.assertj.core.api.Assertions.assertThat;
 
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -43,7 +68,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * Test configuration that disables security for controller testing
  */
 @WebMvcTest(value = ExpenseController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, IdempotencyService.class})
 public class ExpenseControllerTest {
 
     @Autowired
@@ -52,6 +77,14 @@ public class ExpenseControllerTest {
     @MockitoBean
     private ExpenseService expenseService;
 
+    // Desactivada salvo en los tests del modo write-behind
+    @MockitoBean
+    private ExpenseIngestionQueue expenseIngestionQueue;
+
+    // IdempotencyService real, solo se simula su tabla
+    @MockitoBean
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
     // Se añade el JwtUtil y el CustorUserDetailsService para que se puedan cargar los beans
     // de configuración de seguridad correctamente
     @MockitoBean
@@ -67,7 +100,7 @@ public class ExpenseControllerTest {
     private ExpenseDTO testExpenseDTO;
     private ExpenseResponseDTO testExpenseResponseDTO;
     private final UUID testExpenseId = UUID.randomUUID();
-    private final UUID testUserId = UUID.randomUUID();
+    private final UUID testUserId = UUID.fromString(WithAuthenticatedUser.DEFAULT_ID);
     private final UUID testCategoryId = UUID.randomUUID();
 
     @BeforeEach
@@ -96,32 +129,213 @@ public class ExpenseControllerTest {
     }
 
     @Test
-    @WithMockUser
-    void findAll_ShouldReturnAllExpenses() throws Exception {
+    @WithAuthenticatedUser
+    void findAll_ShouldReturnFirstSlice() throws Exception {
         // Arrange
         List<ExpenseResponseDTO> expenses = Arrays.asList(testExpenseResponseDTO);
-        when(expenseService.findAll()).thenReturn(expenses);
+        when(expenseService.findSlice(eq(testUserId), argThat(ExpenseFilter::isUnfiltered), isNull(), eq(20)))
+                .thenReturn(new SliceResponseDTO<>(expenses, true, "next-cursor"));
 
         // Act and assert
         mockMvc.perform(get("/api/expenses"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$").isArray()) // Valida que la raíz sea un array
-                .andExpect(jsonPath("$[0].id").value(testExpenseId.toString())) /* Valida que el
+                .andExpect(jsonPath("$.content").isArray())
+                .andExpect(jsonPath("$.content[0].id").value(testExpenseId.toString())) /* Valida que el
          primer elemento del array coincida con id */
-                .andExpect(jsonPath("$[0].amount").value(100.50))
-                .andExpect(jsonPath("$[0].description").value("Test expense"))
-                .andExpect(jsonPath("$[0].category.name").value("Food"))
+                .andExpect(jsonPath("$.content[0].amount").value(100.50))
+                .andExpect(jsonPath("$.content[0].description").value("Test expense"))
+                .andExpect(jsonPath("$.content[0].category.name").value("Food"))
+                .andExpect(jsonPath("$.size").value(1))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next-cursor"))
                 .andDo(print()); // Imprime por consola la petición y la respuesta
 
-        verify(expenseService).findAll();
+        verify(expenseService).findSlice(eq(testUserId), argThat(ExpenseFilter::isUnfiltered), isNull(), eq(20));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findAll_WithCursorAndSize_ShouldPassThemToService() throws Exception {
+        // Arrange
+        when(expenseService.findSlice(eq(testUserId), argThat(ExpenseFilter::isUnfiltered), eq("abc"), eq(50)))
+                .thenReturn(new SliceResponseDTO<>(List.of(), false, null));
+
+        // Act and assert
+        mockMvc.perform(get("/api/expenses")
+                        .param("cursor", "abc")
+                        .param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isEmpty())
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andDo(print());
+
+        verify(expenseService).findSlice(eq(testUserId), argThat(ExpenseFilter::isUnfiltered), eq("abc"), eq(50));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void summarize_ByCategory_ShouldReturnBuckets() throws Exception {
+        // Arrange
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        when(expenseService.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.CATEGORY))
+                .thenReturn(List.of(new ExpenseSummaryDTO(testCategoryId, "Food", 2, new BigDecimal("150.50"),
+                        new BigDecimal("50.00"), new BigDecimal("100.50"))));
+
+        // Act and assert
+        mockMvc.perform(get("/api/expenses/summary")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00")
+                        .param("groupBy", "category"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].categoryName").value("Food"))
+                .andExpect(jsonPath("$[0].count").value(2))
+                .andExpect(jsonPath("$[0].total").value(150.50))
+                .andExpect(jsonPath("$[0].max").value(100.50))
+                .andExpect(jsonPath("$[0].period").doesNotExist())
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void summarize_WithoutDatesOrWithUnknownGrouping_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/expenses/summary").param("from", "2024-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/expenses/summary")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00")
+                        .param("groupBy", "year"))
+                .andExpect(status().isBadRequest());
+
+        verify(expenseService, never()).summarize(any(), any(), any(), any());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findAll_WithSizeOverLimit_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/expenses").param("size", "101"))
+                .andExpect(status().isBadRequest())
+                .andDo(print());
+
+        verify(expenseService, never()).findSlice(any(UUID.class), any(), any(), anyInt());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findAll_WithFilters_ShouldPassThemToService() throws Exception {
+        // Arrange
+        UUID otherCategoryId = UUID.randomUUID();
+        when(expenseService.findSlice(eq(testUserId), any(ExpenseFilter.class), isNull(), eq(20)))
+                .thenReturn(new SliceResponseDTO<>(List.of(testExpenseResponseDTO), false, null));
+
+        // Act
+        mockMvc.perform(get("/api/expenses")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00")
+                        .param("categoryId", testCategoryId.toString(), otherCategoryId.toString())
+                        .param("minAmount", "10.50")
+                        .param("maxAmount", "200")
+                        .param("sortBy", "amount")
+                        .param("sortDir", "asc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(testExpenseId.toString()))
+                .andDo(print());
+
+        // Assert
+        ArgumentCaptor<ExpenseFilter> filter = ArgumentCaptor.forClass(ExpenseFilter.class);
+        verify(expenseService).findSlice(eq(testUserId), filter.capture(), isNull(), eq(20));
+        assertThat(filter.getValue().getFrom()).isEqualTo(LocalDateTime.of(2024, 1, 1, 0, 0));
+        assertThat(filter.getValue().getTo()).isEqualTo(LocalDateTime.of(2024, 2, 1, 0, 0));
+        assertThat(filter.getValue().getCategoryIds()).containsExactly(testCategoryId, otherCategoryId);
+        assertThat(filter.getValue().getMinAmount()).isEqualByComparingTo("10.50");
+        assertThat(filter.getValue().getMaxAmount()).isEqualByComparingTo("200");
+        assertThat(filter.getValue().getSortBy()).isEqualTo(ExpenseFilter.SortField.AMOUNT);
+        assertThat(filter.getValue().getDirection()).isEqualTo(Sort.Direction.ASC);
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findAll_WithMinAmountGreaterThanMax_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/expenses")
+                        .param("minAmount", "100")
+                        .param("maxAmount", "10"))
+                .andExpect(status().isBadRequest())
+                .andDo(print());
+
+        verify(expenseService, never()).findSlice(any(UUID.class), any(), any(), anyInt());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findAll_WithUnknownSortField_ShouldReturnBadRequest() throws Exception {
+        // Un campo mal escrito no debe ordenar en silencio por fecha
+        mockMvc.perform(get("/api/expenses").param("sortBy", "amout"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid sortBy 'amout', valid values: expenseDate, amount"))
+                .andDo(print());
+
+        verify(expenseService, never()).findSlice(any(UUID.class), any(), any(), anyInt());
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
+    void findAll_WithInvalidSortDirection_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/expenses").param("sortDir", "sideways"))
+                .andExpect(status().isBadRequest())
+                .andDo(print());
+
+        verify(expenseService, never()).findSlice(any(UUID.class), any(), any(), anyInt());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    @SuppressWarnings("unchecked")
+    void export_ShouldStreamOneJsonObjectPerLine() throws Exception {
+        // Arrange
+        ExpenseResponseDTO secondExpense = ExpenseResponseDTO.builder()
+                .id(UUID.randomUUID())
+                .userId(testUserId)
+                .amount(new BigDecimal("20.00"))
+                .build();
+        doAnswer(invocation -> {
+            Consumer<ExpenseResponseDTO> consumer = invocation.getArgument(1);
+            consumer.accept(testExpenseResponseDTO);
+            consumer.accept(secondExpense);
+            return null;
+        }).when(expenseService).exportAll(eq(testUserId), any(Consumer.class));
+
+        // Act: the body is written asynchronously, so the result is read after the async dispatch
+        MvcResult result = mockMvc.perform(get("/api/expenses/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], ExpenseResponseDTO.class).getId()).isEqualTo(testExpenseId);
+        assertThat(objectMapper.readValue(lines[1], ExpenseResponseDTO.class).getId()).isEqualTo(secondExpense.getId());
+        assertThat(body).endsWith("\n");
+    }
+
+    @Test
+    void export_WithoutAuthentication_ShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(get("/api/expenses/export"))
+                .andExpect(status().isUnauthorized());
+
+        verify(expenseService, never()).exportAll(any(), any());
+    }
+
+    @Test
+    @WithAuthenticatedUser
     void findById_WithValidId_ShouldReturnExpense() throws Exception {
         // Arrange
-        when(expenseService.findById(testExpenseId)).thenReturn(Optional.of(testExpenseResponseDTO));
+        when(expenseService.findById(testUserId, testExpenseId)).thenReturn(Optional.of(testExpenseResponseDTO));
 
         // Act and assert
         mockMvc.perform(get("/api/expenses/{id}", testExpenseId))
@@ -133,25 +347,25 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.category.name").value("Food"))
                 .andDo(print());
 
-        verify(expenseService).findById(testExpenseId);
+        verify(expenseService).findById(testUserId, testExpenseId);
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void findById_WithNonExistentId_ShouldThrowResourceNotFoundException() throws Exception {
-        when(expenseService.findById(testExpenseId)).thenReturn(Optional.empty());
+        when(expenseService.findById(testUserId, testExpenseId)).thenReturn(Optional.empty());
 
         mockMvc.perform(get("/api/expenses/{id}", testExpenseId))
                 .andExpect(status().isNotFound())
                 .andDo(print());
 
-        verify(expenseService).findById(testExpenseId);
+        verify(expenseService).findById(testUserId, testExpenseId);
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithValidData_ShouldCreateExpense() throws Exception {
-        when(expenseService.create(any(ExpenseDTO.class))).thenReturn(testExpenseResponseDTO);
+        when(expenseService.create(eq(testUserId), any(ExpenseDTO.class))).thenReturn(testExpenseResponseDTO);
 
         mockMvc.perform(post("/api/expenses")
                         .with(csrf())
@@ -165,11 +379,11 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.category.name").value("Food"))
                 .andDo(print());
 
-        verify(expenseService).create(any(ExpenseDTO.class));
+        verify(expenseService).create(eq(testUserId), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithInvalidData_ShouldReturnBadRequest() throws Exception {
         // Arrange
         ExpenseDTO invalidExpenseDTO = new ExpenseDTO();
@@ -183,11 +397,11 @@ public class ExpenseControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithNegativeAmount_ShouldReturnBadRequest() throws Exception {
         testExpenseDTO.setAmount(new BigDecimal("-50.00"));
 
@@ -199,11 +413,11 @@ public class ExpenseControllerTest {
                 .andDo(print());
 
         // Nunca se llama a .create() de expenseService porque no se puede settear el amount a negativo por el ExpenseDTO
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithNullExpenseDate_ShouldReturnBadRequest() throws Exception {
         testExpenseDTO.setExpenseDate(null);
 
@@ -214,11 +428,11 @@ public class ExpenseControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithInvalidCategory_ShouldReturnBadRequest() throws Exception {
         testExpenseDTO.setCategoryId(null);
         testExpenseDTO.setCategoryName(null);
@@ -230,14 +444,176 @@ public class ExpenseControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void createAll_WhenEveryExpenseIsCreated_ShouldReturnCreated() throws Exception {
+        BatchCreateResponseDTO result = new BatchCreateResponseDTO(List.of(
+                BatchItemResultDTO.created(0, testExpenseResponseDTO),
+                BatchItemResultDTO.created(1, testExpenseResponseDTO)));
+        when(expenseService.createAll(eq(testUserId), anyList())).thenReturn(result);
+
+        mockMvc.perform(post("/api/expenses/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(testExpenseDTO, testExpenseDTO))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.requested").value(2))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.results[1].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[1].expense.id").value(testExpenseId.toString()))
+                .andDo(print());
+
+        verify(expenseService).createAll(eq(testUserId), argThat(expenses -> expenses.size() == 2));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void createAll_WithRejectedExpenses_ShouldReturnMultiStatus() throws Exception {
+        ExpenseDTO invalidExpenseDTO = new ExpenseDTO();
+        BatchCreateResponseDTO result = new BatchCreateResponseDTO(List.of(
+                BatchItemResultDTO.created(0, testExpenseResponseDTO),
+                BatchItemResultDTO.rejected(1, BatchItemResultDTO.Status.INVALID, "amount: Amount cannot be empty")));
+        when(expenseService.createAll(eq(testUserId), anyList())).thenReturn(result);
+
+        // Los elementos no se validan en el controlador, cada uno recibe su propio resultado
+        mockMvc.perform(post("/api/expenses/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(testExpenseDTO, invalidExpenseDTO))))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[1].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[1].expense").doesNotExist())
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void createAll_WithTooManyExpenses_ShouldReturnBadRequest() throws Exception {
+        List<ExpenseDTO> expenses = Collections.nCopies(501, testExpenseDTO);
+
+        mockMvc.perform(post("/api/expenses/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expenses)))
+                .andExpect(status().isBadRequest())
+                .andDo(print());
+
+        verify(expenseService, never()).createAll(any(), anyList());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void create_InWriteBehindMode_ShouldGoThroughIngestionQueue() throws Exception {
+        when(expenseIngestionQueue.isEnabled()).thenReturn(true);
+        when(expenseIngestionQueue.create(eq(testUserId), any(ExpenseDTO.class))).thenReturn(testExpenseResponseDTO);
+
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(testExpenseId.toString()))
+                .andDo(print());
+
+        verify(expenseService, never()).create(any(), any());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void create_WhenIngestionQueueIsFull_ShouldReturnTooManyRequests() throws Exception {
+        when(expenseIngestionQueue.isEnabled()).thenReturn(true);
+        when(expenseIngestionQueue.create(eq(testUserId), any(ExpenseDTO.class)))
+                .thenThrow(new IngestionQueueFullException(10));
+
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.errorCode").value("TOO_MANY_REQUESTS"))
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void create_WhenIngestionTimesOut_ShouldReturnServiceUnavailable() throws Exception {
+        when(expenseIngestionQueue.isEnabled()).thenReturn(true);
+        when(expenseIngestionQueue.create(eq(testUserId), any(ExpenseDTO.class)))
+                .thenThrow(new IngestionUnavailableException("Expense was not committed within 10000 ms"));
+
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.errorCode").value("SERVICE_UNAVAILABLE"))
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void create_WithRepeatedIdempotencyKey_ShouldReplayWithoutCallingService() throws Exception {
+        when(expenseService.create(eq(testUserId), any(ExpenseDTO.class))).thenReturn(testExpenseResponseDTO);
+        String body = objectMapper.writeValueAsString(testExpenseDTO);
+
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        // El reintento devuelve la respuesta guardada sin volver a crear el gasto
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(testExpenseId.toString()))
+                .andDo(print());
+
+        verify(expenseService, times(1)).create(eq(testUserId), any(ExpenseDTO.class));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void create_WithIdempotencyKeyOfAnotherRequest_ShouldReturnUnprocessableEntity() throws Exception {
+        when(expenseService.create(eq(testUserId), any(ExpenseDTO.class))).thenReturn(testExpenseResponseDTO);
+
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isCreated());
+
+        testExpenseDTO.setAmount(new BigDecimal("1.00"));
+        mockMvc.perform(post("/api/expenses")
+                        .with(csrf())
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.errorCode").value("IDEMPOTENCY_KEY_REUSED"))
+                .andDo(print());
+
+        verify(expenseService, times(1)).create(eq(testUserId), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void update_WithValidData_ShouldUpdateExpense() throws Exception {
         // Hay que poner el eq ya que usamos luego el any en la misma llamada
-        when(expenseService.update(eq(testExpenseId), any(ExpenseDTO.class))).thenReturn(testExpenseResponseDTO);
+        when(expenseService.update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), isNull())).thenReturn(testExpenseResponseDTO);
 
         mockMvc.perform(put("/api/expenses/{id}", testExpenseId)
                         .with(csrf())
@@ -250,13 +626,13 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.description").value("Test expense"))
                 .andDo(print());
 
-        verify(expenseService).update(eq(testExpenseId), any(ExpenseDTO.class));
+        verify(expenseService).update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), isNull());
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void update_WithNonExistentId_ShouldThrowResourceNotFoundException() throws Exception {
-        when(expenseService.update(eq(testExpenseId), any(ExpenseDTO.class)))
+        when(expenseService.update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), isNull()))
                 .thenThrow(new ResourceNotFoundException("Expense", testExpenseId.toString()));
 
         mockMvc.perform(put("/api/expenses/{id}", testExpenseId)
@@ -266,11 +642,61 @@ public class ExpenseControllerTest {
                 .andExpect(status().isNotFound())
                 .andDo(print());
 
-        verify(expenseService).update(eq(testExpenseId), any(ExpenseDTO.class));
+        verify(expenseService).update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), isNull());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void update_WithIfMatch_ShouldPassTheVersionAndReturnTheNewETag() throws Exception {
+        testExpenseResponseDTO.setVersion(4L);
+        when(expenseService.update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), eq(3L)))
+                .thenReturn(testExpenseResponseDTO);
+
+        mockMvc.perform(put("/api/expenses/{id}", testExpenseId)
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.version").value(4))
+                .andDo(print());
+
+        verify(expenseService).update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), eq(3L));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void update_WithStaleIfMatch_ShouldReturnPreconditionFailed() throws Exception {
+        when(expenseService.update(eq(testUserId), eq(testExpenseId), any(ExpenseDTO.class), eq(3L)))
+                .thenThrow(new PreconditionFailedException("Expense", testExpenseId.toString(), 3L));
+
+        mockMvc.perform(put("/api/expenses/{id}", testExpenseId)
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.errorCode").value("PRECONDITION_FAILED"))
+                .andDo(print());
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
+    void update_WithMalformedIfMatch_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(put("/api/expenses/{id}", testExpenseId)
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "\"abc\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testExpenseDTO)))
+                .andExpect(status().isBadRequest())
+                .andDo(print());
+
+        verify(expenseService, never()).update(any(UUID.class), any(UUID.class), any(ExpenseDTO.class), any());
+    }
+
+    @Test
+    @WithAuthenticatedUser
     void update_WithInvalidData_ShouldReturnBadRequest() throws Exception {
         ExpenseDTO invalidExpenseDTO = new ExpenseDTO();
         invalidExpenseDTO.setAmount(new BigDecimal("-100.00")); // Invalid negative amount
@@ -282,35 +708,64 @@ public class ExpenseControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(expenseService, never()).update(any(UUID.class), any(ExpenseDTO.class));
+        verify(expenseService, never()).update(any(UUID.class), any(UUID.class), any(ExpenseDTO.class), any());
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void delete_WithValidId_ShouldDeleteExpense() throws Exception {
-        doNothing().when(expenseService).deleteById(testExpenseId);
+        doNothing().when(expenseService).deleteById(testUserId, testExpenseId);
 
         mockMvc.perform(delete("/api/expenses/{id}", testExpenseId)
                         .with(csrf()))
                 .andExpect(status().isNoContent())
                 .andDo(print());
 
-        verify(expenseService).deleteById(testExpenseId);
+        verify(expenseService).deleteById(testUserId, testExpenseId);
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void delete_WithNonExistentId_ShouldThrowResourceNotFoundException() throws Exception {
         // doThrow is used in void methods, lets you stub a void method without calling it
         doThrow(new ResourceNotFoundException("Expense", testExpenseId.toString()))
-                .when(expenseService).deleteById(testExpenseId);
+                .when(expenseService).deleteById(testUserId, testExpenseId);
 
         mockMvc.perform(delete("/api/expenses/{id}", testExpenseId)
                         .with(csrf()))
                 .andExpect(status().isNotFound())
                 .andDo(print());
 
-        verify(expenseService).deleteById(testExpenseId);
+        verify(expenseService).deleteById(testUserId, testExpenseId);
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void deleteAll_ShouldReturnRequestedAndDeletedCounts() throws Exception {
+        UUID otherExpenseId = UUID.randomUUID();
+        when(expenseService.deleteAllById(testUserId, List.of(testExpenseId, otherExpenseId))).thenReturn(1);
+
+        mockMvc.perform(delete("/api/expenses")
+                        .param("id", testExpenseId.toString(), otherExpenseId.toString(), testExpenseId.toString())
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requested").value(2))
+                .andExpect(jsonPath("$.deleted").value(1))
+                .andDo(print());
+
+        // Los ids repetidos solo se envían una vez
+        verify(expenseService).deleteAllById(testUserId, List.of(testExpenseId, otherExpenseId));
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void deleteAll_WithoutIds_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(delete("/api/expenses").with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("MISSING_PARAMETER"))
+                .andDo(print());
+
+        verify(expenseService, never()).deleteAllById(any(), any());
     }
 
     @Test
@@ -319,7 +774,7 @@ public class ExpenseControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andDo(print());
 
-        verify(expenseService, never()).findAll();
+        verify(expenseService, never()).findSlice(any(UUID.class), any(), any(), anyInt());
     }
 
     @Test
@@ -330,11 +785,11 @@ public class ExpenseControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andDo(print());
 
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithLongDescription_ShouldReturnBadRequest() throws Exception {
         String longDescription = "A".repeat(1001); // Exceeds 1000-character limit
         testExpenseDTO.setDescription(longDescription);
@@ -346,11 +801,11 @@ public class ExpenseControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
     }
 
     @Test
-    @WithMockUser
+    @WithAuthenticatedUser
     void create_WithAmountExceedingPrecision_ShouldReturnBadRequest() throws Exception {
         testExpenseDTO.setAmount(new BigDecimal("123456789.123")); // More than 2 decimal places
 
@@ -361,7 +816,7 @@ public class ExpenseControllerTest {
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
-        verify(expenseService, never()).create(any(ExpenseDTO.class));
+        verify(expenseService, never()).create(any(UUID.class), any(ExpenseDTO.class));
     }
 
 }
@@ -0,0 +1,152 @@
+package com.dios.expensesapi.controller;
+
+import com.dios.expensesapi.config.JwtUtil;
+import com.dios.expensesapi.config.SecurityConfig;
+import com.dios.expensesapi.config.WithAuthenticatedUser;
+import com.dios.expensesapi.dto.ImportProgressDTO;
+import com.dios.expensesapi.service.CustomUserDetailsService;
+import com.dios.expensesapi.service.ExpenseImportService;
+import com.dios.expensesapi.service.ExpenseService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(value = ExpenseImportController.class)
+@Import(SecurityConfig.class)
+public class ExpenseImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ExpenseImportService expenseImportService;
+
+    // ExpensesAPIApplication lo recibe en su constructor
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    @MockitoBean
+    private JwtUtil jwtUtil;
+
+    @MockitoBean
+    private CustomUserDetailsService customUserDetailsService;
+
+    private final UUID testUserId = UUID.fromString(WithAuthenticatedUser.DEFAULT_ID);
+    private final UUID testImportId = UUID.randomUUID();
+
+    private static final String CSV = "expenseDate,categoryName,amount\n2025-01-01,Food,10\n";
+
+    @Test
+    @WithAuthenticatedUser
+    void importCsv_ShouldReadBodyAndReturnCreated() throws Exception {
+        // El servicio recibe el cuerpo de la petición como stream, sin pasar por un String
+        when(expenseImportService.importCsv(eq(testUserId), any(InputStream.class))).thenAnswer(invocation -> {
+            assertThat(readAll(invocation.getArgument(1))).isEqualTo(CSV);
+            return completed();
+        });
+
+        mockMvc.perform(post("/api/expenses/imports")
+                        .with(csrf())
+                        .contentType("text/csv")
+                        .content(CSV))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/expenses/imports/" + testImportId))
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.error").doesNotExist())
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void importFile_ShouldImportMultipartFile() throws Exception {
+        when(expenseImportService.importCsv(eq(testUserId), any(InputStream.class))).thenReturn(completed());
+        MockMultipartFile file = new MockMultipartFile("file", "expenses.csv", "text/csv",
+                CSV.getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(multipart("/api/expenses/imports").file(file).with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(testImportId.toString()))
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findById_WhenImportDoesNotExist_ShouldReturnNotFound() throws Exception {
+        when(expenseImportService.findById(testUserId, testImportId)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/expenses/imports/{id}", testImportId))
+                .andExpect(status().isNotFound())
+                .andDo(print());
+    }
+
+    @Test
+    @WithAuthenticatedUser
+    void findRejectedRows_ShouldReturnCsvFile(@TempDir Path dir) throws Exception {
+        Path rejected = Files.writeString(dir.resolve("rejected.csv"), "line,error,expenseDate\n2,\"bad\",x\n");
+        when(expenseImportService.findRejectedRows(testUserId, testImportId)).thenReturn(Optional.of(rejected));
+
+        mockMvc.perform(get("/api/expenses/imports/{id}/rejected", testImportId))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.parseMediaType("text/csv")))
+                .andExpect(content().string("line,error,expenseDate\n2,\"bad\",x\n"))
+                .andDo(print());
+    }
+
+    @Test
+    void importCsv_WithoutAuthentication_ShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(post("/api/expenses/imports")
+                        .with(csrf())
+                        .contentType("text/csv")
+                        .content(CSV))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(expenseImportService);
+    }
+
+    private ImportProgressDTO completed() {
+        return ImportProgressDTO.builder()
+                .id(testImportId)
+                .status(ImportProgressDTO.Status.COMPLETED)
+                .rowsRead(1)
+                .imported(1)
+                .build();
+    }
+
+    private static String readAll(InputStream csv) {
+        try {
+            return new String(csv.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
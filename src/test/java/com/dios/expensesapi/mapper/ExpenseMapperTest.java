@@ -5,6 +5,7 @@ import com.dios.expensesapi.dto.ExpenseDTO;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
 import com.dios.expensesapi.model.Category;
 import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.Money;
 import com.dios.expensesapi.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -210,7 +211,7 @@ public class ExpenseMapperTest {
             assertThat(result.getUserId()).isEqualTo(testUserId);
             assertThat(result.getExpenseDate()).isEqualTo(testExpenseDate);
             assertThat(result.getCategory()).isEqualTo(testCategoryResponseDTO);
-            assertThat(result.getAmount()).isEqualTo(testAmount);
+            assertThat(result.getAmount()).isEqualTo(Money.of(testAmount));
             assertThat(result.getDescription()).isEqualTo(testDescription);
             assertThat(result.getCreatedAt()).isEqualTo(testCreatedAt);
 
@@ -236,7 +237,7 @@ public class ExpenseMapperTest {
             assertThat(result.getUserId()).isEqualTo(testUserId);
             assertThat(result.getExpenseDate()).isNull();
             assertThat(result.getCategory()).isEqualTo(testCategoryResponseDTO);
-            assertThat(result.getAmount()).isEqualTo(testAmount);
+            assertThat(result.getAmount()).isEqualTo(Money.of(testAmount));
             assertThat(result.getDescription()).isNull();
             assertThat(result.getCreatedAt()).isNull();
 
@@ -259,7 +260,7 @@ public class ExpenseMapperTest {
             assertThat(result.getUserId()).isEqualTo(testUserId);
             assertThat(result.getExpenseDate()).isEqualTo(testExpenseDate);
             assertThat(result.getCategory()).isNull();
-            assertThat(result.getAmount()).isEqualTo(testAmount);
+            assertThat(result.getAmount()).isEqualTo(Money.of(testAmount));
             assertThat(result.getDescription()).isEqualTo(testDescription);
             assertThat(result.getCreatedAt()).isEqualTo(testCreatedAt);
 
@@ -321,7 +322,7 @@ public class ExpenseMapperTest {
             ExpenseResponseDTO result = ExpenseMapper.toResponseDTO(testExpense);
 
             assertThat(result).isNotNull();
-            assertThat(result.getAmount()).isEqualTo(BigDecimal.ZERO);
+            assertThat(result.getAmount()).isEqualTo(Money.ZERO);
         }
     }
 }
\ No newline at end of file
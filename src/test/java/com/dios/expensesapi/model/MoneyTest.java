@@ -0,0 +1,77 @@
+package com.dios.expensesapi.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void parse_ShouldReadUpToTwoDecimals() {
+        assertThat(Money.parse("12").cents()).isEqualTo(1200);
+        assertThat(Money.parse("12.3").cents()).isEqualTo(1230);
+        assertThat(Money.parse("12.34").cents()).isEqualTo(1234);
+        assertThat(Money.parse(".5").cents()).isEqualTo(50);
+        assertThat(Money.parse("-0.05").cents()).isEqualTo(-5);
+        assertThat(Money.parse("+99999999.99").cents()).isEqualTo(9_999_999_999L);
+    }
+
+    @Test
+    void parse_WithAnythingElse_ShouldThrowNumberFormatException() {
+        for (String text : List.of("", "-", ".", "1.234", "1e2", "1,50", " 1", "12.a", "99999999999999999999")) {
+            assertThatThrownBy(() -> Money.parse(text)).as(text).isInstanceOf(NumberFormatException.class);
+        }
+    }
+
+    @Test
+    void toString_ShouldWriteTwoDecimals() {
+        assertThat(Money.ofCents(123450)).hasToString("1234.50");
+        assertThat(Money.ofCents(7)).hasToString("0.07");
+        assertThat(Money.ofCents(-205)).hasToString("-2.05");
+        assertThat(Money.ZERO).hasToString("0.00");
+        assertThat(Money.ofCents(Long.MIN_VALUE)).hasToString("-92233720368547758.08");
+    }
+
+    @Test
+    void of_ShouldBeExact() {
+        assertThat(Money.of(new BigDecimal("150.75"))).isEqualTo(Money.ofCents(15075));
+        assertThat(Money.of(new BigDecimal("3"))).isEqualTo(Money.ofCents(300));
+        assertThat(Money.ofCents(15075).toBigDecimal()).isEqualByComparingTo("150.75");
+        assertThat(Money.of(null)).isNull();
+        // Sin redondeos: un tercer decimal es un error
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.005"))).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void plus_ShouldAddTheCents() {
+        assertThat(Money.parse("0.10").plus(Money.parse("0.20"))).isEqualTo(Money.parse("0.30"));
+        assertThat(Money.parse("5.00").minus(Money.parse("7.50"))).isEqualTo(Money.parse("-2.50"));
+        assertThat(Money.parse("1.00")).isGreaterThan(Money.parse("0.99"));
+    }
+
+    @Test
+    void json_ShouldBeTheSameNumberAsABigDecimalOfScale2() throws JsonProcessingException {
+        assertThat(objectMapper.writeValueAsString(Map.of("amount", Money.parse("150.75"))))
+                .isEqualTo(objectMapper.writeValueAsString(Map.of("amount", new BigDecimal("150.75"))))
+                .isEqualTo("{\"amount\":150.75}");
+        assertThat(objectMapper.writeValueAsString(Money.ofCents(-1000))).isEqualTo("-10.00");
+    }
+
+    @Test
+    void json_ShouldReadNumbersAndStrings() throws JsonProcessingException {
+        assertThat(objectMapper.readValue("150.75", Money.class)).isEqualTo(Money.ofCents(15075));
+        assertThat(objectMapper.readValue("\"20\"", Money.class)).isEqualTo(Money.ofCents(2000));
+        assertThatThrownBy(() -> objectMapper.readValue("1.999", Money.class))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+}
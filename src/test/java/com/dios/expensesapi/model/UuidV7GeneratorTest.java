@@ -0,0 +1,53 @@
+package com.dios.expensesapi.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UuidV7GeneratorTest {
+
+    @Test
+    void nextUuid_ShouldBeAVersion7RfcUuid() {
+        UUID uuid = UuidV7Generator.nextUuid();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void nextUuid_ShouldCarryTheCurrentTimeInTheFirst48Bits() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidV7Generator.nextUuid();
+        long after = System.currentTimeMillis();
+
+        long millis = uuid.getMostSignificantBits() >>> 16;
+        // El contador puede adelantarse un milisegundo si otro test generó muchos ids justo antes
+        assertThat(millis).isBetween(before, after + 1);
+    }
+
+    @Test
+    void nextUuid_ShouldBeStrictlyIncreasingWithinTheSameMillisecond() {
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            uuids.add(UuidV7Generator.nextUuid().toString());
+        }
+
+        // Comparamos el texto: es el orden en el que la base de datos compara los bytes
+        assertThat(uuids).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void nextUuid_ShouldBeUniqueAcrossThreads() {
+        Set<UUID> uuids = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 50_000).parallel().forEach(i -> uuids.add(UuidV7Generator.nextUuid()));
+
+        assertThat(uuids).hasSize(50_000);
+    }
+}
@@ -0,0 +1,95 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.ExpenseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.dios.expensesapi.TestFixtures.expense;
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// COPY only exists on PostgreSQL, skipped where Docker is not available
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Testcontainers(disabledWithoutDocker = true)
+public class CopyExpenseBulkLoaderTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    // ExpensesAPIApplication receives it in its constructor, the JPA slice does not create services
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    private ExpenseBulkLoader loader;
+    private User user;
+    private Category food;
+
+    @BeforeEach
+    void setUp() {
+        loader = new CopyExpenseBulkLoader(jdbcTemplate);
+        user = entityManager.persist(user("user@example.com"));
+        food = entityManager.persist(Category.builder().name("Food").build());
+        entityManager.flush();
+    }
+
+    @Test
+    void load_ShouldCopyRowsAndMergeThoseWithExistingCategory() {
+        List<ExpenseBulkLoader.Row> rows = List.of(
+                new ExpenseBulkLoader.Row(2, expense(food.getId(), null, "10.50", "Lunch, \"menu\" of the day")),
+                new ExpenseBulkLoader.Row(3, expense(null, "Food", "4.00", "Coffee\nand cake")),
+                new ExpenseBulkLoader.Row(4, expense(null, "Travel", "90.00", null)),
+                new ExpenseBulkLoader.Row(5, expense(UUID.randomUUID(), null, "1.00", "")),
+                // Más largo que categories.name: solo se rechaza su fila, no el chunk
+                new ExpenseBulkLoader.Row(6, expense(null, "x".repeat(150), "2.00", "Long category name")));
+
+        ExpenseBulkLoader.Result result = loader.load(user.getId(), rows);
+        entityManager.clear();
+
+        assertThat(result.missingCategory()).containsExactlyInAnyOrder(4L, 5L, 6L);
+        List<ExpenseResponseDTO> saved = expenseRepository.findFirstSlice(user.getId(), PageRequest.of(0, 10)).getContent();
+        // Lo insertado, con la categoría resuelta por id o por nombre
+        assertThat(result.loaded()).extracting(ExpenseMonthlyRollup.Contribution::expenseId)
+                .containsExactlyInAnyOrderElementsOf(saved.stream().map(ExpenseResponseDTO::getId).toList());
+        assertThat(result.loaded()).allSatisfy(expense -> {
+            assertThat(expense.userId()).isEqualTo(user.getId());
+            assertThat(expense.categoryId()).isEqualTo(food.getId());
+        });
+        assertThat(saved).extracting(ExpenseResponseDTO::getDescription)
+                .containsExactlyInAnyOrder("Lunch, \"menu\" of the day", "Coffee\nand cake");
+        assertThat(saved).allSatisfy(expense -> assertThat(expense.getCategory().getId()).isEqualTo(food.getId()));
+
+        // The staging table is emptied after every chunk
+        assertThat(jdbcTemplate.queryForObject("select count(*) from expense_import_staging", Long.class)).isZero();
+    }
+}
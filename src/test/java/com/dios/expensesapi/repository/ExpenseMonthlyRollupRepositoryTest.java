@@ -0,0 +1,213 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.ExpenseRollupMarker;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.ExpenseRollupService;
+import com.dios.expensesapi.service.ExpenseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ExpenseRollupService.class)
+public class ExpenseMonthlyRollupRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ExpenseMonthlyRollupRepository rollupRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ExpenseRollupMarkerRepository markerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ExpenseRollupService rollupService;
+
+    // ExpensesAPIApplication receives it in its constructor, the JPA slice does not create services
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    private User user;
+    private Category food;
+    private Category travel;
+
+    @BeforeEach
+    void setUp() {
+        user = entityManager.persist(user("rollup@example.com"));
+        food = entityManager.persist(Category.builder().name("Food").build());
+        travel = entityManager.persist(Category.builder().name("Travel").build());
+    }
+
+    @Test
+    void addDelta_ShouldInsertThenAccumulate() {
+        LocalDate month = LocalDate.of(2025, 1, 1);
+        rollupRepository.addDelta(user.getId(), food.getId(), month, 1000, 1, 1000, 1000);
+        rollupRepository.addDelta(user.getId(), food.getId(), month, 250, 1, 250, 250);
+        entityManager.clear();
+
+        ExpenseMonthlyRollup rollup = rollupRepository.findById(new ExpenseMonthlyRollup.Key(user.getId(), food.getId(), month))
+                .orElseThrow();
+        assertThat(rollup.getTotalCents()).isEqualTo(1250);
+        assertThat(rollup.getCount()).isEqualTo(2);
+        assertThat(rollup.getMinCents()).isEqualTo(250);
+        assertThat(rollup.getMaxCents()).isEqualTo(1000);
+    }
+
+    @Test
+    void changes_ShouldKeepTheRollupEqualToTheExpenses() {
+        // Alta de tres gastos, borrado del mínimo y del único de Travel
+        Expense small = add(food, LocalDateTime.of(2025, 1, 5, 9, 0), "2.50");
+        add(food, LocalDateTime.of(2025, 1, 20, 9, 0), "10.00");
+        add(food, LocalDateTime.of(2025, 2, 1, 0, 0), "7.25");
+        Expense trip = add(travel, LocalDateTime.of(2025, 1, 31, 23, 59), "300.00");
+
+        delete(Set.of(small, trip));
+
+        assertThat(sorted(rollupRepository.findByUserId(user.getId())))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(sorted(rollupRepository.aggregateExpenses(user.getId())));
+        ExpenseMonthlyRollup january = rollupRepository.findById(
+                new ExpenseMonthlyRollup.Key(user.getId(), food.getId(), LocalDate.of(2025, 1, 1))).orElseThrow();
+        // El mínimo se recalcula al borrar el gasto que lo era, el mes sin gastos desaparece
+        assertThat(january.getMinCents()).isEqualTo(1000);
+        assertThat(january.getCount()).isEqualTo(1);
+        assertThat(rollupRepository.findById(
+                new ExpenseMonthlyRollup.Key(user.getId(), travel.getId(), LocalDate.of(2025, 1, 1)))).isEmpty();
+    }
+
+    @Test
+    void summaries_ShouldMatchTheQueriesOnTheExpenses() {
+        add(food, LocalDateTime.of(2025, 1, 5, 9, 0), "2.50");
+        add(travel, LocalDateTime.of(2025, 1, 20, 9, 0), "120.00");
+        add(food, LocalDateTime.of(2025, 3, 1, 0, 0), "7.25");
+        add(food, LocalDateTime.of(2025, 4, 1, 0, 0), "99.00"); // fuera del rango
+        entityManager.flush();
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 1, 0, 0);
+
+        for (ExpenseSummaryDTO.GroupBy groupBy : List.of(ExpenseSummaryDTO.GroupBy.MONTH, ExpenseSummaryDTO.GroupBy.CATEGORY)) {
+            assertThat(rollupService.covers(from, to, groupBy)).isTrue();
+            assertThat(rollupService.summarize(user.getId(), from, to, groupBy))
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expenseRepository.summarize(user.getId(), from, to, groupBy));
+        }
+        assertThat(rollupService.covers(from, to.plusDays(1), ExpenseSummaryDTO.GroupBy.MONTH)).isFalse();
+        assertThat(rollupService.covers(from, to, ExpenseSummaryDTO.GroupBy.WEEK)).isFalse();
+    }
+
+    @Test
+    void covers_UntilARebuildMarksTheRollupComplete_ShouldBeFalse() {
+        // Un nodo que arranca sin el marcador, como en el primer despliegue o tras reiniciar a mitad del backfill
+        markerRepository.deleteAll();
+        ExpenseRollupService starting = new ExpenseRollupService(rollupRepository, markerRepository, expenseRepository,
+                userRepository, transactionManager, 1);
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 1, 0, 0);
+
+        assertThat(starting.covers(from, to, ExpenseSummaryDTO.GroupBy.MONTH)).isFalse();
+
+        ExpenseRollupService.RebuildReport rebuild = starting.rebuild(true);
+
+        assertThat(rebuild.failedUsers()).isEmpty();
+        assertThat(markerRepository.existsById(ExpenseRollupMarker.COMPLETE)).isTrue();
+        assertThat(starting.covers(from, to, ExpenseSummaryDTO.GroupBy.MONTH)).isTrue();
+    }
+
+    @Test
+    void rebuild_ShouldReportAndRepairDrift() {
+        // Gastos insertados sin pasar por el rollup, confirmados porque el rebuild usa sus propias transacciones
+        for (int month = 1; month <= 3; month++) {
+            entityManager.persist(Expense.builder()
+                    .user(user)
+                    .category(food)
+                    .expenseDate(LocalDateTime.of(2025, month, 10, 12, 0))
+                    .amount(new BigDecimal("10.00"))
+                    .build());
+        }
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        try {
+            ExpenseRollupService.RebuildReport verification = rollupService.rebuild(false);
+            ExpenseRollupService.RebuildReport rebuild = rollupService.rebuild(true);
+            ExpenseRollupService.RebuildReport afterwards = rollupService.rebuild(false);
+
+            assertThat(verification.outOfSync()).isEqualTo(3);
+            assertThat(verification.repaired()).isFalse();
+            assertThat(rebuild.months()).isEqualTo(3);
+            assertThat(rebuild.failedUsers()).isEmpty();
+            assertThat(afterwards.outOfSync()).isZero();
+            assertThat(rollupRepository.findByUserId(user.getId())).hasSize(3);
+        } finally {
+            TestTransaction.start();
+            for (String entity : List.of("ExpenseMonthlyRollup", "Expense", "Category", "User")) {
+                entityManager.getEntityManager().createQuery("delete from " + entity).executeUpdate();
+            }
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+        }
+    }
+
+    // Como ExpenseServiceImpl: el gasto y su contribución en la misma transacción
+    private Expense add(Category category, LocalDateTime expenseDate, String amount) {
+        Expense expense = entityManager.persist(Expense.builder()
+                .user(user)
+                .category(category)
+                .expenseDate(expenseDate)
+                .amount(new BigDecimal(amount))
+                .build());
+        rollupService.added(List.of(new ExpenseMonthlyRollup.Contribution(expense.getId(), user.getId(),
+                category.getId(), expenseDate, expense.getAmount())));
+        return expense;
+    }
+
+    private void delete(Set<Expense> expenses) {
+        Set<UUID> ids = new HashSet<>();
+        expenses.forEach(expense -> ids.add(expense.getId()));
+        entityManager.flush();
+        List<ExpenseMonthlyRollup.Contribution> removed = expenseRepository.deleteAllByIdInAndUserId(ids, user.getId());
+        rollupService.removed(removed);
+        entityManager.clear();
+    }
+
+    private static List<ExpenseMonthlyRollup> sorted(List<ExpenseMonthlyRollup> rollups) {
+        return rollups.stream()
+                .sorted(Comparator.comparing(ExpenseMonthlyRollup::getMonth)
+                        .thenComparing(rollup -> rollup.getCategoryId().toString()))
+                .toList();
+    }
+}
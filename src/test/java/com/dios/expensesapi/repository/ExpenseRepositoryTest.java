@@ -0,0 +1,444 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseCursor;
+import com.dios.expensesapi.dto.ExpenseFilter;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.Money;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.ExpenseService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class ExpenseRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    // ExpensesAPIApplication receives it in its constructor, the JPA slice does not create services
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    private User user;
+    private User otherUser;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        user = entityManager.persist(user("user@example.com"));
+        otherUser = entityManager.persist(user("other@example.com"));
+        category = entityManager.persist(Category.builder().name("Food").build());
+    }
+
+    @Test
+    void slices_ShouldWalkAllExpensesNewestFirstWithoutGapsOrDuplicates() {
+        // Arrange: 7 expenses, three of them sharing the same date so the id breaks the tie
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 12, 0);
+        for (int i = 0; i < 4; i++) {
+            persistExpense(user, base.plusDays(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            persistExpense(user, base.plusDays(10));
+        }
+        persistExpense(otherUser, base.plusDays(5));
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act: read 3 at a time following the last (date, id) of each slice
+        List<ExpenseResponseDTO> walked = new ArrayList<>();
+        Slice<ExpenseResponseDTO> slice = expenseRepository.findFirstSlice(user.getId(), PageRequest.of(0, 3));
+        walked.addAll(slice.getContent());
+        while (slice.hasNext()) {
+            ExpenseResponseDTO last = slice.getContent().getLast();
+            slice = expenseRepository.findSliceAfter(user.getId(), last.getExpenseDate(), last.getId(),
+                    PageRequest.of(0, 3));
+            walked.addAll(slice.getContent());
+        }
+
+        // Assert
+        assertThat(walked).hasSize(7);
+        assertThat(walked).extracting(ExpenseResponseDTO::getId).doesNotHaveDuplicates();
+        assertThat(walked).allMatch(expense -> expense.getUserId().equals(user.getId()));
+        for (int i = 1; i < walked.size(); i++) {
+            ExpenseResponseDTO previous = walked.get(i - 1);
+            ExpenseResponseDTO current = walked.get(i);
+            assertThat(previous.getExpenseDate()).isAfterOrEqualTo(current.getExpenseDate());
+            if (previous.getExpenseDate().equals(current.getExpenseDate())) {
+                // The database compares uuids byte by byte, UUID.compareTo uses signed longs
+                assertThat(previous.getId().toString()).isGreaterThan(current.getId().toString());
+            }
+        }
+    }
+
+    @Test
+    void findFirstSlice_WhenFewerExpensesThanSize_ShouldNotHaveNext() {
+        persistExpense(user, LocalDateTime.of(2025, 3, 1, 12, 0));
+        entityManager.flush();
+
+        Slice<ExpenseResponseDTO> slice = expenseRepository.findFirstSlice(user.getId(), PageRequest.of(0, 20));
+
+        assertThat(slice.getContent()).hasSize(1);
+        assertThat(slice.hasNext()).isFalse();
+    }
+
+    @Test
+    void findFirstSlice_ShouldRunOneStatementWithoutLoadingEntities() {
+        persistExpense(user, LocalDateTime.of(2025, 3, 1, 12, 0));
+        persistExpense(user, LocalDateTime.of(2025, 3, 2, 12, 0));
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+        SqlStatementRecorder.clear();
+
+        Slice<ExpenseResponseDTO> slice = expenseRepository.findFirstSlice(user.getId(), PageRequest.of(0, 20));
+
+        assertThat(slice.getContent()).hasSize(2);
+        assertThat(slice.getContent().getFirst().getCategory().getName()).isEqualTo("Food");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertProjectedSelect(SqlStatementRecorder.statements());
+    }
+
+    @Test
+    void findResponseByUserIdAndId_ShouldRunOneStatementWithoutLoadingEntities() {
+        Expense expense = persistExpense(user, LocalDateTime.of(2025, 3, 1, 12, 0));
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+        SqlStatementRecorder.clear();
+
+        Optional<ExpenseResponseDTO> result = expenseRepository.findResponseByUserIdAndId(user.getId(), expense.getId());
+        Optional<ExpenseResponseDTO> otherUsers = expenseRepository.findResponseByUserIdAndId(otherUser.getId(), expense.getId());
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getUserId()).isEqualTo(user.getId());
+        assertThat(otherUsers).isEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertProjectedSelect(SqlStatementRecorder.statements().subList(0, 1));
+    }
+
+    @Test
+    void search_ShouldApplyEveryFilter() {
+        Category other = entityManager.persist(Category.builder().name("Travel").build());
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 12, 0);
+        Expense match = persistExpense(user, category, base.plusDays(1), "25.00");
+        persistExpense(user, category, base.minusDays(1), "25.00");      // before from
+        persistExpense(user, category, base.plusDays(40), "25.00");      // after to
+        persistExpense(user, other, base.plusDays(2), "25.00");          // other category
+        persistExpense(user, category, base.plusDays(3), "5.00");        // below min
+        persistExpense(user, category, base.plusDays(4), "500.00");      // above max
+        persistExpense(otherUser, category, base.plusDays(5), "25.00");  // other user
+        entityManager.flush();
+        entityManager.clear();
+
+        ExpenseFilter filter = ExpenseFilter.builder()
+                .from(base)
+                .to(base.plusDays(30))
+                .categoryIds(List.of(category.getId()))
+                .minAmount(new BigDecimal("10"))
+                .maxAmount(new BigDecimal("100"))
+                .build();
+
+        Slice<ExpenseResponseDTO> slice = expenseRepository.search(user.getId(), filter, null, 20);
+
+        assertThat(slice.getContent()).extracting(ExpenseResponseDTO::getId).containsExactly(match.getId());
+        assertThat(slice.getContent().getFirst().getCategory().getName()).isEqualTo("Food");
+        assertThat(slice.hasNext()).isFalse();
+    }
+
+    @Test
+    void search_SortedByAmount_ShouldWalkAllExpensesWithoutGapsOrDuplicates() {
+        // Repeated amounts so the id has to break the tie between slices
+        String[] amounts = {"30.00", "10.00", "20.00", "10.00", "30.00", "10.00", "40.00"};
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 12, 0);
+        for (int i = 0; i < amounts.length; i++) {
+            persistExpense(user, category, base.plusDays(i), amounts[i]);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        ExpenseFilter filter = ExpenseFilter.builder()
+                .sortBy(ExpenseFilter.SortField.AMOUNT)
+                .direction(Sort.Direction.ASC)
+                .build();
+
+        List<ExpenseResponseDTO> walked = new ArrayList<>();
+        ExpenseCursor cursor = null;
+        Slice<ExpenseResponseDTO> slice;
+        do {
+            slice = expenseRepository.search(user.getId(), filter, cursor, 3);
+            walked.addAll(slice.getContent());
+            cursor = slice.hasNext() ? ExpenseCursor.of(slice.getContent().getLast()) : null;
+        } while (cursor != null);
+
+        assertThat(walked).hasSize(amounts.length);
+        assertThat(walked).extracting(ExpenseResponseDTO::getId).doesNotHaveDuplicates();
+        assertThat(walked).extracting(expense -> expense.getAmount().toString())
+                .containsExactly("10.00", "10.00", "10.00", "20.00", "30.00", "30.00", "40.00");
+    }
+
+    @Test
+    void deletes_ShouldOnlyRemoveExpensesOfTheUser() {
+        LocalDateTime date = LocalDateTime.of(2025, 3, 1, 12, 0);
+        Expense own = persistExpense(user, date);
+        Expense ownToo = persistExpense(user, date);
+        Expense foreign = persistExpense(otherUser, date);
+        entityManager.flush();
+
+        assertThat(expenseRepository.deleteByIdAndUserId(foreign.getId(), user.getId())).isEmpty();
+        assertThat(expenseRepository.deleteByIdAndUserId(own.getId(), user.getId()))
+                .map(ExpenseMonthlyRollup.Contribution::expenseId).contains(own.getId());
+
+        // Solo devuelve las filas borradas, con lo que aportaban al resumen mensual
+        SqlStatementRecorder.clear();
+        List<ExpenseMonthlyRollup.Contribution> removed = expenseRepository.deleteAllByIdInAndUserId(
+                List.of(own.getId(), ownToo.getId(), foreign.getId()), user.getId());
+        assertThat(removed).containsExactly(new ExpenseMonthlyRollup.Contribution(ownToo.getId(), user.getId(),
+                ownToo.getCategory().getId(), date, ownToo.getAmount()));
+        assertThat(SqlStatementRecorder.statements()).singleElement().asString()
+                .containsIgnoringCase("delete from expenses")
+                .doesNotContainIgnoringCase("for update");
+
+        entityManager.clear();
+        assertThat(expenseRepository.findById(foreign.getId())).isPresent();
+        assertThat(expenseRepository.findById(ownToo.getId())).isEmpty();
+    }
+
+    @Test
+    void updateIfVersionMatches_ShouldWriteOnlyTheExpectedVersionOfTheOwnExpense() {
+        Expense expense = persistExpense(user, LocalDateTime.of(2025, 3, 1, 12, 0));
+        Category other = entityManager.persist(Category.builder().name("Travel").build());
+        entityManager.flush();
+        long version = expense.getVersion();
+        LocalDateTime newDate = LocalDateTime.of(2025, 4, 1, 9, 0);
+
+        SqlStatementRecorder.clear();
+        Optional<ExpenseMonthlyRollup.Contribution> previous = expenseRepository.updateIfVersionMatches(
+                expense.getId(), user.getId(), version, newDate, other.getId(), new BigDecimal("99.99"), "Updated");
+
+        // One UPDATE that returns the old row, neither the expense nor the category are read first
+        assertThat(previous).contains(new ExpenseMonthlyRollup.Contribution(expense.getId(), user.getId(),
+                expense.getCategory().getId(), expense.getExpenseDate(), expense.getAmount()));
+        assertThat(SqlStatementRecorder.statements()).singleElement().asString()
+                .containsIgnoringCase("update expenses")
+                .doesNotContainIgnoringCase("for update");
+
+        // Stale version and foreign owner do not match
+        assertThat(expenseRepository.updateIfVersionMatches(expense.getId(), user.getId(), version,
+                newDate, other.getId(), BigDecimal.ONE, null)).isEmpty();
+        assertThat(expenseRepository.updateIfVersionMatches(expense.getId(), otherUser.getId(), version + 1,
+                newDate, other.getId(), BigDecimal.ONE, null)).isEmpty();
+
+        entityManager.clear();
+        ExpenseResponseDTO stored = expenseRepository.findResponseByUserIdAndId(user.getId(), expense.getId()).orElseThrow();
+        assertThat(stored.getVersion()).isEqualTo(version + 1);
+        assertThat(stored.getExpenseDate()).isEqualTo(newDate);
+        assertThat(stored.getCategory().getName()).isEqualTo("Travel");
+        assertThat(stored.getAmount()).isEqualTo(Money.parse("99.99"));
+    }
+
+    @Test
+    void persist_ShouldAssignTimeOrderedIds() {
+        Expense first = persistExpense(user, LocalDateTime.of(2025, 3, 1, 12, 0));
+        Expense second = persistExpense(user, LocalDateTime.of(2025, 2, 1, 12, 0));
+
+        assertThat(user.getId().version()).isEqualTo(7);
+        assertThat(category.getId().version()).isEqualTo(7);
+        assertThat(first.getId().version()).isEqualTo(7);
+        // Insertion order, whatever the expense date
+        assertThat(first.getId().toString()).isLessThan(second.getId().toString());
+    }
+
+    @Test
+    void indexes_ShouldServeDateAndCategoryRangeScans() {
+        // H2 shows the index it picks in the plan; same shapes as the listing and search queries
+        String byDate = explain("""
+                select e.id from expenses e
+                where e.user_id = ?1 and e.expense_date >= ?2 and e.expense_date < ?3
+                order by e.expense_date desc, e.id desc
+                """, 3);
+        String byCategory = explain("""
+                select e.id from expenses e
+                where e.user_id = ?1 and e.category_id = ?2 and e.expense_date >= ?3 and e.expense_date < ?4
+                """, 4);
+
+        assertThat(byDate).containsIgnoringCase("IDX_EXPENSES_USER_DATE_ID");
+        assertThat(byCategory).containsIgnoringCase("IDX_EXPENSES_USER_CATEGORY_DATE");
+    }
+
+    @Test
+    void summarize_ByMonth_ShouldAggregateEachMonthOfTheRange() {
+        persistExpense(user, category, LocalDateTime.of(2025, 1, 5, 9, 0), "10.00");
+        persistExpense(user, category, LocalDateTime.of(2025, 1, 31, 23, 59), "30.00");
+        persistExpense(user, category, LocalDateTime.of(2025, 3, 1, 0, 0), "5.50");
+        persistExpense(user, category, LocalDateTime.of(2025, 4, 1, 0, 0), "99.00");     // after to
+        persistExpense(otherUser, category, LocalDateTime.of(2025, 1, 10, 9, 0), "7.00"); // other user
+        entityManager.flush();
+
+        List<ExpenseSummaryDTO> summary = expenseRepository.summarize(user.getId(),
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 4, 1, 0, 0), ExpenseSummaryDTO.GroupBy.MONTH);
+
+        // Los meses sin gastos no aparecen
+        assertThat(summary).extracting(ExpenseSummaryDTO::getPeriod)
+                .containsExactly(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 1));
+        ExpenseSummaryDTO january = summary.getFirst();
+        assertThat(january.getCount()).isEqualTo(2);
+        assertThat(january.getTotal()).isEqualTo(Money.parse("40.00"));
+        assertThat(january.getMin()).isEqualTo(Money.parse("10.00"));
+        assertThat(january.getMax()).isEqualTo(Money.parse("30.00"));
+        assertThat(january.getCategoryId()).isNull();
+    }
+
+    @Test
+    void summarize_ByWeek_ShouldStartWeeksOnMonday() {
+        // 2025-03-02 is a Sunday and 2025-03-03 a Monday
+        persistExpense(user, category, LocalDateTime.of(2025, 3, 2, 12, 0), "10.00");
+        persistExpense(user, category, LocalDateTime.of(2025, 3, 3, 12, 0), "20.00");
+        persistExpense(user, category, LocalDateTime.of(2025, 3, 9, 12, 0), "30.00");
+        entityManager.flush();
+
+        List<ExpenseSummaryDTO> summary = expenseRepository.summarize(user.getId(),
+                LocalDateTime.of(2025, 3, 1, 0, 0), LocalDateTime.of(2025, 4, 1, 0, 0), ExpenseSummaryDTO.GroupBy.WEEK);
+
+        assertThat(summary).extracting(ExpenseSummaryDTO::getPeriod)
+                .containsExactly(LocalDate.of(2025, 2, 24), LocalDate.of(2025, 3, 3));
+        assertThat(summary).extracting(ExpenseSummaryDTO::getCount).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void summarize_ByCategory_ShouldOrderCategoriesByTotal() {
+        Category travel = entityManager.persist(Category.builder().name("Travel").build());
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 12, 0);
+        persistExpense(user, category, base, "10.00");
+        persistExpense(user, travel, base.plusDays(1), "200.00");
+        persistExpense(user, travel, base.plusDays(2), "50.00");
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementRecorder.clear();
+
+        List<ExpenseSummaryDTO> summary = expenseRepository.summarize(user.getId(),
+                base, base.plusMonths(1), ExpenseSummaryDTO.GroupBy.CATEGORY);
+
+        assertThat(summary).extracting(ExpenseSummaryDTO::getCategoryName).containsExactly("Travel", "Food");
+        assertThat(summary.getFirst().getCategoryId()).isEqualTo(travel.getId());
+        assertThat(summary.getFirst().getTotal()).isEqualTo(Money.parse("250.00"));
+        assertThat(summary.getFirst().getPeriod()).isNull();
+        // Una sola consulta agregada, sin cargar gastos
+        assertThat(SqlStatementRecorder.statements()).hasSize(1);
+        assertThat(SqlStatementRecorder.statements().getFirst().toLowerCase()).contains("group by");
+    }
+
+    @Test
+    void indexes_ShouldCoverTheSummaryQueries() {
+        String byMonth = explain("""
+                select date_trunc('month', e.expense_date), count(*), sum(e.amount), min(e.amount), max(e.amount)
+                from expenses e
+                where e.user_id = ?1 and e.expense_date >= ?2 and e.expense_date < ?3
+                group by date_trunc('month', e.expense_date)
+                """, 3);
+
+        assertThat(byMonth).containsIgnoringCase("IDX_EXPENSES_USER_DATE_CATEGORY_AMOUNT");
+    }
+
+    private String explain(String sql, int parameters) {
+        var query = entityManager.getEntityManager().createNativeQuery("explain " + sql);
+        for (int i = 1; i <= parameters; i++) {
+            query.setParameter(i, null);
+        }
+        return String.valueOf(query.getSingleResult());
+    }
+
+    /* One select of the 10 columns of the DTO: expense columns and version plus id, name and
+     * description of the category. The users table is never read. */
+    private void assertProjectedSelect(List<String> statements) {
+        assertThat(statements).hasSize(1);
+        String sql = statements.getFirst().toLowerCase();
+        assertThat(SqlStatementRecorder.selectedColumns(sql)).hasSize(10);
+        assertThat(sql).doesNotContain("users").doesNotContain("password");
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    @Test
+    void streamByUserId_ShouldReturnOnlyUserExpensesNewestFirst() {
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 12, 0);
+        persistExpense(user, base);
+        persistExpense(user, base.plusDays(2));
+        persistExpense(user, base.plusDays(1));
+        persistExpense(otherUser, base.plusDays(3));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<LocalDateTime> dates;
+        try (Stream<Expense> expenses = expenseRepository.streamByUserId(user.getId())) {
+            dates = expenses.map(Expense::getExpenseDate).toList();
+        }
+
+        assertThat(dates).containsExactly(base.plusDays(2), base.plusDays(1), base);
+    }
+
+    @Test
+    void findByIdInOrNameIn_WithOnlyNames_ShouldMatchByName() {
+        // Imports resolve names and ids together, one of the two lists is often empty
+        Category travel = entityManager.persist(Category.builder().name("Travel").build());
+        entityManager.flush();
+
+        List<Category> byName = categoryRepository.findByIdInOrNameIn(List.of(), List.of("Food", "Missing"));
+        List<Category> byId = categoryRepository.findByIdInOrNameIn(List.of(travel.getId()), List.of());
+
+        assertThat(byName).extracting(Category::getName).containsExactly("Food");
+        assertThat(byId).extracting(Category::getName).containsExactly("Travel");
+    }
+
+    private Expense persistExpense(User owner, LocalDateTime expenseDate) {
+        return persistExpense(owner, category, expenseDate, "10.00");
+    }
+
+    private Expense persistExpense(User owner, Category expenseCategory, LocalDateTime expenseDate, String amount) {
+        return entityManager.persist(Expense.builder()
+                .user(owner)
+                .category(expenseCategory)
+                .expenseDate(expenseDate)
+                .amount(new BigDecimal(amount))
+                .description("Expense")
+                .build());
+    }
+}
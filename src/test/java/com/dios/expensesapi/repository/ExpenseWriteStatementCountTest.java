@@ -0,0 +1,134 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.exception.PreconditionFailedException;
+import com.dios.expensesapi.exception.ResourceNotFoundException;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.ExpenseService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* Same guard as QueryCountRegressionTest one level up: the writes of ExpenseServiceImpl with the real
+ * rollup service, counting every statement Hibernate sends. Updates and deletes of expenses are a
+ * single statement on the expenses table, nothing reads or locks the rows before it. */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:expense-write-statements")
+@ActiveProfiles("test")
+@Transactional
+public class ExpenseWriteStatementCountTest {
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+    private Category category;
+    private ExpenseResponseDTO expense;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(user("writes@example.com"));
+        category = categoryRepository.save(Category.builder().name("Groceries").build());
+        expense = expenseService.create(user.getId(), expenseDTO("10.00"));
+        flushAndClear();
+    }
+
+    @Test
+    void update_WithMatchingVersion_ShouldWriteTheExpenseWithoutReadingItFirst() {
+        ExpenseResponseDTO updated = expenseService.update(user.getId(), expense.getId(), expenseDTO("25.00"),
+                expense.getVersion());
+
+        assertThat(updated.getVersion()).isEqualTo(expense.getVersion() + 1);
+        // La escritura es la primera sentencia; después solo el rollup y la lectura de la respuesta
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements.getFirst()).containsIgnoringCase("update expenses");
+        assertThat(statements).filteredOn(ExpenseWriteStatementCountTest::touchesExpenses).hasSize(2);
+        assertThat(statements).noneMatch(sql -> sql.toLowerCase().contains("for update"));
+    }
+
+    @Test
+    void update_WithStaleVersion_ShouldRunOneStatement() {
+        assertThatThrownBy(() -> expenseService.update(user.getId(), expense.getId(), expenseDTO("25.00"),
+                expense.getVersion() + 1))
+                .isInstanceOf(PreconditionFailedException.class);
+
+        // 412 sin leer el gasto ni tocar el rollup
+        assertThat(SqlStatementRecorder.statements()).singleElement().asString()
+                .containsIgnoringCase("update expenses");
+    }
+
+    @Test
+    void deleteById_ShouldDeleteTheExpenseWithoutReadingItFirst() {
+        expenseService.deleteById(user.getId(), expense.getId());
+
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements.getFirst()).containsIgnoringCase("delete from expenses");
+        assertThat(statements).filteredOn(ExpenseWriteStatementCountTest::touchesExpenses).hasSize(1);
+        assertThat(statements).noneMatch(sql -> sql.toLowerCase().contains("for update"));
+    }
+
+    @Test
+    void deleteById_WithMissingExpense_ShouldRunOneStatement() {
+        assertThatThrownBy(() -> expenseService.deleteById(user.getId(), UUID.randomUUID()))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(SqlStatementRecorder.statements()).singleElement().asString()
+                .containsIgnoringCase("delete from expenses");
+    }
+
+    @Test
+    void deleteAllById_ShouldDeleteTheExpensesWithoutReadingThemFirst() {
+        ExpenseResponseDTO other = expenseService.create(user.getId(), expenseDTO("5.00"));
+        flushAndClear();
+
+        assertThat(expenseService.deleteAllById(user.getId(), List.of(expense.getId(), other.getId()))).isEqualTo(2);
+
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements.getFirst()).containsIgnoringCase("delete from expenses");
+        assertThat(statements).filteredOn(ExpenseWriteStatementCountTest::touchesExpenses).hasSize(1);
+    }
+
+    // The inserts of the setup are sent now instead of with the first statement of the test
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementRecorder.clear();
+    }
+
+    private ExpenseDTO expenseDTO(String amount) {
+        ExpenseDTO expenseDTO = new ExpenseDTO();
+        expenseDTO.setCategoryId(category.getId());
+        expenseDTO.setExpenseDate(LocalDateTime.of(2025, 3, 1, 12, 0));
+        expenseDTO.setAmount(new BigDecimal(amount));
+        return expenseDTO;
+    }
+
+    // Statements of the expenses table itself; the rollup ones only read it in subqueries
+    private static boolean touchesExpenses(String sql) {
+        String lower = sql.toLowerCase().strip();
+        return !lower.contains("expense_monthly_rollup") && lower.matches("(?s).*\\bexpenses\\b.*");
+    }
+}
@@ -0,0 +1,209 @@
+package com.dios.expensesapi.repository;
+
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.mapper.CategoryMapper;
+import com.dios.expensesapi.mapper.ExpenseMapper;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.service.ExpenseService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Guards against N+1 queries: every read path is run over many rows spread across several
+ * categories and mapped like the services do, and the number of statements must not grow with
+ * the number of rows. */
+@DataJpaTest
+@ActiveProfiles("test")
+public class QueryCountRegressionTest {
+
+    private static final int EXPENSES = 30;
+    private static final int CATEGORIES = 6;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    // ExpensesAPIApplication receives it in its constructor, the JPA slice does not create services
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    private User user;
+    private Expense firstExpense;
+
+    @BeforeEach
+    void setUp() {
+        user = entityManager.persist(user("user@example.com"));
+
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES; i++) {
+            categories.add(entityManager.persist(Category.builder().name("Category " + i).build()));
+        }
+
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 12, 0);
+        for (int i = 0; i < EXPENSES; i++) {
+            Expense expense = entityManager.persist(Expense.builder()
+                    .user(user)
+                    .category(categories.get(i % CATEGORIES))
+                    .expenseDate(base.plusHours(i))
+                    .amount(new BigDecimal("10.00"))
+                    .build());
+            if (firstExpense == null) {
+                firstExpense = expense;
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics().clear();
+    }
+
+    @Test
+    void streamByUserId_ShouldFetchCategoriesInTheSameQuery() {
+        List<ExpenseResponseDTO> mapped;
+        try (Stream<Expense> expenses = expenseRepository.streamByUserId(user.getId())) {
+            mapped = expenses.map(ExpenseMapper::toResponseDTO).toList();
+        }
+
+        assertThat(mapped).hasSize(EXPENSES);
+        assertStatements(1);
+    }
+
+    @Test
+    void findByUser_IdAndId_ShouldNotLoadTheUser() {
+        Expense expense = expenseRepository.findByUser_IdAndId(user.getId(), firstExpense.getId()).orElseThrow();
+        ExpenseMapper.toResponseDTO(expense);
+
+        // Expense plus its lazy category, the user proxy is never initialized
+        assertStatements(2);
+        assertThat(statistics().getEntityLoadCount()).isEqualTo(2);
+    }
+
+    @Test
+    void lazyCategories_WithoutEntityGraph_ShouldBeLoadedInOneBatch() {
+        List<ExpenseResponseDTO> mapped = StreamSupport.stream(expenseRepository.findAll().spliterator(), false)
+                .map(ExpenseMapper::toResponseDTO)
+                .toList();
+
+        // Expenses, then all their categories with a single IN query thanks to the batch size
+        assertThat(mapped).hasSize(EXPENSES);
+        assertStatements(2);
+    }
+
+    @Test
+    void deletes_ShouldRunOneStatementWithoutLoadingEntities() {
+        assertThat(expenseRepository.deleteByIdAndUserId(firstExpense.getId(), user.getId())).isPresent();
+        assertStatements(1);
+
+        statistics().clear();
+        assertThat(expenseRepository.deleteAllByIdInAndUserId(List.of(firstExpense.getId()), user.getId())).isEmpty();
+        assertStatements(1);
+        assertThat(statistics().getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void conditionalUpdates_ShouldRunOneStatementWithoutLoadingEntities() {
+        Category category = categoryRepository.findByName("Category 1").orElseThrow();
+        statistics().clear();
+
+        assertThat(categoryRepository.updateIfVersionMatches(category.getId(), category.getVersion(),
+                "Renamed", null)).isEqualTo(1);
+        assertStatements(1);
+
+        statistics().clear();
+        assertThat(expenseRepository.updateIfVersionMatches(firstExpense.getId(), user.getId(), firstExpense.getVersion(),
+                firstExpense.getExpenseDate(), category.getId(), BigDecimal.ONE, null)).isPresent();
+        assertStatements(1);
+        assertThat(statistics().getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void batchCreation_ShouldResolveCategoriesOnceAndInsertInJdbcBatches() {
+        List<Category> categories = categoryRepository.findByIdInOrNameIn(
+                List.of(firstExpense.getCategory().getId()), List.of("Category 2", "Category 3"));
+        assertThat(categories).hasSize(3);
+        assertStatements(1);
+
+        statistics().clear();
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            expenses.add(Expense.builder()
+                    .user(entityManager.getEntityManager().getReference(User.class, user.getId()))
+                    .category(categories.get(i % categories.size()))
+                    .expenseDate(LocalDateTime.of(2025, 2, 1, 12, 0))
+                    .amount(BigDecimal.ONE)
+                    .build());
+        }
+        expenseRepository.saveAll(expenses);
+        entityManager.flush();
+
+        // 120 rows with hibernate.jdbc.batch_size=50: one prepared INSERT, executed in three batches
+        assertThat(statistics().getEntityInsertCount()).isEqualTo(120);
+        assertThat(statistics().getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void projectedReads_ShouldRunOneStatement() {
+        assertThat(expenseRepository.findFirstSlice(user.getId(), PageRequest.of(0, EXPENSES)).getContent())
+                .hasSize(EXPENSES);
+
+        assertStatements(1);
+    }
+
+    @Test
+    void categoryPages_ShouldRunContentAndCountQueriesOnly() {
+        assertThat(categoryRepository.findAll(PageRequest.of(0, 2)).map(CategoryMapper::toResponseDTO).getContent())
+                .hasSize(2);
+        assertStatements(2);
+
+        statistics().clear();
+        assertThat(categoryRepository.findByNameContainingIgnoreCase("category", PageRequest.of(0, 2))
+                .map(CategoryMapper::toResponseDTO).getTotalElements())
+                .isEqualTo(CATEGORIES);
+        assertStatements(2);
+    }
+
+    @Test
+    void categoryLookups_ShouldRunOneStatement() {
+        assertThat(categoryRepository.findByName("Category 1")).isPresent();
+        assertStatements(1);
+
+        statistics().clear();
+        assertThat(categoryRepository.findAll()).hasSize(CATEGORIES);
+        assertStatements(1);
+    }
+
+    private void assertStatements(long expected) {
+        assertThat(statistics().getPrepareStatementCount())
+                .as("SQL statements executed")
+                .isEqualTo(expected);
+    }
+
+    private Statistics statistics() {
+        return entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,40 @@
+package com.dios.expensesapi.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/* Hibernate StatementInspector that keeps every SQL statement sent to the database, so repository
+ * tests can check what a query really selects. Registered through
+ * hibernate.session_factory.statement_inspector, Hibernate creates the instance. */
+public class SqlStatementRecorder implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    public static List<String> statements() {
+        return new ArrayList<>(STATEMENTS);
+    }
+
+    // Columns of the select list of a statement, e.g. [e1_0.id, e1_0.user_id]
+    public static List<String> selectedColumns(String sql) {
+        String lower = sql.toLowerCase();
+        int start = lower.indexOf("select ") + "select ".length();
+        int end = lower.indexOf(" from ");
+        return Arrays.stream(sql.substring(start, end).split(","))
+                .map(String::trim)
+                .toList();
+    }
+}
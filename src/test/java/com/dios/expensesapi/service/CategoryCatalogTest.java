@@ -0,0 +1,112 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.repository.CategoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CategoryCatalogTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    private final Category food = Category.builder().id(UUID.randomUUID()).name("Food").description("Meals").build();
+    private final Category travel = Category.builder().id(UUID.randomUUID()).name("Travel").build();
+
+    @BeforeEach
+    void setUp() {
+        when(categoryRepository.findAll()).thenReturn(List.of(food, travel));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void find_ShouldLoadTheCategoriesOnceAndLookThemUpByIdAndName() {
+        CategoryCatalog catalog = new CategoryCatalog(categoryRepository, Duration.ofMinutes(1));
+
+        CategoryResponseDTO byId = catalog.find(food.getId());
+        assertThat(byId.getName()).isEqualTo("Food");
+        assertThat(byId.getDescription()).isEqualTo("Meals");
+        // La misma instancia en cada lectura, sin copias
+        assertThat(catalog.findByName("Food")).isSameAs(byId);
+        assertThat(catalog.findAll()).extracting(CategoryResponseDTO::getName).containsExactly("Food", "Travel");
+        assertThat(catalog.find(UUID.randomUUID())).isNull();
+        assertThat(catalog.find(null)).isNull();
+
+        verify(categoryRepository).findAll();
+        assertThat(catalog.getLoadCount()).isEqualTo(1);
+    }
+
+    @Test
+    void count_ShouldCountTheNamesContainingTheTextIgnoringCase() {
+        CategoryCatalog catalog = new CategoryCatalog(categoryRepository, Duration.ofMinutes(1));
+
+        assertThat(catalog.count(null)).isEqualTo(2);
+        assertThat(catalog.count("OO")).isEqualTo(1);
+        assertThat(catalog.count("x")).isZero();
+        verify(categoryRepository).findAll();
+    }
+
+    @Test
+    void count_ShouldBeCountedAgainOnlyForANewSnapshot() {
+        CategoryCatalog catalog = new CategoryCatalog(categoryRepository, Duration.ofMinutes(1));
+        assertThat(catalog.count("o")).isEqualTo(1);
+
+        // Sin transacción el refresh es inmediato; la nueva copia cuenta de nuevo
+        when(categoryRepository.findAll()).thenReturn(List.of(food, travel,
+                Category.builder().id(UUID.randomUUID()).name("Books").build()));
+        assertThat(catalog.count("o")).isEqualTo(1);
+        catalog.refresh();
+
+        assertThat(catalog.count("o")).isEqualTo(2);
+        verify(categoryRepository, times(2)).findAll();
+    }
+
+    @Test
+    void refresh_ShouldLoadAgainOnTheNextReadOnceTheTransactionCommits() {
+        CategoryCatalog catalog = new CategoryCatalog(categoryRepository, Duration.ofMinutes(1));
+        catalog.find(food.getId());
+
+        TransactionSynchronizationManager.initSynchronization();
+        catalog.refresh();
+        catalog.find(food.getId());
+        // Hasta el commit sigue la copia anterior
+        verify(categoryRepository, times(1)).findAll();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        catalog.find(food.getId());
+        verify(categoryRepository, times(2)).findAll();
+    }
+
+    @Test
+    void find_AfterTheTtl_ShouldLoadAgain() {
+        CategoryCatalog catalog = new CategoryCatalog(categoryRepository, Duration.ZERO);
+
+        catalog.find(food.getId());
+        catalog.findByName("Travel");
+
+        verify(categoryRepository, times(2)).findAll();
+    }
+}
@@ -2,10 +2,13 @@ package com.dios.expensesapi.service;
 
 import com.dios.expensesapi.dto.CategoryDTO;
 import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.dto.CategorySliceResponseDTO;
 import com.dios.expensesapi.exception.DuplicateResourceException;
+import com.dios.expensesapi.exception.PreconditionFailedException;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
 import com.dios.expensesapi.model.Category;
 import com.dios.expensesapi.repository.CategoryRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +18,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 
 import java.util.Arrays;
 import java.util.List;
@@ -32,6 +40,15 @@ public class CategoryServiceImplTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CategoryCatalog categoryCatalog;
+
+    @Mock
+    private CategoryNameSearch categoryNameSearch;
+
     @InjectMocks
     private CategoryServiceImpl categoryService;
 
@@ -63,8 +80,10 @@ public class CategoryServiceImplTest {
                 .description("Transport expenses")
                 .build();
 
-        List<Category> categories = Arrays.asList(testCategory, category2);
-        when(categoryRepository.findAll()).thenReturn(categories);
+        List<CategoryResponseDTO> categories = Arrays.asList(
+                new CategoryResponseDTO(testCategoryId, testCategoryName, testCategoryDescription, 0L),
+                new CategoryResponseDTO(category2.getId(), category2.getName(), category2.getDescription(), 0L));
+        when(categoryCatalog.findAll()).thenReturn(categories);
 
         // Act
         Iterable<CategoryResponseDTO> result = categoryService.findAll();
@@ -79,7 +98,78 @@ public class CategoryServiceImplTest {
         assertThat(responseDTO.getName()).isEqualTo(testCategoryName);
         assertThat(responseDTO.getDescription()).isEqualTo(testCategoryDescription);
 
-        verify(categoryRepository).findAll();
+        // Del catálogo en memoria, sin consultar la tabla
+        verify(categoryCatalog).findAll();
+        verifyNoInteractions(categoryRepository);
+    }
+
+    @Test
+    void findSlice_ShouldNotCountInTheDatabase() {
+        Category category = Category.builder().id(testCategoryId).name(testCategoryName).build();
+        Pageable pageable = PageRequest.of(1, 1);
+        when(categoryRepository.findSliceBy(pageable)).thenReturn(new SliceImpl<>(List.of(category), pageable, true));
+        when(categoryCatalog.count(null)).thenReturn(3L);
+
+        CategorySliceResponseDTO result = categoryService.findSlice(null, pageable);
+
+        assertThat(result.getContent()).extracting(CategoryResponseDTO::getId).containsExactly(testCategoryId);
+        assertThat(result.getPage()).isEqualTo(1);
+        assertThat(result.isHasNext()).isTrue();
+        // El total sale del catálogo, no de un COUNT(*)
+        assertThat(result.getApproximateTotal()).isEqualTo(3);
+        verify(categoryRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void findSlice_WithSearch_ShouldAskTheSearchForOneMoreCategory() {
+        CategoryResponseDTO food = new CategoryResponseDTO(UUID.randomUUID(), "Food", null, 0L);
+        CategoryResponseDTO seafood = new CategoryResponseDTO(UUID.randomUUID(), "Seafood", null, 0L);
+        Pageable pageable = PageRequest.of(2, 1);
+        when(categoryNameSearch.find("foo", pageable.getSort(), 2, 2)).thenReturn(List.of(food, seafood));
+        when(categoryCatalog.count("foo")).thenReturn(4L);
+
+        CategorySliceResponseDTO result = categoryService.findSlice("foo", pageable);
+
+        assertThat(result.getContent()).containsExactly(food);
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(result.getApproximateTotal()).isEqualTo(4);
+        verify(categoryNameSearch, never()).count(any());
+    }
+
+    @Test
+    void findByNameContaining_ShouldPageTheSearchResults() {
+        CategoryResponseDTO food = new CategoryResponseDTO(UUID.randomUUID(), "Food", null, 0L);
+        Pageable pageable = PageRequest.of(0, 1, Sort.by("name"));
+        when(categoryNameSearch.find("foo", pageable.getSort(), 0, 1)).thenReturn(List.of(food));
+        when(categoryNameSearch.count("foo")).thenReturn(5L);
+
+        Page<CategoryResponseDTO> result = categoryService.findByNameContaining("foo", pageable);
+
+        assertThat(result.getContent()).containsExactly(food);
+        assertThat(result.getTotalElements()).isEqualTo(5);
+        // Sin el LIKE '%foo%' del repositorio
+        verifyNoInteractions(categoryRepository);
+    }
+
+    @Test
+    void findByNameContaining_WhenThePageIsNotFull_ShouldNotCount() {
+        CategoryResponseDTO food = new CategoryResponseDTO(UUID.randomUUID(), "Food", null, 0L);
+        Pageable pageable = PageRequest.of(0, 10);
+        when(categoryNameSearch.find("foo", pageable.getSort(), 0, 10)).thenReturn(List.of(food));
+
+        Page<CategoryResponseDTO> result = categoryService.findByNameContaining("foo", pageable);
+
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        verify(categoryNameSearch, never()).count(any());
+    }
+
+    @Test
+    void findById_WhenTheCatalogHasTheCategory_ShouldNotQueryIt() {
+        CategoryResponseDTO cached = new CategoryResponseDTO(testCategoryId, testCategoryName, testCategoryDescription, 1L);
+        when(categoryCatalog.find(testCategoryId)).thenReturn(cached);
+
+        assertThat(categoryService.findById(testCategoryId)).containsSame(cached);
+        verifyNoInteractions(categoryRepository);
     }
 
     @Test
@@ -97,7 +187,9 @@ public class CategoryServiceImplTest {
         assertThat(responseDTO.getName()).isEqualTo(testCategoryName);
         assertThat(responseDTO.getDescription()).isEqualTo(testCategoryDescription);
 
+        // Creada en otro nodo después de cargar el catálogo: se recarga
         verify(categoryRepository).findById(testCategoryId);
+        verify(categoryCatalog).refresh();
     }
 
     @Test
@@ -108,6 +200,7 @@ public class CategoryServiceImplTest {
 
         assertThat(result).isEmpty();
         verify(categoryRepository).findById(testCategoryId);
+        verify(categoryCatalog, never()).refresh();
     }
 
     @Test
@@ -124,6 +217,7 @@ public class CategoryServiceImplTest {
 
         verify(categoryRepository).findByName(testCategoryName);
         verify(categoryRepository).save(any(Category.class));
+        verify(categoryCatalog).refresh();
     }
 
     @Test
@@ -178,7 +272,7 @@ public class CategoryServiceImplTest {
         when(categoryRepository.save(any(Category.class))).thenReturn(updatedCategory);
 
         // Act
-        CategoryResponseDTO result = categoryService.update(testCategoryId, updateDTO);
+        CategoryResponseDTO result = categoryService.update(testCategoryId, updateDTO, null);
 
         // Assert
         assertThat(result).isNotNull();
@@ -195,7 +289,7 @@ public class CategoryServiceImplTest {
     void update_WithNonExistentCategory_ShouldThrowResourceNotFoundException() {
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> categoryService.update(testCategoryId, testCategoryDTO))
+        assertThatThrownBy(() -> categoryService.update(testCategoryId, testCategoryDTO, null))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("Category")
                 .hasMessageContaining(testCategoryId.toString());
@@ -217,7 +311,7 @@ public class CategoryServiceImplTest {
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.of(testCategory));
         when(categoryRepository.findByName(testCategoryName)).thenReturn(Optional.of(existingCategoryWithSameName));
 
-        assertThatThrownBy(() -> categoryService.update(testCategoryId, testCategoryDTO))
+        assertThatThrownBy(() -> categoryService.update(testCategoryId, testCategoryDTO, null))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessageContaining("Category")
                 .hasMessageContaining("name")
@@ -228,6 +322,48 @@ public class CategoryServiceImplTest {
         verify(categoryRepository, never()).save(any(Category.class));
     }
 
+    @Test
+    void update_WithMatchingVersion_ShouldUpdateWithASingleStatement() {
+        when(categoryRepository.updateIfVersionMatches(testCategoryId, 3L, testCategoryName, testCategoryDescription))
+                .thenReturn(1);
+
+        CategoryResponseDTO result = categoryService.update(testCategoryId, testCategoryDTO, 3L);
+
+        assertThat(result.getId()).isEqualTo(testCategoryId);
+        assertThat(result.getName()).isEqualTo(testCategoryName);
+        assertThat(result.getDescription()).isEqualTo(testCategoryDescription);
+        assertThat(result.getVersion()).isEqualTo(4L);
+
+        // Ni lectura previa ni comprobación de nombre, solo el UPDATE condicional
+        verify(categoryRepository).updateIfVersionMatches(testCategoryId, 3L, testCategoryName, testCategoryDescription);
+        verify(categoryRepository, never()).findById(any());
+        verify(categoryRepository, never()).findByName(any());
+        verify(categoryRepository, never()).save(any(Category.class));
+        verify(categoryCatalog).refresh();
+    }
+
+    @Test
+    void update_WithStaleVersion_ShouldThrowPreconditionFailedException() {
+        when(categoryRepository.updateIfVersionMatches(testCategoryId, 3L, testCategoryName, testCategoryDescription))
+                .thenReturn(0);
+
+        assertThatThrownBy(() -> categoryService.update(testCategoryId, testCategoryDTO, 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessageContaining(testCategoryId.toString());
+
+        verify(categoryRepository, never()).findById(any());
+    }
+
+    @Test
+    void update_WithMatchingVersionAndDuplicateName_ShouldThrowDuplicateResourceException() {
+        when(categoryRepository.updateIfVersionMatches(testCategoryId, 3L, testCategoryName, testCategoryDescription))
+                .thenThrow(new DataIntegrityViolationException("Duplicate"));
+
+        assertThatThrownBy(() -> categoryService.update(testCategoryId, testCategoryDTO, 3L))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessageContaining(testCategoryName);
+    }
+
     @Test
     void update_WithSameNameForSameCategory_ShouldUpdateSuccessfully() {
         // Arrange - Actualizamos la misma categoría con el mismo nombre pero descripción diferente
@@ -247,7 +383,7 @@ public class CategoryServiceImplTest {
         when(categoryRepository.save(any(Category.class))).thenReturn(updatedCategory);
 
         // Act
-        CategoryResponseDTO result = categoryService.update(testCategoryId, updateDTO);
+        CategoryResponseDTO result = categoryService.update(testCategoryId, updateDTO, null);
 
         // Assert
         assertThat(result).isNotNull();
@@ -268,6 +404,7 @@ public class CategoryServiceImplTest {
 
         verify(categoryRepository).existsById(testCategoryId);
         verify(categoryRepository).deleteById(testCategoryId);
+        verify(categoryCatalog).refresh();
     }
 
     @Test
@@ -281,5 +418,6 @@ public class CategoryServiceImplTest {
 
         verify(categoryRepository).existsById(testCategoryId);
         verify(categoryRepository, never()).deleteById(any());
+        verify(categoryCatalog, never()).refresh();
     }
 }
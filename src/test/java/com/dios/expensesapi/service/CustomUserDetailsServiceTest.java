@@ -0,0 +1,59 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Test
+    void isTokenVersionCurrent_WithCachedVersion_ShouldNotQueryAgain() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, Duration.ofMinutes(1), 10);
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findActiveTokenVersion(userId)).thenReturn(Optional.of(3));
+
+        assertThat(service.isTokenVersionCurrent(userId, 3)).isTrue();
+        assertThat(service.isTokenVersionCurrent(userId, 2)).isFalse();
+
+        verify(userRepository, times(1)).findActiveTokenVersion(userId);
+    }
+
+    @Test
+    void isTokenVersionCurrent_WhenCacheIsFullOfFreshEntries_ShouldStillCacheNewUser() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, Duration.ofMinutes(1), 10);
+        when(userRepository.findActiveTokenVersion(any())).thenReturn(Optional.of(0));
+        for (int i = 0; i < 10; i++) {
+            service.isTokenVersionCurrent(UUID.randomUUID(), 0);
+        }
+
+        // La caché está llena y nada ha caducado: se expulsan entradas para hacer sitio al nuevo usuario
+        UUID newUser = UUID.randomUUID();
+        service.isTokenVersionCurrent(newUser, 0);
+        service.isTokenVersionCurrent(newUser, 0);
+
+        verify(userRepository, times(1)).findActiveTokenVersion(newUser);
+    }
+
+    @Test
+    void isTokenVersionCurrent_WhenUserIsDisabled_ShouldBeFalse() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, Duration.ofMinutes(1), 10);
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findActiveTokenVersion(userId)).thenReturn(Optional.empty());
+
+        assertThat(service.isTokenVersionCurrent(userId, 0)).isFalse();
+    }
+}
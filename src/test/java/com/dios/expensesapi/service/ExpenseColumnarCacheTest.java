@@ -0,0 +1,174 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.model.Category;
+import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.Money;
+import com.dios.expensesapi.model.User;
+import com.dios.expensesapi.repository.CategoryRepository;
+import com.dios.expensesapi.repository.ExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static com.dios.expensesapi.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class ExpenseColumnarCacheTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // ExpensesAPIApplication receives it in its constructor, the JPA slice does not create services
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    private final LocalDateTime from = LocalDateTime.of(2024, 12, 1, 0, 0);
+    private final LocalDateTime to = LocalDateTime.of(2025, 4, 1, 0, 0);
+
+    private CategoryCatalog catalog;
+    private ExpenseColumnarCache cache;
+    private User user;
+    private Category food;
+    private Category travel;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new CategoryCatalog(categoryRepository, Duration.ofMinutes(1));
+        cache = new ExpenseColumnarCache(expenseRepository, categoryRepository, catalog, transactionManager, 1 << 20,
+                Duration.ofMinutes(1));
+        user = entityManager.persist(user("columns@example.com"));
+        food = entityManager.persist(Category.builder().name("Food").build());
+        travel = entityManager.persist(Category.builder().name("Travel").build());
+    }
+
+    @Test
+    void summarize_ShouldMatchTheAggregationOfTheDatabase() {
+        // Cambios de semana, de mes y de año, y gastos fuera del rango por los dos lados
+        add(user, food, LocalDateTime.of(2024, 11, 30, 23, 59), "1000.00");
+        add(user, food, LocalDateTime.of(2024, 12, 29, 10, 0), "2.50");
+        add(user, travel, LocalDateTime.of(2024, 12, 30, 8, 0), "120.00");
+        add(user, food, LocalDateTime.of(2025, 1, 1, 0, 0), "7.25");
+        add(user, food, LocalDateTime.of(2025, 1, 1, 21, 30), "3.75");
+        add(user, travel, LocalDateTime.of(2025, 2, 28, 12, 0), "45.10");
+        add(user, food, LocalDateTime.of(2025, 3, 31, 23, 59), "9.99");
+        add(user, food, LocalDateTime.of(2025, 4, 1, 0, 0), "500.00");
+        entityManager.flush();
+
+        for (ExpenseSummaryDTO.GroupBy groupBy : ExpenseSummaryDTO.GroupBy.values()) {
+            assertThat(cache.summarize(user.getId(), from, to, groupBy))
+                    .as(groupBy.getValue())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expenseRepository.summarize(user.getId(), from, to, groupBy));
+        }
+        // Solo la primera carga lee la base de datos
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(ExpenseSummaryDTO.GroupBy.values().length - 1);
+    }
+
+    @Test
+    void apply_ShouldReachTheColumnsOnlyAfterTheTransactionCommits() {
+        Expense lunch = add(user, food, LocalDateTime.of(2025, 1, 10, 13, 0), "12.00");
+        entityManager.flush();
+        assertThat(total(ExpenseSummaryDTO.GroupBy.MONTH)).isEqualTo(Money.parse("12.00"));
+
+        // Dentro de la transacción no se aplica, y al hacer rollback se descarta
+        UUID dinnerId = UUID.randomUUID();
+        ExpenseMonthlyRollup.Contribution dinner = contribution(dinnerId, food, "30.00");
+        cache.apply(List.of(dinner), List.of());
+        assertThat(total(ExpenseSummaryDTO.GroupBy.MONTH)).isEqualTo(Money.parse("12.00"));
+        TestTransaction.end();
+        assertThat(total(ExpenseSummaryDTO.GroupBy.MONTH)).isEqualTo(Money.parse("12.00"));
+
+        // Sin transacción se aplica al momento: alta, actualización del importe y borrado
+        cache.apply(List.of(dinner), List.of());
+        cache.apply(List.of(contribution(dinnerId, travel, "35.00")), List.of(dinner));
+        assertThat(total(ExpenseSummaryDTO.GroupBy.MONTH)).isEqualTo(Money.parse("47.00"));
+        cache.apply(List.of(), List.of(contribution(lunch.getId(), food, "12.00")));
+        assertThat(cache.summarize(user.getId(), from, to, ExpenseSummaryDTO.GroupBy.CATEGORY))
+                .extracting(ExpenseSummaryDTO::getCategoryId)
+                .containsExactly(travel.getId());
+    }
+
+    @Test
+    void summarize_OverTheMemoryBudget_ShouldEvictTheLeastRecentlyUsedUser() {
+        User other = entityManager.persist(user("other@example.com"));
+        add(user, food, LocalDateTime.of(2025, 1, 10, 13, 0), "12.00");
+        add(other, food, LocalDateTime.of(2025, 1, 11, 13, 0), "8.00");
+        entityManager.flush();
+        // Cabe un usuario pero no dos
+        cache = new ExpenseColumnarCache(expenseRepository, categoryRepository, catalog, transactionManager,
+                64 * ExpenseColumns.ROW_BYTES + 1000, Duration.ofMinutes(1));
+
+        cache.summarize(user.getId(), from, to, ExpenseSummaryDTO.GroupBy.DAY);
+        cache.summarize(other.getId(), from, to, ExpenseSummaryDTO.GroupBy.DAY);
+        cache.summarize(other.getId(), from, to, ExpenseSummaryDTO.GroupBy.DAY);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        cache.summarize(user.getId(), from, to, ExpenseSummaryDTO.GroupBy.DAY);
+        assertThat(cache.getMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    void summarize_AfterTheMaxAge_ShouldLoadTheUserAgain() {
+        add(user, food, LocalDateTime.of(2025, 1, 10, 13, 0), "12.00");
+        entityManager.flush();
+        // Con edad máxima cero cada resumen vuelve a leer la base de datos
+        cache = new ExpenseColumnarCache(expenseRepository, categoryRepository, catalog, transactionManager, 1 << 20,
+                Duration.ZERO);
+        assertThat(total(ExpenseSummaryDTO.GroupBy.MONTH)).isEqualTo(Money.parse("12.00"));
+
+        // Un gasto escrito por otro nodo, sin pasar por apply()
+        add(user, travel, LocalDateTime.of(2025, 1, 12, 9, 0), "30.00");
+        entityManager.flush();
+
+        assertThat(total(ExpenseSummaryDTO.GroupBy.MONTH)).isEqualTo(Money.parse("42.00"));
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getHitCount()).isZero();
+    }
+
+    private Money total(ExpenseSummaryDTO.GroupBy groupBy) {
+        return cache.summarize(user.getId(), from, to, groupBy).stream()
+                .map(ExpenseSummaryDTO::getTotal)
+                .reduce(Money.ZERO, Money::plus);
+    }
+
+    private ExpenseMonthlyRollup.Contribution contribution(UUID expenseId, Category category, String amount) {
+        return new ExpenseMonthlyRollup.Contribution(expenseId, user.getId(), category.getId(),
+                LocalDateTime.of(2025, 1, 20, 20, 0), new BigDecimal(amount));
+    }
+
+    private Expense add(User owner, Category category, LocalDateTime expenseDate, String amount) {
+        return entityManager.persist(Expense.builder()
+                .user(owner)
+                .category(category)
+                .expenseDate(expenseDate)
+                .amount(new BigDecimal(amount))
+                .build());
+    }
+}
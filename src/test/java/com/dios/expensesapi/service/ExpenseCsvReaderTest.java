@@ -0,0 +1,149 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.exception.InvalidDataException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ExpenseCsvReaderTest {
+
+    @Test
+    void next_ShouldParseQuotedFieldsSpanningLines() throws IOException {
+
+        // Arrange - BOM al principio y columnas en otro orden
+        UUID categoryId = UUID.randomUUID();
+        String csv = "\uFEFFAmount,Description,categoryId,expenseDate\n"
+                + "12.30,\"Dinner, \"\"La Tasca\"\"\nwith friends\"," + categoryId + ",2025-03-01T21:15:00\n"
+                + "\n"
+                + "4,,," + "2025-03-02\n";
+
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(stream(csv))) {
+
+            // Act
+            ExpenseCsvReader.Record first = reader.next();
+            ExpenseCsvReader.Record second = reader.next();
+
+            // Assert
+            assertThat(reader.getHeader()).isEqualTo("Amount,Description,categoryId,expenseDate");
+
+            ExpenseDTO dto = first.toExpenseDTO();
+            assertThat(first.getLineNumber()).isEqualTo(2);
+            assertThat(dto.getAmount()).isEqualByComparingTo(new BigDecimal("12.30"));
+            assertThat(dto.getDescription()).isEqualTo("Dinner, \"La Tasca\"\nwith friends");
+            assertThat(dto.getCategoryId()).isEqualTo(categoryId);
+            assertThat(dto.getExpenseDate()).isEqualTo(LocalDateTime.of(2025, 3, 1, 21, 15));
+
+            // La línea en blanco se salta, pero cuenta para el número de línea
+            assertThat(second.getLineNumber()).isEqualTo(5);
+            assertThat(second.get(ExpenseCsvReader.DESCRIPTION)).isNull();
+            assertThat(second.toExpenseDTO().getExpenseDate()).isEqualTo(LocalDateTime.of(2025, 3, 2, 0, 0));
+
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void toExpenseDTO_WithInvalidValue_ShouldThrowInvalidDataException() throws IOException {
+
+        // Arrange
+        String csv = "expenseDate,categoryName,amount\n2025-01-01,Food,ten\n";
+
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(stream(csv))) {
+            ExpenseCsvReader.Record record = reader.next();
+
+            // Act & Assert
+            assertThatThrownBy(record::toExpenseDTO)
+                    .isInstanceOf(InvalidDataException.class)
+                    .hasMessage("amount: invalid value 'ten'");
+        }
+    }
+
+    @Test
+    void next_WithQuoteNeverClosed_ShouldStopAtTheLineLimitAndGoOn() throws IOException {
+
+        // Arrange - la comilla de la línea 2 no se cierra; el límite es de 3 líneas por registro
+        String csv = "expenseDate,categoryName,amount,description\n"
+                + "2025-01-01,Food,1,\"open\n"
+                + "2025-01-02,Food,2,\n"
+                + "2025-01-03,Food,3,\n"
+                + "2025-01-04,Food,4,\n";
+
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(stream(csv), 1000, 3)) {
+
+            // Act
+            ExpenseCsvReader.Record broken = reader.next();
+            ExpenseCsvReader.Record next = reader.next();
+
+            // Assert - el registro roto se rechaza y la lectura sigue en la línea siguiente
+            assertThat(broken.getLineNumber()).isEqualTo(2);
+            assertThat(broken.getRaw()).hasLineCount(3);
+            assertThatThrownBy(broken::toExpenseDTO)
+                    .isInstanceOf(InvalidDataException.class)
+                    .hasMessageContaining("3 lines");
+            assertThat(next.getLineNumber()).isEqualTo(5);
+            assertThat(next.toExpenseDTO().getAmount()).isEqualByComparingTo("4");
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void next_WithQuoteOpenAtTheEndOfTheFile_ShouldRejectTheRecord() throws IOException {
+
+        String csv = "expenseDate,categoryName,amount,description\n2025-01-01,Food,1,\"open\nstill open\n";
+
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(stream(csv))) {
+            ExpenseCsvReader.Record broken = reader.next();
+
+            assertThatThrownBy(broken::toExpenseDTO)
+                    .isInstanceOf(InvalidDataException.class)
+                    .hasMessageContaining("not closed");
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void next_WithRecordLongerThanTheLimit_ShouldKeepOnlyTheLimit() throws IOException {
+
+        // Arrange - una descripción de 10.000 caracteres con un límite de 100
+        String csv = "expenseDate,categoryName,amount,description\n"
+                + "2025-01-01,Food,1," + "x".repeat(10_000) + "\r\n"
+                + "2025-01-02,Food,2,short\r\n";
+
+        try (ExpenseCsvReader reader = new ExpenseCsvReader(stream(csv), 100, 10)) {
+
+            // Act
+            ExpenseCsvReader.Record tooLong = reader.next();
+            ExpenseCsvReader.Record next = reader.next();
+
+            // Assert
+            assertThat(tooLong.getRaw()).hasSize(100);
+            assertThatThrownBy(tooLong::toExpenseDTO)
+                    .isInstanceOf(InvalidDataException.class)
+                    .hasMessageContaining("100 characters");
+            assertThat(next.getLineNumber()).isEqualTo(3);
+            assertThat(next.get(ExpenseCsvReader.DESCRIPTION)).isEqualTo("short");
+        }
+    }
+
+    @Test
+    void constructor_WithoutRequiredColumns_ShouldThrowInvalidDataException() {
+
+        assertThatThrownBy(() -> new ExpenseCsvReader(stream("expenseDate,amount\n")))
+                .isInstanceOf(InvalidDataException.class);
+        assertThatThrownBy(() -> new ExpenseCsvReader(stream("")))
+                .isInstanceOf(InvalidDataException.class);
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,186 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ImportProgressDTO;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.repository.ExpenseBulkLoader;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ExpenseImportServiceImplTest {
+
+    @Mock
+    private ExpenseBulkLoader expenseBulkLoader;
+
+    @Mock
+    private ExpenseRollupService expenseRollupService;
+
+    @Mock
+    private ExpenseColumnarCache expenseColumnarCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path rejectedDir;
+
+    private ExpenseImportServiceImpl importService;
+
+    private final UUID testUserId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        // Chunks de 2 filas para comprobar los commits sin ficheros grandes
+        importService = new ExpenseImportServiceImpl(expenseBulkLoader, expenseRollupService, expenseColumnarCache,
+                Validation.buildDefaultValidatorFactory().getValidator(), transactionManager, 2, rejectedDir,
+                ExpenseCsvReader.DEFAULT_MAX_RECORD_CHARS, ExpenseCsvReader.DEFAULT_MAX_RECORD_LINES);
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(expenseBulkLoader.load(eq(testUserId), any())).thenReturn(new ExpenseBulkLoader.Result(Set.of(), List.of()));
+    }
+
+    @Test
+    void importCsv_ShouldCommitValidRowsInChunks() {
+
+        // Arrange
+        String csv = """
+                expenseDate,categoryName,amount,description
+                2025-01-01,Food,10.50,Lunch
+                2025-01-02,Food,20.00,Dinner
+                2025-01-03T09:30:00,Food,5,"Coffee, with milk"
+                """;
+
+        // Act
+        ImportProgressDTO result = importService.importCsv(testUserId, stream(csv));
+
+        // Assert
+        assertThat(result.getStatus()).isEqualTo(ImportProgressDTO.Status.COMPLETED);
+        assertThat(result.getRowsRead()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getRejected()).isZero();
+        assertThat(result.getFinishedAt()).isNotNull();
+
+        // 3 filas en chunks de 2: dos transacciones y dos cargas
+        verify(transactionManager, times(2)).commit(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ExpenseBulkLoader.Row>> loaded = ArgumentCaptor.forClass(List.class);
+        verify(expenseBulkLoader, times(2)).load(eq(testUserId), loaded.capture());
+        assertThat(loaded.getAllValues()).extracting(List::size).containsExactly(2, 1);
+        ExpenseBulkLoader.Row last = loaded.getAllValues().get(1).get(0);
+        assertThat(last.line()).isEqualTo(4);
+        assertThat(last.expense().getDescription()).isEqualTo("Coffee, with milk");
+        assertThat(Files.exists(rejectedDir.resolve(result.getId() + ".csv"))).isFalse();
+    }
+
+    @Test
+    void importCsv_ShouldAddLoadedRowsToTheRollup() {
+
+        // Arrange
+        String csv = """
+                expenseDate,categoryName,amount,description
+                2025-01-01,Food,10.50,Lunch
+                2025-01-02,Travel,20.00,Train
+                """;
+        List<ExpenseMonthlyRollup.Contribution> loaded = List.of(new ExpenseMonthlyRollup.Contribution(UUID.randomUUID(),
+                testUserId, UUID.randomUUID(), LocalDateTime.of(2025, 1, 1, 0, 0), new BigDecimal("10.50")));
+        when(expenseBulkLoader.load(eq(testUserId), any())).thenReturn(new ExpenseBulkLoader.Result(Set.of(3L), loaded));
+
+        // Act
+        importService.importCsv(testUserId, stream(csv));
+
+        // Assert: el rollup y las columnas reciben lo que insertó el loader, con la categoría que resolvió
+        verify(expenseRollupService).added(loaded);
+        verify(expenseColumnarCache).apply(loaded, List.of());
+    }
+
+    @Test
+    void importCsv_ShouldWriteRejectedRowsWithReason() throws Exception {
+
+        // Arrange
+        String csv = """
+                expenseDate,categoryName,amount,description
+                2025-01-01,Food,10.50,Lunch
+                not-a-date,Food,1,Bad date
+                2025-01-02,Food,-3,Negative
+                2025-01-03,Travel,7,Unknown category
+                """;
+        // El loader no encuentra la categoría de la línea 5
+        when(expenseBulkLoader.load(eq(testUserId), any())).thenReturn(new ExpenseBulkLoader.Result(Set.of(5L), List.of()));
+
+        // Act
+        ImportProgressDTO result = importService.importCsv(testUserId, stream(csv));
+
+        // Assert
+        assertThat(result.getRowsRead()).isEqualTo(4);
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getRejected()).isEqualTo(3);
+
+        Path rejected = importService.findRejectedRows(testUserId, result.getId()).orElseThrow();
+        List<String> lines = Files.readAllLines(rejected);
+        assertThat(lines.get(0)).isEqualTo("line,error,expenseDate,categoryName,amount,description");
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(1)).startsWith("3,\"expenseDate: invalid value 'not-a-date'\",not-a-date");
+        assertThat(lines.get(2)).startsWith("4,\"amount: ");
+        assertThat(lines.get(3)).isEqualTo("5,\"Category not found: Travel\",2025-01-03,Travel,7,Unknown category");
+    }
+
+    @Test
+    void importCsv_WithoutRequiredColumns_ShouldFailImport() {
+
+        // Arrange
+        String csv = "date,amount\n2025-01-01,3\n";
+
+        // Act & Assert
+        assertThatThrownBy(() -> importService.importCsv(testUserId, stream(csv)))
+                .isInstanceOf(InvalidDataException.class);
+
+        List<ImportProgressDTO> imports = importService.findAll(testUserId);
+        assertThat(imports).hasSize(1);
+        assertThat(imports.get(0).getStatus()).isEqualTo(ImportProgressDTO.Status.FAILED);
+        verifyNoInteractions(expenseBulkLoader);
+    }
+
+    @Test
+    void findById_ShouldOnlyReturnImportsOfTheUser() {
+
+        // Arrange
+        ImportProgressDTO result = importService.importCsv(testUserId, stream("expenseDate,categoryName,amount\n"));
+
+        // Act & Assert
+        assertThat(importService.findById(testUserId, result.getId())).isPresent();
+        assertThat(importService.findById(UUID.randomUUID(), result.getId())).isEmpty();
+        assertThat(importService.findRejectedRows(testUserId, result.getId())).isEmpty();
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
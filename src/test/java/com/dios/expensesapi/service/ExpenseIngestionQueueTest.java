@@ -0,0 +1,258 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.BatchItemResultDTO;
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.exception.IngestionQueueFullException;
+import com.dios.expensesapi.exception.IngestionUnavailableException;
+import com.dios.expensesapi.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ExpenseIngestionQueueTest {
+
+    @Mock
+    private ExpenseService expenseService;
+
+    private ExpenseIngestionQueue queue;
+    private final UUID testUserId = UUID.randomUUID();
+    // Tamaños de los grupos que recibe el servicio
+    private final List<Integer> groupSizes = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        when(expenseService.createGroup(anyList())).thenAnswer(invocation -> {
+            List<ExpenseService.NewExpense> expenses = invocation.getArgument(0);
+            groupSizes.add(expenses.size());
+            return created(expenses);
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void submit_ShouldCommitRequestsOfTheLingerWindowAsOneGroup() throws Exception {
+        queue = start(100, 10, Duration.ofMillis(200));
+
+        List<CompletableFuture<ExpenseResponseDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(queue.submit(testUserId, expense("Expense " + i)));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(futures.get(i).get(5, TimeUnit.SECONDS).getDescription()).isEqualTo("Expense " + i);
+        }
+        assertThat(groupSizes).containsExactly(5);
+        assertThat(queue.getDepth()).isZero();
+    }
+
+    @Test
+    void submit_ShouldSplitGroupsAtMaxBatchSize() throws Exception {
+        queue = start(100, 2, Duration.ofMillis(200));
+
+        List<CompletableFuture<ExpenseResponseDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(queue.submit(testUserId, expense("Expense " + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertThat(groupSizes).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_ShouldThrowIngestionQueueFullException() throws Exception {
+        // El writer se queda bloqueado en el primer grupo mientras se llena la cola
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            committing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return created(invocation.getArgument(0));
+        }).when(expenseService).createGroup(anyList());
+        queue = start(2, 10, Duration.ZERO);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        queue.bindTo(registry);
+
+        CompletableFuture<ExpenseResponseDTO> first = queue.submit(testUserId, expense("first"));
+        assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<ExpenseResponseDTO> second = queue.submit(testUserId, expense("second"));
+        CompletableFuture<ExpenseResponseDTO> third = queue.submit(testUserId, expense("third"));
+
+        assertThatThrownBy(() -> queue.submit(testUserId, expense("fourth")))
+                .isInstanceOf(IngestionQueueFullException.class);
+        assertThat(registry.get("expenses.ingestion.queue.depth").gauge().value()).isEqualTo(2.0);
+        assertThat(registry.get("expenses.ingestion.rejected").functionCounter().count()).isEqualTo(1.0);
+
+        release.countDown();
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+        assertThat(registry.get("expenses.ingestion.batch.size").summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_WhenGroupFails_ShouldRetryEachExpenseOnItsOwn() throws Exception {
+        // El grupo falla por una fila, solo esa falla al reintentar una a una
+        doAnswer(invocation -> {
+            List<ExpenseService.NewExpense> expenses = invocation.getArgument(0);
+            groupSizes.add(expenses.size());
+            if (expenses.stream().anyMatch(expense -> expense.expense().getDescription().equals("bad"))) {
+                throw new IllegalStateException("constraint violated");
+            }
+            return created(expenses);
+        }).when(expenseService).createGroup(anyList());
+        queue = start(100, 10, Duration.ofMillis(200));
+
+        CompletableFuture<ExpenseResponseDTO> good = queue.submit(testUserId, expense("good"));
+        CompletableFuture<ExpenseResponseDTO> bad = queue.submit(testUserId, expense("bad"));
+
+        assertThat(good.get(5, TimeUnit.SECONDS).getDescription()).isEqualTo("good");
+        assertThatThrownBy(() -> bad.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(groupSizes).containsExactly(2, 1, 1);
+    }
+
+    @Test
+    void create_WhenCategoryDoesNotExist_ShouldThrowResourceNotFoundException() {
+        doReturn(List.of(
+                BatchItemResultDTO.rejected(0, BatchItemResultDTO.Status.CATEGORY_NOT_FOUND, "Category not found: Travel")))
+                .when(expenseService).createGroup(anyList());
+        queue = start(100, 10, Duration.ZERO);
+
+        assertThatThrownBy(() -> queue.create(testUserId, expense("Train")))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Category not found: Travel");
+    }
+
+    @Test
+    void create_WhenTheExpenseIsStillQueuedAtTheTimeout_ShouldWithdrawItAndThrowIngestionUnavailableException()
+            throws Exception {
+        // El writer se queda en el primer grupo, el segundo gasto sigue en la cola cuando vence el timeout
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> committed = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            committing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            List<ExpenseService.NewExpense> expenses = invocation.getArgument(0);
+            expenses.forEach(expense -> committed.add(expense.expense().getDescription()));
+            return created(expenses);
+        }).when(expenseService).createGroup(anyList());
+        queue = start(100, 1, Duration.ZERO, Duration.ofMillis(50));
+
+        CompletableFuture<ExpenseResponseDTO> first = queue.submit(testUserId, expense("first"));
+        assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> queue.create(testUserId, expense("withdrawn")))
+                .isInstanceOf(IngestionUnavailableException.class)
+                .hasMessageContaining("50 ms");
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        CompletableFuture<ExpenseResponseDTO> after = queue.submit(testUserId, expense("after"));
+        after.get(5, TimeUnit.SECONDS);
+
+        // El retirado nunca llega a la base de datos, un reintento no lo duplica
+        assertThat(committed).containsExactly("first", "after");
+    }
+
+    @Test
+    void create_WhenTheGroupIsBeingCommittedAtTheTimeout_ShouldWaitForTheCommit() {
+        // Ya tomado por el writer no se puede retirar: se espera al commit y se devuelve lo creado
+        doAnswer(invocation -> {
+            Thread.sleep(200);
+            return created(invocation.getArgument(0));
+        }).when(expenseService).createGroup(anyList());
+        queue = start(100, 10, Duration.ZERO, Duration.ofMillis(50));
+
+        assertThat(queue.create(testUserId, expense("slow")).getDescription()).isEqualTo("slow");
+    }
+
+    @Test
+    void submit_WhenTheWriterThrowsAnError_ShouldFailTheGroupAndKeepWriting() throws Exception {
+        // Un Error no es RuntimeException: no se reintenta, pero el writer no puede morir con él
+        doThrow(new AssertionError("boom"))
+                .doAnswer(invocation -> created(invocation.getArgument(0)))
+                .when(expenseService).createGroup(anyList());
+        queue = start(100, 10, Duration.ZERO);
+
+        CompletableFuture<ExpenseResponseDTO> failed = queue.submit(testUserId, expense("first"));
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(AssertionError.class);
+
+        assertThat(queue.submit(testUserId, expense("second")).get(5, TimeUnit.SECONDS).getDescription())
+                .isEqualTo("second");
+    }
+
+    @Test
+    void submit_AfterStop_ShouldThrowIngestionUnavailableException() throws Exception {
+        queue = start(100, 10, Duration.ZERO);
+        queue.stop();
+
+        assertThatThrownBy(() -> queue.submit(testUserId, expense("late")))
+                .isInstanceOf(IngestionUnavailableException.class);
+        assertThat(queue.getDepth()).isZero();
+    }
+
+    private ExpenseIngestionQueue start(int capacity, int maxBatchSize, Duration linger) {
+        return start(capacity, maxBatchSize, linger, Duration.ofSeconds(5));
+    }
+
+    private ExpenseIngestionQueue start(int capacity, int maxBatchSize, Duration linger, Duration timeout) {
+        ExpenseIngestionQueue started = new ExpenseIngestionQueue(expenseService, true, capacity, maxBatchSize, linger,
+                timeout);
+        started.start();
+        return started;
+    }
+
+    private static List<BatchItemResultDTO> created(List<ExpenseService.NewExpense> expenses) {
+        List<BatchItemResultDTO> results = new ArrayList<>();
+        for (int i = 0; i < expenses.size(); i++) {
+            ExpenseService.NewExpense expense = expenses.get(i);
+            results.add(BatchItemResultDTO.created(i, ExpenseResponseDTO.builder()
+                    .id(UUID.randomUUID())
+                    .userId(expense.userId())
+                    .description(expense.expense().getDescription())
+                    .build()));
+        }
+        return results;
+    }
+
+    private static ExpenseDTO expense(String description) {
+        ExpenseDTO dto = new ExpenseDTO();
+        dto.setExpenseDate(LocalDateTime.of(2025, 1, 31, 18, 0));
+        dto.setCategoryName("Food");
+        dto.setAmount(new BigDecimal("9.99"));
+        dto.setDescription(description);
+        return dto;
+    }
+}
@@ -1,36 +1,57 @@
 package com.dios.expensesapi.service;
 
+import com.dios.expensesapi.dto.BatchCreateResponseDTO;
+import com.dios.expensesapi.dto.BatchItemResultDTO;
+import com.dios.expensesapi.dto.CategoryResponseDTO;
 import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseFilter;
+import com.dios.expensesapi.dto.ExpenseCursor;
 import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.dto.ExpenseSummaryDTO;
+import com.dios.expensesapi.dto.SliceResponseDTO;
 import com.dios.expensesapi.exception.DuplicateResourceException;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.exception.PreconditionFailedException;
 import com.dios.expensesapi.exception.ResourceNotFoundException;
+import com.dios.expensesapi.mapper.ExpenseMapper;
 import com.dios.expensesapi.model.Category;
 import com.dios.expensesapi.model.Expense;
+import com.dios.expensesapi.model.ExpenseMonthlyRollup;
+import com.dios.expensesapi.model.Money;
 import com.dios.expensesapi.model.User;
 import com.dios.expensesapi.repository.CategoryRepository;
 import com.dios.expensesapi.repository.ExpenseRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,10 +70,19 @@ public class ExpenseServiceImplTest {
     private UserService userService;
 
     @Mock
-    private SecurityContext securityContext;
+    private EntityManager entityManager;
 
     @Mock
-    private Authentication authentication;
+    private ExpenseRollupService expenseRollupService;
+
+    @Mock
+    private ExpenseColumnarCache expenseColumnarCache;
+
+    @Mock // Sin stubs no tiene ninguna categoría, las busca el repositorio
+    private CategoryCatalog categoryCatalog;
+
+    @Spy // Validador real, los lotes validan cada gasto por separado
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
     @InjectMocks // Inyecta los mocks en su constructor
     private ExpenseServiceImpl expenseService;
@@ -97,60 +127,233 @@ public class ExpenseServiceImplTest {
         testExpenseDTO.setAmount(new BigDecimal("100.50"));
         testExpenseDTO.setDescription("Lunch");
 
-        // Mock security context
-        SecurityContextHolder.setContext(securityContext);
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(testUserEmail);
-        when(userService.findByEmail(testUserEmail)).thenReturn(testUser);
+        // The user id comes from the authenticated principal, the service only needs a reference
+        when(userService.getReference(testUserId)).thenReturn(testUser);
+        when(entityManager.getReference(Category.class, testCategoryId)).thenReturn(testCategory);
     }
 
     @Test
-     void findAll_ShouldReturnAllExpensesForCurrentUser() {
+     void findSlice_WithoutCursor_ShouldReturnFirstSliceForCurrentUser() {
 
         // Arrange
         List<Expense> expenses = Arrays.asList(testExpense);
-        when(expenseRepository.findByUser(testUser)).thenReturn(expenses);
+        when(expenseRepository.findFirstSlice(testUserId, PageRequest.of(0, 20)))
+                .thenReturn(new SliceImpl<>(toResponseDTOs(expenses), PageRequest.of(0, 20), false));
 
         // Act
-        Iterable<ExpenseResponseDTO> result = expenseService.findAll();
+        SliceResponseDTO<ExpenseResponseDTO> result = expenseService.findSlice(testUserId, ExpenseFilter.none(), null, 20);
 
         // Assert
         assertThat(result).isNotNull();
-        List<ExpenseResponseDTO> resultList = (List<ExpenseResponseDTO>) result;
-        assertThat(resultList).hasSize(1);
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.isHasNext()).isFalse();
+        assertThat(result.getNextCursor()).isNull();
 
-        ExpenseResponseDTO responseDTO = resultList.getFirst();
+        ExpenseResponseDTO responseDTO = result.getContent().getFirst();
         assertThat(responseDTO.getId()).isEqualTo(testExpenseId);
         assertThat(responseDTO.getUserId()).isEqualTo(testUserId);
-        assertThat(responseDTO.getAmount()).isEqualTo(new BigDecimal("100.50"));
+        assertThat(responseDTO.getAmount()).isEqualTo(Money.parse("100.50"));
         assertThat(responseDTO.getDescription()).isEqualTo("Lunch");
         assertThat(responseDTO.getCategory().getName()).isEqualTo("Food");
 
-        /* Se verifica que durante la ejecución del expenseService.findAll() se invocaron
+        /* Se verifica que durante la ejecución del expenseService.findSlice(testUserId, ExpenseFilter.none(), null, 20) se invocaron
          los siguientes métodos con los siguientes atributos */
-        verify(expenseRepository).findByUser(testUser);
-        verify(userService).findByEmail(testUserEmail);
+        verify(expenseRepository).findFirstSlice(testUserId, PageRequest.of(0, 20));
+        verify(userService, never()).findByEmail(any());
+    }
+
+    @Test
+     void findSlice_WhenMoreExpensesExist_ShouldReturnCursorOfLastExpense() {
+
+        // Arrange
+        when(expenseRepository.findFirstSlice(testUserId, PageRequest.of(0, 1)))
+                .thenReturn(new SliceImpl<>(toResponseDTOs(List.of(testExpense)), PageRequest.of(0, 1), true));
+
+        // Act
+        SliceResponseDTO<ExpenseResponseDTO> result = expenseService.findSlice(testUserId, ExpenseFilter.none(), null, 1);
+
+        // Assert
+        assertThat(result.isHasNext()).isTrue();
+        ExpenseCursor cursor = ExpenseCursor.decode(result.getNextCursor());
+        assertThat(cursor.getExpenseDate()).isEqualTo(testExpense.getExpenseDate());
+        assertThat(cursor.getAmount()).isEqualTo(Money.parse("100.50"));
+        assertThat(cursor.getId()).isEqualTo(testExpenseId);
+    }
+
+    @Test
+     void findSlice_WithCursor_ShouldContinueAfterCursor() {
+
+        // Arrange
+        LocalDateTime lastDate = LocalDateTime.of(2025, 1, 15, 10, 30);
+        UUID lastId = UUID.randomUUID();
+        String cursor = new ExpenseCursor(lastDate, Money.parse("12.30"), lastId).encode();
+        when(expenseRepository.findSliceAfter(testUserId, lastDate, lastId, PageRequest.of(0, 20)))
+                .thenReturn(new SliceImpl<>(toResponseDTOs(List.of(testExpense)), PageRequest.of(0, 20), false));
+
+        // Act
+        SliceResponseDTO<ExpenseResponseDTO> result = expenseService.findSlice(testUserId, ExpenseFilter.none(), cursor, 20);
+
+        // Assert
+        assertThat(result.getContent()).hasSize(1);
+        verify(expenseRepository).findSliceAfter(testUserId, lastDate, lastId, PageRequest.of(0, 20));
+        verify(expenseRepository, never()).findFirstSlice(any(), any());
+    }
+
+    @Test
+     void findSlice_WithInvalidCursor_ShouldThrowInvalidDataException() {
+
+        // Act & Assert
+        assertThatThrownBy(() -> expenseService.findSlice(testUserId, ExpenseFilter.none(), "not-a-cursor", 20))
+                .isInstanceOf(InvalidDataException.class);
+
+        verify(expenseRepository, never()).findSliceAfter(any(), any(), any(), any());
+    }
+
+    @Test
+     void findSlice_WithFilter_ShouldSearchFromCursor() {
+
+        // Arrange
+        ExpenseFilter filter = ExpenseFilter.builder()
+                .categoryIds(List.of(testCategoryId))
+                .sortBy(ExpenseFilter.SortField.AMOUNT)
+                .build();
+        ExpenseCursor after = new ExpenseCursor(LocalDateTime.of(2025, 1, 15, 10, 30), Money.parse("12.30"), UUID.randomUUID());
+        when(expenseRepository.search(eq(testUserId), eq(filter), any(ExpenseCursor.class), eq(20)))
+                .thenReturn(new SliceImpl<>(toResponseDTOs(List.of(testExpense)), PageRequest.of(0, 20), false));
+
+        // Act
+        SliceResponseDTO<ExpenseResponseDTO> result = expenseService.findSlice(testUserId, filter, after.encode(), 20);
+
+        // Assert
+        assertThat(result.getContent()).hasSize(1);
+        verify(expenseRepository).search(eq(testUserId), eq(filter),
+                argThat(cursor -> cursor.getId().equals(after.getId())
+                        && cursor.getAmount().compareTo(after.getAmount()) == 0), eq(20));
+        verify(expenseRepository, never()).findFirstSlice(any(), any());
+        verify(expenseRepository, never()).findSliceAfter(any(), any(), any(), any());
+    }
+
+    @Test
+     void filter_WithFromAfterTo_ShouldThrowInvalidDataException() {
+
+        // Act & Assert
+        assertThatThrownBy(() -> ExpenseFilter.builder()
+                .from(LocalDateTime.of(2025, 2, 1, 0, 0))
+                .to(LocalDateTime.of(2025, 1, 1, 0, 0))
+                .build())
+                .isInstanceOf(InvalidDataException.class);
+    }
+
+    @Test
+    void summarize_ShouldDelegateTheAggregationToTheRepository() {
+
+        // Arrange
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<ExpenseSummaryDTO> buckets = List.of(new ExpenseSummaryDTO(from, 3, new BigDecimal("60.00"),
+                new BigDecimal("10.00"), new BigDecimal("30.00")));
+        when(expenseRepository.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.MONTH)).thenReturn(buckets);
+
+        // Act
+        List<ExpenseSummaryDTO> result = expenseService.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.MONTH);
+
+        // Assert
+        assertThat(result).isSameAs(buckets);
+    }
+
+    @Test
+    void summarize_WhenTheRollupCoversTheRange_ShouldReadTheRollup() {
+
+        // Arrange
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 1, 0, 0);
+        List<ExpenseSummaryDTO> buckets = List.of(new ExpenseSummaryDTO(from.toLocalDate(), 2, 4000, 1000, 3000));
+        when(expenseRollupService.covers(from, to, ExpenseSummaryDTO.GroupBy.MONTH)).thenReturn(true);
+        when(expenseRollupService.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.MONTH)).thenReturn(buckets);
+
+        // Act
+        List<ExpenseSummaryDTO> result = expenseService.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.MONTH);
+
+        // Assert
+        assertThat(result).isSameAs(buckets);
+        assertThat(result.getFirst().getTotal()).isEqualTo(Money.parse("40.00"));
+        verify(expenseRepository, never()).summarize(any(), any(), any(), any());
+    }
+
+    @Test
+    void summarize_WhenTheColumnarCacheCoversTheRange_ShouldNotReadTheDatabase() {
+
+        // Arrange
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 15, 0, 0);
+        List<ExpenseSummaryDTO> buckets = List.of(new ExpenseSummaryDTO(from.toLocalDate(), 1, 1000, 1000, 1000));
+        when(expenseColumnarCache.covers(from, to)).thenReturn(true);
+        when(expenseRollupService.covers(from, to, ExpenseSummaryDTO.GroupBy.DAY)).thenReturn(true);
+        when(expenseColumnarCache.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.DAY)).thenReturn(buckets);
+
+        // Act
+        List<ExpenseSummaryDTO> result = expenseService.summarize(testUserId, from, to, ExpenseSummaryDTO.GroupBy.DAY);
+
+        // Assert: las columnas en memoria tienen prioridad sobre el rollup y la consulta agregada
+        assertThat(result).isSameAs(buckets);
+        verify(expenseRollupService, never()).summarize(any(), any(), any(), any());
+        verify(expenseRepository, never()).summarize(any(), any(), any(), any());
+    }
+
+    @Test
+    void summarize_WithFromNotBeforeTo_ShouldThrowInvalidDataException() {
+
+        // Act & Assert
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 0, 0);
+        assertThatThrownBy(() -> expenseService.summarize(testUserId, date, date, ExpenseSummaryDTO.GroupBy.DAY))
+                .isInstanceOf(InvalidDataException.class);
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+     void exportAll_ShouldPassEachExpenseToConsumerAndDetachIt() {
+
+        // Arrange
+        Expense secondExpense = Expense.builder()
+                .id(UUID.randomUUID())
+                .user(testUser)
+                .expenseDate(LocalDateTime.now().minusDays(1))
+                .category(testCategory)
+                .amount(new BigDecimal("20.00"))
+                .build();
+        when(expenseRepository.streamByUserId(testUserId)).thenReturn(Stream.of(testExpense, secondExpense));
+        List<ExpenseResponseDTO> exported = new ArrayList<>();
+
+        // Act
+        expenseService.exportAll(testUserId, exported::add);
+
+        // Assert
+        assertThat(exported).extracting(ExpenseResponseDTO::getId)
+                .containsExactly(testExpenseId, secondExpense.getId());
+        verify(entityManager).detach(testExpense);
+        verify(entityManager).detach(secondExpense);
     }
 
     @Test
      void findById_WhenExpenseExists_ShouldReturnExpenseResponseDTO() {
 
         // Arrange
-        // Se coloca .findByUserAndId() porque .findById() lo utiliza en su impl
-        when(expenseRepository.findByUserAndId(testUser, testExpenseId)).thenReturn(Optional.of(testExpense));
+        // La lectura proyecta directamente al DTO, sin cargar la entidad
+        when(expenseRepository.findResponseByUserIdAndId(testUserId, testExpenseId))
+                .thenReturn(Optional.of(ExpenseMapper.toResponseDTO(testExpense)));
 
         // Act
-        Optional<ExpenseResponseDTO> result = expenseService.findById(testExpenseId);
+        Optional<ExpenseResponseDTO> result = expenseService.findById(testUserId, testExpenseId);
 
         // Assert
         assertThat(result).isPresent(); // Así se comprueba que el Optional contiene un valor, es decir, que no contiene un Optional.empty()
         ExpenseResponseDTO responseDTO = result.get();
         assertThat(responseDTO.getId()).isEqualTo(testExpenseId);
-        assertThat(responseDTO.getAmount()).isEqualTo(new BigDecimal("100.50"));
+        assertThat(responseDTO.getAmount()).isEqualTo(Money.parse("100.50"));
         assertThat(responseDTO.getDescription()).isEqualTo("Lunch");
 
-        verify(expenseRepository).findByUserAndId(testUser, testExpenseId);
-        verify(userService).findByEmail(testUserEmail);
+        verify(expenseRepository).findResponseByUserIdAndId(testUserId, testExpenseId);
+        verify(userService, never()).findByEmail(any());
 
     }
 
@@ -158,16 +361,16 @@ public class ExpenseServiceImplTest {
      void findById_WhenExpenseDoesNotExists_ShouldReturnEmptyOptional() {
 
         // Arrange
-        when(expenseRepository.findByUserAndId(testUser, testExpenseId)).thenReturn(Optional.empty());
+        when(expenseRepository.findResponseByUserIdAndId(testUserId, testExpenseId)).thenReturn(Optional.empty());
 
         // Act
-        Optional<ExpenseResponseDTO> result = expenseService.findById(testExpenseId);
+        Optional<ExpenseResponseDTO> result = expenseService.findById(testUserId, testExpenseId);
 
         // Assert
         assertThat(result).isEmpty();
 
-        verify(expenseRepository).findByUserAndId(testUser, testExpenseId);
-        verify(userService).findByEmail(testUserEmail);
+        verify(expenseRepository).findResponseByUserIdAndId(testUserId, testExpenseId);
+        verify(userService, never()).findByEmail(any());
 
     }
 
@@ -179,18 +382,64 @@ public class ExpenseServiceImplTest {
         when(expenseRepository.save(any(Expense.class))).thenReturn(testExpense);
 
         // Act
-        ExpenseResponseDTO result = expenseService.create(testExpenseDTO);
+        ExpenseResponseDTO result = expenseService.create(testUserId, testExpenseDTO);
 
         // Assert
         assertThat(result).isNotNull();
         assertThat(result.getId()).isEqualTo(testExpenseId);
-        assertThat(result.getAmount()).isEqualTo(new BigDecimal("100.50"));
+        assertThat(result.getAmount()).isEqualTo(Money.parse("100.50"));
         assertThat(result.getDescription()).isEqualTo("Lunch");
         assertThat(result.getCategory().getName()).isEqualTo("Food");
 
         verify(categoryRepository).findById(testCategoryId);
         verify(expenseRepository).save(any(Expense.class));
-        verify(userService).findByEmail(testUserEmail);
+        verify(userService).getReference(testUserId);
+        verify(userService, never()).findByEmail(any());
+    }
+
+    @Test
+    void create_ShouldAddTheExpenseToTheRollup() {
+
+        // Arrange
+        when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.of(testCategory));
+        when(expenseRepository.save(any(Expense.class))).thenReturn(testExpense);
+
+        // Act
+        expenseService.create(testUserId, testExpenseDTO);
+
+        // Assert: la caché columnar recibe lo mismo que el rollup
+        List<ExpenseMonthlyRollup.Contribution> added = List.of(new ExpenseMonthlyRollup.Contribution(testExpenseId,
+                testUserId, testCategoryId, testExpense.getExpenseDate(), testExpense.getAmount()));
+        verify(expenseRollupService).added(added);
+        verify(expenseColumnarCache).apply(added, List.of());
+    }
+
+    @Test
+    void create_WhenTheCatalogHasTheCategory_ShouldNotQueryIt() {
+        when(categoryCatalog.find(testCategoryId))
+                .thenReturn(new CategoryResponseDTO(testCategoryId, "Food", "Food expenses", 2L));
+        when(expenseRepository.save(any(Expense.class))).thenReturn(testExpense);
+
+        ExpenseResponseDTO result = expenseService.create(testUserId, testExpenseDTO);
+
+        // La categoría de la respuesta es una copia sin versión, la del catálogo no se modifica
+        assertThat(result.getCategory().getName()).isEqualTo("Food");
+        assertThat(result.getCategory().getVersion()).isNull();
+        assertThat(categoryCatalog.find(testCategoryId).getVersion()).isEqualTo(2L);
+        verify(entityManager).getReference(Category.class, testCategoryId);
+        verifyNoInteractions(categoryRepository);
+        verify(categoryCatalog, never()).refresh();
+    }
+
+    @Test
+    void create_WhenTheCatalogMissesTheCategory_ShouldRefreshIt() {
+        when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.of(testCategory));
+        when(expenseRepository.save(any(Expense.class))).thenReturn(testExpense);
+
+        expenseService.create(testUserId, testExpenseDTO);
+
+        verify(categoryRepository).findById(testCategoryId);
+        verify(categoryCatalog).refresh();
     }
 
     @Test
@@ -199,7 +448,7 @@ public class ExpenseServiceImplTest {
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.empty());
 
         // Comprobar que lanza la excepción que debe
-        assertThatThrownBy(() -> expenseService.create(testExpenseDTO))
+        assertThatThrownBy(() -> expenseService.create(testUserId, testExpenseDTO))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("Category");
 
@@ -214,7 +463,7 @@ public class ExpenseServiceImplTest {
         testExpenseDTO.setCategoryId(null);
         testExpenseDTO.setCategoryName(null);
 
-        assertThatThrownBy(() -> expenseService.create(testExpenseDTO))
+        assertThatThrownBy(() -> expenseService.create(testUserId, testExpenseDTO))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessage("Either categoryId or categoryName must be provided");
 
@@ -229,7 +478,7 @@ public class ExpenseServiceImplTest {
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.of(testCategory));
         when(expenseRepository.save(any(Expense.class))).thenThrow(new DataIntegrityViolationException("Duplicate"));
 
-        assertThatThrownBy(() -> expenseService.create(testExpenseDTO))
+        assertThatThrownBy(() -> expenseService.create(testUserId, testExpenseDTO))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessageContaining("Expense");
 
@@ -237,35 +486,96 @@ public class ExpenseServiceImplTest {
         verify(expenseRepository).save(any(Expense.class));
     }
 
+    @Test
+    void createAll_ShouldCreateValidExpensesAndReportTheRest() {
+        ExpenseDTO invalid = new ExpenseDTO();
+        invalid.setExpenseDate(LocalDateTime.now());
+        invalid.setCategoryId(testCategoryId);
+        invalid.setAmount(new BigDecimal("-1.00"));
+
+        ExpenseDTO unknownCategory = new ExpenseDTO();
+        unknownCategory.setExpenseDate(LocalDateTime.now());
+        unknownCategory.setCategoryName("Unknown");
+        unknownCategory.setAmount(BigDecimal.TEN);
+
+        when(categoryRepository.findByIdInOrNameIn(Set.of(testCategoryId), Set.of("Unknown")))
+                .thenReturn(List.of(testCategory));
+        when(expenseRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchCreateResponseDTO result = expenseService.createAll(testUserId,
+                List.of(testExpenseDTO, invalid, unknownCategory, testExpenseDTO));
+
+        assertThat(result.getRequested()).isEqualTo(4);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getResults()).extracting(BatchItemResultDTO::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(result.getResults()).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemResultDTO.Status.CREATED,
+                BatchItemResultDTO.Status.INVALID,
+                BatchItemResultDTO.Status.CATEGORY_NOT_FOUND,
+                BatchItemResultDTO.Status.CREATED);
+        assertThat(result.getResults().get(1).getError()).contains("amount");
+        assertThat(result.getResults().get(3).getExpense().getCategory().getName()).isEqualTo("Food");
+
+        // Una consulta de categorías, una referencia al usuario y un único saveAll para todo el lote
+        verify(categoryRepository).findByIdInOrNameIn(any(), any());
+        verify(categoryRepository, never()).findById(any());
+        verify(userService).getReference(testUserId);
+        verify(expenseRepository).saveAll(argThat(expenses -> ((List<?>) expenses).size() == 2));
+        verify(expenseRepository, never()).save(any(Expense.class));
+    }
+
+    @Test
+    void createAll_WhenTheCatalogHasEveryCategory_ShouldNotQueryThem() {
+        when(categoryCatalog.find(testCategoryId))
+                .thenReturn(new CategoryResponseDTO(testCategoryId, "Food", "Food expenses", 0L));
+        when(expenseRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchCreateResponseDTO result = expenseService.createAll(testUserId, List.of(testExpenseDTO, testExpenseDTO));
+
+        assertThat(result.getCreated()).isEqualTo(2);
+        verifyNoInteractions(categoryRepository);
+    }
+
+    @Test
+    void createAll_WithOnlyInvalidExpenses_ShouldNotQueryCategories() {
+        when(expenseRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchCreateResponseDTO result = expenseService.createAll(testUserId, Collections.singletonList(null));
+
+        assertThat(result.getCreated()).isZero();
+        assertThat(result.getResults().getFirst().getStatus()).isEqualTo(BatchItemResultDTO.Status.INVALID);
+        verify(categoryRepository, never()).findByIdInOrNameIn(any(), any());
+    }
+
     @Test
     void update_WithValidData_ShouldUpdateExpense() {
 
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.of(testCategory));
-        when(expenseRepository.findByUserAndId(testUser, testExpenseId)).thenReturn(Optional.of(testExpense));
+        when(expenseRepository.findByUser_IdAndId(testUserId, testExpenseId)).thenReturn(Optional.of(testExpense));
         when(expenseRepository.save(any(Expense.class))).thenReturn(testExpense);
 
-        ExpenseResponseDTO result = expenseService.update(testExpenseId, testExpenseDTO);
+        ExpenseResponseDTO result = expenseService.update(testUserId, testExpenseId, testExpenseDTO, null);
 
         assertThat(result).isNotNull();
         assertThat(result.getId()).isEqualTo(testExpenseId);
-        assertThat(result.getAmount()).isEqualTo(new BigDecimal("100.50"));
+        assertThat(result.getAmount()).isEqualTo(Money.parse("100.50"));
 
         verify(categoryRepository).findById(testCategoryId);
-        verify(expenseRepository).findByUserAndId(testUser, testExpenseId);
+        verify(expenseRepository).findByUser_IdAndId(testUserId, testExpenseId);
         verify(expenseRepository).save(testExpense);
     }
 
     @Test
     void update_WithNonExistentExpense_ShouldThrowResourceNotFoundException() {
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.of(testCategory));
-        when(expenseRepository.findByUserAndId(testUser, testExpenseId)).thenReturn(Optional.empty());
+        when(expenseRepository.findByUser_IdAndId(testUserId, testExpenseId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> expenseService.update(testExpenseId, testExpenseDTO))
+        assertThatThrownBy(() -> expenseService.update(testUserId, testExpenseId, testExpenseDTO, null))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("Expense");
 
         verify(categoryRepository).findById(testCategoryId);
-        verify(expenseRepository).findByUserAndId(testUser, testExpenseId);
+        verify(expenseRepository).findByUser_IdAndId(testUserId, testExpenseId);
         verify(expenseRepository, never()).save(any(Expense.class));
     }
 
@@ -273,54 +583,143 @@ public class ExpenseServiceImplTest {
     void update_WithInvalidCategory_ShouldThrowResourceNotFoundException() {
         when(categoryRepository.findById(testCategoryId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> expenseService.update(testExpenseId, testExpenseDTO))
+        assertThatThrownBy(() -> expenseService.update(testUserId, testExpenseId, testExpenseDTO, null))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("Category");
 
         verify(categoryRepository).findById(testCategoryId);
-        verify(expenseRepository, never()).findByUserAndId(any(), any());
+        verify(expenseRepository, never()).findByUser_IdAndId(any(), any());
+    }
+
+    @Test
+    void update_WithMatchingVersion_ShouldUpdateWithoutLoadingTheExpense() {
+        ExpenseResponseDTO updated = ExpenseMapper.toResponseDTO(testExpense);
+        updated.setVersion(4L);
+        when(expenseRepository.updateIfVersionMatches(testExpenseId, testUserId, 3L, testExpenseDTO.getExpenseDate(),
+                testCategoryId, testExpenseDTO.getAmount(), testExpenseDTO.getDescription()))
+                .thenReturn(Optional.of(new ExpenseMonthlyRollup.Contribution(testExpenseId, testUserId, testCategoryId,
+                        testExpense.getExpenseDate(), testExpense.getAmount())));
+        when(expenseRepository.findResponseByUserIdAndId(testUserId, testExpenseId)).thenReturn(Optional.of(updated));
+
+        ExpenseResponseDTO result = expenseService.update(testUserId, testExpenseId, testExpenseDTO, 3L);
+
+        assertThat(result.getVersion()).isEqualTo(4L);
+        // La categoría va por id y el gasto no se carga antes de escribir
+        verify(categoryRepository, never()).findById(any());
+        verify(expenseRepository, never()).findByUser_IdAndId(any(), any());
+        verify(expenseRepository, never()).save(any(Expense.class));
+    }
+
+    @Test
+    void update_WithMatchingVersion_ShouldMoveTheContributionInTheRollup() {
+        ExpenseMonthlyRollup.Contribution previous = new ExpenseMonthlyRollup.Contribution(testExpenseId, testUserId, testCategoryId,
+                LocalDateTime.of(2024, 12, 31, 10, 0), new BigDecimal("1.00"));
+        when(expenseRepository.updateIfVersionMatches(any(), any(), anyLong(), any(), any(), any(), any()))
+                .thenReturn(Optional.of(previous));
+        when(expenseRepository.findResponseByUserIdAndId(testUserId, testExpenseId))
+                .thenReturn(Optional.of(ExpenseMapper.toResponseDTO(testExpense)));
+
+        expenseService.update(testUserId, testExpenseId, testExpenseDTO, 3L);
+
+        verify(expenseRollupService).apply(
+                List.of(new ExpenseMonthlyRollup.Contribution(testExpenseId, testUserId, testCategoryId,
+                        testExpenseDTO.getExpenseDate(), testExpenseDTO.getAmount())),
+                List.of(previous));
+    }
+
+    @Test
+    void update_WithStaleVersion_ShouldThrowPreconditionFailedException() {
+        when(expenseRepository.updateIfVersionMatches(any(), any(), anyLong(), any(), any(), any(), any()))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> expenseService.update(testUserId, testExpenseId, testExpenseDTO, 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessageContaining(testExpenseId.toString());
+
+        verify(expenseRepository, never()).findResponseByUserIdAndId(any(), any());
+    }
+
+    @Test
+    void update_WithMatchingVersionAndMissingCategory_ShouldThrowResourceNotFoundException() {
+        when(expenseRepository.updateIfVersionMatches(any(), any(), anyLong(), any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("FK violation"));
+
+        assertThatThrownBy(() -> expenseService.update(testUserId, testExpenseId, testExpenseDTO, 3L))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("Category");
     }
 
     @Test
     void deleteById_WithValidData_ShouldDeleteExpense() {
-        when(expenseRepository.existsById(testExpenseId)).thenReturn(true);
-        when(expenseRepository.findByUser(testUser)).thenReturn(Arrays.asList(testExpense));
+        when(expenseRepository.deleteByIdAndUserId(testExpenseId, testUserId))
+                .thenReturn(Optional.of(new ExpenseMonthlyRollup.Contribution(testExpenseId, testUserId, testCategoryId,
+                        testExpense.getExpenseDate(), testExpense.getAmount())));
 
-        expenseService.deleteById(testExpenseId);
+        expenseService.deleteById(testUserId, testExpenseId);
+
+        // Una única sentencia DELETE, sin comprobar antes la existencia ni cargar los gastos del usuario
+        verify(expenseRepository).deleteByIdAndUserId(testExpenseId, testUserId);
+        verify(expenseRepository, never()).existsById(any());
+        verify(expenseRepository, never()).deleteById(any());
+    }
 
-        verify(expenseRepository).existsById(testExpenseId);
-        verify(expenseRepository).findByUser(testUser);
-        verify(expenseRepository).deleteById(testExpenseId);
+    @Test
+    void deleteById_ShouldRemoveTheDeletedRowFromTheRollup() {
+        ExpenseMonthlyRollup.Contribution deleted = new ExpenseMonthlyRollup.Contribution(testExpenseId,
+                testUserId, testCategoryId, testExpense.getExpenseDate(), testExpense.getAmount());
+        List<ExpenseMonthlyRollup.Contribution> removed = List.of(deleted);
+        when(expenseRepository.deleteByIdAndUserId(testExpenseId, testUserId)).thenReturn(Optional.of(deleted));
+
+        expenseService.deleteById(testUserId, testExpenseId);
+
+        // El rollup se actualiza después del DELETE, con lo que devolvió la fila borrada
+        var inOrder = inOrder(expenseRepository, expenseRollupService);
+        inOrder.verify(expenseRepository).deleteByIdAndUserId(testExpenseId, testUserId);
+        inOrder.verify(expenseRollupService).removed(removed);
+        verify(expenseColumnarCache).apply(List.of(), removed);
     }
 
     @Test
     void deleteById_WithNonExistentId_ShouldThrowResourceNotFoundException() {
-        when(expenseRepository.existsById(testExpenseId)).thenReturn(false);
+        when(expenseRepository.deleteByIdAndUserId(testExpenseId, testUserId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> expenseService.deleteById(testExpenseId))
+        assertThatThrownBy(() -> expenseService.deleteById(testUserId, testExpenseId))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("Expense");
 
-        verify(expenseRepository).existsById(testExpenseId);
-        verify(expenseRepository, never()).deleteById(any());
+        verify(expenseRepository).deleteByIdAndUserId(testExpenseId, testUserId);
     }
 
     @Test
-    void deleteById_WithExpenseNotBelongingToUser_ShouldNotDelete() {
+    void deleteById_WithExpenseNotBelongingToUser_ShouldThrowResourceNotFoundException() {
+        // El DELETE filtra por user_id, así que un gasto de otro usuario no afecta a ninguna fila
+        when(expenseRepository.deleteByIdAndUserId(testExpenseId, testUserId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> expenseService.deleteById(testUserId, testExpenseId))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void deleteAllById_ShouldDeleteInOneStatementAndReturnCount() {
         UUID otherExpenseId = UUID.randomUUID();
-        Expense otherExpense = Expense.builder()
-                .id(otherExpenseId)
-                .user(testUser)
-                .build();
+        when(expenseRepository.deleteAllByIdInAndUserId(Set.of(testExpenseId, otherExpenseId), testUserId))
+                .thenReturn(List.of(new ExpenseMonthlyRollup.Contribution(testExpenseId, testUserId, testCategoryId,
+                        testExpense.getExpenseDate(), testExpense.getAmount())));
 
-        when(expenseRepository.existsById(testExpenseId)).thenReturn(true);
-        when(expenseRepository.findByUser(testUser)).thenReturn(Arrays.asList(otherExpense));
+        int deleted = expenseService.deleteAllById(testUserId, List.of(testExpenseId, otherExpenseId));
 
-        // Se intenta borrar testExpense, pero gasto del usuario solo es otherExpense
-        expenseService.deleteById(testExpenseId);
+        assertThat(deleted).isEqualTo(1);
+        verify(expenseRepository).deleteAllByIdInAndUserId(Set.of(testExpenseId, otherExpenseId), testUserId);
+    }
+
+    @Test
+    void deleteAllById_WithNoIds_ShouldNotRunAnyStatement() {
+        assertThat(expenseService.deleteAllById(testUserId, List.of())).isZero();
+
+        verify(expenseRepository, never()).deleteAllByIdInAndUserId(any(), any());
+    }
 
-        verify(expenseRepository).existsById(testExpenseId);
-        verify(expenseRepository).findByUser(testUser);
-        verify(expenseRepository, never()).deleteById(testExpenseId);
+    private static List<ExpenseResponseDTO> toResponseDTOs(List<Expense> expenses) {
+        return expenses.stream().map(ExpenseMapper::toResponseDTO).toList();
     }
 }
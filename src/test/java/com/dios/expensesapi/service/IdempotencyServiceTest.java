@@ -0,0 +1,368 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.ExpenseDTO;
+import com.dios.expensesapi.dto.ExpenseResponseDTO;
+import com.dios.expensesapi.exception.IdempotencyKeyInProgressException;
+import com.dios.expensesapi.exception.IdempotencyKeyReusedException;
+import com.dios.expensesapi.exception.InvalidDataException;
+import com.dios.expensesapi.model.IdempotencyRecord;
+import com.dios.expensesapi.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class IdempotencyServiceTest {
+
+    private static final String OPERATION = "POST /api/expenses";
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final UUID testUserId = UUID.randomUUID();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private IdempotencyService idempotencyService;
+    private ExpenseDTO request;
+
+    @BeforeEach
+    void setUp() {
+        // La base de datos asigna el id de la reserva y registra la respuesta
+        when(idempotencyRecordRepository.save(any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = invocation.getArgument(0);
+            record.setId(UUID.randomUUID());
+            return record;
+        });
+        when(idempotencyRecordRepository.complete(any(), anyInt(), any(), any(), any())).thenReturn(1);
+        idempotencyService = service(false);
+
+        request = new ExpenseDTO();
+        request.setExpenseDate(LocalDateTime.of(2025, 1, 1, 12, 0));
+        request.setCategoryId(UUID.randomUUID());
+        request.setAmount(new BigDecimal("10.50"));
+        request.setDescription("Lunch");
+    }
+
+    @Test
+    void execute_WithSameKey_ShouldReplayFirstResponse() {
+        ResponseEntity<ExpenseResponseDTO> first = idempotencyService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, create());
+        ResponseEntity<ExpenseResponseDTO> retry = idempotencyService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, create());
+
+        // La acción solo se ejecuta una vez, el reintento recibe la misma respuesta
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getETag()).isEqualTo("\"0\"");
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED)).isEqualTo("true");
+        assertThat(retry.getBody().getId()).isEqualTo(first.getBody().getId());
+        assertThat(first.getHeaders().containsKey(IdempotencyService.REPLAYED)).isFalse();
+    }
+
+    @Test
+    void execute_WithKeyOfAnotherUserOrWithoutKey_ShouldRunAgain() {
+        idempotencyService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, create());
+        idempotencyService.execute(UUID.randomUUID(), "key-1", OPERATION, request, ExpenseResponseDTO.class, create());
+        idempotencyService.execute(testUserId, null, OPERATION, request, ExpenseResponseDTO.class, create());
+        idempotencyService.execute(testUserId, null, OPERATION, request, ExpenseResponseDTO.class, create());
+
+        assertThat(executions).hasValue(4);
+    }
+
+    @Test
+    void execute_WithSameKeyAndDifferentBody_ShouldThrowIdempotencyKeyReusedException() {
+        idempotencyService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, create());
+        request.setAmount(new BigDecimal("99.99"));
+
+        assertThatThrownBy(() -> idempotencyService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, create()))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_WhenActionFails_ShouldNotRecordResponse() {
+        Supplier<ResponseEntity<ExpenseResponseDTO>> failing = () -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("database down");
+        };
+
+        assertThatThrownBy(() -> idempotencyService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, failing))
+                .isInstanceOf(IllegalStateException.class);
+        idempotencyService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, create());
+
+        assertThat(executions).hasValue(2);
+        assertThat(idempotencyService.size()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_WithBlankKey_ShouldThrowInvalidDataException() {
+        assertThatThrownBy(() -> idempotencyService.execute(testUserId, " ", OPERATION, request,
+                ExpenseResponseDTO.class, create()))
+                .isInstanceOf(InvalidDataException.class);
+    }
+
+    @Test
+    void execute_ConcurrentDuplicates_ShouldRunActionOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ResponseEntity<ExpenseResponseDTO>> slow = () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return create().get();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<ExpenseResponseDTO>> first = executor.submit(() ->
+                    idempotencyService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, slow));
+            started.await(5, TimeUnit.SECONDS);
+            // El duplicado llega mientras el primero sigue en curso y espera a que termine
+            Future<ResponseEntity<ExpenseResponseDTO>> duplicate = executor.submit(() ->
+                    idempotencyService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, slow));
+            release.countDown();
+
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody().getId())
+                    .isEqualTo(first.get(5, TimeUnit.SECONDS).getBody().getId());
+            assertThat(executions).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_WhileAKeyIsRunning_ShouldNotBlockOtherKeys() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ResponseEntity<ExpenseResponseDTO>> slow = () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return create().get();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<ExpenseResponseDTO>> first = executor.submit(() ->
+                    idempotencyService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, slow));
+            started.await(5, TimeUnit.SECONDS);
+
+            // Con 1000 claves alguna cae en la misma franja de locks que key-1, y aun así no espera
+            Future<?> others = executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    idempotencyService.execute(testUserId, "other-" + i, OPERATION, request, ExpenseResponseDTO.class, create());
+                }
+            });
+            others.get(5, TimeUnit.SECONDS);
+            assertThat(first).isNotDone();
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(executions).hasValue(1001);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_WhenDuplicateOutlivesWaitTimeout_ShouldThrowIdempotencyKeyInProgressException() throws Exception {
+        IdempotencyService impatientService = service(false, Duration.ofMillis(100));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ResponseEntity<ExpenseResponseDTO>> slow = () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return create().get();
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<ExpenseResponseDTO>> first = executor.submit(() ->
+                    impatientService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, slow));
+            started.await(5, TimeUnit.SECONDS);
+
+            // El duplicado no espera indefinidamente al primero
+            assertThatThrownBy(() -> impatientService.execute(testUserId, "key-1", OPERATION, request,
+                    ExpenseResponseDTO.class, create()))
+                    .isInstanceOf(IdempotencyKeyInProgressException.class);
+
+            // El primero sigue su curso y su respuesta queda registrada para los reintentos
+            release.countDown();
+            UUID createdId = first.get(5, TimeUnit.SECONDS).getBody().getId();
+            assertThat(impatientService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class,
+                    create()).getBody().getId()).isEqualTo(createdId);
+            assertThat(executions).hasValue(1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_WhenPersistent_ShouldReserveKeyAndRecordResponse() {
+        IdempotencyService persistentService = service(true);
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1")).thenReturn(Optional.empty());
+
+        persistentService.execute(testUserId, "key-1", OPERATION, request, ExpenseResponseDTO.class, create());
+
+        // La clave se reserva con una fila pendiente antes de ejecutar y después recibe la respuesta
+        ArgumentCaptor<IdempotencyRecord> reserved = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).save(reserved.capture());
+        assertThat(reserved.getValue().isPending()).isTrue();
+        ArgumentCaptor<Instant> expiresAt = ArgumentCaptor.forClass(Instant.class);
+        verify(idempotencyRecordRepository).complete(eq(reserved.getValue().getId()), eq(201), eq("\"0\""), any(),
+                expiresAt.capture());
+        assertThat(expiresAt.getValue()).isAfter(Instant.now().plus(Duration.ofMinutes(30)));
+        verify(idempotencyRecordRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void execute_WhenPersistentAndActionFails_ShouldReleaseReservation() {
+        IdempotencyService persistentService = service(true);
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1")).thenReturn(Optional.empty());
+        Supplier<ResponseEntity<ExpenseResponseDTO>> failing = () -> {
+            throw new IllegalStateException("database down");
+        };
+
+        assertThatThrownBy(() -> persistentService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, failing))
+                .isInstanceOf(IllegalStateException.class);
+
+        // Sin respuesta que repetir, la reserva se borra para que el reintento se ejecute
+        ArgumentCaptor<IdempotencyRecord> reserved = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).save(reserved.capture());
+        verify(idempotencyRecordRepository).deleteById(reserved.getValue().getId());
+        verify(idempotencyRecordRepository, never()).complete(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void execute_WhenAnotherInstanceRecordedTheKey_ShouldReplayFromDatabase() throws Exception {
+        IdempotencyService otherInstance = service(true);
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1"))
+                .thenReturn(Optional.of(recorded(201)));
+
+        ResponseEntity<ExpenseResponseDTO> retry = otherInstance.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, create());
+
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED)).isEqualTo("true");
+        assertThat(executions).hasValue(0);
+        verify(idempotencyRecordRepository, never()).save(any());
+    }
+
+    @Test
+    void execute_WhenAnotherInstanceIsRunningTheKey_ShouldWaitForItsResponse() throws Exception {
+        IdempotencyService persistentService = service(true);
+        doThrow(new DataIntegrityViolationException("uk_idempotency_keys_user_key"))
+                .when(idempotencyRecordRepository).save(any());
+        // La otra instancia tiene la clave reservada y registra su respuesta al tercer intento
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1"))
+                .thenReturn(Optional.empty(), Optional.of(recorded(IdempotencyRecord.PENDING)),
+                        Optional.of(recorded(201)));
+
+        ResponseEntity<ExpenseResponseDTO> retry = persistentService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, create());
+
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED)).isEqualTo("true");
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void execute_WhenAnotherInstanceKeepsTheKeyPastWaitTimeout_ShouldThrowIdempotencyKeyInProgressException() throws Exception {
+        IdempotencyService persistentService = service(true, Duration.ofMillis(100));
+        doThrow(new DataIntegrityViolationException("uk_idempotency_keys_user_key"))
+                .when(idempotencyRecordRepository).save(any());
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1"))
+                .thenReturn(Optional.empty(), Optional.of(recorded(IdempotencyRecord.PENDING)));
+
+        assertThatThrownBy(() -> persistentService.execute(testUserId, "key-1", OPERATION, request,
+                ExpenseResponseDTO.class, create()))
+                .isInstanceOf(IdempotencyKeyInProgressException.class);
+        assertThat(executions).hasValue(0);
+    }
+
+    private IdempotencyService service(boolean persistent) {
+        return service(persistent, Duration.ofSeconds(5));
+    }
+
+    private IdempotencyService service(boolean persistent, Duration waitTimeout) {
+        return new IdempotencyService(idempotencyRecordRepository, objectMapper, Duration.ofHours(1), 100, persistent,
+                waitTimeout, Duration.ofMinutes(1));
+    }
+
+    // Respuesta registrada (o reserva pendiente) de la misma petición por otra instancia
+    private IdempotencyRecord recorded(int status) throws Exception {
+        ExpenseResponseDTO body = ExpenseResponseDTO.builder().id(UUID.randomUUID()).userId(testUserId).build();
+        return new IdempotencyRecord(testUserId, "key-1", requestHash(), status, "\"0\"",
+                status == IdempotencyRecord.PENDING ? null : objectMapper.writeValueAsString(body), Instant.now().plus(Duration.ofHours(1)));
+    }
+
+    // Mismo hash que calcula el servicio: SHA-256 de la operación y el cuerpo en JSON
+    private String requestHash() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((OPERATION + "\n").getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+    }
+
+    private Supplier<ResponseEntity<ExpenseResponseDTO>> create() {
+        return () -> {
+            executions.incrementAndGet();
+            ExpenseResponseDTO created = ExpenseResponseDTO.builder()
+                    .id(UUID.randomUUID())
+                    .userId(testUserId)
+                    .expenseDate(request.getExpenseDate())
+                    .amount(request.getAmount())
+                    .description(request.getDescription())
+                    .build();
+            return ResponseEntity.status(HttpStatus.CREATED).eTag("\"0\"").body(created);
+        };
+    }
+}
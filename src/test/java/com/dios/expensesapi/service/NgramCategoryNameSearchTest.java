@@ -0,0 +1,93 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NgramCategoryNameSearchTest {
+
+    @Mock
+    private CategoryCatalog categoryCatalog;
+
+    private NgramCategoryNameSearch search;
+
+    private final CategoryResponseDTO food = category("Food", "Meals");
+    private final CategoryResponseDTO seafood = category("Seafood", null);
+    private final CategoryResponseDTO fastFood = category("Fast food", "Burgers");
+    private final CategoryResponseDTO travel = category("Travel", null);
+
+    @BeforeEach
+    void setUp() {
+        search = new NgramCategoryNameSearch(categoryCatalog);
+    }
+
+    @Test
+    void find_ShouldReturnTheNamesContainingTheTextMostSimilarFirst() {
+        givenCatalog(seafood, travel, fastFood, food);
+
+        List<CategoryResponseDTO> found = search.find("FOOD", Sort.by("name"), 0, 10);
+
+        // "Food" es idéntico; "Fast food" comparte la palabra entera y "Seafood" solo parte
+        assertThat(found).containsExactly(food, fastFood, seafood);
+        assertThat(search.count("FOOD")).isEqualTo(3);
+    }
+
+    @Test
+    void find_ShouldRequireTheTrigramsInOrder() {
+        givenCatalog(seafood, travel, fastFood, food);
+
+        // "doof" tiene trigramas que no aparecen; "oo d" no está en ningún nombre aunque cada letra sí
+        assertThat(search.find("doof", Sort.unsorted(), 0, 10)).isEmpty();
+        assertThat(search.find("oo d", Sort.unsorted(), 0, 10)).isEmpty();
+        assertThat(search.find("t f", Sort.unsorted(), 0, 10)).containsExactly(fastFood);
+    }
+
+    @Test
+    void find_WithTextShorterThanATrigram_ShouldScanEveryName() {
+        givenCatalog(seafood, travel, fastFood, food);
+
+        assertThat(search.find("a", Sort.by("name"), 0, 10)).containsExactlyInAnyOrder(seafood, travel, fastFood);
+        assertThat(search.count("v")).isEqualTo(1);
+    }
+
+    @Test
+    void find_ShouldPageAndBreakTiesInTheRequestedOrder() {
+        CategoryResponseDTO second = category("Rent 2", null);
+        CategoryResponseDTO first = category("Rent 1", null);
+        givenCatalog(second, first);
+
+        assertThat(search.find("rent", Sort.by(Sort.Direction.ASC, "name"), 0, 1)).containsExactly(first);
+        assertThat(search.find("rent", Sort.by(Sort.Direction.ASC, "name"), 1, 1)).containsExactly(second);
+        assertThat(search.find("rent", Sort.by(Sort.Direction.DESC, "name"), 0, 2)).containsExactly(second, first);
+    }
+
+    @Test
+    void find_AfterTheCatalogReloads_ShouldSearchTheNewCategories() {
+        givenCatalog(seafood, travel, fastFood, food);
+        assertThat(search.find("hotel", Sort.unsorted(), 0, 10)).isEmpty();
+
+        CategoryResponseDTO hotels = category("Hotels", null);
+        givenCatalog(food, hotels);
+
+        assertThat(search.find("hotel", Sort.unsorted(), 0, 10)).containsExactly(hotels);
+    }
+
+    private void givenCatalog(CategoryResponseDTO... categories) {
+        when(categoryCatalog.findAll()).thenReturn(List.of(categories));
+    }
+
+    private static CategoryResponseDTO category(String name, String description) {
+        return new CategoryResponseDTO(UUID.randomUUID(), name, description, 0L);
+    }
+}
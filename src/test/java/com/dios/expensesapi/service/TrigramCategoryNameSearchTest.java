@@ -0,0 +1,74 @@
+package com.dios.expensesapi.service;
+
+import com.dios.expensesapi.dto.CategoryResponseDTO;
+import com.dios.expensesapi.model.Category;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// pg_trgm only exists on PostgreSQL, skipped where Docker is not available
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Testcontainers(disabledWithoutDocker = true)
+public class TrigramCategoryNameSearchTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ExpensesAPIApplication receives it in its constructor, the JPA slice does not create services
+    @MockitoBean
+    private ExpenseService expenseService;
+
+    private CategoryNameSearch search;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute(TrigramCategoryNameSearch.CREATE_EXTENSION);
+        search = new TrigramCategoryNameSearch(jdbcTemplate);
+        entityManager.persist(Category.builder().name("Seafood").build());
+        entityManager.persist(Category.builder().name("Fast food").build());
+        entityManager.persist(Category.builder().name("Food").build());
+        entityManager.persist(Category.builder().name("100% off").build());
+        entityManager.flush();
+    }
+
+    @Test
+    void find_ShouldUseTheTrigramIndexAndRankBySimilarity() {
+        assertThat(search.find("FOOD", Sort.by("name"), 0, 10)).extracting(CategoryResponseDTO::getName)
+                .containsExactly("Food", "Fast food", "Seafood");
+        assertThat(search.find("FOOD", Sort.by("name"), 1, 1)).extracting(CategoryResponseDTO::getName)
+                .containsExactly("Fast food");
+        assertThat(search.count("food")).isEqualTo(3);
+
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from pg_indexes where indexname = 'idx_categories_name_trgm'", Long.class)).isOne();
+    }
+
+    @Test
+    void find_ShouldTakeWildcardsLiterally() {
+        assertThat(search.find("0%", Sort.unsorted(), 0, 10)).extracting(CategoryResponseDTO::getName)
+                .containsExactly("100% off");
+        assertThat(search.count("f_o")).isZero();
+    }
+}